@@ -0,0 +1,87 @@
+package raytracer.benchmarks;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Material;
+import raytracer.Mesh;
+import raytracer.Scene;
+import raytracer.Sphere;
+import raytracer.buffers.GeometryPacker;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+import raytracer.distributed.SceneCodec;
+import raytracer.texture.Texture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a scene for the GPU and for distributed workers: the geometry pools with their prebuilt BVHs, materials
+ * and spheres as std430 records, and the whole scene as {@link SceneCodec} sends it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BufferPackingBenchmark {
+    private static final int RECORDS = 1024;
+
+    private final RecordPacker<Material> materialPacker = new RecordPacker<>(Material.class, LayoutRules.STD430);
+    private final RecordPacker<Sphere> spherePacker = new RecordPacker<>(Sphere.class, LayoutRules.STD430);
+
+    private Mesh[] meshes;
+    private Bvh[] bvhs;
+    private Material[] materials;
+    private Sphere[] spheres;
+    private Scene scene;
+
+    @Setup
+    public void setup() throws IOException {
+        meshes = new Mesh[]{
+                Mesh.load("src/main/resources/stanford_bunny.obj", 0),
+                Mesh.load("src/main/resources/suzanne.obj", 1)
+        };
+        bvhs = new Bvh[]{BvhBuilder.build(meshes[0]), BvhBuilder.build(meshes[1])};
+
+        materials = new Material[RECORDS];
+        spheres = new Sphere[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            materials[i] = new Material(new Vector3f(i / (float) RECORDS, 0.5f, 0.25f), new Vector3f(0), 0, i % 3, 0.5f, 0.1f, -1);
+            spheres[i] = new Sphere(new Vector3f(i, i * 0.5f, -i), 0.5f, i % RECORDS);
+        }
+
+        scene = new Scene(meshes, spheres, materials, new Texture[0], new Texture[0], new Texture[0]);
+    }
+
+    @Benchmark
+    public GeometryPacker.PackedGeometry packGeometry() {
+        return GeometryPacker.pack(meshes, bvhs);
+    }
+
+    @Benchmark
+    public ByteBuffer packMaterials() {
+        return materialPacker.pack(materials);
+    }
+
+    @Benchmark
+    public ByteBuffer packSpheres() {
+        return spherePacker.pack(spheres);
+    }
+
+    @Benchmark
+    public byte[] encodeScene() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SceneCodec.write(out, scene);
+        }
+
+        return bytes.toByteArray();
+    }
+}
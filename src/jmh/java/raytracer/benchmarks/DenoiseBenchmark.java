@@ -0,0 +1,86 @@
+package raytracer.benchmarks;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Scene;
+import raytracer.SceneLoader;
+import raytracer.config.MeshCacheConfig;
+import raytracer.config.RenderConfig;
+import raytracer.config.TextureCacheConfig;
+import raytracer.cpu.CpuCamera;
+import raytracer.cpu.CpuScene;
+import raytracer.cpu.FirstHit;
+import raytracer.cpu.PathTracer;
+import raytracer.cpu.ShaderRandom;
+import raytracer.denoise.AuxiliaryImages;
+import raytracer.denoise.Denoiser;
+import raytracer.obj.MeshCache;
+import raytracer.sampling.FeatureAccumulator;
+import raytracer.sampling.SampleAccumulator;
+import raytracer.texture.TextureCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Denoising a CPU render of the default scene. How much closer denoising brings a render to the reference is checked
+ * by DenoiserTest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DenoiseBenchmark {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 160;
+    private static final int BOUNCES = 8;
+
+    @Param({"4", "64"})
+    public int samples;
+
+    private Denoiser denoiser;
+    private float[] color;
+    private AuxiliaryImages aux;
+    private final float[] denoised = new float[WIDTH * HEIGHT * 4];
+
+    @Setup
+    public void setup() {
+        RenderConfig config = RenderConfig.fromFile("src/main/resources/config.json");
+        Scene scene = SceneLoader.load(config, new MeshCache(new MeshCacheConfig(false, null, 0)),
+                new TextureCache(new TextureCacheConfig(false, null, 0, false)));
+        PathTracer pathTracer = new PathTracer(new CpuScene(scene));
+        CpuCamera camera = new CpuCamera(config.camera(), WIDTH, HEIGHT);
+
+        SampleAccumulator accumulator = new SampleAccumulator(WIDTH, HEIGHT);
+        FeatureAccumulator features = new FeatureAccumulator(WIDTH, HEIGHT);
+        for (int sample = 0; sample < samples; sample++) {
+            int frameCounter = sample;
+
+            IntStream.range(0, HEIGHT).parallel().forEach(y -> {
+                FirstHit firstHit = new FirstHit();
+                int row = HEIGHT - 1 - y;
+
+                for (int x = 0; x < WIDTH; x++) {
+                    ShaderRandom random = new ShaderRandom(x, y, WIDTH, HEIGHT, frameCounter);
+                    Vector3f rayColor = pathTracer.rayColor(camera.getRay(x, y, random), BOUNCES, random, firstHit);
+
+                    features.add(x, row, accumulator.samples(x, row), firstHit.albedo.x, firstHit.albedo.y, firstHit.albedo.z,
+                            firstHit.normal.x, firstHit.normal.y, firstHit.normal.z, firstHit.depth);
+                    accumulator.add(x, row, rayColor.x, rayColor.y, rayColor.z);
+                }
+            });
+        }
+
+        denoiser = new Denoiser(WIDTH, HEIGHT);
+        color = accumulator.full();
+        aux = new AuxiliaryImages(accumulator.half(), features.albedo(), features.normalDepth());
+    }
+
+    @Benchmark
+    public float[] denoise() {
+        denoiser.denoise(color, aux, denoised);
+        return denoised;
+    }
+}
@@ -0,0 +1,146 @@
+package raytracer.benchmarks;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Mesh;
+import raytracer.cpu.Intersections;
+import raytracer.cpu.Ray;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU ports of hit_triangle, hit_sphere and hit_bounding_box from raytracer.comp, each over a fixed set of rays so
+ * the scores are per intersection test. Each test has its own ray, starting around the Stanford bunny and aimed near
+ * the primitive, so the tests take a mix of hit and miss paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntersectionBenchmark {
+    private static final int RAYS = 4096;
+    private static final int TRIANGLE_RAYS = 0;
+    private static final int SPHERE_RAYS = RAYS;
+    private static final int BOX_RAYS = 2 * RAYS;
+
+    private Ray[] rays;
+    private Vector3f[] inverseDirections;
+    private float[] vertices;
+    private int[] indices;
+    private float[] boxes;
+    private Vector3f[] sphereCenters;
+    private float sphereRadius;
+    private final float[] barycentric = new float[2];
+
+    @Setup
+    public void setup() throws IOException {
+        Mesh bunny = Mesh.load("src/main/resources/stanford_bunny.obj", 0);
+        vertices = bunny.vertices();
+        indices = bunny.indices();
+
+        float[] bounds = bunny.bounds();
+        Vector3f center = new Vector3f(bounds[0] + bounds[3], bounds[1] + bounds[4], bounds[2] + bounds[5]).mul(0.5f);
+        float extent = Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+
+        Random random = new Random(42);
+        int triangleCount = indices.length / 3;
+        rays = new Ray[RAYS * 3];
+        inverseDirections = new Vector3f[RAYS * 3];
+        boxes = new float[RAYS * 6];
+        sphereCenters = new Vector3f[RAYS];
+        float halfSize = 0.05f * extent;
+        sphereRadius = halfSize;
+
+        for (int i = 0; i < RAYS; i++) {
+            // each test gets its own ray, aimed near its primitive so some hit and some miss
+            int triangle = i % triangleCount * 3;
+            float u = random.nextFloat();
+            float v = random.nextFloat();
+            if (u + v > 1) {
+                u = 1 - u;
+                v = 1 - v;
+            }
+
+            // a point in the triangle, pushed away from the centroid so about a third of it lands outside
+            Vector3f centroid = vertex(indices[triangle]).add(vertex(indices[triangle + 1])).add(vertex(indices[triangle + 2])).div(3);
+            Vector3f inTriangle = vertex(indices[triangle]).mul(1 - u - v)
+                    .add(vertex(indices[triangle + 1]).mul(u))
+                    .add(vertex(indices[triangle + 2]).mul(v));
+            setRay(TRIANGLE_RAYS + i, random, center, extent, inTriangle.sub(centroid).mul(1.25f).add(centroid));
+
+            Vector3f position = randomUnitVector(random).mul(0.5f * extent * random.nextFloat()).add(center);
+            sphereCenters[i] = position;
+            setRay(SPHERE_RAYS + i, random, center, extent, randomUnitVector(random).mul(1.5f * halfSize).add(position));
+
+            boxes[i * 6] = position.x - halfSize;
+            boxes[i * 6 + 1] = position.y - halfSize;
+            boxes[i * 6 + 2] = position.z - halfSize;
+            boxes[i * 6 + 3] = position.x + halfSize;
+            boxes[i * 6 + 4] = position.y + halfSize;
+            boxes[i * 6 + 5] = position.z + halfSize;
+            setRay(BOX_RAYS + i, random, center, extent, randomUnitVector(random).mul(1.5f * halfSize).add(position));
+        }
+    }
+
+    private Vector3f vertex(int index) {
+        return new Vector3f(vertices[index * 3], vertices[index * 3 + 1], vertices[index * 3 + 2]);
+    }
+
+    /**
+     * Sets ray i to start somewhere around the bunny and point at the target.
+     */
+    private void setRay(int i, Random random, Vector3f center, float extent, Vector3f target) {
+        Vector3f origin = randomUnitVector(random).mul(2 * extent).add(center);
+        Vector3f direction = target.sub(origin, new Vector3f()).normalize();
+        rays[i] = new Ray(origin, direction);
+        inverseDirections[i] = new Vector3f(1).div(direction);
+    }
+
+    private static Vector3f randomUnitVector(Random random) {
+        return new Vector3f((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()).normalize();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int hitTriangle() {
+        int triangleCount = indices.length / 3;
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            int triangle = i % triangleCount * 3;
+            float t = Intersections.hitTriangle(vertices, indices[triangle], indices[triangle + 1], indices[triangle + 2], rays[TRIANGLE_RAYS + i], 0.001f, Float.POSITIVE_INFINITY, barycentric);
+            hits += t == Intersections.MISS ? 0 : 1;
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int hitSphere() {
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            float t = Intersections.hitSphere(sphereCenters[i], sphereRadius, rays[SPHERE_RAYS + i], 0.001f, Float.POSITIVE_INFINITY);
+            hits += t == Intersections.MISS ? 0 : 1;
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public int hitBoundingBox() {
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            float t = Intersections.hitBoundingBox(boxes[i * 6], boxes[i * 6 + 1], boxes[i * 6 + 2],
+                    boxes[i * 6 + 3], boxes[i * 6 + 4], boxes[i * 6 + 5],
+                    rays[BOX_RAYS + i].origin, inverseDirections[BOX_RAYS + i], 0.001f, Float.POSITIVE_INFINITY);
+            hits += t == Intersections.MISS ? 0 : 1;
+        }
+
+        return hits;
+    }
+}
@@ -0,0 +1,54 @@
+package raytracer.benchmarks;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Mesh;
+import raytracer.util.ArrayUtil;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforming the Stanford bunny in place, and converting its vertices between JOML vectors and packed arrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MeshBenchmark {
+    private Mesh mesh;
+    private Matrix4f rotation;
+    private Vector3f[] vectors;
+
+    @Setup
+    public void setup() throws IOException {
+        mesh = Mesh.load("src/main/resources/stanford_bunny.obj", 0);
+        // a rotation keeps the vertices bounded however many times it's applied
+        rotation = new Matrix4f().rotationY(0.01f);
+
+        float[] vertices = mesh.vertices();
+        vectors = new Vector3f[vertices.length / 3];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new Vector3f(vertices[i * 3], vertices[i * 3 + 1], vertices[i * 3 + 2]);
+        }
+    }
+
+    @Benchmark
+    public float[] transform() {
+        mesh.transform(rotation);
+        return mesh.bounds();
+    }
+
+    @Benchmark
+    public float[] toVec3FloatArray() {
+        return ArrayUtil.toVec3FloatArray(vectors);
+    }
+
+    @Benchmark
+    public float[] toVec4FloatArray() {
+        return ArrayUtil.toVec4FloatArray(vectors);
+    }
+}
@@ -0,0 +1,44 @@
+package raytracer.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.Mesh;
+import raytracer.obj.ObjData;
+import raytracer.obj.ObjParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the bundled OBJ files, from bytes already in memory and from disk through {@link Mesh#load}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjParserBenchmark {
+    @Param({"stanford_bunny.obj", "suzanne.obj"})
+    public String file;
+
+    private Path path;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Path.of("src/main/resources", file);
+        bytes = Files.readAllBytes(path);
+    }
+
+    @Benchmark
+    public ObjData parse() {
+        return ObjParser.parse(bytes);
+    }
+
+    @Benchmark
+    public Mesh load() throws IOException {
+        return Mesh.load(path.toString(), 0);
+    }
+}
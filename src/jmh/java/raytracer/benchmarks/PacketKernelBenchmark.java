@@ -0,0 +1,104 @@
+package raytracer.benchmarks;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Mesh;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+import raytracer.cpu.BoxSoA;
+import raytracer.cpu.PacketKernel;
+import raytracer.cpu.Ray;
+import raytracer.cpu.TriangleSoA;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The packet kernels on runs of 16 consecutive Stanford bunny triangles and BVH node boxes, scored per primitive so
+ * they compare directly with {@link IntersectionBenchmark}. Each width runs in its own fork, since the vector kernel's
+ * width is fixed when it's loaded; width 1 is the scalar kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class PacketKernelBenchmark {
+    private static final int RAYS = 4096;
+    private static final int RUN = 16;
+
+    @Param({"1", "4", "8", "16"})
+    public int width;
+
+    private PacketKernel kernel;
+    private TriangleSoA triangles;
+    private BoxSoA boxes;
+    private Ray[] rays;
+    private Vector3f[] inverseDirections;
+    private int[] firstTriangles;
+    private int[] firstBoxes;
+    private final float[] hit = new float[3];
+    private final float[] tEnter = new float[RUN];
+
+    @Setup
+    public void setup() throws IOException {
+        // before PacketKernel picks its kernel
+        System.setProperty(PacketKernel.WIDTH_PROPERTY, String.valueOf(width));
+        kernel = PacketKernel.preferred();
+
+        Mesh bunny = Mesh.load("src/main/resources/stanford_bunny.obj", 0);
+        Bvh bvh = BvhBuilder.build(bunny);
+        triangles = new TriangleSoA(bunny.vertices(), bvh.reorder(bunny.indices()));
+        boxes = new BoxSoA(bvh.bounds().clone());
+
+        float[] bounds = bunny.bounds();
+        Vector3f center = new Vector3f(bounds[0] + bounds[3], bounds[1] + bounds[4], bounds[2] + bounds[5]).mul(0.5f);
+        float extent = Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+
+        Random random = new Random(42);
+        rays = new Ray[RAYS];
+        inverseDirections = new Vector3f[RAYS];
+        firstTriangles = new int[RAYS];
+        firstBoxes = new int[RAYS];
+
+        for (int i = 0; i < RAYS; i++) {
+            firstTriangles[i] = random.nextInt(triangles.count() - RUN + 1);
+            firstBoxes[i] = random.nextInt(boxes.count() - RUN + 1);
+
+            // aimed at the bunny, so the runs take a mix of hit and miss paths
+            Vector3f origin = randomUnitVector(random).mul(2 * extent).add(center);
+            Vector3f target = randomUnitVector(random).mul(0.4f * extent).add(center);
+            Vector3f direction = target.sub(origin).normalize();
+            rays[i] = new Ray(origin, direction);
+            inverseDirections[i] = new Vector3f(1).div(direction);
+        }
+    }
+
+    private static Vector3f randomUnitVector(Random random) {
+        return new Vector3f((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()).normalize();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS * RUN)
+    public int hitTriangles() {
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            hits += kernel.hitTriangles(triangles, firstTriangles[i], RUN, rays[i], 0.001f, Float.POSITIVE_INFINITY, hit) == -1 ? 0 : 1;
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS * RUN)
+    public int hitBoxes() {
+        int hits = 0;
+        for (int i = 0; i < RAYS; i++) {
+            hits += kernel.hitBoxes(boxes, firstBoxes[i], RUN, rays[i].origin, inverseDirections[i], 0.001f, Float.POSITIVE_INFINITY, tEnter);
+        }
+
+        return hits;
+    }
+}
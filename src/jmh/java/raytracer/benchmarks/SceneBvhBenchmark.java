@@ -0,0 +1,132 @@
+package raytracer.benchmarks;
+
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import raytracer.Material;
+import raytracer.Mesh;
+import raytracer.Scene;
+import raytracer.Sphere;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.SceneBvh;
+import raytracer.cpu.CpuMesh;
+import raytracer.cpu.CpuScene;
+import raytracer.cpu.HitRecord;
+import raytracer.cpu.Intersections;
+import raytracer.cpu.Ray;
+import raytracer.texture.Texture;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost per ray of testing every object and sphere in turn, like hit_world used to, against walking the
+ * scene BVH, and times building the scene BVH. Scenes are grids of suzanne instances with a sphere next to each one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SceneBvhBenchmark {
+    private static final int RAYS = 4096;
+
+    @Param({"10", "100", "1000"})
+    public int instances;
+
+    private Scene scene;
+    private CpuMesh[] meshes;
+    private CpuScene cpuScene;
+    private Ray[] rays;
+    private final HitRecord rec = new HitRecord();
+
+    @Setup
+    public void setup() throws IOException {
+        scene = createScene(Mesh.load("src/main/resources/suzanne.obj", 0), instances);
+
+        meshes = new CpuMesh[instances];
+        for (int i = 0; i < instances; i++) {
+            meshes[i] = new CpuMesh(scene.meshes()[i]);
+        }
+
+        cpuScene = new CpuScene(scene);
+        rays = createRays(instances);
+    }
+
+    private static Scene createScene(Mesh mesh, int instances) {
+        int side = (int) Math.ceil(Math.cbrt(instances));
+        Mesh[] meshes = new Mesh[instances];
+        Sphere[] spheres = new Sphere[instances];
+
+        for (int i = 0; i < instances; i++) {
+            Vector3f position = new Vector3f(i % side, i / side % side, -(float) (i / (side * side))).mul(4);
+            meshes[i] = mesh.copy();
+            meshes[i].transform(position, new Vector3f(0), new Vector3f(1));
+            spheres[i] = new Sphere(position.add(2, 0, 0, new Vector3f()), 0.5f, 0);
+        }
+
+        Material[] materials = {new Material(new Vector3f(0.5f), new Vector3f(0), 0, Material.DIFFUSE, 0, 0, -1)};
+        return new Scene(meshes, spheres, materials, new Texture[0], new Texture[0], new Texture[0]);
+    }
+
+    private static Ray[] createRays(int instances) {
+        int side = (int) Math.ceil(Math.cbrt(instances));
+        float extent = side * 4;
+        Random random = new Random(0);
+        Ray[] rays = new Ray[RAYS];
+
+        for (int i = 0; i < RAYS; i++) {
+            Vector3f origin = new Vector3f(extent / 2, extent / 2, extent);
+            Vector3f target = new Vector3f(random.nextFloat() * extent, random.nextFloat() * extent, -random.nextFloat() * extent);
+            rays[i] = new Ray(origin, target.sub(origin).normalize());
+        }
+
+        return rays;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public float linear() {
+        float total = 0;
+
+        for (Ray ray : rays) {
+            Vector3f invDir = new Vector3f(1).div(ray.direction);
+            float closestSoFar = 1000;
+
+            for (CpuMesh mesh : meshes) {
+                if (mesh.hit(ray, invDir, 0.001f, closestSoFar, rec)) {
+                    closestSoFar = rec.t;
+                }
+            }
+
+            for (Sphere sphere : scene.spheres()) {
+                float t = Intersections.hitSphere(sphere.center(), sphere.radius(), ray, 0.001f, closestSoFar);
+                if (t != Intersections.MISS) {
+                    closestSoFar = t;
+                }
+            }
+
+            total += closestSoFar;
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RAYS)
+    public float sceneBvh() {
+        float total = 0;
+        for (Ray ray : rays) {
+            total += cpuScene.hitWorld(ray, 0.001f, 1000, rec) ? rec.t : 1000;
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Bvh build() {
+        return SceneBvh.build(scene.meshes(), scene.spheres());
+    }
+}
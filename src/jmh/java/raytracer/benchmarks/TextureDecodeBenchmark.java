@@ -0,0 +1,38 @@
+package raytracer.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import raytracer.config.TextureCacheConfig;
+import raytracer.texture.Texture;
+import raytracer.texture.TextureCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a bundled texture and building its mip chain, with the texture cache off so every load decodes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextureDecodeBenchmark {
+    @Param({"bricks2/diffuse.png", "bricks/diffuse.jpg"})
+    public String file;
+
+    private Path path;
+    private TextureCache cache;
+
+    @Setup
+    public void setup() {
+        path = Path.of("src/main/resources/textures", file);
+        cache = new TextureCache(new TextureCacheConfig(false, ".texture-cache", 0, false));
+    }
+
+    @Benchmark
+    public Texture decode() throws IOException {
+        return cache.load(path);
+    }
+}
@@ -1,14 +1,70 @@
 package raytracer;
 
+import raytracer.config.Backend;
 import raytracer.config.RenderConfig;
+import raytracer.cpu.CpuRayTracer;
+import raytracer.distributed.Coordinator;
+import raytracer.distributed.Worker;
+import raytracer.metrics.MetricsExporter;
+import raytracer.obj.MeshCache;
+import raytracer.texture.TextureCache;
+
+import java.io.IOException;
+import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // --worker host:port [--threads n] renders for a coordinator instead of reading config.json
+        if (args.length >= 2 && args[0].equals("--worker")) {
+            String[] address = args[1].split(":");
+            int threads = args.length >= 4 && args[2].equals("--threads") ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            new Worker(address[0], Integer.parseInt(address[1]), threads).run();
+            return;
+        }
+
+        // --resume continues from the checkpoint in config.json
+        boolean resume = List.of(args).contains("--resume");
+
         RenderConfig config = RenderConfig.fromFile("src/main/resources/config.json");
 
+        // started before the scene loads so its load time is exported too
+        MetricsExporter exporter = new MetricsExporter(config.metrics());
+        try {
+            render(config, resume);
+        } finally {
+            exporter.close();
+        }
+    }
+
+    private static void render(RenderConfig config, boolean resume) throws IOException {
+        // Workers don't checkpoint, so there is nothing for the coordinator to resume from
+        if (resume && config.backend() == Backend.DISTRIBUTED) {
+            throw new IllegalArgumentException("--resume is not supported by the distributed backend");
+        }
+
+        Scene scene = SceneLoader.load(config, new MeshCache(config.meshCache()), new TextureCache(config.textureCache()));
+
+        if (config.backend() == Backend.CPU) {
+            CpuRayTracer rt = new CpuRayTracer(config, scene);
+            if (resume) {
+                rt.resume();
+            }
+            rt.run();
+            rt.cleanup();
+            return;
+        }
+
+        if (config.backend() == Backend.DISTRIBUTED) {
+            new Coordinator(config, scene).run();
+            return;
+        }
+
         Window.init(config.quality().width(), config.quality().height());
 
-        RayTracer rt = new RayTracer(config);
+        RayTracer rt = new RayTracer(config, scene);
+        if (resume) {
+            rt.resume();
+        }
         rt.run();
         rt.cleanup();
 
@@ -0,0 +1,16 @@
+package raytracer;
+
+import org.joml.Vector3f;
+
+/**
+ * Mirrors the Material struct in raytracer.comp.
+ * @param type 0 = diffuse, 1 = metal, 2 = glass
+ * @param fuzzOrRefIdx fuzz for metal materials, refraction index for glass materials
+ * @param specularProb probability of specular reflection, for metal materials
+ * @param textureId the texture array layer to sample, or -1 to use the albedo
+ */
+public record Material(Vector3f albedo, Vector3f emissionColor, float emissionStrength, int type, float fuzzOrRefIdx, float specularProb, int textureId) {
+    public static final int DIFFUSE = 0;
+    public static final int METAL = 1;
+    public static final int DIELECTRIC = 2;
+}
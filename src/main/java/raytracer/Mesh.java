@@ -1,122 +1,197 @@
 package raytracer;
 
-import org.joml.Vector2f;
+import org.joml.Matrix4f;
 import org.joml.Vector3f;
-import org.joml.Vector3i;
+import raytracer.obj.MeshCache;
+import raytracer.obj.ObjData;
+import raytracer.obj.ObjParser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A triangle mesh stored as flat primitive arrays, so even large meshes are a handful of objects rather than one per
+ * vertex, and can be handed to the BVH builder and GPU buffers as is. The bounds are cached and kept up to date by
+ * {@link #transform}.
+ */
+public class Mesh {
+    private final float[] vertices;
+    private final int[] indices;
+    private final float[] texCoords;
+    private final int[] texIndices;
+    private final int materialIndex;
+    private final float[] bounds = new float[6];
 
-import java.io.*;
-import java.util.Arrays;
+    /**
+     * @param vertices packed xyz positions
+     * @param indices 3 vertex indices per triangle
+     * @param texCoords packed uv coordinates
+     * @param texIndices 3 texture coordinate indices per triangle
+     */
+    public Mesh(float[] vertices, int[] indices, float[] texCoords, int[] texIndices, int materialIndex) {
+        this.vertices = vertices;
+        this.indices = indices;
+        this.texCoords = texCoords;
+        this.texIndices = texIndices;
+        this.materialIndex = materialIndex;
+
+        updateBounds();
+    }
 
-public record Mesh(Vector3f[] vertices, Vector3i[] indices, Vector2f[] texCoords, Vector3i[] texIndices, int materialIndex) {
     /**
      * Loads an obj file from the given path.
      * @param path the path to the obj file
      * @return the mesh
      */
     public static Mesh load(String path, int materialIndex) throws IOException {
-        try (FileInputStream fis = new FileInputStream(path)) {
-
-            BufferedReader reader = new BufferedReader(new InputStreamReader(fis));
-
-            Vector3f[] vertices = reader.lines()
-                    .filter(line -> line.startsWith("v "))
-                    .map(line -> {
-                        String[] split = line.split(" ");
-                        return new Vector3f(
-                                Float.parseFloat(split[1]),
-                                Float.parseFloat(split[2]),
-                                Float.parseFloat(split[3])
-                        );
-                    })
-                    .toArray(Vector3f[]::new);
-
-            fis.getChannel().position(0);
-            reader = new BufferedReader(new InputStreamReader(fis));
-
-            Vector3i[] indices = reader.lines()
-                    .filter(line -> line.startsWith("f "))
-                    .map(line -> {
-                        String[] split = line.split(" ");
-
-                        String[][] split2 = new String[3][];
-                        for (int i = 0; i < 3; i++) {
-                            split2[i] = split[i + 1].split("/");
-                        }
-
-                        return new Vector3i(
-                                Integer.parseInt(split2[0][0]) - 1,
-                                Integer.parseInt(split2[1][0]) - 1,
-                                Integer.parseInt(split2[2][0]) - 1
-                        );
-                    })
-                    .toArray(Vector3i[]::new);
-
-            fis.getChannel().position(0);
-            reader = new BufferedReader(new InputStreamReader(fis));
-
-            Vector2f[] texCoords = reader.lines()
-                    .filter(line -> line.startsWith("vt "))
-                    .map(line -> {
-                        String[] split = line.split(" ");
-                        return new Vector2f(
-                                Float.parseFloat(split[1]),
-                                Float.parseFloat(split[2])
-                        );
-                    })
-                    .toArray(Vector2f[]::new);
-
-            fis.getChannel().position(0);
-            reader = new BufferedReader(new InputStreamReader(fis));
-
-            Vector3i[] texIndices = reader.lines()
-                    .filter(line -> line.startsWith("f "))
-                    .map(line -> {
-                        String[] split = line.split(" ");
-
-                        String[][] split2 = new String[3][];
-                        for (int i = 0; i < 3; i++) {
-                            split2[i] = split[i + 1].split("/");
-                        }
-
-                        return new Vector3i(
-                                Integer.parseInt(split2[0][1]) - 1,
-                                Integer.parseInt(split2[1][1]) - 1,
-                                Integer.parseInt(split2[2][1]) - 1
-                        );
-                    })
-                    .toArray(Vector3i[]::new);
-
-            return new Mesh(vertices, indices, texCoords, texIndices, materialIndex);
-        }
+        return fromObjData(ObjParser.parse(Path.of(path)), materialIndex);
+    }
+
+    /**
+     * Loads an obj file from the given path, going through the mesh cache.
+     * @param path the path to the obj file
+     * @param cache the cache to read the parsed file from, or write it to on a miss
+     * @return the mesh
+     */
+    public static Mesh load(String path, int materialIndex, MeshCache cache) throws IOException {
+        return fromObjData(cache.load(Path.of(path)), materialIndex);
     }
 
+    public static Mesh fromObjData(ObjData data, int materialIndex) {
+        return new Mesh(data.vertices(), data.indices(), data.texCoords(), data.texIndices(), materialIndex);
+    }
+
+    /**
+     * @return a mesh with its own copy of the vertices, sharing everything else, so it can be transformed separately
+     */
+    public Mesh copy() {
+        return new Mesh(vertices.clone(), indices, texCoords, texIndices, materialIndex);
+    }
+
+    /**
+     * Scales, then rotates around x, y and z in that order, then translates every vertex, in one pass.
+     */
     public void transform(Vector3f translation, Vector3f rotation, Vector3f scale) {
-        for (Vector3f vertex : vertices) {
-            vertex.mul(scale);
-            vertex.rotateX(rotation.x);
-            vertex.rotateY(rotation.y);
-            vertex.rotateZ(rotation.z);
-            vertex.add(translation);
-        }
+        transform(placement(translation, rotation, scale));
     }
 
-    public Vector3f[] minBounds() {
-        Vector3f min = new Vector3f(Float.POSITIVE_INFINITY);
-        for (Vector3f vertex : vertices) {
-            min.min(vertex);
+    /**
+     * @return the matrix {@link #transform(Vector3f, Vector3f, Vector3f)} transforms by
+     */
+    public static Matrix4f placement(Vector3f translation, Vector3f rotation, Vector3f scale) {
+        return new Matrix4f()
+                .translation(translation)
+                .rotateZ(rotation.z)
+                .rotateY(rotation.y)
+                .rotateX(rotation.x)
+                .scale(scale);
+    }
+
+    public void transform(Matrix4f matrix) {
+        float m00 = matrix.m00(), m01 = matrix.m01(), m02 = matrix.m02();
+        float m10 = matrix.m10(), m11 = matrix.m11(), m12 = matrix.m12();
+        float m20 = matrix.m20(), m21 = matrix.m21(), m22 = matrix.m22();
+        float m30 = matrix.m30(), m31 = matrix.m31(), m32 = matrix.m32();
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < vertices.length; i += 3) {
+            float x = vertices[i], y = vertices[i + 1], z = vertices[i + 2];
+
+            // JOML matrices are column major: mCR is column C, row R
+            float tx = m00 * x + m10 * y + m20 * z + m30;
+            float ty = m01 * x + m11 * y + m21 * z + m31;
+            float tz = m02 * x + m12 * y + m22 * z + m32;
+
+            vertices[i] = tx;
+            vertices[i + 1] = ty;
+            vertices[i + 2] = tz;
+
+            minX = Math.min(minX, tx);
+            minY = Math.min(minY, ty);
+            minZ = Math.min(minZ, tz);
+            maxX = Math.max(maxX, tx);
+            maxY = Math.max(maxY, ty);
+            maxZ = Math.max(maxZ, tz);
         }
-        return new Vector3f[]{min};
+
+        setBounds(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
-    public Vector3f[] maxBounds() {
-        Vector3f max = new Vector3f(Float.NEGATIVE_INFINITY);
-        for (Vector3f vertex : vertices) {
-            max.max(vertex);
+    private void updateBounds() {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < vertices.length; i += 3) {
+            minX = Math.min(minX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            minZ = Math.min(minZ, vertices[i + 2]);
+            maxX = Math.max(maxX, vertices[i]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+            maxZ = Math.max(maxZ, vertices[i + 2]);
         }
-        return new Vector3f[]{max};
+
+        setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    private void setBounds(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        bounds[0] = minX;
+        bounds[1] = minY;
+        bounds[2] = minZ;
+        bounds[3] = maxX;
+        bounds[4] = maxY;
+        bounds[5] = maxZ;
+    }
+
+    /**
+     * @return packed xyz positions
+     */
+    public float[] vertices() {
+        return vertices;
+    }
+
+    /**
+     * @return 3 vertex indices per triangle
+     */
+    public int[] indices() {
+        return indices;
+    }
+
+    /**
+     * @return packed uv coordinates
+     */
+    public float[] texCoords() {
+        return texCoords;
+    }
+
+    /**
+     * @return 3 texture coordinate indices per triangle
+     */
+    public int[] texIndices() {
+        return texIndices;
+    }
+
+    public int materialIndex() {
+        return materialIndex;
+    }
+
+    public int vertexCount() {
+        return vertices.length / 3;
+    }
+
+    public int triangleCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * @return min xyz followed by max xyz. Must not be modified.
+     */
+    public float[] bounds() {
+        return bounds;
     }
 
     public String toString() {
-        return "Mesh{vertices=" + Arrays.toString(vertices) + ", indices=" + Arrays.toString(indices) + ", materialIndex=" + materialIndex + "}";
+        return "Mesh{vertices=" + vertexCount() + ", triangles=" + triangleCount() + ", materialIndex=" + materialIndex + "}";
     }
 }
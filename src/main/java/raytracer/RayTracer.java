@@ -1,201 +1,208 @@
 package raytracer;
 
-import org.joml.Vector3f;
 import raytracer.buffers.*;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.SceneBvh;
+import raytracer.checkpoint.Checkpoint;
+import raytracer.checkpoint.Checkpointer;
 import raytracer.config.RenderConfig;
 import raytracer.config.Savepoint;
+import raytracer.metrics.Metrics;
+import raytracer.output.SavepointWriter;
+import raytracer.rendering.AsyncReadback;
+import raytracer.rendering.FrameStatsReadback;
 import raytracer.rendering.ScreenQuad;
 import raytracer.compute.RayTracerCompute;
+import raytracer.compute.ShaderFeatures;
 import raytracer.rendering.TextureShader;
 import raytracer.rendering.ScreenTexture;
 import raytracer.texture.ArrayTexture;
-import raytracer.texture.Texture;
+import raytracer.texture.BlockFormat;
+import raytracer.texture.TextureAtlas;
+import raytracer.texture.TextureCompressor;
 import raytracer.util.Clock;
 
-import java.io.IOException;
-
 public class RayTracer {
     private final ScreenQuad screenQuad;
     private final TextureShader textureShader;
     private final RayTracerCompute rayTracerCompute;
     private final ScreenTexture screenTexture;
+    private final ScreenTexture halfScreenTexture;
+    private final ScreenTexture albedoTexture;
+    private final ScreenTexture normalDepthTexture;
     private final ObjectsBuffer objectsBuffer;
     private final MaterialsBuffer materialsBuffer;
     private final SpheresBuffer spheresBuffer;
+    private final SceneBvhBuffer sceneBvhBuffer;
+    private final UploadRing uploadRing;
     private final ArrayTexture arrayTextureDiffuse;
     private final ArrayTexture arrayTextureNormal;
     private final ArrayTexture arrayTextureParallax;
+    private final TextureRegionsBuffer textureRegionsBuffer;
+    private final SavepointWriter savepointWriter;
+    private final AsyncReadback readback;
+    private final FrameStatsReadback frameStats;
+    private final Checkpointer checkpointer;
 
     private final RenderConfig config;
     private final CameraBuffer cameraBuffer;
 
-    public RayTracer(RenderConfig config) {
+    private final Scene scene;
+    private final Bvh sceneBvh;
+    /**
+     * The frame accumulation last restarted at, since the shader averages every frame since then.
+     */
+    private int accumulationStart = 0;
+    private boolean restartAccumulation = false;
+    /**
+     * Where the clock starts, if the render was resumed from a checkpoint.
+     */
+    private int resumeFrame = 0;
+    private double resumeSeconds = 0;
+    /**
+     * The window title shows the last second's frame rate and ray throughput, worked out from the counters.
+     */
+    private double titleSeconds = 0;
+    private long titleFrames = 0;
+    private long titleRays = 0;
+
+    public RayTracer(RenderConfig config, Scene scene) {
         this.config = config;
 
-        arrayTextureDiffuse = new ArrayTexture(new Texture[]{new Texture("src/main/resources/textures/bricks2/diffuse.png")}, 0);
-        arrayTextureNormal = new ArrayTexture(new Texture[]{new Texture("src/main/resources/textures/bricks2/normal.png")}, 1);
-        arrayTextureParallax = new ArrayTexture(new Texture[]{new Texture("src/main/resources/textures/bricks2/parallax.png")}, 2);
+        TextureAtlas diffuseAtlas = TextureAtlas.build(scene.diffuseTextures());
+        TextureAtlas normalAtlas = TextureAtlas.build(scene.normalTextures());
+        TextureAtlas parallaxAtlas = TextureAtlas.build(scene.parallaxTextures());
+        if (config.textureCache().compress()) {
+            TextureCompressor compressor = new TextureCompressor(config.textureCache());
+            arrayTextureDiffuse = new ArrayTexture(compressor.compressAll(diffuseAtlas.pages(), BlockFormat.BC1), 0);
+            arrayTextureNormal = new ArrayTexture(compressor.compressAll(normalAtlas.pages(), BlockFormat.BC5), 1);
+            arrayTextureParallax = new ArrayTexture(compressor.compressAll(parallaxAtlas.pages(), BlockFormat.BC4), 2);
+        } else {
+            arrayTextureDiffuse = new ArrayTexture(diffuseAtlas.pages(), 0);
+            arrayTextureNormal = new ArrayTexture(normalAtlas.pages(), 1);
+            arrayTextureParallax = new ArrayTexture(parallaxAtlas.pages(), 2);
+        }
+        textureRegionsBuffer = new TextureRegionsBuffer(diffuseAtlas.regions(), normalAtlas.regions(), parallaxAtlas.regions());
 
         screenQuad = new ScreenQuad();
         textureShader = new TextureShader();
-        rayTracerCompute = new RayTracerCompute();
+        rayTracerCompute = new RayTracerCompute(ShaderFeatures.of(scene, config.textureCache().compress()));
         screenTexture = new ScreenTexture(config.quality().width(), config.quality().height());
+        halfScreenTexture = new ScreenTexture(config.quality().width(), config.quality().height(), 1);
+        albedoTexture = new ScreenTexture(config.quality().width(), config.quality().height(), 2);
+        normalDepthTexture = new ScreenTexture(config.quality().width(), config.quality().height(), 3);
         cameraBuffer = new CameraBuffer(config.camera());
+        savepointWriter = new SavepointWriter(config.quality().width(), config.quality().height());
+        readback = new AsyncReadback(savepointWriter, screenTexture, halfScreenTexture, albedoTexture, normalDepthTexture);
+        frameStats = new FrameStatsReadback();
 
-//        Mesh cornellFloor = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-2, -0.99f, -0),
-//                        new Vector3f(2, -0.99f, -0),
-//                        new Vector3f(2, -0.99f, -4),
-//                        new Vector3f(-2, -0.99f, -4)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 1, 2),
-//                        new Vector3i(0, 2, 3)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellCeiling = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-1, 0.99f, -1),
-//                        new Vector3f(1, 0.99f, -1),
-//                        new Vector3f(1, 0.99f, -3),
-//                        new Vector3f(-1, 0.99f, -3)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 2, 1),
-//                        new Vector3i(0, 3, 2)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellBackWall = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-1, -1, -2.999f),
-//                        new Vector3f(1, -1, -2.999f),
-//                        new Vector3f(1, 1, -2.999f),
-//                        new Vector3f(-1, 1, -2.999f)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 1, 2),
-//                        new Vector3i(0, 2, 3)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellLeftWall = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-0.999f, -2, -1),
-//                        new Vector3f(-0.999f, -2, -3),
-//                        new Vector3f(-0.999f, 2, -3),
-//                        new Vector3f(-0.999f, 2, -1)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 1, 2),
-//                        new Vector3i(0, 2, 3)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellRightWall = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(0.999f, -1, -1),
-//                        new Vector3f(0.999f, -1, -3),
-//                        new Vector3f(0.999f, 1, -3),
-//                        new Vector3f(0.999f, 1, -1)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 2, 1),
-//                        new Vector3i(0, 3, 2)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellFrontWall = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-1, -1, -1.001f),
-//                        new Vector3f(1, -1, -1.001f),
-//                        new Vector3f(1, 1, -1.001f),
-//                        new Vector3f(-1, 1, -1.001f)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 2, 1),
-//                        new Vector3i(0, 3, 2)
-//                },
-//                0
-//        );
-//
-//        Mesh cornellLight = new Mesh(
-//                new Vector3f[]{
-//                        new Vector3f(-0.15f, 0.989f, -1.5f),
-//                        new Vector3f(0.15f, 0.989f, -1.5f),
-//                        new Vector3f(0.15f, 0.989f, -2.5f),
-//                        new Vector3f(-0.15f, 0.989f, -2.5f)
-//                },
-//                new Vector3i[]{
-//                        new Vector3i(0, 1, 2),
-//                        new Vector3i(0, 2, 3)
-//                },
-//                1
-//        );
-
-        try {
-            Mesh cube = Mesh.load("src/main/resources/quad.obj", 0);
-            cube.transform(new Vector3f(0, 0, -4), new Vector3f(0, 1f, 0), new Vector3f(1f));
-            objectsBuffer = new ObjectsBuffer(new Mesh[]{cube});
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load mesh", e);
+        objectsBuffer = new ObjectsBuffer(scene.meshes());
+        // 1 MiB a frame is thousands of materials or spheres
+        uploadRing = new UploadRing(1 << 20);
+        materialsBuffer = new MaterialsBuffer(scene.materials(), uploadRing);
+        spheresBuffer = new SpheresBuffer(scene.spheres(), uploadRing);
+
+        this.scene = scene;
+        sceneBvh = SceneBvh.build(scene.meshes(), scene.spheres());
+        sceneBvhBuffer = new SceneBvhBuffer(sceneBvh);
+        checkpointer = new Checkpointer(config.checkpoint(), Checkpoint.hash(config, scene));
+    }
+
+    /**
+     * Continues from the checkpoint, if there is one, instead of starting from the first frame.
+     */
+    public void resume() {
+        Checkpoint checkpoint = checkpointer.load(config.quality().width(), config.quality().height());
+        if (checkpoint == null) {
+            System.err.println("No checkpoint at " + config.checkpoint().path() + ", starting from the first frame");
+            return;
         }
 
-        materialsBuffer = new MaterialsBuffer(
-                new Vector3f[]{
-                        new Vector3f(0.9f, 0.3f, 0.3f),
-                        new Vector3f(1, 1, 1),
-                        new Vector3f(1f, 0, 0),
-                        new Vector3f(167/255f, 199/255f, 231/255f)
-                },
-                new Vector3f[]{
-                        new Vector3f(0),
-                        new Vector3f(0.8f, 0.8f, 0.9f),
-                        new Vector3f(0.8f),
-                        new Vector3f(0)
-                },
-                new float[]{0, 0, 10f, 0},
-                new int[]{0, 0, 0, 1},
-                new float[]{0.9f, 0, 0f, 0.8f},
-                new float[]{0, 0, 0.4f, 0},
-                new int[]{0, 0, 0, 0}
-        );
-
-        spheresBuffer = new SpheresBuffer(
-                new Vector3f[]{
-//                        new Vector3f(0, 0, -2)
-                },
-                new float[]{
-//                        1
-                },
-                new int[]{
-//                        1
-                }
-        );
+        screenTexture.writeData(checkpoint.full());
+        halfScreenTexture.writeData(checkpoint.half());
+        albedoTexture.writeData(checkpoint.albedo());
+        normalDepthTexture.writeData(checkpoint.normalDepth());
+        resumeFrame = checkpoint.frameCount();
+        resumeSeconds = checkpoint.elapsedSeconds();
+    }
+
+    /**
+     * Reads the accumulation back. Stalls until the GPU is done, which is fine every few minutes.
+     */
+    private Checkpoint checkpoint(Clock clock) {
+        return new Checkpoint(checkpointer.configHash(), clock.getFrameCount() - accumulationStart, clock.getTime(),
+                config.quality().width(), config.quality().height(), screenTexture.readData(), halfScreenTexture.readData(),
+                albedoTexture.readData(), normalDepthTexture.readData());
+    }
+
+    /**
+     * Replaces a material. Takes effect next frame, restarting accumulation.
+     */
+    public void setMaterial(int index, Material material) {
+        materialsBuffer.set(index, material);
+
+        // a new material type or the first texture needs a different kernel variant
+        scene.materials()[index] = material;
+        rayTracerCompute.use(ShaderFeatures.of(scene, config.textureCache().compress()));
+
+        restartAccumulation = true;
+    }
+
+    /**
+     * Replaces a sphere, refitting the scene BVH around it. Takes effect next frame, restarting accumulation.
+     */
+    public void setSphere(int index, Sphere sphere) {
+        spheresBuffer.set(index, sphere);
+
+        scene.spheres()[index] = sphere;
+        sceneBvh.refit(SceneBvh.primitiveBounds(scene.meshes(), scene.spheres()));
+        sceneBvhBuffer.update(sceneBvh, uploadRing);
+
+        restartAccumulation = true;
     }
 
     private void computeFrame(Clock clock) {
+        if (restartAccumulation) {
+            accumulationStart = clock.getFrameCount();
+            restartAccumulation = false;
+        }
+
+        long bindStart = System.nanoTime();
+        materialsBuffer.flush();
+        spheresBuffer.flush();
+
         materialsBuffer.bind();
         objectsBuffer.bind();
         spheresBuffer.bind();
+        sceneBvhBuffer.bind();
         cameraBuffer.bind();
         arrayTextureDiffuse.bind();
         arrayTextureNormal.bind();
         arrayTextureParallax.bind();
+        textureRegionsBuffer.bind();
         screenTexture.bindWrite();
-        rayTracerCompute.compute(config.quality().width(), config.quality().height(), objectsBuffer.numObjects(), spheresBuffer.numSpheres(), clock.getFrameCount(), config.quality().bounces());
+        halfScreenTexture.bindWrite();
+        albedoTexture.bindWrite();
+        normalDepthTexture.bindWrite();
+        Metrics.BUFFER_BIND.recordSince(bindStart);
+
+        long dispatchStart = System.nanoTime();
+        frameStats.begin();
+        rayTracerCompute.compute(config.quality().width(), config.quality().height(), clock.getFrameCount() - accumulationStart, config.quality().bounces(), config.adaptiveSampling());
+        frameStats.end();
+        Metrics.COMPUTE_DISPATCH.recordSince(dispatchStart);
+
+        uploadRing.endFrame();
+        normalDepthTexture.unbindWrite();
+        albedoTexture.unbindWrite();
+        halfScreenTexture.unbindWrite();
         screenTexture.unbindWrite();
+        textureRegionsBuffer.unbind();
         arrayTextureParallax.unbind();
         arrayTextureNormal.unbind();
         arrayTextureDiffuse.bind();
         cameraBuffer.unbind();
+        sceneBvhBuffer.unbind();
         spheresBuffer.unbind();
         objectsBuffer.unbind();
         materialsBuffer.unbind();
@@ -211,37 +218,84 @@ public class RayTracer {
 
     public void run() {
         Clock clock = new Clock();
+        clock.resume(resumeFrame, resumeSeconds);
+        titleSeconds = clock.getTime();
 
         while (Window.shouldRun()) {
+            long frameStart = System.nanoTime();
             computeFrame(clock);
-            drawFrame();
 
+            long presentStart = System.nanoTime();
+            drawFrame();
             Window.update();
             Window.clear();
-            clock.update();
+            Metrics.PRESENT.recordSince(presentStart);
 
-            Window.setTitle("Ray Tracer | FPS: " + Math.round(clock.getSmoothedFps()) + " | Frame Time: " + (Math.round(1 / clock.getSmoothedFps() * 10000) / 10f) + "ms");
+            clock.update();
+            updateTitle(clock);
 
+            frameStats.poll();
+            readback.poll();
             for (Savepoint savepoint : config.savepoints()) {
                 if (savepoint.readyToSave(clock.getTimef(), clock.getFrameCount())) {
-                    screenTexture.saveToFile(savepoint.path());
+                    readback.request(savepoint.path(), savepoint.denoise());
                     savepoint.markSaved();
                 }
             }
+
+            if (checkpointer.due(clock.getTime())) {
+                checkpointer.save(checkpoint(clock));
+            }
+
+            Metrics.FRAMES.increment();
+            Metrics.FRAME.recordSince(frameStart);
+        }
+
+        checkpointer.saveNow(() -> checkpoint(clock));
+    }
+
+    /**
+     * Sets the title once a second rather than every frame, since it goes through the window system.
+     */
+    private void updateTitle(Clock clock) {
+        double elapsed = clock.getTime() - titleSeconds;
+        if (elapsed < 1) {
+            return;
         }
+
+        long frames = Metrics.FRAMES.get();
+        long rays = Metrics.RAYS.get();
+        double fps = (frames - titleFrames) / elapsed;
+        Window.setTitle(String.format("Ray Tracer | FPS: %.0f | Frame Time: %.1fms | %.1f Mrays/s",
+                fps, 1000 / Math.max(fps, 1e-3), (rays - titleRays) / elapsed / 1e6));
+
+        titleSeconds += elapsed;
+        titleFrames = frames;
+        titleRays = rays;
     }
 
     public void cleanup() {
+        readback.finish();
+        readback.cleanup();
+        frameStats.cleanup();
+        savepointWriter.close();
+        checkpointer.close();
         arrayTextureNormal.cleanup();
         arrayTextureDiffuse.cleanup();
         arrayTextureParallax.cleanup();
+        textureRegionsBuffer.cleanup();
         cameraBuffer.cleanup();
         spheresBuffer.cleanup();
+        sceneBvhBuffer.cleanup();
         screenQuad.cleanup();
         textureShader.cleanup();
         rayTracerCompute.cleanup();
         screenTexture.cleanup();
+        halfScreenTexture.cleanup();
+        albedoTexture.cleanup();
+        normalDepthTexture.cleanup();
         objectsBuffer.cleanup();
         materialsBuffer.cleanup();
+        uploadRing.cleanup();
     }
 }
\ No newline at end of file
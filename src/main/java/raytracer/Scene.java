@@ -0,0 +1,10 @@
+package raytracer;
+
+import raytracer.texture.Texture;
+
+/**
+ * Everything that is rendered: geometry, materials and the texture layers the materials index into. Shared by the GPU
+ * and CPU backends so both render the same thing. Built from the config by {@link SceneLoader}.
+ */
+public record Scene(Mesh[] meshes, Sphere[] spheres, Material[] materials, Texture[] diffuseTextures, Texture[] normalTextures, Texture[] parallaxTextures) {
+}
@@ -0,0 +1,291 @@
+package raytracer;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import raytracer.config.Camera;
+import raytracer.config.MaterialConfig;
+import raytracer.config.MeshConfig;
+import raytracer.config.MeshOptimizationConfig;
+import raytracer.config.RenderConfig;
+import raytracer.config.SceneConfig;
+import raytracer.config.SphereConfig;
+import raytracer.config.TextureSetConfig;
+import raytracer.metrics.Metrics;
+import raytracer.obj.LodChain;
+import raytracer.obj.MeshCache;
+import raytracer.obj.ObjData;
+import raytracer.obj.ObjOptimizer;
+import raytracer.texture.Texture;
+import raytracer.texture.TextureCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link Scene} from its config. Every OBJ and image file the scene refers to is loaded at once, each on its
+ * own thread, so startup takes as long as the slowest file rather than all of them one after the other. Files referred
+ * to more than once, by path, are only loaded once.
+ * <p>
+ * Each OBJ is optimized on its loading thread, see {@link ObjOptimizer}. A mesh placed far from the camera gets one of
+ * its simplified levels of detail, the coarsest whose error would cover at most the configured number of pixels.
+ */
+public final class SceneLoader {
+    /**
+     * Loading is mostly waiting on the disk and the caches, so there can be more threads than cores.
+     */
+    private static final int MAX_THREADS = 64;
+
+    private SceneLoader() {}
+
+    /**
+     * @throws IllegalArgumentException if a name the scene refers to isn't defined
+     * @throws UncheckedIOException if a file fails to load
+     */
+    public static Scene load(RenderConfig config, MeshCache meshCache, TextureCache textureCache) {
+        long start = System.nanoTime();
+        Scene scene = build(config, meshCache, textureCache);
+        Metrics.SCENE_LOAD.recordSince(start);
+
+        return scene;
+    }
+
+    private static Scene build(RenderConfig renderConfig, MeshCache meshCache, TextureCache textureCache) {
+        SceneConfig config = renderConfig.scene();
+        MeshOptimizationConfig optimization = renderConfig.meshOptimization();
+        float pixelsPerUnit = pixelsPerUnit(renderConfig.camera(), renderConfig.quality().height());
+
+        Map<String, Integer> textureSetIds = indexByName(config.textureSets(), TextureSetConfig::name, "texture set");
+        Map<String, Integer> materialIds = indexByName(config.materials(), MaterialConfig::name, "material");
+
+        Map<Path, LodChain> objs = new HashMap<>();
+        Map<Path, Texture> textures = new HashMap<>();
+        loadFiles(config, optimization, meshCache, textureCache, objs, textures);
+
+        int textureSetCount = config.textureSets().length;
+        Texture[] diffuseTextures = new Texture[textureSetCount];
+        Texture[] normalTextures = new Texture[textureSetCount];
+        Texture[] parallaxTextures = new Texture[textureSetCount];
+        for (int i = 0; i < textureSetCount; i++) {
+            TextureSetConfig set = config.textureSets()[i];
+            if (set.diffuse() == null) {
+                throw new IllegalArgumentException("Texture set " + set.name() + " has no diffuse map");
+            }
+
+            diffuseTextures[i] = textures.get(Path.of(set.diffuse()));
+            normalTextures[i] = set.normal() == null ? solid(128, 128, 255) : textures.get(Path.of(set.normal()));
+            parallaxTextures[i] = set.parallax() == null ? solid(0, 0, 0) : textures.get(Path.of(set.parallax()));
+        }
+
+        Material[] materials = new Material[config.materials().length];
+        for (int i = 0; i < materials.length; i++) {
+            MaterialConfig material = config.materials()[i];
+            int type = material.typeId();
+            int textureId = material.textureSet() == null ? -1 : lookup(textureSetIds, material.textureSet(), "texture set");
+
+            materials[i] = new Material(
+                    vector(material.albedo(), "albedo of material " + material.name()),
+                    vector(material.emissionColor(), "emission color of material " + material.name()),
+                    material.emissionStrength(),
+                    type,
+                    type == Material.DIELECTRIC ? material.refractionIndex() : material.fuzz(),
+                    material.specularProb(),
+                    textureId
+            );
+        }
+
+        // Every mesh's level is picked before any are transformed, since the first placement of a level transforms
+        // the loaded vertices in place
+        ObjData[] levels = new ObjData[config.meshes().length];
+        Matrix4f[] placements = new Matrix4f[levels.length];
+        Map<ObjData, float[]> objBounds = new HashMap<>();
+        Map<ObjData, Integer> uses = new HashMap<>();
+        for (int i = 0; i < levels.length; i++) {
+            MeshConfig mesh = config.meshes()[i];
+            LodChain lods = objs.get(Path.of(mesh.path()));
+            Vector3f rotation = vector(mesh.rotation(), "rotation of mesh " + mesh.path());
+            Vector3f scale = vector(mesh.scale(), "scale of mesh " + mesh.path());
+            placements[i] = Mesh.placement(
+                    vector(mesh.translation(), "translation of mesh " + mesh.path()),
+                    new Vector3f((float) Math.toRadians(rotation.x), (float) Math.toRadians(rotation.y), (float) Math.toRadians(rotation.z)),
+                    scale
+            );
+
+            levels[i] = lods.full();
+            if (lods.levels().size() > 1) {
+                float[] bounds = objBounds.computeIfAbsent(lods.full(), data -> Mesh.fromObjData(data, 0).bounds());
+                float distance = distance(renderConfig.camera().origin(), placedBounds(bounds, placements[i]));
+                float maxScale = Math.max(Math.abs(scale.x), Math.max(Math.abs(scale.y), Math.abs(scale.z)));
+                // errors are in the OBJ's own units, before it is scaled
+                levels[i] = lods.levels().get(lods.coarsest(optimization.maxPixelError() * distance / (pixelsPerUnit * maxScale)));
+            }
+
+            uses.merge(levels[i], 1, Integer::sum);
+        }
+
+        Mesh[] meshes = new Mesh[levels.length];
+        for (int i = 0; i < meshes.length; i++) {
+            meshes[i] = Mesh.fromObjData(levels[i], lookup(materialIds, config.meshes()[i].material(), "material"));
+
+            // Every placement but the last of the same geometry transforms its own copy of the vertices
+            if (uses.merge(levels[i], -1, Integer::sum) > 0) {
+                meshes[i] = meshes[i].copy();
+            }
+
+            meshes[i].transform(placements[i]);
+        }
+
+        Sphere[] spheres = new Sphere[config.spheres().length];
+        for (int i = 0; i < spheres.length; i++) {
+            SphereConfig sphere = config.spheres()[i];
+            spheres[i] = new Sphere(vector(sphere.center(), "center of sphere " + i), sphere.radius(),
+                    lookup(materialIds, sphere.material(), "material"));
+        }
+
+        return new Scene(meshes, spheres, materials, diffuseTextures, normalTextures, parallaxTextures);
+    }
+
+    /**
+     * Loads every distinct file the scene refers to concurrently, and waits for all of them.
+     */
+    private static void loadFiles(SceneConfig config, MeshOptimizationConfig optimization, MeshCache meshCache,
+                                  TextureCache textureCache, Map<Path, LodChain> objs, Map<Path, Texture> textures) {
+        Set<Path> objPaths = new LinkedHashSet<>();
+        for (MeshConfig mesh : config.meshes()) {
+            objPaths.add(Path.of(mesh.path()));
+        }
+
+        Set<Path> texturePaths = new LinkedHashSet<>();
+        for (TextureSetConfig set : config.textureSets()) {
+            for (String path : new String[]{set.diffuse(), set.normal(), set.parallax()}) {
+                if (path != null) {
+                    texturePaths.add(Path.of(path));
+                }
+            }
+        }
+
+        int fileCount = objPaths.size() + texturePaths.size();
+        if (fileCount == 0) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(fileCount, MAX_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "scene-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Map<Path, Future<LodChain>> objFutures = new LinkedHashMap<>();
+            for (Path path : objPaths) {
+                objFutures.put(path, executor.submit(() -> ObjOptimizer.optimize(meshCache.load(path), optimization)));
+            }
+
+            Map<Path, Future<Texture>> textureFutures = new LinkedHashMap<>();
+            for (Path path : texturePaths) {
+                textureFutures.put(path, executor.submit(() -> textureCache.load(path)));
+            }
+
+            for (Map.Entry<Path, Future<LodChain>> entry : objFutures.entrySet()) {
+                objs.put(entry.getKey(), await(entry.getValue(), "mesh", entry.getKey()));
+            }
+            for (Map.Entry<Path, Future<Texture>> entry : textureFutures.entrySet()) {
+                textures.put(entry.getKey(), await(entry.getValue(), "texture", entry.getKey()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return how many pixels of the image one unit at distance 1 from the camera covers, from the vertical field of view
+     */
+    private static float pixelsPerUnit(Camera camera, int imageHeight) {
+        return imageHeight / (2 * (float) Math.tan(camera.fov() / 2));
+    }
+
+    /**
+     * @return a box around the given box once transformed by matrix, min xyz followed by max xyz
+     */
+    private static float[] placedBounds(float[] bounds, Matrix4f matrix) {
+        Vector3f min = new Vector3f();
+        Vector3f max = new Vector3f();
+        matrix.transformAab(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], min, max);
+        return new float[]{min.x, min.y, min.z, max.x, max.y, max.z};
+    }
+
+    /**
+     * @return the distance from a point to the nearest point of a box, 0 if it's inside
+     */
+    private static float distance(float[] point, float[] bounds) {
+        float dx = Math.max(0, Math.max(bounds[0] - point[0], point[0] - bounds[3]));
+        float dy = Math.max(0, Math.max(bounds[1] - point[1], point[1] - bounds[4]));
+        float dz = Math.max(0, Math.max(bounds[2] - point[2], point[2] - bounds[5]));
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static <T> T await(Future<T> future, String kind, Path path) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + kind + " " + path, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException("Failed to load " + kind + " " + path, cause);
+            }
+
+            throw new IllegalStateException("Failed to load " + kind + " " + path, e.getCause());
+        }
+    }
+
+    private static <T> Map<String, Integer> indexByName(T[] items, Function<T, String> getter, String kind) {
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            String name = getter.apply(items[i]);
+            if (name == null) {
+                throw new IllegalArgumentException("The " + kind + " at index " + i + " has no name");
+            }
+            if (indices.putIfAbsent(name, i) != null) {
+                throw new IllegalArgumentException("There is more than one " + kind + " named " + name);
+            }
+        }
+
+        return indices;
+    }
+
+    private static int lookup(Map<String, Integer> indices, String name, String kind) {
+        Integer index = indices.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("No " + kind + " is named " + name);
+        }
+
+        return index;
+    }
+
+    private static Vector3f vector(float[] components, String description) {
+        if (components == null || components.length != 3) {
+            throw new IllegalArgumentException("The " + description + " must have 3 components");
+        }
+
+        return new Vector3f(components[0], components[1], components[2]);
+    }
+
+    /**
+     * @return a 1x1 texture of one opaque color, standing in for a map a texture set leaves out
+     */
+    private static Texture solid(int r, int g, int b) {
+        return new Texture(1, 1, BufferUtils.createByteBuffer(4).put((byte) r).put((byte) g).put((byte) b).put((byte) 255).flip());
+    }
+}
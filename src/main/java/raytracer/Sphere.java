@@ -0,0 +1,9 @@
+package raytracer;
+
+import org.joml.Vector3f;
+
+/**
+ * Mirrors the Sphere struct in raytracer.comp.
+ */
+public record Sphere(Vector3f center, float radius, int materialId) {
+}
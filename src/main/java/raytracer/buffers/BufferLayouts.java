@@ -0,0 +1,33 @@
+package raytracer.buffers;
+
+import raytracer.buffers.layout.StructLayout;
+
+/**
+ * Checks that the layouts the buffers are packed with agree with the structs declared in the shader, so a change to
+ * one side without the other fails loudly instead of rendering garbage. Doesn't need GL.
+ */
+public class BufferLayouts {
+    private BufferLayouts() {}
+
+    /**
+     * @param shaderSource the source of raytracer.comp
+     * @throws IllegalStateException if any layout differs
+     */
+    public static void verify(String shaderSource) {
+        verify(shaderSource, MaterialsBuffer.PACKER.layout(), "Material");
+        verify(shaderSource, SpheresBuffer.PACKER.layout(), "Sphere");
+        verify(shaderSource, CameraBuffer.PACKER.layout(), "CameraConfig");
+        verify(shaderSource, GeometryPacker.OBJECT.layout(), "Object");
+        verify(shaderSource, GeometryPacker.TRIANGLE, "Triangle");
+        verify(shaderSource, BvhNodes.LAYOUT, "BvhNode");
+        verify(shaderSource, WideBvhNodes.LAYOUT, "WideBvhNode");
+        verify(shaderSource, TextureRegionsBuffer.PACKER.layout(), "TextureRegion");
+    }
+
+    private static void verify(String shaderSource, StructLayout java, String glslName) {
+        StructLayout glsl = StructLayout.fromGlsl(shaderSource, glslName, java.rules());
+        if (!java.matches(glsl)) {
+            throw new IllegalStateException("Buffer layout does not match the shader.\nJava:\n" + java + "\nShader:\n" + glsl);
+        }
+    }
+}
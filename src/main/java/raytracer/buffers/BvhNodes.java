@@ -0,0 +1,55 @@
+package raytracer.buffers;
+
+import raytracer.buffers.layout.GlslType;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.StructLayout;
+import raytracer.bvh.Bvh;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs Bvh nodes into the layout of the BvhNode struct in the compute shader.
+ */
+class BvhNodes {
+    static final StructLayout LAYOUT = StructLayout.builder("BvhNode", LayoutRules.STD430)
+            .member("min_bounds", GlslType.VEC3)
+            .member("left_or_first", GlslType.INT)
+            .member("max_bounds", GlslType.VEC3)
+            .member("count", GlslType.INT)
+            .build();
+
+    static final int NODE_BYTES = LAYOUT.stride();
+    private static final int MIN_BOUNDS = LAYOUT.offset("min_bounds");
+    private static final int LEFT_OR_FIRST = LAYOUT.offset("left_or_first");
+    private static final int MAX_BOUNDS = LAYOUT.offset("max_bounds");
+    private static final int COUNT = LAYOUT.offset("count");
+
+    private BvhNodes() {}
+
+    static ByteBuffer put(ByteBuffer buffer, Bvh bvh) {
+        return put(buffer, bvh, 0, 0);
+    }
+
+    /**
+     * Writes the nodes with their children and primitives shifted, for a Bvh stored in a pool shared with others.
+     * @param nodeOffset where the Bvh's root is in the node pool
+     * @param primitiveOffset where the Bvh's first primitive is in the primitive pool
+     */
+    static ByteBuffer put(ByteBuffer buffer, Bvh bvh, int nodeOffset, int primitiveOffset) {
+        float[] bounds = bvh.bounds();
+
+        for (int node = 0; node < bvh.nodeCount(); node++) {
+            int base = buffer.position();
+            for (int axis = 0; axis < 3; axis++) {
+                buffer.putFloat(base + MIN_BOUNDS + axis * Float.BYTES, bounds[node * 6 + axis]);
+                buffer.putFloat(base + MAX_BOUNDS + axis * Float.BYTES, bounds[node * 6 + 3 + axis]);
+            }
+            buffer.putInt(base + LEFT_OR_FIRST, bvh.leftOrFirst(node) + (bvh.isLeaf(node) ? primitiveOffset : nodeOffset));
+            buffer.putInt(base + COUNT, bvh.count(node));
+
+            buffer.position(base + NODE_BYTES);
+        }
+
+        return buffer;
+    }
+}
@@ -1,28 +1,45 @@
 package raytracer.buffers;
 
+import org.joml.Vector3f;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
 import raytracer.config.Camera;
+import raytracer.metrics.Metrics;
+
+import java.nio.ByteBuffer;
 
 import static org.lwjgl.opengl.GL45.*;
 
 public class CameraBuffer {
     private static final int BINDING_POINT = 5;
+
+    /**
+     * Mirrors the CameraConfig uniform block. fov packs into the padding after up, since std140 lets a scalar fill the
+     * last 4 bytes of a vec3's 16.
+     */
+    record CameraConfig(Vector3f origin, Vector3f lookAt, Vector3f up, float fov, float focusDist, float defocusAngle) {}
+
+    static final RecordPacker<CameraConfig> PACKER = new RecordPacker<>(CameraConfig.class, LayoutRules.STD140);
+
     private final int id;
 
     public CameraBuffer(Camera config) {
         id = glGenBuffers();
 
-        this.bind();
-        // 15 = 4 (origin + 1 pad) + 4 (lookAt + 1 pad) + 4 (up + 1 pad) + 1 (fov) + 1 (focusDist) + 1 (defocusAngle) - 1 (for god knows what reason)
-        glBufferData(GL_UNIFORM_BUFFER, 15 * Float.BYTES, GL_STATIC_DRAW);
-
-        glBufferSubData(GL_UNIFORM_BUFFER, 0, config.origin());
-        glBufferSubData(GL_UNIFORM_BUFFER, 4 * Float.BYTES, config.lookAt());
-        glBufferSubData(GL_UNIFORM_BUFFER, 8 * Float.BYTES, config.up());
-        glBufferSubData(GL_UNIFORM_BUFFER, 11 * Float.BYTES, new float[]{config.fov()});  // no idea why this is 11 * and not 12 * but it works
-        glBufferSubData(GL_UNIFORM_BUFFER, 12 * Float.BYTES, new float[]{config.focusDist()});
-        glBufferSubData(GL_UNIFORM_BUFFER, 13 * Float.BYTES, new float[]{config.defocusAngle()});
+        CameraConfig block = new CameraConfig(
+                new Vector3f(config.origin()),
+                new Vector3f(config.lookAt()),
+                new Vector3f(config.up()),
+                config.fov(),
+                config.focusDist(),
+                config.defocusAngle()
+        );
 
+        ByteBuffer data = PACKER.pack(block);
+        this.bind();
+        glBufferData(GL_UNIFORM_BUFFER, data, GL_STATIC_DRAW);
         this.unbind();
+        Metrics.UPLOADED_BYTES.add(data.remaining());
     }
 
     public void bind() {
@@ -0,0 +1,151 @@
+package raytracer.buffers;
+
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import raytracer.Mesh;
+import raytracer.buffers.layout.GlslType;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
+import raytracer.buffers.layout.StructLayout;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+import raytracer.bvh.WideBvh;
+import raytracer.bvh.WideBvhBuilder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs every mesh in the scene into shared std430 pools, laid out as the Object, Triangle and WideBvhNode arrays in
+ * raytracer.comp expect them, each sized exactly to the scene. Every object gets a header with its offsets into the
+ * pools, its bounds and its material.
+ * <p>
+ * Each mesh's Bvh is collapsed into a quantized WideBvh, and triangles are stored in its order. Every index in the
+ * pools is absolute: triangles index the whole vertex and texture coordinate pools, and BVH nodes refer to their
+ * children and triangles by their position in the whole node and triangle pools. Doesn't touch GL, so the output can be
+ * checked without a context.
+ */
+public class GeometryPacker {
+    /**
+     * Mirrors the Object struct: where an object's geometry is in the pools, and its bounds and material.
+     */
+    record ObjectHeader(Vector3f minBounds, int vertexOffset, Vector3f maxBounds, int texCoordOffset,
+                        int triangleOffset, int triangleCount, int nodeOffset, int materialId) {}
+
+    static final RecordPacker<ObjectHeader> OBJECT = new RecordPacker<>(ObjectHeader.class, LayoutRules.STD430);
+
+    static final StructLayout TRIANGLE = StructLayout.builder("Triangle", LayoutRules.STD430)
+            .member("vertices", GlslType.IVEC3)
+            .member("tex_coords", GlslType.IVEC3)
+            .build();
+
+    public static final int OBJECT_BYTES = OBJECT.layout().stride();
+    public static final int TRIANGLE_BYTES = TRIANGLE.stride();
+    // vec3 arrays have a 16 byte stride in std430
+    public static final int VERTEX_BYTES = GlslType.VEC3.alignment();
+    public static final int TEX_COORD_BYTES = GlslType.VEC2.size();
+
+    private static final int TRIANGLE_VERTICES = TRIANGLE.offset("vertices");
+    private static final int TRIANGLE_TEX_COORDS = TRIANGLE.offset("tex_coords");
+
+    /**
+     * The pools, each positioned at 0 with its limit at the end of the data.
+     */
+    public record PackedGeometry(ByteBuffer objects, ByteBuffer triangles, ByteBuffer vertices, ByteBuffer texCoords, ByteBuffer nodes) {
+        public int objectCount() {
+            return objects.remaining() / OBJECT_BYTES;
+        }
+    }
+
+    private GeometryPacker() {}
+
+    public static PackedGeometry pack(Mesh[] meshes) {
+        Bvh[] bvhs = new Bvh[meshes.length];
+        for (int i = 0; i < meshes.length; i++) {
+            bvhs[i] = BvhBuilder.build(meshes[i]);
+        }
+
+        return pack(meshes, bvhs);
+    }
+
+    /**
+     * @param bvhs a Bvh over the triangles of each mesh
+     */
+    public static PackedGeometry pack(Mesh[] meshes, Bvh[] bvhs) {
+        WideBvh[] wideBvhs = new WideBvh[meshes.length];
+        for (int i = 0; i < meshes.length; i++) {
+            wideBvhs[i] = WideBvhBuilder.build(bvhs[i]);
+        }
+
+        int vertexCount = 0;
+        int texCoordCount = 0;
+        int triangleCount = 0;
+        int nodeCount = 0;
+
+        for (int i = 0; i < meshes.length; i++) {
+            vertexCount += meshes[i].vertexCount();
+            texCoordCount += hasTexCoords(meshes[i]) ? meshes[i].texCoords().length / 2 : 1;
+            triangleCount += meshes[i].triangleCount();
+            nodeCount += wideBvhs[i].nodeCount();
+        }
+
+        ObjectHeader[] headers = new ObjectHeader[meshes.length];
+        ByteBuffer triangles = BufferUtils.createByteBuffer(triangleCount * TRIANGLE_BYTES);
+        ByteBuffer vertices = BufferUtils.createByteBuffer(vertexCount * VERTEX_BYTES);
+        ByteBuffer texCoords = BufferUtils.createByteBuffer(texCoordCount * TEX_COORD_BYTES);
+        ByteBuffer nodes = BufferUtils.createByteBuffer(nodeCount * WideBvhNodes.NODE_BYTES);
+
+        for (int i = 0; i < meshes.length; i++) {
+            Mesh mesh = meshes[i];
+            WideBvh bvh = wideBvhs[i];
+
+            int vertexOffset = vertices.position() / VERTEX_BYTES;
+            int texCoordOffset = texCoords.position() / TEX_COORD_BYTES;
+            int triangleOffset = triangles.position() / TRIANGLE_BYTES;
+            int nodeOffset = nodes.position() / WideBvhNodes.NODE_BYTES;
+
+            float[] bounds = mesh.bounds();
+            headers[i] = new ObjectHeader(
+                    new Vector3f(bounds[0], bounds[1], bounds[2]), vertexOffset,
+                    new Vector3f(bounds[3], bounds[4], bounds[5]), texCoordOffset,
+                    triangleOffset, mesh.triangleCount(), nodeOffset, mesh.materialIndex()
+            );
+
+            float[] meshVertices = mesh.vertices();
+            for (int v = 0; v < meshVertices.length; v += 3) {
+                vertices.putFloat(meshVertices[v]).putFloat(meshVertices[v + 1]).putFloat(meshVertices[v + 2]).putFloat(0);
+            }
+
+            boolean hasTexCoords = hasTexCoords(mesh);
+            if (hasTexCoords) {
+                for (float texCoord : mesh.texCoords()) {
+                    texCoords.putFloat(texCoord);
+                }
+            } else {
+                // every corner samples (0, 0), like an OBJ without vt lines
+                texCoords.putFloat(0).putFloat(0);
+            }
+
+            int[] indices = mesh.indices();
+            int[] texIndices = mesh.texIndices();
+            for (int position = 0; position < mesh.triangleCount(); position++) {
+                int triangle = bvh.primitiveOrder()[position];
+                int base = triangles.position();
+
+                for (int corner = 0; corner < 3; corner++) {
+                    triangles.putInt(base + TRIANGLE_VERTICES + corner * Integer.BYTES, vertexOffset + indices[triangle * 3 + corner]);
+                    triangles.putInt(base + TRIANGLE_TEX_COORDS + corner * Integer.BYTES, texCoordOffset + (hasTexCoords ? texIndices[triangle * 3 + corner] : 0));
+                }
+
+                triangles.position(base + TRIANGLE_BYTES);
+            }
+
+            WideBvhNodes.put(nodes, bvh, nodeOffset, triangleOffset);
+        }
+
+        return new PackedGeometry(OBJECT.pack(headers), triangles.flip(), vertices.flip(), texCoords.flip(), nodes.flip());
+    }
+
+    private static boolean hasTexCoords(Mesh mesh) {
+        return mesh.texIndices().length > 0 && mesh.texCoords().length > 0;
+    }
+}
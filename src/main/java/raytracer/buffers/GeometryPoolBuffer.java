@@ -0,0 +1,16 @@
+package raytracer.buffers;
+
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * An SSBO holding one of the shared geometry pools packed by GeometryPacker.
+ */
+class GeometryPoolBuffer extends ShaderStorageBuffer {
+    GeometryPoolBuffer(ByteBuffer data, int bindingPoint) {
+        super(glGenBuffers(), bindingPoint);
+        upload(data);
+    }
+}
@@ -1,52 +1,14 @@
 package raytracer.buffers;
 
-import static org.lwjgl.opengl.GL43.*;
-import org.joml.Vector3f;
-import raytracer.util.ArrayUtil;
+import raytracer.Material;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
 
 
-public class MaterialsBuffer extends ShaderStorageBuffer {
-    private static final int MAX_MATERIALS = 100;
+public class MaterialsBuffer extends RecordArrayBuffer<Material> {
+    static final RecordPacker<Material> PACKER = new RecordPacker<>(Material.class, LayoutRules.STD430);
 
-    public MaterialsBuffer(Vector3f[] albedos, Vector3f[] emissionColor, float[] emissionStrength, int[] materialType, float[] fuzz, float[] specularProb, int[] textureId) {
-        super(glGenBuffers(), 0);
-
-
-        float[] albedosFloat = ArrayUtil.toVec3FloatArray(albedos);
-        float[] emissionColorFloat = ArrayUtil.toVec3FloatArray(emissionColor);
-
-        float[] albedosPadded = new float[MAX_MATERIALS * 3];
-        System.arraycopy(albedosFloat, 0, albedosPadded, 0, albedosFloat.length);
-
-        float[] emissionColorPadded = new float[MAX_MATERIALS * 3];
-        System.arraycopy(emissionColorFloat, 0, emissionColorPadded, 0, emissionColorFloat.length);
-
-        float[] emissionStrengthPadded = new float[MAX_MATERIALS];
-        System.arraycopy(emissionStrength, 0, emissionStrengthPadded, 0, emissionStrength.length);
-
-        float[] fuzzPadded = new float[MAX_MATERIALS];
-        System.arraycopy(fuzz, 0, fuzzPadded, 0, fuzz.length);
-
-        int[] materialTypePadded = new int[MAX_MATERIALS];
-        System.arraycopy(materialType, 0, materialTypePadded, 0, materialType.length);
-
-        float[] specularProbPadded = new float[MAX_MATERIALS];
-        System.arraycopy(specularProb, 0, specularProbPadded, 0, specularProb.length);
-
-        int[] textureIdPadded = new int[MAX_MATERIALS];
-        System.arraycopy(textureId, 0, textureIdPadded, 0, materialType.length);
-
-        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id());
-        glBufferData(GL_SHADER_STORAGE_BUFFER, (long) (MAX_MATERIALS * 12) * Float.BYTES, GL_DYNAMIC_DRAW);
-
-        for (int i = 0; i < MAX_MATERIALS; i++) {
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) i * 12 * Float.BYTES, new float[]{albedosPadded[i * 3], albedosPadded[i * 3 + 1], albedosPadded[i * 3 + 2]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 4) * Float.BYTES, new float[]{emissionColorPadded[i * 3], emissionColorPadded[i * 3 + 1], emissionColorPadded[i * 3 + 2]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 7) * Float.BYTES, new float[]{emissionStrengthPadded[i]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 8) * Float.BYTES, new int[]{materialTypePadded[i]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 9) * Float.BYTES, new float[]{fuzzPadded[i]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 10) * Float.BYTES, new float[]{specularProbPadded[i]});
-            glBufferSubData(GL_SHADER_STORAGE_BUFFER, (long) (i * 12 + 11) * Float.BYTES, new int[]{textureIdPadded[i]});
-        }
+    public MaterialsBuffer(Material[] materials, UploadRing uploadRing) {
+        super(0, PACKER, materials, uploadRing);
     }
 }
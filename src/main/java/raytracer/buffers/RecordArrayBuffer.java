@@ -0,0 +1,53 @@
+package raytracer.buffers;
+
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+
+import raytracer.buffers.layout.RecordPacker;
+import raytracer.buffers.staging.StagedArray;
+
+
+/**
+ * An SSBO holding an array of records that can be edited in place. Edits are staged on the CPU, and each frame's
+ * {@link #flush} uploads only the elements that changed through the upload ring.
+ * @param <R> the record mirroring the GLSL struct in the array
+ */
+public abstract class RecordArrayBuffer<R extends Record> extends ShaderStorageBuffer {
+    // re-uploading a few unchanged elements between two edits is cheaper than a second copy
+    private static final int MERGE_GAP = 4;
+
+    private final StagedArray<R> array;
+    private final UploadRing uploadRing;
+
+    protected RecordArrayBuffer(int bindingPoint, RecordPacker<R> packer, R[] elements, UploadRing uploadRing) {
+        super(glGenBuffers(), bindingPoint);
+
+        this.array = new StagedArray<>(packer, elements.clone(), MERGE_GAP);
+        this.uploadRing = uploadRing;
+
+        upload(array.staging());
+    }
+
+    public int size() {
+        return array.size();
+    }
+
+    public R get(int index) {
+        return array.get(index);
+    }
+
+    /**
+     * Replaces an element. Takes effect on the GPU at the next flush.
+     */
+    public void set(int index, R element) {
+        array.set(index, element);
+    }
+
+    /**
+     * Uploads every element changed since the last flush. Call once per frame before dispatching.
+     */
+    public void flush() {
+        if (array.isDirty()) {
+            array.flush((offset, data) -> uploadRing.upload(id(), offset, data));
+        }
+    }
+}
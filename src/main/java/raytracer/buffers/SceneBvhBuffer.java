@@ -0,0 +1,46 @@
+package raytracer.buffers;
+
+import static org.lwjgl.opengl.GL45.*;
+
+import org.lwjgl.BufferUtils;
+import raytracer.bvh.Bvh;
+import raytracer.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Uses an SSBO to store the top level BVH over the objects and spheres in the scene.
+ */
+public class SceneBvhBuffer extends ShaderStorageBuffer {
+    public SceneBvhBuffer(Bvh bvh) {
+        super(glGenBuffers(), 3);
+
+        // sized like the arrays in the compute shader, which are sized by SCENE_PRIMITIVES for the scene's variant
+        int primitives = Math.max(bvh.primitiveOrder().length, 1);
+        int nodes = 2 * primitives;
+
+        ByteBuffer data = BufferUtils.createByteBuffer(nodes * BvhNodes.NODE_BYTES + primitives * Integer.BYTES);
+        BvhNodes.put(data, bvh);
+
+        data.position(nodes * BvhNodes.NODE_BYTES);
+        for (int primitive : bvh.primitiveOrder()) {
+            data.putInt(primitive);
+        }
+
+        data.clear();
+
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id());
+        glBufferData(GL_SHADER_STORAGE_BUFFER, data, GL_DYNAMIC_DRAW);
+        Metrics.UPLOADED_BYTES.add(data.remaining());
+    }
+
+    /**
+     * Uploads the nodes of a Bvh that was refit since it was uploaded. The topology and primitive order must be the
+     * same, so only the node bounds change.
+     */
+    public void update(Bvh bvh, UploadRing uploadRing) {
+        ByteBuffer nodes = BvhNodes.put(BufferUtils.createByteBuffer(bvh.nodeCount() * BvhNodes.NODE_BYTES), bvh).flip();
+        uploadRing.upload(id(), 0, nodes);
+    }
+}
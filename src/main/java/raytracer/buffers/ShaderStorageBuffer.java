@@ -1,9 +1,13 @@
 package raytracer.buffers;
 
-import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL30.glBindBufferBase;
 import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
 
+import raytracer.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+
 public abstract class ShaderStorageBuffer {
     private final int id;
     private final int bindingPont;
@@ -17,6 +21,20 @@ public abstract class ShaderStorageBuffer {
         return id;
     }
 
+    /**
+     * Replaces the buffer's contents with the remaining bytes of data, in one call.
+     */
+    protected void upload(ByteBuffer data) {
+        glBindBuffer(GL_SHADER_STORAGE_BUFFER, id);
+        Metrics.UPLOADED_BYTES.add(data.remaining());
+        if (data.hasRemaining()) {
+            glBufferData(GL_SHADER_STORAGE_BUFFER, data, GL_DYNAMIC_DRAW);
+        } else {
+            // binding an empty buffer is an error, so an empty array gets a single unused element
+            glBufferData(GL_SHADER_STORAGE_BUFFER, 16, GL_DYNAMIC_DRAW);
+        }
+    }
+
     public void bind() {
         glBindBufferBase(GL_SHADER_STORAGE_BUFFER, bindingPont, id);
     }
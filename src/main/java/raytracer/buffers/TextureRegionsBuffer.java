@@ -0,0 +1,39 @@
+package raytracer.buffers;
+
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+
+import org.joml.Vector2f;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
+import raytracer.texture.TextureRegion;
+
+
+/**
+ * Uses an SSBO to store where each texture is in the diffuse, normal and parallax atlases. Texture id i's regions are
+ * elements 3i, 3i + 1 and 3i + 2, so a material's texture id finds all three.
+ */
+public class TextureRegionsBuffer extends ShaderStorageBuffer {
+    static final RecordPacker<TextureRegion> PACKER = new RecordPacker<>(TextureRegion.class, LayoutRules.STD430);
+
+    /**
+     * A kind of map with fewer textures than the others repeats its last one for the higher ids, like the array
+     * textures used to clamp the layer. A kind with no textures at all samples the blank page.
+     */
+    public TextureRegionsBuffer(TextureRegion[] diffuse, TextureRegion[] normal, TextureRegion[] parallax) {
+        super(glGenBuffers(), 8);
+
+        TextureRegion[][] kinds = {diffuse, normal, parallax};
+        int textureCount = Math.max(diffuse.length, Math.max(normal.length, parallax.length));
+        TextureRegion blank = new TextureRegion(new Vector2f(), new Vector2f(), 0);
+
+        TextureRegion[] interleaved = new TextureRegion[textureCount * kinds.length];
+        for (int id = 0; id < textureCount; id++) {
+            for (int kind = 0; kind < kinds.length; kind++) {
+                TextureRegion[] regions = kinds[kind];
+                interleaved[id * kinds.length + kind] = regions.length == 0 ? blank : regions[Math.min(id, regions.length - 1)];
+            }
+        }
+
+        upload(PACKER.pack(interleaved));
+    }
+}
@@ -0,0 +1,112 @@
+package raytracer.buffers;
+
+import static org.lwjgl.opengl.GL45.*;
+
+import org.lwjgl.system.MemoryUtil;
+import raytracer.metrics.Metrics;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A persistently mapped staging buffer split into regions that are used round robin. Uploads are written straight into
+ * the mapped memory and copied into their target buffers on the GPU, so they are ordered with the dispatches around
+ * them without stalling on a buffer the GPU is still reading. A fence per region keeps the CPU from overwriting a region
+ * before the GPU has finished copying out of it.
+ */
+public class UploadRing {
+    private static final int REGIONS = 3;
+    private static final int FLAGS = GL_MAP_WRITE_BIT | GL_MAP_PERSISTENT_BIT | GL_MAP_COHERENT_BIT;
+    private static final long FENCE_TIMEOUT_NANOS = 1_000_000_000L;
+
+    private final int id;
+    private final int regionSize;
+    private final ByteBuffer mapped;
+    private final long[] fences = new long[REGIONS];
+    private int region = 0;
+    private int regionOffset = 0;
+
+    /**
+     * @param regionSize the most bytes that can be uploaded through the ring per frame before it has to wait on the GPU
+     */
+    public UploadRing(int regionSize) {
+        this.regionSize = regionSize;
+
+        id = glCreateBuffers();
+        glNamedBufferStorage(id, (long) regionSize * REGIONS, FLAGS);
+        mapped = glMapNamedBufferRange(id, 0, (long) regionSize * REGIONS, FLAGS);
+    }
+
+    /**
+     * Copies data into the target buffer once the GPU reaches this point in the command stream.
+     * @param target the GL buffer to copy into
+     * @param offset where in the target buffer the data goes, in bytes
+     */
+    public void upload(int target, long offset, ByteBuffer data) {
+        int size = data.remaining();
+        Metrics.UPLOADED_BYTES.add(size);
+
+        if (size > regionSize) {
+            // too big for the ring, so let the driver stage it
+            glNamedBufferSubData(target, offset, data);
+            return;
+        }
+
+        if (regionOffset + size > regionSize) {
+            nextRegion();
+        }
+
+        int ringOffset = region * regionSize + regionOffset;
+        MemoryUtil.memCopy(MemoryUtil.memAddress(data), MemoryUtil.memAddress(mapped) + ringOffset, size);
+        glCopyNamedBufferSubData(id, target, ringOffset, offset, size);
+
+        // keep copies 4 byte aligned
+        regionOffset += (size + 3) & ~3;
+    }
+
+    /**
+     * Closes off this frame's uploads, so the next frame writes to a region the GPU is done with.
+     */
+    public void endFrame() {
+        if (regionOffset > 0) {
+            nextRegion();
+        }
+    }
+
+    private void nextRegion() {
+        fences[region] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        region = (region + 1) % REGIONS;
+        regionOffset = 0;
+
+        waitFor(region);
+    }
+
+    private void waitFor(int region) {
+        if (fences[region] == 0) {
+            return;
+        }
+
+        int status;
+        do {
+            status = glClientWaitSync(fences[region], GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT_NANOS);
+        } while (status == GL_TIMEOUT_EXPIRED);
+
+        if (status == GL_WAIT_FAILED) {
+            throw new IllegalStateException("Failed to wait for the upload ring's fence");
+        }
+
+        glDeleteSync(fences[region]);
+        fences[region] = 0;
+    }
+
+    public void cleanup() {
+        for (int i = 0; i < REGIONS; i++) {
+            if (fences[i] != 0) {
+                glDeleteSync(fences[i]);
+            }
+        }
+
+        glUnmapNamedBuffer(id);
+        glDeleteBuffers(id);
+    }
+}
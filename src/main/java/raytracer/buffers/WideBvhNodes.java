@@ -0,0 +1,65 @@
+package raytracer.buffers;
+
+import raytracer.buffers.layout.GlslType;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.StructLayout;
+import raytracer.bvh.WideBvh;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs WideBvh nodes into the layout of the WideBvhNode struct in the compute shader, which is the layout WideBvh
+ * already keeps them in, one int per 4 bytes.
+ */
+class WideBvhNodes {
+    static final StructLayout LAYOUT = StructLayout.builder("WideBvhNode", LayoutRules.STD430)
+            .member("origin", GlslType.VEC3)
+            .member("exponents", GlslType.INT)
+            .member("child_base", GlslType.INT)
+            .member("triangle_base", GlslType.INT)
+            .member("counts", GlslType.IVEC2)
+            .member("lo_x", GlslType.IVEC2)
+            .member("lo_y", GlslType.IVEC2)
+            .member("lo_z", GlslType.IVEC2)
+            .member("hi_x", GlslType.IVEC2)
+            .member("hi_y", GlslType.IVEC2)
+            .member("hi_z", GlslType.IVEC2)
+            .build();
+
+    static final int NODE_BYTES = LAYOUT.stride();
+    private static final int CHILD_BASE = LAYOUT.offset("child_base") / Integer.BYTES;
+    private static final int TRIANGLE_BASE = LAYOUT.offset("triangle_base") / Integer.BYTES;
+
+    static {
+        if (NODE_BYTES != WideBvh.NODE_INTS * Integer.BYTES) {
+            throw new IllegalStateException("WideBvhNode is " + NODE_BYTES + " bytes, but WideBvh nodes are " + WideBvh.NODE_INTS + " ints");
+        }
+    }
+
+    private WideBvhNodes() {}
+
+    /**
+     * Writes the nodes with their children and triangles shifted, for a WideBvh stored in a pool shared with others.
+     * @param nodeOffset where the WideBvh's root is in the node pool
+     * @param triangleOffset where the WideBvh's first triangle is in the triangle pool
+     */
+    static ByteBuffer put(ByteBuffer buffer, WideBvh bvh, int nodeOffset, int triangleOffset) {
+        int[] nodes = bvh.nodes();
+
+        for (int node = 0; node < bvh.nodeCount(); node++) {
+            int base = node * WideBvh.NODE_INTS;
+            for (int i = 0; i < WideBvh.NODE_INTS; i++) {
+                int value = nodes[base + i];
+                if (i == CHILD_BASE) {
+                    value += nodeOffset;
+                } else if (i == TRIANGLE_BASE) {
+                    value += triangleOffset;
+                }
+
+                buffer.putInt(value);
+            }
+        }
+
+        return buffer;
+    }
+}
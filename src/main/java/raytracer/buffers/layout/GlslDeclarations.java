@@ -0,0 +1,41 @@
+package raytracer.buffers.layout;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads struct and interface block declarations out of GLSL source. Only handles what the shaders here use: members
+ * of the types in GlslType, one per declaration, and no arrays.
+ */
+class GlslDeclarations {
+    private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("//[^\\n]*");
+
+    private GlslDeclarations() {}
+
+    static StructLayout parse(String source, String structName, LayoutRules rules) {
+        String code = LINE_COMMENT.matcher(BLOCK_COMMENT.matcher(source).replaceAll(" ")).replaceAll(" ");
+
+        Pattern declaration = Pattern.compile("\\b(?:struct|uniform|buffer)\\s+" + Pattern.quote(structName) + "\\s*\\{([^}]*)}");
+        Matcher matcher = declaration.matcher(code);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("No struct or block named " + structName + " in the shader");
+        }
+
+        StructLayout.Builder builder = StructLayout.builder(structName, rules);
+        for (String member : matcher.group(1).split(";")) {
+            String[] tokens = member.trim().split("\\s+");
+            if (tokens.length == 1 && tokens[0].isEmpty()) {
+                continue;
+            }
+
+            if (tokens.length != 2 || tokens[1].contains("[")) {
+                throw new IllegalArgumentException("Unsupported member of " + structName + ": " + member.trim());
+            }
+
+            builder.member(tokens[1], GlslType.fromGlsl(tokens[0]));
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,107 @@
+package raytracer.buffers.layout;
+
+import org.joml.Vector2fc;
+import org.joml.Vector2ic;
+import org.joml.Vector3fc;
+import org.joml.Vector3ic;
+import org.joml.Vector4fc;
+import org.joml.Vector4ic;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The GLSL types a struct member can have, with the Java types they are written from.
+ */
+public enum GlslType {
+    FLOAT("float", 1, float.class),
+    VEC2("vec2", 2, Vector2fc.class),
+    VEC3("vec3", 3, Vector3fc.class),
+    VEC4("vec4", 4, Vector4fc.class),
+    INT("int", 1, int.class),
+    IVEC2("ivec2", 2, Vector2ic.class),
+    IVEC3("ivec3", 3, Vector3ic.class),
+    IVEC4("ivec4", 4, Vector4ic.class);
+
+    private final String glslName;
+    private final int components;
+    private final Class<?> javaType;
+
+    GlslType(String glslName, int components, Class<?> javaType) {
+        this.glslName = glslName;
+        this.components = components;
+        this.javaType = javaType;
+    }
+
+    public String glslName() {
+        return glslName;
+    }
+
+    public int size() {
+        return components * 4;
+    }
+
+    /**
+     * @return the base alignment, which is the same in std140 and std430. A vec3 aligns like a vec4.
+     */
+    public int alignment() {
+        return switch (components) {
+            case 1 -> 4;
+            case 2 -> 8;
+            default -> 16;
+        };
+    }
+
+    public static GlslType fromGlsl(String name) {
+        for (GlslType type : values()) {
+            if (type.glslName.equals(name)) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported GLSL type: " + name);
+    }
+
+    public static GlslType fromJava(Class<?> type) {
+        for (GlslType glslType : values()) {
+            if (glslType.javaType.isAssignableFrom(type)) {
+                return glslType;
+            }
+        }
+
+        throw new IllegalArgumentException("No GLSL type for " + type.getName());
+    }
+
+    /**
+     * Writes a value of this type's Java type at the given offset.
+     */
+    void put(ByteBuffer buffer, int offset, Object value) {
+        switch (this) {
+            case FLOAT -> buffer.putFloat(offset, (Float) value);
+            case VEC2 -> {
+                Vector2fc v = (Vector2fc) value;
+                buffer.putFloat(offset, v.x()).putFloat(offset + 4, v.y());
+            }
+            case VEC3 -> {
+                Vector3fc v = (Vector3fc) value;
+                buffer.putFloat(offset, v.x()).putFloat(offset + 4, v.y()).putFloat(offset + 8, v.z());
+            }
+            case VEC4 -> {
+                Vector4fc v = (Vector4fc) value;
+                buffer.putFloat(offset, v.x()).putFloat(offset + 4, v.y()).putFloat(offset + 8, v.z()).putFloat(offset + 12, v.w());
+            }
+            case INT -> buffer.putInt(offset, (Integer) value);
+            case IVEC2 -> {
+                Vector2ic v = (Vector2ic) value;
+                buffer.putInt(offset, v.x()).putInt(offset + 4, v.y());
+            }
+            case IVEC3 -> {
+                Vector3ic v = (Vector3ic) value;
+                buffer.putInt(offset, v.x()).putInt(offset + 4, v.y()).putInt(offset + 8, v.z());
+            }
+            case IVEC4 -> {
+                Vector4ic v = (Vector4ic) value;
+                buffer.putInt(offset, v.x()).putInt(offset + 4, v.y()).putInt(offset + 8, v.z()).putInt(offset + 12, v.w());
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package raytracer.buffers.layout;
+
+/**
+ * The GLSL memory layouts. They only differ in how structs and arrays are padded: std140 rounds their alignment up to
+ * that of a vec4, std430 doesn't.
+ */
+public enum LayoutRules {
+    STD140,
+    STD430;
+
+    int structAlignment(int memberAlignment) {
+        return this == STD140 ? roundUp(memberAlignment, 16) : memberAlignment;
+    }
+
+    static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+}
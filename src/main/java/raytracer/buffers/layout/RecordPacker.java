@@ -0,0 +1,65 @@
+package raytracer.buffers.layout;
+
+import org.lwjgl.BufferUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes records into a GPU buffer laid out by {@link StructLayout#ofRecord}, so an array of them can be uploaded
+ * in one call.
+ * @param <R> the record mirroring a GLSL struct
+ */
+public final class RecordPacker<R extends Record> {
+    private final StructLayout layout;
+    private final Method[] accessors;
+
+    public RecordPacker(Class<R> type, LayoutRules rules) {
+        this.layout = StructLayout.ofRecord(type, rules);
+
+        RecordComponent[] components = type.getRecordComponents();
+        accessors = new Method[components.length];
+        for (int i = 0; i < components.length; i++) {
+            accessors[i] = components[i].getAccessor();
+            // records nested in buffer classes aren't public
+            accessors[i].setAccessible(true);
+        }
+    }
+
+    public StructLayout layout() {
+        return layout;
+    }
+
+    /**
+     * @return a direct buffer holding every element at its index times the stride, positioned at 0 with its limit at
+     * the end. Padding is zeroed.
+     */
+    @SafeVarargs
+    public final ByteBuffer pack(R... elements) {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(elements.length * layout.stride());
+        for (int i = 0; i < elements.length; i++) {
+            put(buffer, i, elements[i]);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Writes one element at index times the stride, leaving the buffer's position alone.
+     */
+    public void put(ByteBuffer buffer, int index, R element) {
+        int base = index * layout.stride();
+
+        for (int i = 0; i < accessors.length; i++) {
+            StructLayout.Member member = layout.members().get(i);
+
+            try {
+                member.type().put(buffer, base + member.offset(), accessors[i].invoke(element));
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Failed to read " + layout.name() + "." + member.name(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package raytracer.buffers.layout;
+
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The byte offsets of the members of a GLSL struct or interface block under std140 or std430, so buffers don't have to
+ * hand count padding. Built member by member, from the components of a record, or from a declaration in GLSL source.
+ */
+public final class StructLayout {
+    public record Member(String name, GlslType type, int offset) {}
+
+    private final String name;
+    private final LayoutRules rules;
+    private final List<Member> members;
+    private final int size;
+    private final int stride;
+
+    private StructLayout(String name, LayoutRules rules, List<Member> members, int size, int alignment) {
+        this.name = name;
+        this.rules = rules;
+        this.members = List.copyOf(members);
+        this.size = size;
+        this.stride = LayoutRules.roundUp(size, alignment);
+    }
+
+    public static Builder builder(String name, LayoutRules rules) {
+        return new Builder(name, rules);
+    }
+
+    /**
+     * Lays out the components of a record in declaration order, as if it were a GLSL struct with the same members.
+     */
+    public static StructLayout ofRecord(Class<? extends Record> type, LayoutRules rules) {
+        Builder builder = builder(type.getSimpleName(), rules);
+        for (RecordComponent component : type.getRecordComponents()) {
+            builder.member(component.getName(), GlslType.fromJava(component.getType()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Lays out a struct or interface block declared in GLSL source, for checking Java layouts against the shader.
+     * @param structName the name of the struct, or of the interface block
+     */
+    public static StructLayout fromGlsl(String source, String structName, LayoutRules rules) {
+        return GlslDeclarations.parse(source, structName, rules);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public LayoutRules rules() {
+        return rules;
+    }
+
+    public List<Member> members() {
+        return members;
+    }
+
+    /**
+     * @return the offset just past the last member, which is all an interface block needs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the distance between elements in an array of this struct
+     */
+    public int stride() {
+        return stride;
+    }
+
+    public int offset(String memberName) {
+        for (Member member : members) {
+            if (member.name().equals(memberName)) {
+                return member.offset();
+            }
+        }
+
+        throw new IllegalArgumentException(name + " has no member " + memberName);
+    }
+
+    /**
+     * @return true if both have members of the same types at the same offsets and the same stride. Names are ignored
+     * since Java and GLSL name things differently.
+     */
+    public boolean matches(StructLayout other) {
+        if (stride != other.stride || members.size() != other.members.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < members.size(); i++) {
+            Member a = members.get(i);
+            Member b = other.members.get(i);
+            if (a.type() != b.type() || a.offset() != b.offset()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name).append(" (").append(rules.name().toLowerCase()).append(") {\n");
+        for (Member member : members) {
+            builder.append("    ").append(member.type().glslName()).append(' ').append(member.name())
+                    .append(";  // offset ").append(member.offset()).append('\n');
+        }
+
+        return builder.append("}  // size ").append(size).append(", stride ").append(stride).toString();
+    }
+
+    public static final class Builder {
+        private final String name;
+        private final LayoutRules rules;
+        private final List<Member> members = new ArrayList<>();
+        private int offset = 0;
+        private int alignment = 1;
+
+        private Builder(String name, LayoutRules rules) {
+            this.name = name;
+            this.rules = rules;
+        }
+
+        public Builder member(String name, GlslType type) {
+            offset = LayoutRules.roundUp(offset, type.alignment());
+            members.add(new Member(name, type, offset));
+
+            offset += type.size();
+            alignment = Math.max(alignment, type.alignment());
+
+            return this;
+        }
+
+        public StructLayout build() {
+            return new StructLayout(name, rules, members, offset, rules.structAlignment(alignment));
+        }
+    }
+}
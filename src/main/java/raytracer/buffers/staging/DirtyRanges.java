@@ -0,0 +1,84 @@
+package raytracer.buffers.staging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The element ranges of an array that changed since it was last uploaded, kept sorted and coalesced as they are marked,
+ * so a flush issues as few copies as possible.
+ */
+public class DirtyRanges {
+    /**
+     * A dirty range of elements, from first (inclusive) to end (exclusive).
+     */
+    public record Range(int first, int end) {
+        public int count() {
+            return end - first;
+        }
+    }
+
+    private final TreeMap<Integer, Integer> ranges = new TreeMap<>();
+    private final int mergeGap;
+
+    /**
+     * @param mergeGap ranges at most this many clean elements apart are merged, since re-uploading a few unchanged
+     *                 elements is cheaper than another copy
+     */
+    public DirtyRanges(int mergeGap) {
+        if (mergeGap < 0) {
+            throw new IllegalArgumentException("mergeGap must be 0 or greater, not " + mergeGap);
+        }
+
+        this.mergeGap = mergeGap;
+    }
+
+    public void mark(int index) {
+        mark(index, 1);
+    }
+
+    public void mark(int first, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        int start = first;
+        int end = first + count;
+
+        Map.Entry<Integer, Integer> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() + mergeGap >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+            ranges.remove(before.getKey());
+        }
+
+        Map.Entry<Integer, Integer> after;
+        while ((after = ranges.ceilingEntry(start)) != null && after.getKey() <= end + mergeGap) {
+            end = Math.max(end, after.getValue());
+            ranges.remove(after.getKey());
+        }
+
+        ranges.put(start, end);
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /**
+     * @return the dirty ranges in ascending order, none of which overlap or touch
+     */
+    public List<Range> ranges() {
+        List<Range> list = new ArrayList<>(ranges.size());
+        for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+            list.add(new Range(range.getKey(), range.getValue()));
+        }
+
+        return list;
+    }
+
+    public void clear() {
+        ranges.clear();
+    }
+}
@@ -0,0 +1,82 @@
+package raytracer.buffers.staging;
+
+import raytracer.buffers.layout.RecordPacker;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A CPU copy of an array of records as it is laid out on the GPU. Elements are edited in place here and marked dirty,
+ * and {@link #flush} hands only the coalesced dirty byte ranges to an uploader. Doesn't touch GL, so what gets
+ * uploaded can be checked without a context.
+ * @param <R> the record mirroring a GLSL struct
+ */
+public class StagedArray<R extends Record> {
+    /**
+     * Copies bytes into the GPU buffer.
+     */
+    public interface Uploader {
+        /**
+         * @param offset where in the GPU buffer the data goes, in bytes
+         * @param data the bytes to copy, from its position to its limit. Only valid during the call.
+         */
+        void upload(long offset, ByteBuffer data);
+    }
+
+    private final RecordPacker<R> packer;
+    private final ByteBuffer staging;
+    private final R[] elements;
+    private final DirtyRanges dirty;
+
+    /**
+     * @param elements the initial contents. Edits are made to this array.
+     */
+    public StagedArray(RecordPacker<R> packer, R[] elements, int mergeGap) {
+        this.packer = packer;
+        this.elements = elements;
+        this.staging = packer.pack(elements);
+        this.dirty = new DirtyRanges(mergeGap);
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public R get(int index) {
+        return elements[index];
+    }
+
+    public void set(int index, R element) {
+        elements[index] = element;
+        packer.put(staging, index, element);
+        dirty.mark(index);
+    }
+
+    /**
+     * @return the whole array as laid out on the GPU, positioned at 0. Must not be modified.
+     */
+    public ByteBuffer staging() {
+        return staging;
+    }
+
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Uploads every dirty range and marks the whole array clean.
+     * @return the number of bytes uploaded
+     */
+    public long flush(Uploader uploader) {
+        int stride = packer.layout().stride();
+        long bytes = 0;
+
+        for (DirtyRanges.Range range : dirty.ranges()) {
+            ByteBuffer slice = staging.slice(range.first() * stride, range.count() * stride);
+            uploader.upload((long) range.first() * stride, slice);
+            bytes += slice.capacity();
+        }
+
+        dirty.clear();
+        return bytes;
+    }
+}
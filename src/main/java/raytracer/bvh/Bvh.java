@@ -0,0 +1,372 @@
+package raytracer.bvh;
+
+import org.joml.Vector3f;
+import raytracer.cpu.Intersections;
+import raytracer.cpu.PacketKernel;
+import raytracer.cpu.Ray;
+import raytracer.cpu.TriangleSoA;
+
+/**
+ * A bounding volume hierarchy flattened into a linear node array. The children of an interior node are always stored
+ * next to each other, so each node only needs the index of its left child. Leaves refer to a contiguous range of
+ * positions in primitiveOrder().
+ */
+public class Bvh {
+    /**
+     * Deep enough for any tree BvhBuilder produces, since it never builds deeper than BvhBuilder.MAX_DEPTH.
+     */
+    public static final int STACK_SIZE = 64;
+
+    /**
+     * Intersects the primitive at a position in primitiveOrder().
+     */
+    @FunctionalInterface
+    public interface PrimitiveIntersector {
+        /**
+         * @return the hit distance if the primitive is hit closer than closestSoFar, otherwise Intersections.MISS
+         */
+        float intersect(int position, float closestSoFar);
+    }
+
+    /**
+     * Intersects every primitive in a leaf at once.
+     */
+    @FunctionalInterface
+    public interface LeafIntersector {
+        /**
+         * @param first the position in primitiveOrder() of the leaf's first primitive
+         * @return the closest hit distance among the leaf's primitives if one is hit closer than closestSoFar,
+         * otherwise Intersections.MISS
+         */
+        float intersect(int first, int count, float closestSoFar);
+    }
+
+    private final float[] bounds;
+    private final int[] leftOrFirst;
+    private final int[] counts;
+    private final int nodeCount;
+    private final int[] primitiveOrder;
+
+    Bvh(float[] bounds, int[] leftOrFirst, int[] counts, int nodeCount, int[] primitiveOrder) {
+        this.bounds = bounds;
+        this.leftOrFirst = leftOrFirst;
+        this.counts = counts;
+        this.nodeCount = nodeCount;
+        this.primitiveOrder = primitiveOrder;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return min xyz followed by max xyz for every node
+     */
+    public float[] bounds() {
+        return bounds;
+    }
+
+    /**
+     * @return the index of the left child for interior nodes, or of the first primitive for leaves
+     */
+    public int leftOrFirst(int node) {
+        return leftOrFirst[node];
+    }
+
+    /**
+     * @return the number of primitives in a leaf, or 0 for interior nodes
+     */
+    public int count(int node) {
+        return counts[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return counts[node] > 0;
+    }
+
+    /**
+     * @return the original primitive index of each primitive, in the order leaves refer to them
+     */
+    public int[] primitiveOrder() {
+        return primitiveOrder;
+    }
+
+    /**
+     * Reorders per-triangle data (3 ints per triangle, like indices or texture indices) into BVH order.
+     */
+    public int[] reorder(int[] perTriangle) {
+        int[] reordered = new int[primitiveOrder.length * 3];
+        for (int i = 0; i < primitiveOrder.length; i++) {
+            System.arraycopy(perTriangle, primitiveOrder[i] * 3, reordered, i * 3, 3);
+        }
+
+        return reordered;
+    }
+
+    /**
+     * Recomputes the node bounds for primitives that moved, keeping the tree topology. Much cheaper than a rebuild, but
+     * the tree gets worse the further the primitives move from where they were when it was built.
+     * @param primitiveBounds min xyz followed by max xyz for every primitive, in the original order
+     */
+    public void refit(float[] primitiveBounds) {
+        // children are always allocated after their parent, so walking backwards visits children first
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            BvhBuilder.emptyBounds(bounds, node);
+
+            if (isLeaf(node)) {
+                for (int i = leftOrFirst[node]; i < leftOrFirst[node] + counts[node]; i++) {
+                    BvhBuilder.growBounds(bounds, node, primitiveBounds, primitiveOrder[i]);
+                }
+            } else {
+                BvhBuilder.growBounds(bounds, node, bounds, leftOrFirst[node]);
+                BvhBuilder.growBounds(bounds, node, bounds, leftOrFirst[node] + 1);
+            }
+        }
+    }
+
+    /**
+     * Finds the closest hit by walking the tree with a stack, visiting the nearer child first. This is the reference for
+     * the traversals in raytracer.comp.
+     * @param invDir 1 / ray.direction, per component
+     * @return the distance of the closest hit, or Intersections.MISS
+     */
+    public float traverse(Ray ray, Vector3f invDir, float tMin, float tMax, PrimitiveIntersector intersector) {
+        return traverseLeaves(ray, invDir, tMin, tMax, (first, count, closestSoFar) -> {
+            float closest = Intersections.MISS;
+            for (int i = first; i < first + count; i++) {
+                float t = intersector.intersect(i, closestSoFar);
+                if (t != Intersections.MISS) {
+                    closestSoFar = t;
+                    closest = t;
+                }
+            }
+
+            return closest;
+        });
+    }
+
+    /**
+     * Like {@link #traverse}, but hands each leaf's primitives to the intersector together, so they can be tested as
+     * a packet.
+     */
+    public float traverseLeaves(Ray ray, Vector3f invDir, float tMin, float tMax, LeafIntersector intersector) {
+        if (nodeCount == 0 || hitNode(0, ray, invDir, tMin, tMax) == Intersections.MISS) {
+            return Intersections.MISS;
+        }
+
+        int[] stack = new int[STACK_SIZE];
+        int stackPtr = 0;
+        stack[stackPtr++] = 0;
+
+        float closestSoFar = tMax;
+        boolean hitAnything = false;
+
+        while (stackPtr > 0) {
+            int node = stack[--stackPtr];
+
+            if (isLeaf(node)) {
+                float t = intersector.intersect(leftOrFirst[node], counts[node], closestSoFar);
+                if (t != Intersections.MISS) {
+                    closestSoFar = t;
+                    hitAnything = true;
+                }
+
+                continue;
+            }
+
+            int left = leftOrFirst[node];
+            int right = left + 1;
+            float tLeft = hitNode(left, ray, invDir, tMin, closestSoFar);
+            float tRight = hitNode(right, ray, invDir, tMin, closestSoFar);
+
+            // push the farther child first so the nearer one is visited first and shrinks closestSoFar sooner
+            if (tLeft > tRight) {
+                int swap = left;
+                left = right;
+                right = swap;
+                float swapT = tLeft;
+                tLeft = tRight;
+                tRight = swapT;
+            }
+
+            if (tRight != Intersections.MISS) {
+                stack[stackPtr++] = right;
+            }
+
+            if (tLeft != Intersections.MISS) {
+                stack[stackPtr++] = left;
+            }
+        }
+
+        return hitAnything ? closestSoFar : Intersections.MISS;
+    }
+
+    /**
+     * Finds the closest triangle hit, for a Bvh built over triangles.
+     * @param indices the triangle indices, already reordered with reorder()
+     * @param invDir 1 / ray.direction, per component
+     * @param hit receives the hit distance and the u and v barycentric coordinates
+     * @return the index of the hit triangle in BVH order, or -1 if nothing was hit
+     */
+    public int intersect(float[] vertices, int[] indices, Ray ray, Vector3f invDir, float tMin, float tMax, float[] hit) {
+        float[] barycentric = new float[2];
+        int[] closestTriangle = {-1};
+
+        traverse(ray, invDir, tMin, tMax, (i, closestSoFar) -> {
+            float t = Intersections.hitTriangle(vertices, indices[i * 3], indices[i * 3 + 1], indices[i * 3 + 2], ray, tMin, closestSoFar, barycentric);
+            if (t != Intersections.MISS) {
+                closestTriangle[0] = i;
+                hit[0] = t;
+                hit[1] = barycentric[0];
+                hit[2] = barycentric[1];
+            }
+
+            return t;
+        });
+
+        return closestTriangle[0];
+    }
+
+    /**
+     * Like {@link #intersect(float[], int[], Ray, Vector3f, float, float, float[])}, testing each leaf's triangles as a
+     * packet.
+     * @param triangles the triangles in BVH order
+     */
+    public int intersect(TriangleSoA triangles, PacketKernel kernel, Ray ray, Vector3f invDir, float tMin, float tMax, float[] hit) {
+        int[] closestTriangle = {-1};
+
+        traverseLeaves(ray, invDir, tMin, tMax, (first, count, closestSoFar) -> {
+            int triangle = kernel.hitTriangles(triangles, first, count, ray, tMin, closestSoFar, hit);
+            if (triangle == -1) {
+                return Intersections.MISS;
+            }
+
+            closestTriangle[0] = triangle;
+            return hit[0];
+        });
+
+        return closestTriangle[0];
+    }
+
+    /**
+     * Finds how far a point is from the nearest triangle, for a Bvh built over triangles. Visits the nearer child first
+     * and skips every node farther away than the nearest triangle so far.
+     * @param indices the triangle indices, in their original order
+     * @return the squared distance, or infinity if there are no triangles
+     */
+    public float distanceSquared(float x, float y, float z, float[] vertices, int[] indices) {
+        float nearest = Float.POSITIVE_INFINITY;
+        if (nodeCount == 0) {
+            return nearest;
+        }
+
+        int[] stack = new int[STACK_SIZE];
+        int stackPtr = 0;
+        stack[stackPtr++] = 0;
+
+        while (stackPtr > 0) {
+            int node = stack[--stackPtr];
+            if (boxDistanceSquared(node, x, y, z) >= nearest) {
+                continue;
+            }
+
+            if (isLeaf(node)) {
+                for (int i = leftOrFirst[node]; i < leftOrFirst[node] + counts[node]; i++) {
+                    int triangle = primitiveOrder[i] * 3;
+                    nearest = Math.min(nearest, triangleDistanceSquared(vertices, indices[triangle] * 3,
+                            indices[triangle + 1] * 3, indices[triangle + 2] * 3, x, y, z));
+                }
+
+                continue;
+            }
+
+            int left = leftOrFirst[node];
+            int right = left + 1;
+            // pushed second, so visited first
+            if (boxDistanceSquared(left, x, y, z) < boxDistanceSquared(right, x, y, z)) {
+                stack[stackPtr++] = right;
+                stack[stackPtr++] = left;
+            } else {
+                stack[stackPtr++] = left;
+                stack[stackPtr++] = right;
+            }
+        }
+
+        return nearest;
+    }
+
+    private float boxDistanceSquared(int node, float x, float y, float z) {
+        int b = node * 6;
+        float dx = Math.max(0, Math.max(bounds[b] - x, x - bounds[b + 3]));
+        float dy = Math.max(0, Math.max(bounds[b + 1] - y, y - bounds[b + 4]));
+        float dz = Math.max(0, Math.max(bounds[b + 2] - z, z - bounds[b + 5]));
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * The squared distance from a point to the nearest point of a triangle, found by which of the triangle's vertex,
+     * edge or face regions the point projects into.
+     * @param a the offset of the first vertex's x in vertices
+     */
+    private static float triangleDistanceSquared(float[] vertices, int a, int b, int c, float x, float y, float z) {
+        float ax = vertices[a], ay = vertices[a + 1], az = vertices[a + 2];
+        float abx = vertices[b] - ax, aby = vertices[b + 1] - ay, abz = vertices[b + 2] - az;
+        float acx = vertices[c] - ax, acy = vertices[c + 1] - ay, acz = vertices[c + 2] - az;
+        float apx = x - ax, apy = y - ay, apz = z - az;
+
+        float d1 = abx * apx + aby * apy + abz * apz;
+        float d2 = acx * apx + acy * apy + acz * apz;
+        if (d1 <= 0 && d2 <= 0) {
+            return lengthSquared(apx, apy, apz);
+        }
+
+        float bpx = x - vertices[b], bpy = y - vertices[b + 1], bpz = z - vertices[b + 2];
+        float d3 = abx * bpx + aby * bpy + abz * bpz;
+        float d4 = acx * bpx + acy * bpy + acz * bpz;
+        if (d3 >= 0 && d4 <= d3) {
+            return lengthSquared(bpx, bpy, bpz);
+        }
+
+        float vc = d1 * d4 - d3 * d2;
+        if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+            float t = d1 / (d1 - d3);
+            return lengthSquared(apx - t * abx, apy - t * aby, apz - t * abz);
+        }
+
+        float cpx = x - vertices[c], cpy = y - vertices[c + 1], cpz = z - vertices[c + 2];
+        float d5 = abx * cpx + aby * cpy + abz * cpz;
+        float d6 = acx * cpx + acy * cpy + acz * cpz;
+        if (d6 >= 0 && d5 <= d6) {
+            return lengthSquared(cpx, cpy, cpz);
+        }
+
+        float vb = d5 * d2 - d1 * d6;
+        if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+            float t = d2 / (d2 - d6);
+            return lengthSquared(apx - t * acx, apy - t * acy, apz - t * acz);
+        }
+
+        float va = d3 * d6 - d5 * d4;
+        if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0) {
+            float t = (d4 - d3) / (d4 - d3 + d5 - d6);
+            return lengthSquared(bpx - t * (acx - abx), bpy - t * (acy - aby), bpz - t * (acz - abz));
+        }
+
+        float denominator = 1 / (va + vb + vc);
+        float v = vb * denominator;
+        float w = vc * denominator;
+        return lengthSquared(apx - abx * v - acx * w, apy - aby * v - acy * w, apz - abz * v - acz * w);
+    }
+
+    private static float lengthSquared(float x, float y, float z) {
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * @return the distance at which the ray enters the node, or MISS
+     */
+    public float hitNode(int node, Ray ray, Vector3f invDir, float tMin, float tMax) {
+        int b = node * 6;
+        return Intersections.hitBoundingBox(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5], ray.origin, invDir, tMin, tMax);
+    }
+}
@@ -0,0 +1,244 @@
+package raytracer.bvh;
+
+import raytracer.Mesh;
+
+/**
+ * Builds a Bvh with the binned surface area heuristic: primitive centroids are sorted into a fixed number of bins along
+ * each axis, and a node is split at the bin boundary with the lowest expected intersection cost. Primitives are usually
+ * triangles, but anything with a bounding box works.
+ */
+public class BvhBuilder {
+    /**
+     * Keeps the traversal stack in the shader bounded.
+     */
+    public static final int MAX_DEPTH = 32;
+
+    private static final int BINS = 12;
+    private static final float TRAVERSAL_COST = 1;
+    private static final float INTERSECTION_COST = 1;
+
+    private final float[] primitiveBounds;
+    private final float[] centroids;
+    private final int[] order;
+
+    private final float[] nodeBounds;
+    private final int[] leftOrFirst;
+    private final int[] counts;
+    private int nodesUsed;
+
+    // scratch space for binning, reused by every node
+    private final int[] binCounts = new int[BINS];
+    private final float[] binBounds = new float[BINS * 6];
+    private final float[] rightAreas = new float[BINS];
+    private final int[] rightCounts = new int[BINS];
+
+    private BvhBuilder(float[] primitiveBounds) {
+        int primitiveCount = primitiveBounds.length / 6;
+
+        this.primitiveBounds = primitiveBounds;
+        centroids = new float[primitiveCount * 3];
+        order = new int[primitiveCount];
+
+        for (int i = 0; i < primitiveCount; i++) {
+            order[i] = i;
+
+            for (int axis = 0; axis < 3; axis++) {
+                centroids[i * 3 + axis] = (primitiveBounds[i * 6 + axis] + primitiveBounds[i * 6 + 3 + axis]) / 2;
+            }
+        }
+
+        int maxNodes = Math.max(0, 2 * primitiveCount - 1);
+        nodeBounds = new float[maxNodes * 6];
+        leftOrFirst = new int[maxNodes];
+        counts = new int[maxNodes];
+    }
+
+    public static Bvh build(Mesh mesh) {
+        return build(mesh.vertices(), mesh.indices());
+    }
+
+    /**
+     * @param vertices packed xyz vertex positions
+     * @param indices 3 vertex indices per triangle
+     */
+    public static Bvh build(float[] vertices, int[] indices) {
+        return build(triangleBounds(vertices, indices));
+    }
+
+    /**
+     * @param primitiveBounds min xyz followed by max xyz for every primitive
+     */
+    public static Bvh build(float[] primitiveBounds) {
+        BvhBuilder builder = new BvhBuilder(primitiveBounds);
+
+        if (builder.order.length > 0) {
+            builder.nodesUsed = 1;
+            builder.buildNode(0, 0, builder.order.length, 0);
+        }
+
+        return new Bvh(builder.nodeBounds, builder.leftOrFirst, builder.counts, builder.nodesUsed, builder.order);
+    }
+
+    private static float[] triangleBounds(float[] vertices, int[] indices) {
+        int triangleCount = indices.length / 3;
+        float[] bounds = new float[triangleCount * 6];
+
+        for (int i = 0; i < triangleCount; i++) {
+            emptyBounds(bounds, i);
+
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices[i * 3 + corner];
+                grow(bounds, i, vertices[vertex * 3], vertices[vertex * 3 + 1], vertices[vertex * 3 + 2]);
+            }
+        }
+
+        return bounds;
+    }
+
+    private void buildNode(int node, int first, int count, int depth) {
+        emptyBounds(nodeBounds, node);
+        float[] centroidBounds = new float[6];
+        emptyBounds(centroidBounds, 0);
+
+        for (int i = first; i < first + count; i++) {
+            int primitive = order[i];
+            growBounds(nodeBounds, node, primitiveBounds, primitive);
+            grow(centroidBounds, 0, centroids[primitive * 3], centroids[primitive * 3 + 1], centroids[primitive * 3 + 2]);
+        }
+
+        leftOrFirst[node] = first;
+        counts[node] = count;
+
+        if (count <= 1 || depth >= MAX_DEPTH) {
+            return;
+        }
+
+        int bestAxis = -1;
+        int bestSplit = -1;
+        float bestCost = INTERSECTION_COST * count;
+
+        for (int axis = 0; axis < 3; axis++) {
+            float min = centroidBounds[axis];
+            float extent = centroidBounds[3 + axis] - min;
+            if (extent <= 0) {
+                continue;
+            }
+
+            binTriangles(first, count, axis, min, extent);
+
+            // sweep from the right so the left side can be accumulated in the same pass as the cost evaluation
+            float[] accumulated = new float[6];
+            emptyBounds(accumulated, 0);
+            int accumulatedCount = 0;
+            for (int bin = BINS - 1; bin > 0; bin--) {
+                growBounds(accumulated, 0, binBounds, bin);
+                accumulatedCount += binCounts[bin];
+                rightAreas[bin] = area(accumulated, 0);
+                rightCounts[bin] = accumulatedCount;
+            }
+
+            emptyBounds(accumulated, 0);
+            accumulatedCount = 0;
+            for (int split = 1; split < BINS; split++) {
+                growBounds(accumulated, 0, binBounds, split - 1);
+                accumulatedCount += binCounts[split - 1];
+
+                if (accumulatedCount == 0 || rightCounts[split] == 0) {
+                    continue;
+                }
+
+                float cost = TRAVERSAL_COST + INTERSECTION_COST * (accumulatedCount * area(accumulated, 0) + rightCounts[split] * rightAreas[split]) / area(nodeBounds, node);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = axis;
+                    bestSplit = split;
+                }
+            }
+        }
+
+        if (bestAxis == -1) {
+            return;
+        }
+
+        // partition the primitives in place around the chosen bin boundary
+        float min = centroidBounds[bestAxis];
+        float extent = centroidBounds[3 + bestAxis] - min;
+        int i = first;
+        int j = first + count - 1;
+        while (i <= j) {
+            if (bin(centroids[order[i] * 3 + bestAxis], min, extent) < bestSplit) {
+                i++;
+            } else {
+                int swap = order[i];
+                order[i] = order[j];
+                order[j--] = swap;
+            }
+        }
+
+        int leftCount = i - first;
+        int left = nodesUsed;
+        nodesUsed += 2;
+
+        leftOrFirst[node] = left;
+        counts[node] = 0;
+
+        buildNode(left, first, leftCount, depth + 1);
+        buildNode(left + 1, i, count - leftCount, depth + 1);
+    }
+
+    private void binTriangles(int first, int count, int axis, float min, float extent) {
+        for (int bin = 0; bin < BINS; bin++) {
+            binCounts[bin] = 0;
+            emptyBounds(binBounds, bin);
+        }
+
+        for (int i = first; i < first + count; i++) {
+            int primitive = order[i];
+            int bin = bin(centroids[primitive * 3 + axis], min, extent);
+            binCounts[bin]++;
+            growBounds(binBounds, bin, primitiveBounds, primitive);
+        }
+    }
+
+    private static int bin(float centroid, float min, float extent) {
+        return Math.min(BINS - 1, (int) ((centroid - min) * BINS / extent));
+    }
+
+    static void emptyBounds(float[] bounds, int index) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[index * 6 + axis] = Float.POSITIVE_INFINITY;
+            bounds[index * 6 + 3 + axis] = Float.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static void grow(float[] bounds, int index, float x, float y, float z) {
+        int b = index * 6;
+        bounds[b] = Math.min(bounds[b], x);
+        bounds[b + 1] = Math.min(bounds[b + 1], y);
+        bounds[b + 2] = Math.min(bounds[b + 2], z);
+        bounds[b + 3] = Math.max(bounds[b + 3], x);
+        bounds[b + 4] = Math.max(bounds[b + 4], y);
+        bounds[b + 5] = Math.max(bounds[b + 5], z);
+    }
+
+    static void growBounds(float[] bounds, int index, float[] other, int otherIndex) {
+        int b = index * 6;
+        int o = otherIndex * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[b + axis] = Math.min(bounds[b + axis], other[o + axis]);
+            bounds[b + 3 + axis] = Math.max(bounds[b + 3 + axis], other[o + 3 + axis]);
+        }
+    }
+
+    private static float area(float[] bounds, int index) {
+        int b = index * 6;
+        float dx = bounds[b + 3] - bounds[b];
+        float dy = bounds[b + 4] - bounds[b + 1];
+        float dz = bounds[b + 5] - bounds[b + 2];
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+
+        return dx * dy + dy * dz + dz * dx;
+    }
+}
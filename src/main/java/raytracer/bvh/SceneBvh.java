@@ -0,0 +1,47 @@
+package raytracer.bvh;
+
+import org.joml.Vector3f;
+import raytracer.Mesh;
+import raytracer.Sphere;
+
+/**
+ * The top level of the two-level acceleration structure: a Bvh whose primitives are whole objects and spheres. Objects
+ * are numbered first, so primitive p is object p if p < meshes.length, and sphere p - meshes.length otherwise. Each
+ * object's own Bvh is the bottom level.
+ */
+public class SceneBvh {
+    private SceneBvh() {}
+
+    public static Bvh build(Mesh[] meshes, Sphere[] spheres) {
+        return BvhBuilder.build(primitiveBounds(meshes, spheres));
+    }
+
+    /**
+     * @return the bounds of every object followed by every sphere, for building or refitting
+     */
+    public static float[] primitiveBounds(Mesh[] meshes, Sphere[] spheres) {
+        float[] bounds = new float[(meshes.length + spheres.length) * 6];
+
+        for (int i = 0; i < meshes.length; i++) {
+            System.arraycopy(meshes[i].bounds(), 0, bounds, i * 6, 6);
+        }
+
+        for (int i = 0; i < spheres.length; i++) {
+            Vector3f center = spheres[i].center();
+            float radius = Math.abs(spheres[i].radius());
+            setBounds(bounds, meshes.length + i, center.x - radius, center.y - radius, center.z - radius, center.x + radius, center.y + radius, center.z + radius);
+        }
+
+        return bounds;
+    }
+
+    private static void setBounds(float[] bounds, int index, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int b = index * 6;
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+    }
+}
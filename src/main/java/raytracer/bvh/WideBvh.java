@@ -0,0 +1,277 @@
+package raytracer.bvh;
+
+import org.joml.Vector3f;
+import raytracer.cpu.BoxSoA;
+import raytracer.cpu.Intersections;
+import raytracer.cpu.PacketKernel;
+import raytracer.cpu.Ray;
+import raytracer.cpu.TriangleSoA;
+
+/**
+ * An 8-wide BVH with each child's bounds quantized to 8 bits per coordinate, relative to its parent. A node is 80 bytes
+ * for up to 8 children, 10 bytes a child against the 32 bytes of every node of a Bvh, and is laid out exactly like the
+ * WideBvhNode struct in raytracer.comp:
+ * <pre>
+ *  0  origin xyz         the parent's min bounds, as float bits
+ *  3  exponents          the x, y and z quantization step exponents in bytes 0 to 2, and in byte 3 a bit per internal child
+ *  4  child base         the node of the first internal child. Internal children are stored next to each other, in slot order
+ *  5  triangle base      the position of the first triangle of the first leaf child
+ *  6  counts             the triangle count of each leaf child, a byte a slot, 0 for internal children and empty slots
+ *  8  lo x, y and z      the quantized min bounds of each child, a byte a slot
+ * 14  hi x, y and z      the quantized max bounds of each child, a byte a slot
+ * </pre>
+ * The triangles of all of a node's leaf children are stored together, in slot order, so a leaf's first triangle is the
+ * triangle base plus the counts of the leaf slots before it.
+ * <p>
+ * Quantized bounds are conservative: min bounds are rounded down and max bounds up, checked with the same float
+ * arithmetic that decodes them, so a decoded box always contains the full precision one and no hit is ever culled.
+ */
+public class WideBvh {
+    public static final int WIDTH = 8;
+    public static final int NODE_INTS = 20;
+
+    static final int ORIGIN = 0;
+    static final int EXPONENTS = 3;
+    static final int CHILD_BASE = 4;
+    static final int TRIANGLE_BASE = 5;
+    static final int COUNTS = 6;
+    static final int LO = 8;
+    static final int HI = 14;
+
+    private final int[] nodes;
+    private final int nodeCount;
+    private final int[] primitiveOrder;
+    private final float[] rootBounds;
+
+    WideBvh(int[] nodes, int nodeCount, int[] primitiveOrder, float[] rootBounds) {
+        this.nodes = nodes;
+        this.nodeCount = nodeCount;
+        this.primitiveOrder = primitiveOrder;
+        this.rootBounds = rootBounds;
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return NODE_INTS ints for every node, in the layout described above
+     */
+    public int[] nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the full precision bounds of the root, min xyz followed by max xyz
+     */
+    public float[] rootBounds() {
+        return rootBounds;
+    }
+
+    /**
+     * @return the original primitive index of each primitive, in the order leaves refer to them
+     */
+    public int[] primitiveOrder() {
+        return primitiveOrder;
+    }
+
+    /**
+     * Reorders per-triangle data (3 ints per triangle, like indices or texture indices) into wide BVH order.
+     */
+    public int[] reorder(int[] perTriangle) {
+        int[] reordered = new int[primitiveOrder.length * 3];
+        for (int i = 0; i < primitiveOrder.length; i++) {
+            System.arraycopy(perTriangle, primitiveOrder[i] * 3, reordered, i * 3, 3);
+        }
+
+        return reordered;
+    }
+
+    /**
+     * @return a bit for each slot that holds a child
+     */
+    public int childMask(int node) {
+        int base = node * NODE_INTS;
+        int mask = nodes[base + EXPONENTS] >>> 24;
+        for (int slot = 0; slot < WIDTH; slot++) {
+            if (count(node, slot) > 0) {
+                mask |= 1 << slot;
+            }
+        }
+
+        return mask;
+    }
+
+    public boolean isInternal(int node, int slot) {
+        return (nodes[node * NODE_INTS + EXPONENTS] >>> 24 & 1 << slot) != 0;
+    }
+
+    /**
+     * @return the node of an internal child
+     */
+    public int child(int node, int slot) {
+        int internalBefore = nodes[node * NODE_INTS + EXPONENTS] >>> 24 & (1 << slot) - 1;
+        return nodes[node * NODE_INTS + CHILD_BASE] + Integer.bitCount(internalBefore);
+    }
+
+    /**
+     * @return the number of triangles in a leaf child, or 0 for internal children and empty slots
+     */
+    public int count(int node, int slot) {
+        return bits(nodes, node * NODE_INTS + COUNTS, slot);
+    }
+
+    /**
+     * @return the position in primitiveOrder() of a leaf child's first triangle
+     */
+    public int first(int node, int slot) {
+        int first = nodes[node * NODE_INTS + TRIANGLE_BASE];
+        for (int before = 0; before < slot; before++) {
+            first += count(node, before);
+        }
+
+        return first;
+    }
+
+    /**
+     * Decodes a child's bounds, which contain the full precision bounds it was quantized from.
+     * @param out receives min xyz followed by max xyz, at offset
+     */
+    public void childBounds(int node, int slot, float[] out, int offset) {
+        int base = node * NODE_INTS;
+        for (int axis = 0; axis < 3; axis++) {
+            float origin = Float.intBitsToFloat(nodes[base + ORIGIN + axis]);
+            float scale = scale(nodes[base + EXPONENTS] >>> axis * 8 & 0xFF);
+            out[offset + axis] = dequantize(origin, bits(nodes, base + LO + axis * 2, slot), scale);
+            out[offset + 3 + axis] = dequantize(origin, bits(nodes, base + HI + axis * 2, slot), scale);
+        }
+    }
+
+    /**
+     * @return 2 to the power of a biased exponent, like the exponent field of a float
+     */
+    static float scale(int biasedExponent) {
+        return Float.intBitsToFloat(biasedExponent << 23);
+    }
+
+    /**
+     * The one place bounds are decoded, so WideBvhBuilder can check its rounding with the same arithmetic. q * scale is
+     * exact, so this rounds once, like the shader whether or not it fuses the multiply and add.
+     */
+    static float dequantize(float origin, int q, float scale) {
+        return origin + q * scale;
+    }
+
+    /**
+     * @return byte slot of the two ints at index
+     */
+    private static int bits(int[] nodes, int index, int slot) {
+        return nodes[index + (slot >> 2)] >>> (slot & 3) * 8 & 0xFF;
+    }
+
+    /**
+     * Finds the closest hit like {@link Bvh#traverseLeaves}, testing each node's children as one packet. The stack holds
+     * a node and the children of it still to visit, so it only ever holds one entry per level. Whenever a node is taken
+     * off it, its remaining children are tested again against the closest hit so far, and the nearest is visited next.
+     * @param invDir 1 / ray.direction, per component
+     * @return the distance of the closest hit, or Intersections.MISS
+     */
+    public float traverseLeaves(Ray ray, Vector3f invDir, float tMin, float tMax, PacketKernel kernel, Bvh.LeafIntersector intersector) {
+        if (nodeCount == 0 || Intersections.hitBoundingBox(rootBounds[0], rootBounds[1], rootBounds[2],
+                rootBounds[3], rootBounds[4], rootBounds[5], ray.origin, invDir, tMin, tMax) == Intersections.MISS) {
+            return Intersections.MISS;
+        }
+
+        BoxSoA children = new BoxSoA(new float[WIDTH * 6]);
+        float[] decoded = new float[6];
+        float[] tEnter = new float[WIDTH];
+        int[] stack = new int[Bvh.STACK_SIZE];
+        int stackPtr = 0;
+
+        int node = 0;
+        int mask = childMask(0);
+        float closestSoFar = tMax;
+        boolean hitAnything = false;
+
+        while (true) {
+            if (mask == 0) {
+                if (stackPtr == 0) {
+                    break;
+                }
+
+                int entry = stack[--stackPtr];
+                node = entry >>> 8;
+                mask = entry & 0xFF;
+            }
+
+            for (int slot = 0; slot < WIDTH; slot++) {
+                if ((mask & 1 << slot) != 0) {
+                    childBounds(node, slot, decoded, 0);
+                    children.set(slot, decoded, 0);
+                } else {
+                    children.set(slot, null, 0);
+                }
+            }
+            kernel.hitBoxes(children, 0, WIDTH, ray.origin, invDir, tMin, closestSoFar, tEnter);
+
+            int nearest = -1;
+            int hits = 0;
+            for (int slot = 0; slot < WIDTH; slot++) {
+                if ((mask & 1 << slot) == 0 || tEnter[slot] == Intersections.MISS) {
+                    continue;
+                }
+
+                hits |= 1 << slot;
+                if (nearest == -1 || tEnter[slot] < tEnter[nearest]) {
+                    nearest = slot;
+                }
+            }
+
+            if (nearest == -1) {
+                mask = 0;
+                continue;
+            }
+
+            int remaining = hits & ~(1 << nearest);
+            if (remaining != 0) {
+                stack[stackPtr++] = node << 8 | remaining;
+            }
+
+            if (isInternal(node, nearest)) {
+                node = child(node, nearest);
+                mask = childMask(node);
+                continue;
+            }
+
+            float t = intersector.intersect(first(node, nearest), count(node, nearest), closestSoFar);
+            if (t != Intersections.MISS) {
+                closestSoFar = t;
+                hitAnything = true;
+            }
+            mask = 0;
+        }
+
+        return hitAnything ? closestSoFar : Intersections.MISS;
+    }
+
+    /**
+     * Like {@link Bvh#intersect(TriangleSoA, PacketKernel, Ray, Vector3f, float, float, float[])}.
+     * @param triangles the triangles in wide BVH order
+     * @return the index of the hit triangle in wide BVH order, or -1 if nothing was hit
+     */
+    public int intersect(TriangleSoA triangles, PacketKernel kernel, Ray ray, Vector3f invDir, float tMin, float tMax, float[] hit) {
+        int[] closestTriangle = {-1};
+
+        traverseLeaves(ray, invDir, tMin, tMax, kernel, (first, count, closestSoFar) -> {
+            int triangle = kernel.hitTriangles(triangles, first, count, ray, tMin, closestSoFar, hit);
+            if (triangle == -1) {
+                return Intersections.MISS;
+            }
+
+            closestTriangle[0] = triangle;
+            return hit[0];
+        });
+
+        return closestTriangle[0];
+    }
+}
@@ -0,0 +1,188 @@
+package raytracer.bvh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds a WideBvh by collapsing a binary Bvh: each wide node starts with its binary node's two children and keeps
+ * replacing the child with the largest surface area by that child's own two children until it has WIDTH children or
+ * only leaves are left. Leaves with more triangles than a count byte holds are split into halves with the same bounds.
+ */
+public class WideBvhBuilder {
+    /**
+     * The most triangles a leaf child's count byte holds.
+     */
+    public static final int MAX_LEAF_SIZE = 255;
+
+    /**
+     * A binary node, or a range of a leaf that was too big for one slot.
+     */
+    private record Child(int node, int first, int count, float[] bounds) {
+        boolean isLeaf() {
+            return count > 0 && count <= MAX_LEAF_SIZE;
+        }
+
+        float area() {
+            float dx = bounds[3] - bounds[0];
+            float dy = bounds[4] - bounds[1];
+            float dz = bounds[5] - bounds[2];
+            return dx * dy + dy * dz + dz * dx;
+        }
+    }
+
+    private record Pending(int wideNode, Child child) {}
+
+    private final Bvh bvh;
+    private int[] nodes;
+    private int nodesUsed;
+    private final int[] order;
+    private int trianglesUsed;
+
+    private WideBvhBuilder(Bvh bvh) {
+        this.bvh = bvh;
+        // every wide node but those of split leaves replaces at least one binary node, so this rarely has to grow
+        nodes = new int[Math.max(1, bvh.nodeCount()) * WideBvh.NODE_INTS];
+        order = new int[bvh.primitiveOrder().length];
+    }
+
+    public static WideBvh build(Bvh bvh) {
+        WideBvhBuilder builder = new WideBvhBuilder(bvh);
+        if (bvh.nodeCount() == 0) {
+            return new WideBvh(new int[0], 0, new int[0], new float[6]);
+        }
+
+        Child root = builder.binaryChild(0);
+        builder.nodesUsed = 1;
+
+        // breadth first, so each node's internal children can be given consecutive nodes when it's written
+        ArrayDeque<Pending> pending = new ArrayDeque<>();
+        pending.add(new Pending(0, root));
+        while (!pending.isEmpty()) {
+            Pending next = pending.poll();
+            builder.writeNode(next.wideNode(), next.child(), pending);
+        }
+
+        return new WideBvh(Arrays.copyOf(builder.nodes, builder.nodesUsed * WideBvh.NODE_INTS), builder.nodesUsed,
+                builder.order, root.bounds().clone());
+    }
+
+    private Child binaryChild(int node) {
+        float[] bounds = Arrays.copyOfRange(bvh.bounds(), node * 6, node * 6 + 6);
+        return bvh.isLeaf(node)
+                ? new Child(node, bvh.leftOrFirst(node), bvh.count(node), bounds)
+                : new Child(node, 0, 0, bounds);
+    }
+
+    private List<Child> expand(Child child) {
+        if (child.count() == 0) {
+            int left = bvh.leftOrFirst(child.node());
+            return List.of(binaryChild(left), binaryChild(left + 1));
+        }
+
+        int half = child.count() / 2;
+        return List.of(new Child(-1, child.first(), half, child.bounds()),
+                new Child(-1, child.first() + half, child.count() - half, child.bounds()));
+    }
+
+    private void writeNode(int wideNode, Child parent, ArrayDeque<Pending> pending) {
+        List<Child> children = new ArrayList<>();
+        children.add(parent);
+
+        while (children.size() < WideBvh.WIDTH) {
+            int largest = -1;
+            for (int i = 0; i < children.size(); i++) {
+                if (!children.get(i).isLeaf() && (largest == -1 || children.get(i).area() > children.get(largest).area())) {
+                    largest = i;
+                }
+            }
+
+            if (largest == -1) {
+                break;
+            }
+
+            children.addAll(expand(children.remove(largest)));
+        }
+
+        int base = wideNode * WideBvh.NODE_INTS;
+        float[] bounds = parent.bounds();
+        float[] scales = new float[3];
+        int exponents = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            int biasedExponent = exponent(bounds[axis], bounds[3 + axis]);
+            exponents |= biasedExponent << axis * 8;
+            scales[axis] = WideBvh.scale(biasedExponent);
+            nodes[base + WideBvh.ORIGIN + axis] = Float.floatToRawIntBits(bounds[axis]);
+        }
+
+        int internalMask = 0;
+        nodes[base + WideBvh.CHILD_BASE] = nodesUsed;
+        nodes[base + WideBvh.TRIANGLE_BASE] = trianglesUsed;
+
+        for (int slot = 0; slot < children.size(); slot++) {
+            Child child = children.get(slot);
+
+            for (int axis = 0; axis < 3; axis++) {
+                setByte(base + WideBvh.LO + axis * 2, slot, quantizeMin(bounds[axis], scales[axis], child.bounds()[axis]));
+                setByte(base + WideBvh.HI + axis * 2, slot, quantizeMax(bounds[axis], scales[axis], child.bounds()[3 + axis]));
+            }
+
+            if (child.isLeaf()) {
+                setByte(base + WideBvh.COUNTS, slot, child.count());
+                System.arraycopy(bvh.primitiveOrder(), child.first(), order, trianglesUsed, child.count());
+                trianglesUsed += child.count();
+            } else {
+                internalMask |= 1 << slot;
+                pending.add(new Pending(allocate(), child));
+            }
+        }
+
+        nodes[base + WideBvh.EXPONENTS] = exponents | internalMask << 24;
+    }
+
+    private int allocate() {
+        if ((nodesUsed + 1) * WideBvh.NODE_INTS > nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+
+        return nodesUsed++;
+    }
+
+    private void setByte(int index, int slot, int value) {
+        int shift = (slot & 3) * 8;
+        index += slot >> 2;
+        nodes[index] = nodes[index] & ~(0xFF << shift) | value << shift;
+    }
+
+    /**
+     * @return the smallest biased exponent whose step covers min to max in 255 steps
+     */
+    private static int exponent(float min, float max) {
+        // the smallest normal float's exponent, so scale() never makes a denormal
+        int biasedExponent = Math.max(1, Math.getExponent((max - min) / 255) + 127);
+        while (WideBvh.dequantize(min, 255, WideBvh.scale(biasedExponent)) < max) {
+            biasedExponent++;
+        }
+
+        return biasedExponent;
+    }
+
+    private static int quantizeMin(float origin, float scale, float min) {
+        int q = (int) Math.max(0, Math.min(255, Math.floor((min - origin) / scale)));
+        while (q > 0 && WideBvh.dequantize(origin, q, scale) > min) {
+            q--;
+        }
+
+        return q;
+    }
+
+    private static int quantizeMax(float origin, float scale, float max) {
+        int q = (int) Math.max(0, Math.min(255, Math.ceil((max - origin) / scale)));
+        while (q < 255 && WideBvh.dequantize(origin, q, scale) < max) {
+            q++;
+        }
+
+        return q;
+    }
+}
@@ -0,0 +1,55 @@
+package raytracer.checkpoint;
+
+import com.google.gson.Gson;
+import raytracer.Scene;
+import raytracer.config.RenderConfig;
+import raytracer.distributed.SceneCodec;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Everything needed to carry on a progressive render exactly where it stopped. Every sample is seeded from its frame
+ * counter alone, so the frame count is also the position of the random number generator.
+ * @param configHash see {@link #hash}
+ * @param frameCount the frame counter the next frame renders with
+ * @param elapsedSeconds how long the render has been running, for time based savepoints
+ * @param full the running average, RGBA, bottom row first
+ * @param half the average of every other sample, RGB, with the per pixel sample count in alpha
+ * @param albedo the average first-hit albedo, for the denoiser
+ * @param normalDepth the average first-hit shading normal and distance, for the denoiser
+ */
+public record Checkpoint(long configHash, int frameCount, double elapsedSeconds, int width, int height,
+                         float[] full, float[] half, float[] albedo, float[] normalDepth) {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Hashes everything that affects the image: the quality, camera and adaptive sampling settings and the whole scene.
+     * Savepoints, backend and the like can change between runs without invalidating a checkpoint.
+     */
+    public static long hash(RenderConfig config, Scene scene) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            out.write(GSON.toJson(config.quality()).getBytes(StandardCharsets.UTF_8));
+            out.write(GSON.toJson(config.camera()).getBytes(StandardCharsets.UTF_8));
+            out.write(GSON.toJson(config.adaptiveSampling()).getBytes(StandardCharsets.UTF_8));
+            SceneCodec.write(out, scene);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to hash the scene", e);
+        }
+
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+}
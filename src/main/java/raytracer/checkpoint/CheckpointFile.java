@@ -0,0 +1,217 @@
+package raytracer.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes checkpoints. The images are split into chunks of {@link #CHUNK_FLOATS} floats that are compressed
+ * in parallel. Each chunk is byte-shuffled first, storing the first byte of every float, then the second and so on,
+ * since the exponent bytes of neighbouring pixels are nearly always the same and deflate well once they're adjacent.
+ * <p>
+ * File layout, big endian:
+ * <pre>
+ * int    magic            'RCKP'
+ * int    format version
+ * long   config hash
+ * int    frame count
+ * double elapsed seconds
+ * int    width
+ * int    height
+ * four images, full, half, albedo then normal and depth:
+ *   int  chunk count
+ *   per chunk: int float count, int compressed byte count, bytes
+ * </pre>
+ */
+final class CheckpointFile {
+    private static final int MAGIC = 0x52434B50;  // "RCKP"
+    private static final int VERSION = 2;
+    private static final int CHUNK_FLOATS = 1 << 20;
+
+    private CheckpointFile() {}
+
+    /**
+     * Writes the checkpoint next to the path and moves it into place, so a crash mid-write leaves the previous
+     * checkpoint intact.
+     */
+    static void write(Path path, Checkpoint checkpoint) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(checkpoint.configHash());
+                out.writeInt(checkpoint.frameCount());
+                out.writeDouble(checkpoint.elapsedSeconds());
+                out.writeInt(checkpoint.width());
+                out.writeInt(checkpoint.height());
+
+                writeImage(out, checkpoint.full());
+                writeImage(out, checkpoint.half());
+                writeImage(out, checkpoint.albedo());
+                writeImage(out, checkpoint.normalDepth());
+
+                out.flush();
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static Checkpoint read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " checkpoint: " + path);
+            }
+
+            long configHash = in.readLong();
+            int frameCount = in.readInt();
+            double elapsedSeconds = in.readDouble();
+            int width = in.readInt();
+            int height = in.readInt();
+
+            int floats = Math.multiplyExact(Math.multiplyExact(width, height), 4);
+            float[] full = readImage(in, floats);
+            float[] half = readImage(in, floats);
+            float[] albedo = readImage(in, floats);
+            float[] normalDepth = readImage(in, floats);
+
+            return new Checkpoint(configHash, frameCount, elapsedSeconds, width, height, full, half, albedo, normalDepth);
+        }
+    }
+
+    private static void writeImage(DataOutputStream out, float[] image) throws IOException {
+        int chunks = (image.length + CHUNK_FLOATS - 1) / CHUNK_FLOATS;
+
+        byte[][] compressed = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> compress(image, chunk * CHUNK_FLOATS, Math.min(CHUNK_FLOATS, image.length - chunk * CHUNK_FLOATS)))
+                .toArray(byte[][]::new);
+
+        out.writeInt(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            out.writeInt(Math.min(CHUNK_FLOATS, image.length - chunk * CHUNK_FLOATS));
+            out.writeInt(compressed[chunk].length);
+            out.write(compressed[chunk]);
+        }
+    }
+
+    private static float[] readImage(DataInputStream in, int floats) throws IOException {
+        int chunks = in.readInt();
+        int[] counts = new int[chunks];
+        byte[][] compressed = new byte[chunks][];
+
+        int total = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            counts[chunk] = in.readInt();
+            compressed[chunk] = new byte[in.readInt()];
+            in.readFully(compressed[chunk]);
+            total += counts[chunk];
+        }
+
+        if (total != floats) {
+            throw new IOException("Checkpoint image has " + total + " floats, expected " + floats);
+        }
+
+        float[] image = new float[floats];
+        int[] offsets = new int[chunks];
+        for (int chunk = 1; chunk < chunks; chunk++) {
+            offsets[chunk] = offsets[chunk - 1] + counts[chunk - 1];
+        }
+
+        try {
+            IntStream.range(0, chunks).parallel().forEach(chunk -> decompress(compressed[chunk], image, offsets[chunk], counts[chunk]));
+        } catch (IllegalStateException e) {
+            throw new IOException("Corrupt checkpoint image", e);
+        }
+
+        return image;
+    }
+
+    private static byte[] compress(float[] image, int offset, int count) {
+        byte[] shuffled = new byte[count * Float.BYTES];
+        for (int i = 0; i < count; i++) {
+            int bits = Float.floatToRawIntBits(image[offset + i]);
+            shuffled[i] = (byte) (bits >>> 24);
+            shuffled[count + i] = (byte) (bits >>> 16);
+            shuffled[2 * count + i] = (byte) (bits >>> 8);
+            shuffled[3 * count + i] = (byte) bits;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(shuffled);
+            deflater.finish();
+
+            byte[] buffer = new byte[shuffled.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void decompress(byte[] compressed, float[] image, int offset, int count) {
+        byte[] shuffled = new byte[count * Float.BYTES];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < shuffled.length && !inflater.finished()) {
+                int read = inflater.inflate(shuffled, length, shuffled.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+
+            if (length != shuffled.length) {
+                throw new IllegalStateException("Chunk decompressed to " + length + " bytes, expected " + shuffled.length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+
+        for (int i = 0; i < count; i++) {
+            int bits = (shuffled[i] & 0xFF) << 24
+                    | (shuffled[count + i] & 0xFF) << 16
+                    | (shuffled[2 * count + i] & 0xFF) << 8
+                    | (shuffled[3 * count + i] & 0xFF);
+            image[offset + i] = Float.intBitsToFloat(bits);
+        }
+    }
+}
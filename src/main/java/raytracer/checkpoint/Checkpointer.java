@@ -0,0 +1,144 @@
+package raytracer.checkpoint;
+
+import raytracer.config.CheckpointConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Writes checkpoints in the background every {@link CheckpointConfig#intervalSeconds()} and loads them for --resume.
+ * A checkpoint that comes due while the previous one is still being written is skipped rather than queued, so slow
+ * disks never pile up copies of the image.
+ */
+public class Checkpointer implements AutoCloseable {
+    private final CheckpointConfig config;
+    private final Path path;
+    private final long configHash;
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private double nextSaveSeconds = Double.NaN;
+
+    /**
+     * @param configHash see {@link Checkpoint#hash}
+     */
+    public Checkpointer(CheckpointConfig config, long configHash) {
+        this.config = config;
+        this.path = Path.of(config.path());
+        this.configHash = configHash;
+    }
+
+    public long configHash() {
+        return configHash;
+    }
+
+    /**
+     * @return whether a checkpoint should be saved now
+     */
+    public boolean due(double elapsedSeconds) {
+        if (!config.enabled()) {
+            return false;
+        }
+
+        if (Double.isNaN(nextSaveSeconds)) {
+            nextSaveSeconds = elapsedSeconds + config.intervalSeconds();
+        }
+
+        return elapsedSeconds >= nextSaveSeconds && !writing.get();
+    }
+
+    /**
+     * Writes a checkpoint in the background, unless checkpoints are disabled. The checkpoint's images must not be
+     * modified afterwards.
+     */
+    public void save(Checkpoint checkpoint) {
+        if (!config.enabled() || !writing.compareAndSet(false, true)) {
+            return;
+        }
+
+        nextSaveSeconds = checkpoint.elapsedSeconds() + config.intervalSeconds();
+
+        executor.execute(() -> {
+            try {
+                CheckpointFile.write(path, checkpoint);
+            } catch (IOException e) {
+                System.err.println("Failed to write checkpoint " + path + ": " + e.getMessage());
+            } finally {
+                writing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes a checkpoint once the one being written in the background, if any, is done, and waits for it. For the end
+     * of a render, so the last frames are never lost.
+     * @param checkpoint called on this thread, and only if checkpoints are enabled, since taking one reads back the image
+     */
+    public void saveNow(Supplier<Checkpoint> checkpoint) {
+        if (!config.enabled()) {
+            return;
+        }
+
+        Checkpoint taken = checkpoint.get();
+        try {
+            executor.submit(() -> {
+                CheckpointFile.write(path, taken);
+                return null;
+            }).get();
+        } catch (ExecutionException e) {
+            System.err.println("Failed to write checkpoint " + path + ": " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the checkpoint to resume from, or null if there isn't one yet
+     * @throws IllegalStateException if the checkpoint was rendered with a different config or scene
+     */
+    public Checkpoint load(int width, int height) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        Checkpoint checkpoint;
+        try {
+            checkpoint = CheckpointFile.read(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read checkpoint " + path, e);
+        }
+
+        if (checkpoint.configHash() != configHash) {
+            throw new IllegalStateException("Checkpoint " + path + " was rendered with a different config or scene");
+        } else if (checkpoint.width() != width || checkpoint.height() != height) {
+            throw new IllegalStateException("Checkpoint " + path + " is " + checkpoint.width() + "x" + checkpoint.height() + ", expected " + width + "x" + height);
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Waits for the checkpoint being written, if any.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,24 +1,49 @@
 package raytracer.compute;
 
+import raytracer.buffers.BufferLayouts;
+import raytracer.config.AdaptiveSampling;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 import static org.lwjgl.opengl.GL43.*;
 
+/**
+ * Runs raytracer.comp, compiled for the scene's {@link ShaderFeatures} so it has no code for materials, textures or
+ * primitive types the scene doesn't use. Each variant is compiled the first time it's used and kept, so switching back
+ * to a variant, like when a material is edited and then reverted, is free.
+ */
 public class RayTracerCompute {
-    private final int program;
+    private final String source;
+    private final Map<ShaderFeatures, Integer> programs = new HashMap<>();
+    private int program;
+
+    public RayTracerCompute(ShaderFeatures features) {
+        source = readSource("src/main/resources/raytracer.comp");
+        BufferLayouts.verify(source);
+        use(features);
+    }
 
-    public RayTracerCompute() {
+    /**
+     * Switches to the variant for the features, compiling it if it hasn't been used before.
+     */
+    public void use(ShaderFeatures features) {
+        program = programs.computeIfAbsent(features, key -> compile(ShaderPreprocessor.preprocess(source, key.defines())));
+    }
+
+    private static int compile(String source) {
         int computeShader = glCreateShader(GL_COMPUTE_SHADER);
-        glShaderSource(computeShader, readSource("src/main/resources/raytracer.comp"));
+        glShaderSource(computeShader, source);
         glCompileShader(computeShader);
 
         if (glGetShaderi(computeShader, GL_COMPILE_STATUS) == GL_FALSE) {
             throw new IllegalStateException("Failed to compile compute shader:\n" + glGetShaderInfoLog(computeShader));
         }
 
-        program = glCreateProgram();
+        int program = glCreateProgram();
         glAttachShader(program, computeShader);
         glLinkProgram(program);
 
@@ -27,16 +52,18 @@ public class RayTracerCompute {
         }
 
         glDeleteShader(computeShader);
+        return program;
     }
 
-    public void compute(int width, int height, int numObjects, int numSpheres, int frameCounter, int maxBounces) {
+    public void compute(int width, int height, int frameCounter, int maxBounces, AdaptiveSampling adaptiveSampling) {
         glUseProgram(program);
 
         // set uniforms
-        glUniform1i(glGetUniformLocation(program, "num_objects"), numObjects);
-        glUniform1i(glGetUniformLocation(program, "num_spheres"), numSpheres);
         glUniform1i(glGetUniformLocation(program, "frame_counter"), frameCounter);
         glUniform1i(glGetUniformLocation(program, "max_bounces"), maxBounces);
+        glUniform1i(glGetUniformLocation(program, "adaptive_sampling"), adaptiveSampling.enabled() ? 1 : 0);
+        glUniform1f(glGetUniformLocation(program, "adaptive_threshold"), adaptiveSampling.threshold());
+        glUniform1i(glGetUniformLocation(program, "adaptive_min_samples"), adaptiveSampling.minSamples());
         glUniform1i(glGetUniformLocation(program, "texture_diffuse"), 0);
         glUniform1i(glGetUniformLocation(program, "texture_normals"), 1);
         glUniform1i(glGetUniformLocation(program, "texture_parallax"), 2);
@@ -50,7 +77,10 @@ public class RayTracerCompute {
     }
 
     public void cleanup() {
-        glDeleteProgram(program);
+        for (int variant : programs.values()) {
+            glDeleteProgram(variant);
+        }
+        programs.clear();
     }
 
     private static String readSource(String path) {
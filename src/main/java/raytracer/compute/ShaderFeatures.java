@@ -0,0 +1,59 @@
+package raytracer.compute;
+
+import raytracer.Material;
+import raytracer.Scene;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What raytracer.comp needs to know about a scene to compile a kernel for it, and nothing else, so scenes that differ
+ * only in things the kernel reads from buffers share a variant. Equal features mean the same shader source.
+ * @param objectCount the number of meshes, which the kernel loops over and tells apart from spheres by index
+ * @param sphereCount the number of spheres
+ * @param diffuse whether any material is diffuse
+ * @param metal whether any material is metal
+ * @param dielectric whether any material is glass
+ * @param textures whether any material samples a texture set instead of its albedo
+ * @param normalsTwoChannel whether the normal maps only store x and y, as BC5 does, so the kernel rebuilds z
+ */
+public record ShaderFeatures(int objectCount, int sphereCount, boolean diffuse, boolean metal, boolean dielectric,
+                             boolean textures, boolean normalsTwoChannel) {
+    public static ShaderFeatures of(Scene scene, boolean normalsTwoChannel) {
+        boolean diffuse = false;
+        boolean metal = false;
+        boolean dielectric = false;
+        boolean textures = false;
+
+        for (Material material : scene.materials()) {
+            diffuse |= material.type() == Material.DIFFUSE;
+            metal |= material.type() == Material.METAL;
+            dielectric |= material.type() == Material.DIELECTRIC;
+            textures |= material.textureId() != -1;
+        }
+
+        return new ShaderFeatures(scene.meshes().length, scene.spheres().length, diffuse, metal, dielectric,
+                textures && scene.diffuseTextures().length > 0, textures && normalsTwoChannel);
+    }
+
+    /**
+     * @return the defines raytracer.comp is compiled with, in a fixed order. Flags are 0 or 1.
+     */
+    public Map<String, String> defines() {
+        Map<String, String> defines = new LinkedHashMap<>();
+        defines.put("NUM_OBJECTS", Integer.toString(objectCount));
+        defines.put("NUM_SPHERES", Integer.toString(sphereCount));
+        defines.put("MATERIAL_DIFFUSE", flag(diffuse));
+        defines.put("MATERIAL_METAL", flag(metal));
+        defines.put("MATERIAL_DIELECTRIC", flag(dielectric));
+        defines.put("MATERIAL_TYPE_COUNT", Integer.toString((diffuse ? 1 : 0) + (metal ? 1 : 0) + (dielectric ? 1 : 0)));
+        defines.put("TEXTURES", flag(textures));
+        defines.put("NORMALS_TWO_CHANNEL", flag(normalsTwoChannel));
+
+        return defines;
+    }
+
+    private static String flag(boolean value) {
+        return value ? "1" : "0";
+    }
+}
@@ -0,0 +1,45 @@
+package raytracer.compute;
+
+import java.util.Map;
+
+/**
+ * Specializes GLSL source by defining macros right after its #version line. Pure text, so variants can be generated
+ * and inspected without a GL context.
+ */
+public final class ShaderPreprocessor {
+    private ShaderPreprocessor() {}
+
+    /**
+     * @param defines macro names and their values, defined in iteration order
+     * @return the source with the defines after #version, followed by a #line directive so compiler errors still point
+     *         at the right line of the original file
+     * @throws IllegalArgumentException if the source doesn't start with a #version line, or a name isn't a valid
+     *                                  identifier
+     */
+    public static String preprocess(String source, Map<String, String> defines) {
+        int versionEnd = source.indexOf('\n');
+        if (!source.startsWith("#version") || versionEnd == -1) {
+            throw new IllegalArgumentException("Shader source must start with a #version line");
+        }
+
+        StringBuilder result = new StringBuilder(source.length() + 32 * defines.size());
+        result.append(source, 0, versionEnd + 1);
+
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            if (!define.getKey().matches("[A-Za-z_][A-Za-z0-9_]*")) {
+                throw new IllegalArgumentException("Not a valid macro name: " + define.getKey());
+            }
+            if (define.getValue().contains("\n")) {
+                throw new IllegalArgumentException("Macro " + define.getKey() + " has a multi-line value");
+            }
+
+            result.append("#define ").append(define.getKey()).append(' ').append(define.getValue()).append('\n');
+        }
+
+        // the line after #version is line 2 of the original file
+        result.append("#line 2\n");
+        result.append(source, versionEnd + 1, source.length());
+
+        return result.toString();
+    }
+}
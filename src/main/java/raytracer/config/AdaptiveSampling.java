@@ -0,0 +1,12 @@
+package raytracer.config;
+
+/**
+ * Stops sampling blocks of pixels once their noise estimate drops below a threshold.
+ * @param threshold the error below which a pixel counts as converged, see raytracer.sampling.SampleMask#pixelError
+ * @param minSamples every pixel gets at least this many samples before it can count as converged
+ */
+public record AdaptiveSampling(boolean enabled, float threshold, int minSamples) {
+    public static AdaptiveSampling disabled() {
+        return new AdaptiveSampling(false, 0, 0);
+    }
+}
@@ -0,0 +1,18 @@
+package raytracer.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public enum Backend {
+    /**
+     * Renders with raytracer.comp. Needs an OpenGL 4.5 context.
+     */
+    @SerializedName("gpu") GPU,
+    /**
+     * Renders headlessly on all available cores with raytracer.cpu.
+     */
+    @SerializedName("cpu") CPU,
+    /**
+     * Splits the samples between worker processes that render them like the CPU backend, see raytracer.distributed.
+     */
+    @SerializedName("distributed") DISTRIBUTED
+}
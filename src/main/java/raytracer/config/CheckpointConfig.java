@@ -0,0 +1,11 @@
+package raytracer.config;
+
+/**
+ * @param path where the checkpoint is written, and read from with --resume
+ * @param intervalSeconds how often to write a checkpoint while rendering. One is always written on exit.
+ */
+public record CheckpointConfig(boolean enabled, String path, float intervalSeconds) {
+    public static CheckpointConfig disabled() {
+        return new CheckpointConfig(false, "render.checkpoint", 600);
+    }
+}
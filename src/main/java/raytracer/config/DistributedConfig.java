@@ -0,0 +1,14 @@
+package raytracer.config;
+
+/**
+ * @param host the address the coordinator listens on. 0.0.0.0 accepts workers from other machines.
+ * @param port the port the coordinator listens on
+ * @param localWorkers how many worker processes the coordinator starts on this machine
+ * @param samplesPerRange how many samples a worker renders before sending them back
+ * @param timeoutSeconds a worker that takes longer than this to send back a range counts as lost
+ */
+public record DistributedConfig(String host, int port, int localWorkers, int samplesPerRange, int timeoutSeconds) {
+    public static DistributedConfig defaults() {
+        return new DistributedConfig("127.0.0.1", 7420, 2, 4, 300);
+    }
+}
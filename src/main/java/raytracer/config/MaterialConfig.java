@@ -0,0 +1,31 @@
+package raytracer.config;
+
+import raytracer.Material;
+
+/**
+ * @param type "diffuse", "metal" or "dielectric"
+ * @param emissionColor defaults to black
+ * @param fuzz how rough metal is
+ * @param refractionIndex for dielectrics
+ * @param specularProb the probability metal reflects specularly
+ * @param textureSet the name of the texture set to sample instead of the albedo, if any
+ */
+public record MaterialConfig(String name, String type, float[] albedo, float[] emissionColor, float emissionStrength,
+                             float fuzz, float refractionIndex, float specularProb, String textureSet) {
+    public float[] emissionColor() {
+        return emissionColor == null ? new float[3] : emissionColor;
+    }
+
+    /**
+     * @return the type as one of the {@link Material} constants
+     * @throws IllegalArgumentException if it's none of them
+     */
+    public int typeId() {
+        return switch (type == null ? "diffuse" : type) {
+            case "diffuse" -> Material.DIFFUSE;
+            case "metal" -> Material.METAL;
+            case "dielectric" -> Material.DIELECTRIC;
+            default -> throw new IllegalArgumentException("Material " + name + " has unknown type " + type);
+        };
+    }
+}
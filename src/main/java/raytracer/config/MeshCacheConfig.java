@@ -0,0 +1,11 @@
+package raytracer.config;
+
+/**
+ * @param directory where cached meshes are stored
+ * @param maxSizeMb the least recently used meshes are evicted once the cache grows past this
+ */
+public record MeshCacheConfig(boolean enabled, String directory, int maxSizeMb) {
+    public static MeshCacheConfig defaults() {
+        return new MeshCacheConfig(true, ".mesh-cache", 1024);
+    }
+}
@@ -0,0 +1,22 @@
+package raytracer.config;
+
+/**
+ * An OBJ file placed in the scene. The same file can be placed any number of times; it is only loaded once.
+ * @param material the name of the material every triangle uses
+ * @param translation defaults to none
+ * @param rotation in degrees around x, y and z, applied in that order. Defaults to none.
+ * @param scale defaults to 1
+ */
+public record MeshConfig(String path, String material, float[] translation, float[] rotation, float[] scale) {
+    public float[] translation() {
+        return translation == null ? new float[3] : translation;
+    }
+
+    public float[] rotation() {
+        return rotation == null ? new float[3] : rotation;
+    }
+
+    public float[] scale() {
+        return scale == null ? new float[]{1, 1, 1} : scale;
+    }
+}
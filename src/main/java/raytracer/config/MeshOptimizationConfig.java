@@ -0,0 +1,15 @@
+package raytracer.config;
+
+/**
+ * Welds, reorders and optionally simplifies every OBJ as it is loaded, see raytracer.obj.ObjOptimizer.
+ * @param enabled whether meshes are welded and reordered at all
+ * @param lods how many levels of detail to build, counting the full detail one. 1 never simplifies.
+ * @param lodRatio the fraction of the previous level's triangles each level aims for
+ * @param maxPixelError each placement of a mesh uses the coarsest level whose error, projected onto the image from the
+ *                      camera's origin, is at most this many pixels
+ */
+public record MeshOptimizationConfig(boolean enabled, int lods, float lodRatio, float maxPixelError) {
+    public static MeshOptimizationConfig defaults() {
+        return new MeshOptimizationConfig(true, 1, 0.5f, 0.5f);
+    }
+}
@@ -0,0 +1,15 @@
+package raytracer.config;
+
+/**
+ * @param path the file the metrics are written to. It is replaced in one step, so readers never see half a file.
+ * @param intervalSeconds how often to write the metrics while running. They are always written on exit.
+ */
+public record MetricsConfig(boolean enabled, String path, MetricsFormat format, float intervalSeconds) {
+    public static MetricsConfig disabled() {
+        return new MetricsConfig(false, "metrics.json", MetricsFormat.JSON, 10);
+    }
+
+    public MetricsFormat format() {
+        return format == null ? MetricsFormat.JSON : format;
+    }
+}
@@ -0,0 +1,14 @@
+package raytracer.config;
+
+import com.google.gson.annotations.SerializedName;
+
+public enum MetricsFormat {
+    /**
+     * Counters, and per histogram its count, mean, quantiles and non-empty buckets in milliseconds.
+     */
+    @SerializedName("json") JSON,
+    /**
+     * The Prometheus text exposition format, in seconds, for a node exporter's textfile collector to pick up.
+     */
+    @SerializedName("prometheus") PROMETHEUS
+}
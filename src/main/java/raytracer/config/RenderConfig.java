@@ -7,7 +7,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 
 
-public record RenderConfig(Savepoint[] savepoints, RenderQuality quality, Camera camera) {
+public record RenderConfig(Savepoint[] savepoints, RenderQuality quality, Camera camera, Backend backend, MeshCacheConfig meshCache, AdaptiveSampling adaptiveSampling, DistributedConfig distributed, CheckpointConfig checkpoint, TextureCacheConfig textureCache, SceneConfig scene, MetricsConfig metrics, MeshOptimizationConfig meshOptimization) {
 
     public static RenderConfig fromFile(String filename) {
         try {
@@ -19,4 +19,49 @@ public record RenderConfig(Savepoint[] savepoints, RenderQuality quality, Camera
         }
     }
 
+    /**
+     * @return the backend to render with. Defaults to the GPU if the config does not specify one.
+     */
+    public Backend backend() {
+        return backend == null ? Backend.GPU : backend;
+    }
+
+    public MeshCacheConfig meshCache() {
+        return meshCache == null ? MeshCacheConfig.defaults() : meshCache;
+    }
+
+    public AdaptiveSampling adaptiveSampling() {
+        return adaptiveSampling == null ? AdaptiveSampling.disabled() : adaptiveSampling;
+    }
+
+    public DistributedConfig distributed() {
+        return distributed == null ? DistributedConfig.defaults() : distributed;
+    }
+
+    public CheckpointConfig checkpoint() {
+        return checkpoint == null ? CheckpointConfig.disabled() : checkpoint;
+    }
+
+    public TextureCacheConfig textureCache() {
+        return textureCache == null ? TextureCacheConfig.defaults() : textureCache;
+    }
+
+    public MetricsConfig metrics() {
+        return metrics == null ? MetricsConfig.disabled() : metrics;
+    }
+
+    public MeshOptimizationConfig meshOptimization() {
+        return meshOptimization == null ? MeshOptimizationConfig.defaults() : meshOptimization;
+    }
+
+    /**
+     * @throws IllegalStateException if the config has no scene section
+     */
+    public SceneConfig scene() {
+        if (scene == null) {
+            throw new IllegalStateException("The config has no scene section");
+        }
+
+        return scene;
+    }
 }
@@ -4,12 +4,21 @@ public class Savepoint {
     private final String path;
     private final float time;
     private final String unit;
+    /**
+     * Whether to run the image through raytracer.denoise.Denoiser before saving it.
+     */
+    private final boolean denoise;
     private boolean saved;
 
     public Savepoint(String path, float time, String unit) {
+        this(path, time, unit, false);
+    }
+
+    public Savepoint(String path, float time, String unit, boolean denoise) {
         this.path = path;
         this.time = time;
         this.unit = unit;
+        this.denoise = denoise;
 
         this.saved = false;
     }
@@ -18,10 +27,18 @@ public class Savepoint {
         return path;
     }
 
+    public boolean denoise() {
+        return denoise;
+    }
+
     public void markSaved() {
         saved = true;
     }
 
+    public boolean isSaved() {
+        return saved;
+    }
+
     public boolean readyToSave(float currentTime, int frameCount) {
         if (saved) {
             return false;
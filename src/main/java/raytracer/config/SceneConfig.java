@@ -0,0 +1,23 @@
+package raytracer.config;
+
+/**
+ * Everything that is rendered, described by name: materials refer to texture sets, and meshes and spheres refer to
+ * materials. The order of the materials and texture sets is the order of their indices in the GPU buffers.
+ */
+public record SceneConfig(TextureSetConfig[] textureSets, MaterialConfig[] materials, MeshConfig[] meshes, SphereConfig[] spheres) {
+    public TextureSetConfig[] textureSets() {
+        return textureSets == null ? new TextureSetConfig[0] : textureSets;
+    }
+
+    public MaterialConfig[] materials() {
+        return materials == null ? new MaterialConfig[0] : materials;
+    }
+
+    public MeshConfig[] meshes() {
+        return meshes == null ? new MeshConfig[0] : meshes;
+    }
+
+    public SphereConfig[] spheres() {
+        return spheres == null ? new SphereConfig[0] : spheres;
+    }
+}
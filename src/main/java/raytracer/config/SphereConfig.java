@@ -0,0 +1,7 @@
+package raytracer.config;
+
+/**
+ * @param material the name of the sphere's material
+ */
+public record SphereConfig(float[] center, float radius, String material) {
+}
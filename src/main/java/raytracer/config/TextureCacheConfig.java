@@ -0,0 +1,13 @@
+package raytracer.config;
+
+/**
+ * @param directory where decoded textures are stored
+ * @param maxSizeMb the least recently used textures are evicted once the cache grows past this
+ * @param compress whether the GPU backend stores its atlases block compressed: BC1 for diffuse, BC5 for normals and
+ *                 BC4 for height. The compressed pages are cached in the same directory.
+ */
+public record TextureCacheConfig(boolean enabled, String directory, int maxSizeMb, boolean compress) {
+    public static TextureCacheConfig defaults() {
+        return new TextureCacheConfig(true, ".texture-cache", 4096, true);
+    }
+}
@@ -0,0 +1,10 @@
+package raytracer.config;
+
+/**
+ * The maps one textured material samples. Any but the diffuse map can be left out, in which case the surface is flat.
+ * @param diffuse path to the color map
+ * @param normal path to the tangent space normal map
+ * @param parallax path to the depth map
+ */
+public record TextureSetConfig(String name, String diffuse, String normal, String parallax) {
+}
@@ -0,0 +1,53 @@
+package raytracer.cpu;
+
+/**
+ * Axis aligned boxes laid out for {@link PacketKernel}s, one array per bound, padded like {@link TriangleSoA}. The
+ * padding boxes are empty: every bound is at positive infinity, which every ray misses. (A box with min above max
+ * would not do, since the slab test swaps each axis's bounds.)
+ */
+public class BoxSoA {
+    final float[] minX, minY, minZ;
+    final float[] maxX, maxY, maxZ;
+    private final int count;
+
+    /**
+     * @param bounds min xyz followed by max xyz for every box
+     */
+    public BoxSoA(float[] bounds) {
+        count = bounds.length / 6;
+        int length = count + TriangleSoA.PADDING;
+
+        minX = new float[length];
+        minY = new float[length];
+        minZ = new float[length];
+        maxX = new float[length];
+        maxY = new float[length];
+        maxZ = new float[length];
+
+        for (int i = 0; i < length; i++) {
+            set(i, i < count ? bounds : null, i * 6);
+        }
+    }
+
+    /**
+     * @param bounds min xyz followed by max xyz, at offset. Null empties the box.
+     */
+    public void set(int box, float[] bounds, int offset) {
+        if (bounds == null) {
+            minX[box] = minY[box] = minZ[box] = Float.POSITIVE_INFINITY;
+            maxX[box] = maxY[box] = maxZ[box] = Float.POSITIVE_INFINITY;
+            return;
+        }
+
+        minX[box] = bounds[offset];
+        minY[box] = bounds[offset + 1];
+        minZ[box] = bounds[offset + 2];
+        maxX[box] = bounds[offset + 3];
+        maxY[box] = bounds[offset + 4];
+        maxZ[box] = bounds[offset + 5];
+    }
+
+    public int count() {
+        return count;
+    }
+}
@@ -0,0 +1,66 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+import raytracer.config.Camera;
+
+/**
+ * A port of camera_init and camera_get_ray in raytracer.comp.
+ */
+public class CpuCamera {
+    private final Vector3f origin;
+    private final float defocusAngle;
+    private final Vector3f defocusDiskU;
+    private final Vector3f defocusDiskV;
+    private final Vector3f pixel00Loc;
+    private final Vector3f pixelDeltaU;
+    private final Vector3f pixelDeltaV;
+
+    public CpuCamera(Camera camera, int width, int height) {
+        origin = new Vector3f(camera.origin());
+        Vector3f lookAt = new Vector3f(camera.lookAt());
+        Vector3f up = new Vector3f(camera.up());
+        float focusDist = camera.focusDist();
+        defocusAngle = camera.defocusAngle();
+
+        float h = (float) Math.tan(camera.fov() / 2);
+        float viewportHeight = 2 * h * focusDist;
+        float viewportWidth = viewportHeight * width / height;
+
+        Vector3f w = origin.sub(lookAt, new Vector3f()).normalize();
+        Vector3f u = up.cross(w, new Vector3f()).normalize();
+        Vector3f v = w.cross(u, new Vector3f());
+
+        Vector3f viewportU = u.mul(viewportWidth, new Vector3f());
+        Vector3f viewportV = v.mul(-viewportHeight, new Vector3f());
+
+        pixelDeltaU = viewportU.div(width, new Vector3f());
+        pixelDeltaV = viewportV.div(height, new Vector3f());
+
+        Vector3f viewportUpperLeft = new Vector3f(origin)
+                .sub(w.mul(focusDist, new Vector3f()))
+                .sub(viewportU.div(2, new Vector3f()))
+                .sub(viewportV.div(2, new Vector3f()));
+
+        pixel00Loc = pixelDeltaU.add(pixelDeltaV, new Vector3f()).mul(0.5f).add(viewportUpperLeft);
+
+        // the shader converts the already converted defocus angle to radians a second time, so this does too
+        float defocusRadius = focusDist * (float) Math.tan(Math.toRadians(defocusAngle) / 2);
+        defocusDiskU = u.mul(defocusRadius, new Vector3f());
+        defocusDiskV = v.mul(defocusRadius, new Vector3f());
+    }
+
+    public Ray getRay(int x, int y, ShaderRandom random) {
+        Vector3f offset = random.square(new Vector3f());
+        Vector3f pixelSample = new Vector3f(pixel00Loc)
+                .add(pixelDeltaU.mul(x + offset.x, new Vector3f()))
+                .add(pixelDeltaV.mul(y + offset.y, new Vector3f()));
+
+        Vector3f rand = random.unitDisk(new Vector3f());
+        Vector3f rayOrigin = new Vector3f(origin);
+        if (defocusAngle > 0) {
+            rayOrigin.add(defocusDiskU.mul(rand.x, new Vector3f())).add(defocusDiskV.mul(rand.y, new Vector3f()));
+        }
+
+        return new Ray(rayOrigin, pixelSample.sub(rayOrigin).normalize());
+    }
+}
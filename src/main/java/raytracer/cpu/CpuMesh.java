@@ -0,0 +1,125 @@
+package raytracer.cpu;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import raytracer.Mesh;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+
+/**
+ * A mesh flattened into primitive arrays, mirroring the Object struct in raytracer.comp. Triangles are stored in BVH
+ * order, and again as a {@link TriangleSoA} that each BVH leaf's triangles are tested from as one packet.
+ */
+public class CpuMesh {
+    private final float[] vertices;
+    private final int[] indices;
+    private final float[] texCoords;
+    private final int[] texIndices;
+    private final int materialId;
+    private final float[] bounds;
+    private final Bvh bvh;
+    private final TriangleSoA triangles;
+    private final PacketKernel kernel;
+
+    public CpuMesh(Mesh mesh) {
+        this(mesh, PacketKernel.preferred());
+    }
+
+    public CpuMesh(Mesh mesh, PacketKernel kernel) {
+        this.kernel = kernel;
+        vertices = mesh.vertices();
+        texCoords = mesh.texCoords();
+        materialId = mesh.materialIndex();
+        bounds = mesh.bounds().clone();
+
+        bvh = BvhBuilder.build(vertices, mesh.indices());
+        indices = bvh.reorder(mesh.indices());
+        texIndices = mesh.texIndices().length == 0 ? mesh.texIndices() : bvh.reorder(mesh.texIndices());
+        triangles = new TriangleSoA(vertices, indices);
+    }
+
+    public float[] vertices() {
+        return vertices;
+    }
+
+    /**
+     * @return the triangle indices in BVH order
+     */
+    public int[] indices() {
+        return indices;
+    }
+
+    public Bvh bvh() {
+        return bvh;
+    }
+
+    public int triangleCount() {
+        return indices.length / 3;
+    }
+
+    /**
+     * @return min xyz followed by max xyz
+     */
+    public float[] bounds() {
+        return bounds;
+    }
+
+    /**
+     * Like hit_object, walking the BVH instead of testing every triangle. Assumes ray.direction is normalized.
+     * @param invDir 1 / ray.direction, per component
+     */
+    public boolean hit(Ray ray, Vector3f invDir, float tMin, float tMax, HitRecord rec) {
+        // the BVH's root node has the same bounds as the mesh, so it also does the bounding box test
+        float[] hit = new float[3];
+        int triangle = bvh.intersect(triangles, kernel, ray, invDir, tMin, tMax, hit);
+        if (triangle == -1) {
+            return false;
+        }
+
+        fillHitRecord(triangle, hit[0], hit[1], hit[2], ray, rec);
+        return true;
+    }
+
+    /**
+     * Fills in everything hit_triangle and hit_object record for a hit on the given triangle.
+     */
+    public void fillHitRecord(int triangle, float t, float u, float v, Ray ray, HitRecord rec) {
+        int i0 = indices[triangle * 3], i1 = indices[triangle * 3 + 1], i2 = indices[triangle * 3 + 2];
+        Vector3f v0 = new Vector3f(vertices[i0 * 3], vertices[i0 * 3 + 1], vertices[i0 * 3 + 2]);
+        Vector3f edge1 = new Vector3f(vertices[i1 * 3], vertices[i1 * 3 + 1], vertices[i1 * 3 + 2]).sub(v0);
+        Vector3f edge2 = new Vector3f(vertices[i2 * 3], vertices[i2 * 3 + 1], vertices[i2 * 3 + 2]).sub(v0);
+
+        rec.t = t;
+        ray.at(t, rec.p);
+        rec.materialId = materialId;
+        rec.setFaceNormal(ray, edge1.cross(edge2, new Vector3f()).normalize());
+        rec.triangleHit = true;
+
+        Vector2f uv0 = texCoord(triangle, 0);
+        Vector2f uv1 = texCoord(triangle, 1);
+        Vector2f uv2 = texCoord(triangle, 2);
+
+        // the barycentric coordinates of Möller–Trumbore are the same as the ones tri_barycentric recomputes
+        rec.uv.set(uv0).mul(1 - u - v).add(uv1.x * u, uv1.y * u).add(uv2.x * v, uv2.y * v);
+
+        Vector2f deltaUv1 = uv1.sub(uv0, new Vector2f());
+        Vector2f deltaUv2 = uv2.sub(uv0, new Vector2f());
+
+        float f = 1 / (deltaUv1.x * deltaUv2.y - deltaUv2.x * deltaUv1.y);
+        rec.tangent.set(edge1).mul(deltaUv2.y).sub(edge2.x * deltaUv1.y, edge2.y * deltaUv1.y, edge2.z * deltaUv1.y).mul(f).normalize();
+
+        // ensure the tangent space basis is orthagonal
+        float tangentDotNormal = rec.tangent.dot(rec.normal);
+        rec.tangent.sub(rec.normal.x * tangentDotNormal, rec.normal.y * tangentDotNormal, rec.normal.z * tangentDotNormal).normalize();
+        rec.normal.cross(rec.tangent, rec.bitangent);
+    }
+
+    private Vector2f texCoord(int triangle, int corner) {
+        if (texIndices.length == 0) {
+            return new Vector2f();
+        }
+
+        int index = texIndices[triangle * 3 + corner];
+        return new Vector2f(texCoords[index * 2], texCoords[index * 2 + 1]);
+    }
+}
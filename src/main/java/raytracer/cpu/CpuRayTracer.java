@@ -0,0 +1,186 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+import raytracer.Scene;
+import raytracer.checkpoint.Checkpoint;
+import raytracer.checkpoint.Checkpointer;
+import raytracer.config.RenderConfig;
+import raytracer.config.Savepoint;
+import raytracer.denoise.AuxiliaryImages;
+import raytracer.metrics.Metrics;
+import raytracer.output.SavepointWriter;
+import raytracer.sampling.FeatureAccumulator;
+import raytracer.sampling.SampleAccumulator;
+import raytracer.sampling.SampleMask;
+import raytracer.scheduler.Tile;
+import raytracer.scheduler.TileOrder;
+import raytracer.scheduler.TileScheduler;
+import raytracer.util.Clock;
+
+/**
+ * Renders without a window or GPU, splitting each frame into tiles that are traced on every core by a
+ * {@link TileScheduler}, center first. Runs until every savepoint has been written.
+ */
+public class CpuRayTracer {
+    private static final int TILE_SIZE = 32;
+
+    private final RenderConfig config;
+    private final CpuCamera camera;
+    private final PathTracer pathTracer;
+    private final TileScheduler scheduler;
+    private final SavepointWriter savepointWriter;
+    private final Checkpointer checkpointer;
+    private final int width;
+    private final int height;
+    /**
+     * The running average of every frame, laid out like the screen texture (bottom row first).
+     */
+    private final SampleAccumulator accumulator;
+    /**
+     * The first-hit albedo, normal and depth of every sample, for denoised savepoints.
+     */
+    private final FeatureAccumulator features;
+    /**
+     * The blocks of pixels to sample this frame. Everything, unless adaptive sampling is enabled.
+     */
+    private SampleMask mask;
+    /**
+     * Where the clock starts, if the render was resumed from a checkpoint.
+     */
+    private int resumeFrame = 0;
+    private double resumeSeconds = 0;
+
+    public CpuRayTracer(RenderConfig config, Scene scene) {
+        if (config.savepoints().length == 0) {
+            throw new IllegalArgumentException("The CPU backend has no window, so it needs at least one savepoint");
+        }
+
+        this.config = config;
+        this.width = config.quality().width();
+        this.height = config.quality().height();
+
+        camera = new CpuCamera(config.camera(), width, height);
+        pathTracer = new PathTracer(new CpuScene(scene));
+        scheduler = new TileScheduler(config.quality(), TILE_SIZE, TileOrder.CENTER_OUT);
+        accumulator = new SampleAccumulator(width, height);
+        features = new FeatureAccumulator(width, height);
+        savepointWriter = new SavepointWriter(width, height);
+        checkpointer = new Checkpointer(config.checkpoint(), Checkpoint.hash(config, scene));
+    }
+
+    /**
+     * Continues from the checkpoint, if there is one, instead of starting from the first frame.
+     */
+    public void resume() {
+        Checkpoint checkpoint = checkpointer.load(width, height);
+        if (checkpoint == null) {
+            System.err.println("No checkpoint at " + config.checkpoint().path() + ", starting from the first frame");
+            return;
+        }
+
+        accumulator.restore(checkpoint.full(), checkpoint.half());
+        features.restore(checkpoint.albedo(), checkpoint.normalDepth());
+        resumeFrame = checkpoint.frameCount();
+        resumeSeconds = checkpoint.elapsedSeconds();
+    }
+
+    private Checkpoint checkpoint(Clock clock) {
+        return new Checkpoint(checkpointer.configHash(), clock.getFrameCount(), clock.getTime(), width, height,
+                accumulator.full().clone(), accumulator.half().clone(), features.albedo().clone(), features.normalDepth().clone());
+    }
+
+    private void computeFrame(int frameCounter) {
+        mask = SampleMask.build(accumulator.full(), accumulator.half(), width, height, config.adaptiveSampling());
+        scheduler.render((tile, owner) -> renderTile(tile, frameCounter));
+    }
+
+    private void renderTile(Tile tile, int frameCounter) {
+        int endX = tile.x() + tile.width();
+        int endY = tile.y() + tile.height();
+        FirstHit firstHit = new FirstHit();
+        // added to the counters once per tile, so the workers don't contend on them every sample
+        long samples = 0;
+        long rays = 0;
+
+        for (int y = tile.y(); y < endY; y++) {
+            // the camera's y axis points down, the screen texture's points up
+            int row = height - 1 - y;
+
+            for (int x = tile.x(); x < endX; x++) {
+                if (!mask.isPixelActive(x, row)) {
+                    continue;
+                }
+
+                ShaderRandom random = new ShaderRandom(x, y, width, height, frameCounter);
+                Vector3f newPixel = pathTracer.rayColor(camera.getRay(x, y, random), config.quality().bounces(), random, firstHit);
+
+                features.add(x, row, accumulator.samples(x, row), firstHit.albedo.x, firstHit.albedo.y, firstHit.albedo.z,
+                        firstHit.normal.x, firstHit.normal.y, firstHit.normal.z, firstHit.depth);
+                accumulator.add(x, row, newPixel.x, newPixel.y, newPixel.z);
+                samples++;
+                rays += firstHit.rays;
+            }
+        }
+
+        Metrics.SAMPLES.add(samples);
+        Metrics.RAYS.add(rays);
+    }
+
+    public void run() {
+        Clock clock = new Clock();
+        clock.resume(resumeFrame, resumeSeconds);
+
+        while (!allSaved()) {
+            long frameStart = System.nanoTime();
+            computeFrame(clock.getFrameCount());
+            Metrics.COMPUTE_DISPATCH.recordSince(frameStart);
+            clock.update();
+
+            for (Savepoint savepoint : config.savepoints()) {
+                if (savepoint.readyToSave(clock.getTimef(), clock.getFrameCount())) {
+                    float[] snapshot = savepointWriter.acquire();
+                    long readbackStart = System.nanoTime();
+                    System.arraycopy(accumulator.full(), 0, snapshot, 0, snapshot.length);
+
+                    if (savepoint.denoise()) {
+                        AuxiliaryImages aux = savepointWriter.acquireAuxiliary();
+                        System.arraycopy(accumulator.half(), 0, aux.half(), 0, snapshot.length);
+                        System.arraycopy(features.albedo(), 0, aux.albedo(), 0, snapshot.length);
+                        System.arraycopy(features.normalDepth(), 0, aux.normalDepth(), 0, snapshot.length);
+                        Metrics.SAVEPOINT_READBACK.recordSince(readbackStart);
+                        savepointWriter.write(snapshot, aux, savepoint.path());
+                    } else {
+                        Metrics.SAVEPOINT_READBACK.recordSince(readbackStart);
+                        savepointWriter.write(snapshot, savepoint.path());
+                    }
+                    savepoint.markSaved();
+                }
+            }
+
+            if (checkpointer.due(clock.getTime())) {
+                checkpointer.save(checkpoint(clock));
+            }
+
+            Metrics.FRAMES.increment();
+            Metrics.FRAME.recordSince(frameStart);
+        }
+
+        checkpointer.saveNow(() -> checkpoint(clock));
+    }
+
+    private boolean allSaved() {
+        for (Savepoint savepoint : config.savepoints()) {
+            if (!savepoint.isSaved()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void cleanup() {
+        scheduler.close();
+        savepointWriter.close();
+        checkpointer.close();
+    }
+}
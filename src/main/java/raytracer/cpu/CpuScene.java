@@ -0,0 +1,101 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+import raytracer.Material;
+import raytracer.Mesh;
+import raytracer.Scene;
+import raytracer.Sphere;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.SceneBvh;
+
+/**
+ * The scene as the CPU backend sees it: the contents of the objects, spheres, scene BVH and materials buffers.
+ */
+public class CpuScene {
+    private final CpuMesh[] meshes;
+    private final Sphere[] spheres;
+    private final Scene scene;
+    private final Bvh sceneBvh;
+
+    public CpuScene(Scene scene) {
+        this.scene = scene;
+        this.spheres = scene.spheres();
+
+        Mesh[] sceneMeshes = scene.meshes();
+        meshes = new CpuMesh[sceneMeshes.length];
+        for (int i = 0; i < sceneMeshes.length; i++) {
+            meshes[i] = new CpuMesh(sceneMeshes[i]);
+        }
+
+        sceneBvh = SceneBvh.build(sceneMeshes, spheres);
+    }
+
+    public Scene scene() {
+        return scene;
+    }
+
+    public Material material(int materialId) {
+        return scene.materials()[materialId];
+    }
+
+    /**
+     * Like hit_world, except that the caller normalizes ray.direction. Walks the scene BVH to find the objects and
+     * spheres the ray might hit, then each object's own BVH.
+     */
+    public boolean hitWorld(Ray ray, float tMin, float tMax, HitRecord rec) {
+        Vector3f invDir = new Vector3f(1).div(ray.direction);
+        int[] primitiveOrder = sceneBvh.primitiveOrder();
+        int[] closestSphere = {-1};
+
+        float t = sceneBvh.traverse(ray, invDir, tMin, tMax, (position, closestSoFar) -> {
+            int primitive = primitiveOrder[position];
+
+            if (primitive < meshes.length) {
+                if (meshes[primitive].hit(ray, invDir, tMin, closestSoFar, rec)) {
+                    // a closer object hit replaces any sphere hit found so far
+                    closestSphere[0] = -1;
+                    return rec.t;
+                }
+
+                return Intersections.MISS;
+            }
+
+            float sphereT = Intersections.hitSphere(spheres[primitive - meshes.length].center(), spheres[primitive - meshes.length].radius(), ray, tMin, closestSoFar);
+            if (sphereT != Intersections.MISS) {
+                closestSphere[0] = primitive - meshes.length;
+            }
+
+            return sphereT;
+        });
+
+        if (t == Intersections.MISS) {
+            return false;
+        }
+
+        // sphere hit records are filled in lazily since they need trig
+        if (closestSphere[0] != -1) {
+            fillSphereHitRecord(spheres[closestSphere[0]], t, ray, rec);
+        }
+
+        return true;
+    }
+
+    /**
+     * Fills in everything hit_sphere records.
+     */
+    public static void fillSphereHitRecord(Sphere sphere, float t, Ray ray, HitRecord rec) {
+        rec.t = t;
+        ray.at(t, rec.p);
+        rec.materialId = sphere.materialId();
+        Vector3f outwardNormal = rec.p.sub(sphere.center(), new Vector3f()).div(sphere.radius());
+        rec.setFaceNormal(ray, outwardNormal);
+        rec.triangleHit = false;
+
+        float theta = (float) Math.acos(Math.max(-1, Math.min(1, -outwardNormal.y)));
+        float phi = (float) (Math.atan2(outwardNormal.z, outwardNormal.x) + Math.PI);
+
+        rec.uv.set(phi / (2 * (float) Math.PI), theta / (float) Math.PI);
+        rec.tangent.set(-(float) Math.sin(phi), 0, (float) Math.cos(phi)).normalize();
+        rec.bitangent.set((float) (Math.cos(phi) * Math.sin(theta)), -(float) Math.cos(theta), (float) (Math.sin(phi) * Math.sin(theta))).normalize();
+    }
+}
@@ -0,0 +1,29 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+/**
+ * The first_albedo and first_normal_depth outputs of ray_color: what the first surface a sample hits looks like,
+ * without any lighting. Also how many rays the sample took. Reused between samples.
+ */
+public class FirstHit {
+    /**
+     * The depth recorded for samples that hit nothing. Also the far plane of the rays in ray_color.
+     */
+    public static final float FAR_PLANE = 1000;
+
+    public final Vector3f albedo = new Vector3f(1);
+    public final Vector3f normal = new Vector3f();
+    public float depth = FAR_PLANE;
+    /**
+     * The rays traced for the sample, counting every bounce.
+     */
+    public int rays = 0;
+
+    void reset() {
+        albedo.set(1);
+        normal.set(0);
+        depth = FAR_PLANE;
+        rays = 0;
+    }
+}
@@ -0,0 +1,30 @@
+package raytracer.cpu;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+/**
+ * Mirrors the HitRecord struct in raytracer.comp.
+ */
+public class HitRecord {
+    public final Vector3f p = new Vector3f();
+    public final Vector3f normal = new Vector3f();
+    public float t;
+    public int materialId;
+    public boolean frontFace;
+    public final Vector2f uv = new Vector2f();
+    public final Vector3f tangent = new Vector3f();
+    public final Vector3f bitangent = new Vector3f();
+    /**
+     * True if a triangle was hit, false if a sphere was hit.
+     */
+    public boolean triangleHit;
+
+    public void setFaceNormal(Ray r, Vector3f outwardNormal) {
+        frontFace = r.direction.dot(outwardNormal) < 0;
+        normal.set(outwardNormal);
+        if (!frontFace) {
+            normal.negate();
+        }
+    }
+}
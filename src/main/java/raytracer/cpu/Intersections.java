@@ -0,0 +1,126 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+/**
+ * Ports of the intersection functions in raytracer.comp. They only compute the hit distance so callers can defer
+ * filling in a HitRecord until the closest hit is known.
+ */
+public class Intersections {
+    /**
+     * Returned when nothing is hit.
+     */
+    public static final float MISS = -1;
+
+    private Intersections() {}
+
+    /**
+     * Slab test, like hit_bounding_box but also rejecting boxes outside [tMin, tMax].
+     * @param invDir 1 / ray.direction, per component
+     * @param tMin must not be negative, so a hit is never confused with MISS
+     * @return the distance at which the ray enters the box, or MISS
+     */
+    public static float hitBoundingBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, Vector3f origin, Vector3f invDir, float tMin, float tMax) {
+        float t0x = (minX - origin.x) * invDir.x;
+        float t1x = (maxX - origin.x) * invDir.x;
+        float t0y = (minY - origin.y) * invDir.y;
+        float t1y = (maxY - origin.y) * invDir.y;
+        float t0z = (minZ - origin.z) * invDir.z;
+        float t1z = (maxZ - origin.z) * invDir.z;
+
+        float tEnter = max(max(min(t0x, t1x), min(t0y, t1y)), max(min(t0z, t1z), tMin));
+        float tExit = min(min(max(t0x, t1x), max(t0y, t1y)), min(max(t0z, t1z), tMax));
+
+        return tEnter <= tExit ? tEnter : MISS;
+    }
+
+    /**
+     * Möller–Trumbore intersection, like hit_triangle. Back faces are culled. Assumes the ray direction is normalized.
+     * @param vertices packed xyz vertex positions
+     * @param barycentric receives the u and v barycentric coordinates of the hit
+     * @return the hit distance, or MISS
+     */
+    public static float hitTriangle(float[] vertices, int i0, int i1, int i2, Ray ray, float tMin, float tMax, float[] barycentric) {
+        float v0x = vertices[i0 * 3], v0y = vertices[i0 * 3 + 1], v0z = vertices[i0 * 3 + 2];
+        float e1x = vertices[i1 * 3] - v0x, e1y = vertices[i1 * 3 + 1] - v0y, e1z = vertices[i1 * 3 + 2] - v0z;
+        float e2x = vertices[i2 * 3] - v0x, e2y = vertices[i2 * 3 + 1] - v0y, e2z = vertices[i2 * 3 + 2] - v0z;
+
+        Vector3f d = ray.direction;
+        float px = d.y * e2z - d.z * e2y;
+        float py = d.z * e2x - d.x * e2z;
+        float pz = d.x * e2y - d.y * e2x;
+        float det = e1x * px + e1y * py + e1z * pz;
+
+        // ray and triangle are parallel, or triangle is backfacing
+        if (det < 0.000001f) {
+            return MISS;
+        }
+
+        float invDet = 1 / det;
+        float sx = ray.origin.x - v0x, sy = ray.origin.y - v0y, sz = ray.origin.z - v0z;
+        float u = (sx * px + sy * py + sz * pz) * invDet;
+
+        if (u < 0 || u > 1) {
+            return MISS;
+        }
+
+        float qx = sy * e1z - sz * e1y;
+        float qy = sz * e1x - sx * e1z;
+        float qz = sx * e1y - sy * e1x;
+        float v = (d.x * qx + d.y * qy + d.z * qz) * invDet;
+
+        if (v < 0 || u + v > 1) {
+            return MISS;
+        }
+
+        float t = invDet * (e2x * qx + e2y * qy + e2z * qz);
+
+        if (t < tMin || t > tMax) {
+            return MISS;
+        }
+
+        barycentric[0] = u;
+        barycentric[1] = v;
+        return t;
+    }
+
+    /**
+     * Like hit_sphere.
+     * @return the nearest root in (tMin, tMax), or MISS
+     */
+    public static float hitSphere(Vector3f center, float radius, Ray ray, float tMin, float tMax) {
+        float ocx = center.x - ray.origin.x;
+        float ocy = center.y - ray.origin.y;
+        float ocz = center.z - ray.origin.z;
+        float a = ray.direction.lengthSquared();
+        float h = ray.direction.x * ocx + ray.direction.y * ocy + ray.direction.z * ocz;
+        float c = ocx * ocx + ocy * ocy + ocz * ocz - radius * radius;
+        float discriminant = h * h - a * c;
+
+        if (discriminant < 0) {
+            return MISS;
+        }
+
+        float sqrtd = (float) Math.sqrt(discriminant);
+
+        // Find the nearest root that lies in the acceptable range
+        float root = (h - sqrtd) / a;
+        if (root <= tMin || tMax <= root) {
+            root = (h + sqrtd) / a;
+            if (root <= tMin || tMax <= root) {
+                return MISS;
+            }
+        }
+
+        return root;
+    }
+
+    // unlike Math.min and Math.max these don't propagate the NaNs produced by 0 * infinity in the slab test
+    private static float min(float a, float b) {
+        return a < b ? a : b;
+    }
+
+    private static float max(float a, float b) {
+        return a > b ? a : b;
+    }
+}
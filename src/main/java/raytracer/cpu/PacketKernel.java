@@ -0,0 +1,67 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+/**
+ * Tests one ray against a run of consecutive triangles or boxes at a time. {@link VectorPacketKernel} does a packet of
+ * 4, 8 or 16 in the lanes of one vector with jdk.incubator.vector; {@link ScalarPacketKernel} does them one after the
+ * other. Both give exactly the results {@link Intersections} gives for each primitive on its own.
+ */
+public interface PacketKernel {
+    /**
+     * The system property that sets how many primitives the vector kernel tests at once: 4, 8 or 16, or 1 for the
+     * scalar kernel. Defaults to the widest vectors the CPU has.
+     */
+    String WIDTH_PROPERTY = "reina.packetWidth";
+
+    /**
+     * @return how many primitives are tested at once, 1 for the scalar kernel
+     */
+    int width();
+
+    /**
+     * Finds the closest hit among triangles first to first + count - 1, like testing them in order with
+     * {@link Intersections#hitTriangle} while shrinking tMax to each hit. Of several equally close hits, the last wins.
+     * @param hit receives the hit distance and the u and v barycentric coordinates
+     * @return the index of the hit triangle, or -1 if none was hit
+     */
+    int hitTriangles(TriangleSoA triangles, int first, int count, Ray ray, float tMin, float tMax, float[] hit);
+
+    /**
+     * Slab tests boxes first to first + count - 1, like {@link Intersections#hitBoundingBox}.
+     * @param invDir 1 / ray.direction, per component
+     * @param tEnter receives, from index 0, the distance at which the ray enters each box, or Intersections.MISS
+     * @return how many boxes were hit
+     */
+    int hitBoxes(BoxSoA boxes, int first, int count, Vector3f origin, Vector3f invDir, float tMin, float tMax, float[] tEnter);
+
+    /**
+     * The vector kernel if the JVM was started with --add-modules jdk.incubator.vector, otherwise the scalar kernel.
+     * -Dreina.packetWidth=1 picks the scalar kernel even when the vector one is available.
+     */
+    static PacketKernel preferred() {
+        return Holder.PREFERRED;
+    }
+
+    static PacketKernel scalar() {
+        return new ScalarPacketKernel();
+    }
+
+    /**
+     * @return whether jdk.incubator.vector was added to the JVM's modules. VectorPacketKernel must not be loaded
+     * otherwise.
+     */
+    static boolean vectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Picks the preferred kernel once, the first time it's asked for.
+     */
+    final class Holder {
+        private static final PacketKernel PREFERRED = vectorApiAvailable() && Integer.getInteger(WIDTH_PROPERTY, 0) != 1
+                ? VectorPacketKernel.INSTANCE : new ScalarPacketKernel();
+
+        private Holder() {}
+    }
+}
@@ -0,0 +1,245 @@
+package raytracer.cpu;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import raytracer.Material;
+import raytracer.texture.Texture;
+
+/**
+ * A port of ray_color and the material functions in raytracer.comp.
+ */
+public class PathTracer {
+    private static final float HEIGHT_SCALE = 0.05f;
+    private static final float MIN_LAYERS = 16;
+    private static final float MAX_LAYERS = 64;
+
+    private final CpuScene scene;
+
+    public PathTracer(CpuScene scene) {
+        this.scene = scene;
+    }
+
+    public Vector3f rayColor(Ray ray, int maxBounces, ShaderRandom random) {
+        return rayColor(ray, maxBounces, random, new FirstHit());
+    }
+
+    /**
+     * @param firstHit receives the albedo, shading normal and distance of the first surface hit
+     */
+    public Vector3f rayColor(Ray ray, int maxBounces, ShaderRandom random, FirstHit firstHit) {
+        firstHit.reset();
+
+        Ray r = new Ray().set(ray);
+        Vector3f color = new Vector3f(1);  // Tracks cumulative attenuation
+        Vector3f incomingLight = new Vector3f(0);  // Tracks accumulated emitted and reflected light
+
+        // hit_world normalizes its own copy of the ray, the scattering functions see the original direction
+        Ray normalized = new Ray();
+        HitRecord rec = new HitRecord();
+        Ray scattered = new Ray();
+        Vector3f attenuation = new Vector3f();
+
+        for (int i = 0; i < maxBounces; i++) {
+            firstHit.rays++;
+            normalized.set(r).direction.normalize();
+
+            if (scene.hitWorld(normalized, 0.001f, FirstHit.FAR_PLANE, rec)) {
+                Material material = scene.material(rec.materialId);
+                Vector3f emittedLight = material.emissionColor().mul(material.emissionStrength(), new Vector3f());
+
+                // Add emitted light scaled by accumulated attenuation
+                incomingLight.add(emittedLight.mul(color));
+
+                if (scatter(material, r, rec, random, scattered, attenuation, i == 0 ? firstHit : null)) {
+                    // Update ray and cumulative color
+                    r.set(scattered);
+                    color.mul(Math.max(0, Math.min(1, attenuation.x)), Math.max(0, Math.min(1, attenuation.y)), Math.max(0, Math.min(1, attenuation.z)));
+                } else {
+                    // Stop bouncing if the material does not scatter
+                    break;
+                }
+            } else {
+                // If the ray misses, add the background contribution
+                float t = 0.5f * (normalized.direction.y + 1);
+                Vector3f background = new Vector3f(1).lerp(new Vector3f(0.5f, 0.7f, 1), t);
+                if (i == 0) {
+                    firstHit.albedo.set(background);
+                }
+                incomingLight.add(background.mul(color));
+                break;
+            }
+        }
+
+        return incomingLight;
+    }
+
+    /**
+     * Like material_scatter.
+     * @param firstHit receives the albedo and shading normal if this is the first hit, otherwise null
+     * @return true if the ray scattered, in which case scattered and attenuation are set
+     */
+    private boolean scatter(Material material, Ray rIn, HitRecord rec, ShaderRandom random, Ray scattered, Vector3f attenuation, FirstHit firstHit) {
+        Vector2f uv = textureUv(rIn, rec, material.textureId());
+
+        Vector3f textureColor = new Vector3f();
+        if (uv.x < 0 || uv.y < 0 || uv.x > 1 || uv.y > 1) {
+            // effectively discard the pixel if the texture coordinates are out of bounds
+            if (firstHit != null) {
+                firstHit.albedo.set(1);
+                firstHit.normal.set(rec.normal);
+                firstHit.depth = rec.t;
+            }
+
+            scattered.origin.set(rIn.direction).mul(0.001f).add(rec.p);
+            scattered.direction.set(rIn.direction);
+            attenuation.set(1);
+            return true;
+        } else if (material.textureId() != -1) {
+            TextureSampler.sample(texture(scene.scene().diffuseTextures(), material.textureId()), uv.x, uv.y, textureColor);
+        } else {
+            textureColor.set(material.albedo());
+        }
+
+        Vector3f normal = textureNormal(rec, uv, material.textureId());
+
+        if (firstHit != null) {
+            firstHit.albedo.set(textureColor);
+            firstHit.normal.set(normal);
+            firstHit.depth = rec.t;
+        }
+
+        return switch (material.type()) {
+            case Material.DIFFUSE -> scatterDiffuse(rec, normal, textureColor, random, scattered, attenuation);
+            case Material.METAL -> scatterMetal(rIn, rec, material, normal, textureColor, random, scattered, attenuation);
+            case Material.DIELECTRIC -> scatterDielectric(rIn, rec, material, normal, textureColor, random, scattered, attenuation);
+            default -> false;
+        };
+    }
+
+    private static boolean scatterDiffuse(HitRecord rec, Vector3f normal, Vector3f texColor, ShaderRandom random, Ray scattered, Vector3f attenuation) {
+        scattered.origin.set(rec.p);
+        random.unitVector(scattered.direction).add(normal);
+        attenuation.set(texColor);
+        return true;
+    }
+
+    private static boolean scatterMetal(Ray rIn, HitRecord rec, Material material, Vector3f normal, Vector3f texColor, ShaderRandom random, Ray scattered, Vector3f attenuation) {
+        Vector3f reflected = rIn.direction.reflect(normal, new Vector3f());
+
+        if (random.next() > material.specularProb()) {
+            // non-specular reflection
+            reflected.add(random.unitVector(new Vector3f()).mul(material.fuzzOrRefIdx()));
+            attenuation.set(texColor);
+        } else {
+            // specular reflection
+            attenuation.set(1);
+        }
+
+        scattered.origin.set(rec.p);
+        scattered.direction.set(reflected);
+        return scattered.direction.dot(normal) > 0;
+    }
+
+    private static boolean scatterDielectric(Ray rIn, HitRecord rec, Material material, Vector3f normal, Vector3f texColor, ShaderRandom random, Ray scattered, Vector3f attenuation) {
+        float ri = rec.frontFace ? 1 / material.fuzzOrRefIdx() : material.fuzzOrRefIdx();
+        Vector3f unitDirection = rIn.direction.normalize(new Vector3f());
+        float cosTheta = Math.min(-unitDirection.dot(normal), 1);
+        float sinTheta = (float) Math.sqrt(1 - cosTheta * cosTheta);
+
+        boolean cannotRefract = ri * sinTheta > 1;
+        float reflectance = reflectance(cosTheta, ri);
+
+        scattered.origin.set(rec.p);
+        if (cannotRefract || reflectance > random.next()) {
+            // specular reflect
+            unitDirection.reflect(normal, scattered.direction);
+            attenuation.set(1);
+        } else {
+            refract(unitDirection, normal, ri, scattered.direction);
+            attenuation.set(texColor).lerp(new Vector3f(1), reflectance);  // blend based on Fresnel effect
+        }
+
+        return true;
+    }
+
+    private static float reflectance(float cosine, float refIdx) {
+        // Use Schlick's approximation for reflectance
+        float r0 = (1 - refIdx) / (1 + refIdx);
+        r0 = r0 * r0;
+        return r0 + (1 - r0) * (float) Math.pow(1 - cosine, 5);
+    }
+
+    /**
+     * GLSL's refract.
+     */
+    private static Vector3f refract(Vector3f incident, Vector3f normal, float eta, Vector3f dest) {
+        float nDotI = normal.dot(incident);
+        float k = 1 - eta * eta * (1 - nDotI * nDotI);
+        if (k < 0) {
+            return dest.set(0);
+        }
+
+        return dest.set(incident).mul(eta).sub(normal.mul(eta * nDotI + (float) Math.sqrt(k), new Vector3f()));
+    }
+
+    private Vector2f textureUv(Ray rIn, HitRecord rec, int textureId) {
+        if (textureId == -1) {
+            return new Vector2f(rec.uv);
+        }
+
+        // mat3(tangent, bitangent, normal) * -normalize(r_in.direction)
+        Vector3f view = rIn.direction.normalize(new Vector3f()).negate();
+        Vector3f viewDirTangent = new Vector3f(rec.tangent).mul(view.x)
+                .add(rec.bitangent.x * view.y, rec.bitangent.y * view.y, rec.bitangent.z * view.y)
+                .add(rec.normal.x * view.z, rec.normal.y * view.z, rec.normal.z * view.z)
+                .normalize();
+
+        return parallaxMapping(rec.uv, viewDirTangent, textureId);
+    }
+
+    private Vector2f parallaxMapping(Vector2f uv, Vector3f viewDir, int textureId) {
+        Texture parallax = texture(scene.scene().parallaxTextures(), textureId);
+        Vector3f sample = new Vector3f();
+
+        float numLayers = MAX_LAYERS + (MIN_LAYERS - MAX_LAYERS) * Math.max(viewDir.z, 0);
+        float layerDepth = 1 / numLayers;
+        float currentLayerDepth = 0;
+        Vector2f deltaUv = new Vector2f(viewDir.x, viewDir.y).mul(HEIGHT_SCALE / numLayers);
+
+        Vector2f currentUv = new Vector2f(uv);
+        float currentDepthMapValue = TextureSampler.sample(parallax, currentUv.x, currentUv.y, sample).x;
+
+        while (currentLayerDepth < currentDepthMapValue) {
+            currentUv.sub(deltaUv);
+            currentDepthMapValue = TextureSampler.sample(parallax, currentUv.x, currentUv.y, sample).x;
+            currentLayerDepth += layerDepth;
+        }
+
+        Vector2f prevUv = currentUv.add(deltaUv, new Vector2f());
+
+        float afterDepth = currentDepthMapValue - currentLayerDepth;
+        float beforeDepth = TextureSampler.sample(parallax, prevUv.x, prevUv.y, sample).x - currentLayerDepth + layerDepth;
+
+        float weight = afterDepth / (afterDepth - beforeDepth);
+        return prevUv.lerp(currentUv, weight);
+    }
+
+    private Vector3f textureNormal(HitRecord rec, Vector2f uv, int textureId) {
+        if (textureId == -1) {
+            return new Vector3f(rec.normal);
+        }
+
+        Vector3f n = TextureSampler.sample(texture(scene.scene().normalTextures(), textureId), uv.x, uv.y, new Vector3f()).mul(2).sub(1, 1, 1);
+        return new Vector3f(rec.tangent).mul(n.x)
+                .add(rec.bitangent.x * n.y, rec.bitangent.y * n.y, rec.bitangent.z * n.y)
+                .add(rec.normal.x * n.z, rec.normal.y * n.z, rec.normal.z * n.z)
+                .normalize();
+    }
+
+    /**
+     * Picks an array texture layer, clamping like texture() does for sampler2DArray.
+     */
+    private static Texture texture(Texture[] layers, int layer) {
+        return layers[Math.max(0, Math.min(layers.length - 1, layer))];
+    }
+}
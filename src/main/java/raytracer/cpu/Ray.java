@@ -0,0 +1,27 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+public class Ray {
+    public final Vector3f origin;
+    public final Vector3f direction;
+
+    public Ray(Vector3f origin, Vector3f direction) {
+        this.origin = origin;
+        this.direction = direction;
+    }
+
+    public Ray() {
+        this(new Vector3f(), new Vector3f());
+    }
+
+    public Ray set(Ray other) {
+        origin.set(other.origin);
+        direction.set(other.direction);
+        return this;
+    }
+
+    public Vector3f at(float t, Vector3f dest) {
+        return dest.set(direction).mul(t).add(origin);
+    }
+}
@@ -0,0 +1,84 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+/**
+ * Tests the primitives one at a time, for JVMs without jdk.incubator.vector and as the reference for
+ * {@link VectorPacketKernel}. Reads the same struct of arrays layout, with the same arithmetic as {@link Intersections}.
+ */
+public class ScalarPacketKernel implements PacketKernel {
+    @Override
+    public int width() {
+        return 1;
+    }
+
+    @Override
+    public int hitTriangles(TriangleSoA triangles, int first, int count, Ray ray, float tMin, float tMax, float[] hit) {
+        Vector3f d = ray.direction;
+        Vector3f o = ray.origin;
+        int closest = -1;
+
+        for (int i = first; i < first + count; i++) {
+            float e1x = triangles.e1x[i], e1y = triangles.e1y[i], e1z = triangles.e1z[i];
+            float e2x = triangles.e2x[i], e2y = triangles.e2y[i], e2z = triangles.e2z[i];
+
+            float px = d.y * e2z - d.z * e2y;
+            float py = d.z * e2x - d.x * e2z;
+            float pz = d.x * e2y - d.y * e2x;
+            float det = e1x * px + e1y * py + e1z * pz;
+
+            // ray and triangle are parallel, or triangle is backfacing
+            if (det < 0.000001f) {
+                continue;
+            }
+
+            float invDet = 1 / det;
+            float sx = o.x - triangles.v0x[i], sy = o.y - triangles.v0y[i], sz = o.z - triangles.v0z[i];
+            float u = (sx * px + sy * py + sz * pz) * invDet;
+
+            if (u < 0 || u > 1) {
+                continue;
+            }
+
+            float qx = sy * e1z - sz * e1y;
+            float qy = sz * e1x - sx * e1z;
+            float qz = sx * e1y - sy * e1x;
+            float v = (d.x * qx + d.y * qy + d.z * qz) * invDet;
+
+            if (v < 0 || u + v > 1) {
+                continue;
+            }
+
+            float t = invDet * (e2x * qx + e2y * qy + e2z * qz);
+
+            if (t < tMin || t > tMax) {
+                continue;
+            }
+
+            closest = i;
+            tMax = t;
+            hit[0] = t;
+            hit[1] = u;
+            hit[2] = v;
+        }
+
+        return closest;
+    }
+
+    @Override
+    public int hitBoxes(BoxSoA boxes, int first, int count, Vector3f origin, Vector3f invDir, float tMin, float tMax, float[] tEnter) {
+        int hits = 0;
+
+        for (int i = 0; i < count; i++) {
+            int box = first + i;
+            tEnter[i] = Intersections.hitBoundingBox(boxes.minX[box], boxes.minY[box], boxes.minZ[box],
+                    boxes.maxX[box], boxes.maxY[box], boxes.maxZ[box], origin, invDir, tMin, tMax);
+
+            if (tEnter[i] != Intersections.MISS) {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+}
@@ -0,0 +1,68 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+
+/**
+ * A port of the random number generator in raytracer.comp. Java ints are used as GLSL uints, so all shifts are
+ * unsigned.
+ */
+public class ShaderRandom {
+    private int state;
+
+    /**
+     * Seeds the generator the same way raytracer.comp seeds rand_seed.
+     */
+    public ShaderRandom(int x, int y, int width, int height, int frameCounter) {
+        this(x + width * (y + height * frameCounter));
+    }
+
+    public ShaderRandom(int seed) {
+        this.state = seed;
+    }
+
+    private static int construct(int m) {
+        m = m * 747796405 + (int) 2891336453L;
+        int result = ((m >>> ((m >>> 28) + 4)) ^ m) * 277803737;
+        return (result >>> 22) ^ result;
+    }
+
+    public int nextUint() {
+        state = construct(state);
+        return state;
+    }
+
+    /**
+     * @return a random float in [0, 1]
+     */
+    public float next() {
+        return (float) (Integer.toUnsignedLong(nextUint()) / 4294967295.0);
+    }
+
+    public Vector3f unitDisk(Vector3f dest) {
+        while (true) {
+            float x = next() * 2 - 1;
+            float y = next() * 2 - 1;
+            if (x * x + y * y < 1) {
+                return dest.set(x, y, 0);
+            }
+        }
+    }
+
+    public Vector3f square(Vector3f dest) {
+        float x = next() - 0.5f;
+        float y = next() - 0.5f;
+        return dest.set(x, y, 0);
+    }
+
+    public Vector3f unitVector(Vector3f dest) {
+        while (true) {
+            float x = 2 * next() - 1;
+            float y = 2 * next() - 1;
+            float z = 2 * next() - 1;
+            float lenSquared = x * x + y * y + z * z;
+            if (0.0001f < lenSquared && lenSquared < 1) {
+                return dest.set(x, y, z).normalize();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+import raytracer.texture.Texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Samples a Texture the way the GL_LINEAR, GL_CLAMP_TO_EDGE texture arrays in ArrayTexture are sampled.
+ */
+public class TextureSampler {
+    private TextureSampler() {}
+
+    /**
+     * @return the bilinearly filtered rgb at the uv coordinates, each channel in [0, 1]
+     */
+    public static Vector3f sample(Texture texture, float u, float v, Vector3f dest) {
+        int width = texture.width();
+        int height = texture.height();
+
+        float x = u * width - 0.5f;
+        float y = v * height - 0.5f;
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+
+        int x1 = clamp(x0 + 1, width);
+        int y1 = clamp(y0 + 1, height);
+        x0 = clamp(x0, width);
+        y0 = clamp(y0, height);
+
+        ByteBuffer bytes = texture.bytes();
+        float r = 0, g = 0, b = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            int px = (corner & 1) == 0 ? x0 : x1;
+            int py = (corner & 2) == 0 ? y0 : y1;
+            float weight = ((corner & 1) == 0 ? 1 - fx : fx) * ((corner & 2) == 0 ? 1 - fy : fy);
+
+            int offset = (py * width + px) * 4;
+            r += weight * (bytes.get(offset) & 0xFF);
+            g += weight * (bytes.get(offset + 1) & 0xFF);
+            b += weight * (bytes.get(offset + 2) & 0xFF);
+        }
+
+        return dest.set(r, g, b).div(255);
+    }
+
+    private static int clamp(int coord, int size) {
+        return Math.max(0, Math.min(size - 1, coord));
+    }
+}
@@ -0,0 +1,57 @@
+package raytracer.cpu;
+
+/**
+ * Triangles laid out for {@link PacketKernel}s: one array per coordinate of the first vertex and of the two edges from
+ * it, so a packet of consecutive triangles loads with one vector read per coordinate. The edges are computed exactly as
+ * {@link Intersections#hitTriangle} computes them, so hits are the same to the bit.
+ * <p>
+ * The arrays end with {@link #PADDING} degenerate triangles, which every kernel misses, so a packet starting at any
+ * triangle can load full vectors.
+ */
+public class TriangleSoA {
+    /**
+     * The widest packet any kernel uses.
+     */
+    public static final int PADDING = 16;
+
+    final float[] v0x, v0y, v0z;
+    final float[] e1x, e1y, e1z;
+    final float[] e2x, e2y, e2z;
+    private final int count;
+
+    /**
+     * @param vertices packed xyz vertex positions
+     * @param indices 3 vertex indices per triangle, in the order the triangles are to be stored
+     */
+    public TriangleSoA(float[] vertices, int[] indices) {
+        count = indices.length / 3;
+        int length = count + PADDING;
+
+        v0x = new float[length];
+        v0y = new float[length];
+        v0z = new float[length];
+        e1x = new float[length];
+        e1y = new float[length];
+        e1z = new float[length];
+        e2x = new float[length];
+        e2y = new float[length];
+        e2z = new float[length];
+
+        for (int i = 0; i < count; i++) {
+            int i0 = indices[i * 3] * 3, i1 = indices[i * 3 + 1] * 3, i2 = indices[i * 3 + 2] * 3;
+            v0x[i] = vertices[i0];
+            v0y[i] = vertices[i0 + 1];
+            v0z[i] = vertices[i0 + 2];
+            e1x[i] = vertices[i1] - v0x[i];
+            e1y[i] = vertices[i1 + 1] - v0y[i];
+            e1z[i] = vertices[i1 + 2] - v0z[i];
+            e2x[i] = vertices[i2] - v0x[i];
+            e2y[i] = vertices[i2 + 1] - v0y[i];
+            e2z[i] = vertices[i2 + 2] - v0z[i];
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+}
@@ -0,0 +1,168 @@
+package raytracer.cpu;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.joml.Vector3f;
+
+/**
+ * Tests a packet of consecutive primitives in the lanes of one vector. Each lane does exactly the float operations
+ * {@link Intersections} does, in the same order, and Java never fuses a multiply and an add, so every lane's result
+ * matches the scalar one to the bit. Failing tests clear a lane's bit in a mask instead of branching, and a packet is
+ * dropped as soon as none of its lanes are left.
+ * <p>
+ * The JIT only turns vector operations into vector instructions when their species is a constant, so the width is
+ * fixed for the whole JVM: the CPU's widest up to 16 lanes by default, or 4, 8 or 16 with -Dreina.packetWidth. Only
+ * load this class when {@link PacketKernel#vectorApiAvailable()}.
+ */
+public final class VectorPacketKernel implements PacketKernel {
+    static final VectorPacketKernel INSTANCE = new VectorPacketKernel();
+
+    private static final VectorSpecies<Float> SPECIES = species(Integer.getInteger(PacketKernel.WIDTH_PROPERTY, 0));
+    private static final FloatVector ONE = FloatVector.broadcast(SPECIES, 1);
+    private static final FloatVector MISS = FloatVector.broadcast(SPECIES, Intersections.MISS);
+    private static final ScalarPacketKernel SCALAR = new ScalarPacketKernel();
+
+    private VectorPacketKernel() {}
+
+    private static VectorSpecies<Float> species(int width) {
+        return switch (width) {
+            // SVE can be wider than 512 bits, but the arrays are only padded for packets of up to 16
+            case 0 -> FloatVector.SPECIES_PREFERRED.length() > TriangleSoA.PADDING ? FloatVector.SPECIES_512 : FloatVector.SPECIES_PREFERRED;
+            case 4 -> FloatVector.SPECIES_128;
+            case 8 -> FloatVector.SPECIES_256;
+            case 16 -> FloatVector.SPECIES_512;
+            default -> throw new IllegalArgumentException("Vector packets are 4, 8 or 16 wide, not " + width);
+        };
+    }
+
+    @Override
+    public int width() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public int hitTriangles(TriangleSoA triangles, int first, int count, Ray ray, float tMin, float tMax, float[] hit) {
+        FloatVector dx = FloatVector.broadcast(SPECIES, ray.direction.x);
+        FloatVector dy = FloatVector.broadcast(SPECIES, ray.direction.y);
+        FloatVector dz = FloatVector.broadcast(SPECIES, ray.direction.z);
+        FloatVector ox = FloatVector.broadcast(SPECIES, ray.origin.x);
+        FloatVector oy = FloatVector.broadcast(SPECIES, ray.origin.y);
+        FloatVector oz = FloatVector.broadcast(SPECIES, ray.origin.z);
+
+        int end = first + count;
+        int closest = -1;
+
+        for (int i = first; i < end; i += SPECIES.length()) {
+            VectorMask<Float> live = SPECIES.indexInRange(i, end);
+
+            FloatVector e1x = FloatVector.fromArray(SPECIES, triangles.e1x, i);
+            FloatVector e1y = FloatVector.fromArray(SPECIES, triangles.e1y, i);
+            FloatVector e1z = FloatVector.fromArray(SPECIES, triangles.e1z, i);
+            FloatVector e2x = FloatVector.fromArray(SPECIES, triangles.e2x, i);
+            FloatVector e2y = FloatVector.fromArray(SPECIES, triangles.e2y, i);
+            FloatVector e2z = FloatVector.fromArray(SPECIES, triangles.e2z, i);
+
+            FloatVector px = dy.mul(e2z).sub(dz.mul(e2y));
+            FloatVector py = dz.mul(e2x).sub(dx.mul(e2z));
+            FloatVector pz = dx.mul(e2y).sub(dy.mul(e2x));
+            FloatVector det = e1x.mul(px).add(e1y.mul(py)).add(e1z.mul(pz));
+
+            // ray and triangle are parallel, or triangle is backfacing
+            live = live.andNot(det.lt(0.000001f));
+            if (!live.anyTrue()) {
+                continue;
+            }
+
+            FloatVector invDet = ONE.div(det);
+            FloatVector sx = ox.sub(FloatVector.fromArray(SPECIES, triangles.v0x, i));
+            FloatVector sy = oy.sub(FloatVector.fromArray(SPECIES, triangles.v0y, i));
+            FloatVector sz = oz.sub(FloatVector.fromArray(SPECIES, triangles.v0z, i));
+            FloatVector u = sx.mul(px).add(sy.mul(py)).add(sz.mul(pz)).mul(invDet);
+
+            live = live.andNot(u.lt(0f).or(u.compare(VectorOperators.GT, 1f)));
+            if (!live.anyTrue()) {
+                continue;
+            }
+
+            FloatVector qx = sy.mul(e1z).sub(sz.mul(e1y));
+            FloatVector qy = sz.mul(e1x).sub(sx.mul(e1z));
+            FloatVector qz = sx.mul(e1y).sub(sy.mul(e1x));
+            FloatVector v = dx.mul(qx).add(dy.mul(qy)).add(dz.mul(qz)).mul(invDet);
+            FloatVector t = invDet.mul(e2x.mul(qx).add(e2y.mul(qy)).add(e2z.mul(qz)));
+
+            live = live.andNot(v.lt(0f).or(u.add(v).compare(VectorOperators.GT, 1f)));
+            live = live.andNot(t.lt(tMin).or(t.compare(VectorOperators.GT, tMax)));
+            if (!live.anyTrue()) {
+                continue;
+            }
+
+            // the last of the nearest lanes, as the scalar loop's <= tMax test keeps the last of equal hits
+            float nearest = t.reduceLanes(VectorOperators.MIN, live);
+            int lane = t.eq(nearest).and(live).lastTrue();
+
+            if (lane < 0) {
+                // a NaN distance, which passes every scalar test; let the scalar kernel decide what it does
+                int triangle = SCALAR.hitTriangles(triangles, i, Math.min(SPECIES.length(), end - i), ray, tMin, tMax, hit);
+                if (triangle != -1) {
+                    closest = triangle;
+                    tMax = hit[0];
+                }
+                continue;
+            }
+
+            closest = i + lane;
+            tMax = nearest;
+            hit[0] = nearest;
+            hit[1] = u.lane(lane);
+            hit[2] = v.lane(lane);
+        }
+
+        return closest;
+    }
+
+    @Override
+    public int hitBoxes(BoxSoA boxes, int first, int count, Vector3f origin, Vector3f invDir, float tMin, float tMax, float[] tEnter) {
+        FloatVector ox = FloatVector.broadcast(SPECIES, origin.x);
+        FloatVector oy = FloatVector.broadcast(SPECIES, origin.y);
+        FloatVector oz = FloatVector.broadcast(SPECIES, origin.z);
+        FloatVector ix = FloatVector.broadcast(SPECIES, invDir.x);
+        FloatVector iy = FloatVector.broadcast(SPECIES, invDir.y);
+        FloatVector iz = FloatVector.broadcast(SPECIES, invDir.z);
+        FloatVector near = FloatVector.broadcast(SPECIES, tMin);
+        FloatVector far = FloatVector.broadcast(SPECIES, tMax);
+
+        int end = first + count;
+        int hits = 0;
+
+        for (int i = first; i < end; i += SPECIES.length()) {
+            VectorMask<Float> active = SPECIES.indexInRange(i, end);
+
+            FloatVector t0x = FloatVector.fromArray(SPECIES, boxes.minX, i).sub(ox).mul(ix);
+            FloatVector t1x = FloatVector.fromArray(SPECIES, boxes.maxX, i).sub(ox).mul(ix);
+            FloatVector t0y = FloatVector.fromArray(SPECIES, boxes.minY, i).sub(oy).mul(iy);
+            FloatVector t1y = FloatVector.fromArray(SPECIES, boxes.maxY, i).sub(oy).mul(iy);
+            FloatVector t0z = FloatVector.fromArray(SPECIES, boxes.minZ, i).sub(oz).mul(iz);
+            FloatVector t1z = FloatVector.fromArray(SPECIES, boxes.maxZ, i).sub(oz).mul(iz);
+
+            FloatVector enter = max(max(min(t0x, t1x), min(t0y, t1y)), max(min(t0z, t1z), near));
+            FloatVector exit = min(min(max(t0x, t1x), max(t0y, t1y)), min(max(t0z, t1z), far));
+
+            VectorMask<Float> hit = enter.compare(VectorOperators.LE, exit);
+            MISS.blend(enter, hit).intoArray(tEnter, i - first, active);
+            hits += hit.and(active).trueCount();
+        }
+
+        return hits;
+    }
+
+    // like Intersections.min and max, these don't propagate the NaNs produced by 0 * infinity in the slab test
+    private static FloatVector min(FloatVector a, FloatVector b) {
+        return b.blend(a, a.lt(b));
+    }
+
+    private static FloatVector max(FloatVector a, FloatVector b) {
+        return b.blend(a, a.compare(VectorOperators.GT, b));
+    }
+}
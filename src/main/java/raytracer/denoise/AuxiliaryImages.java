@@ -0,0 +1,10 @@
+package raytracer.denoise;
+
+/**
+ * What the denoiser needs besides the noisy image, all RGBA and bottom row first like the screen texture.
+ * @param half the average of every other sample, see raytracer.sampling.SampleAccumulator
+ * @param albedo the average first-hit albedo
+ * @param normalDepth the average first-hit shading normal in xyz and distance in w
+ */
+public record AuxiliaryImages(float[] half, float[] albedo, float[] normalDepth) {
+}
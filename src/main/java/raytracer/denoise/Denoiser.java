@@ -0,0 +1,296 @@
+package raytracer.denoise;
+
+import java.util.stream.IntStream;
+
+/**
+ * An edge-avoiding à-trous wavelet filter in the style of SVGF. The image is divided by its first-hit albedo so only
+ * the lighting is blurred and textures stay sharp, then filtered {@link #ITERATIONS} times with a 5x5 B-spline kernel
+ * whose taps spread twice as far each iteration. Each tap is weighted by how well its shading normal, depth and
+ * brightness match the center pixel's.
+ * <p>
+ * How much brightness differences are tolerated depends on how noisy the pixel is. The difference between the full
+ * and half estimates has the same variance as the full estimate, so its square is used as a per pixel variance
+ * estimate, blurred a little, and carried through the iterations like the color. Pixels with fewer than
+ * {@link #MIN_TEMPORAL_SAMPLES} samples don't have a usable half estimate yet, so their variance is estimated from
+ * their neighbours' brightness instead.
+ * <p>
+ * Every buffer is allocated up front and rows are filtered in parallel, so denoising allocates nothing per pixel.
+ */
+public final class Denoiser {
+    public static final int ITERATIONS = 5;
+
+    private static final float[] KERNEL = {1 / 16f, 1 / 4f, 3 / 8f, 1 / 4f, 1 / 16f};
+    /**
+     * How many standard deviations of brightness difference halve the weight of a tap, roughly.
+     */
+    private static final float SIGMA_LUMINANCE = 4;
+    /**
+     * The power the cosine between normals is raised to. Must be a power of two.
+     */
+    private static final int NORMAL_POWER = 128;
+    private static final float SIGMA_DEPTH = 1;
+    private static final float ALBEDO_EPSILON = 1e-3f;
+    private static final int MIN_TEMPORAL_SAMPLES = 4;
+
+    private final int width;
+    private final int height;
+    private float[] illumination;
+    private float[] illuminationTemp;
+    private float[] variance;
+    private float[] varianceTemp;
+    private final float[] normals;
+    private final float[] depths;
+    private final float[] depthGradients;
+    private final float[] luminances;
+    private final float[] sampleCounts;
+
+    public Denoiser(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        int pixels = width * height;
+        illumination = new float[pixels * 3];
+        illuminationTemp = new float[pixels * 3];
+        variance = new float[pixels];
+        varianceTemp = new float[pixels];
+        normals = new float[pixels * 3];
+        depths = new float[pixels];
+        depthGradients = new float[pixels];
+        luminances = new float[pixels];
+        sampleCounts = new float[pixels];
+    }
+
+    /**
+     * @param color the noisy image, RGBA, bottom row first
+     * @param dest receives the filtered image. May be color itself.
+     */
+    public synchronized void denoise(float[] color, AuxiliaryImages aux, float[] dest) {
+        IntStream.range(0, height).parallel().forEach(row -> prepareRow(row, color, aux));
+        IntStream.range(0, height).parallel().forEach(this::blurVarianceRow);
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            int step = 1 << iteration;
+            IntStream.range(0, height).parallel().forEach(row -> filterRow(row, step));
+            swap();
+        }
+
+        IntStream.range(0, height).parallel().forEach(row -> remodulateRow(row, aux.albedo(), dest));
+    }
+
+    private void swap() {
+        float[] temp = illumination;
+        illumination = illuminationTemp;
+        illuminationTemp = temp;
+
+        temp = variance;
+        variance = varianceTemp;
+        varianceTemp = temp;
+    }
+
+    /**
+     * Demodulates the albedo, estimates the variance, normalizes the normals and finds the depth gradient. Writes the
+     * variance to varianceTemp so it can be blurred into variance.
+     */
+    private void prepareRow(int row, float[] color, AuxiliaryImages aux) {
+        float[] half = aux.half();
+        float[] albedo = aux.albedo();
+        float[] normalDepth = aux.normalDepth();
+
+        for (int x = 0; x < width; x++) {
+            int pixel = row * width + x;
+            int rgba = pixel * 4;
+
+            float ar = Math.max(albedo[rgba], ALBEDO_EPSILON);
+            float ag = Math.max(albedo[rgba + 1], ALBEDO_EPSILON);
+            float ab = Math.max(albedo[rgba + 2], ALBEDO_EPSILON);
+
+            float r = color[rgba] / ar;
+            float g = color[rgba + 1] / ag;
+            float b = color[rgba + 2] / ab;
+            illumination[pixel * 3] = r;
+            illumination[pixel * 3 + 1] = g;
+            illumination[pixel * 3 + 2] = b;
+
+            float difference = luminance(r, g, b) - luminance(half[rgba] / ar, half[rgba + 1] / ag, half[rgba + 2] / ab);
+            varianceTemp[pixel] = difference * difference;
+            luminances[pixel] = luminance(r, g, b);
+            sampleCounts[pixel] = Math.max(half[rgba + 3], 1);
+
+            float nx = normalDepth[rgba];
+            float ny = normalDepth[rgba + 1];
+            float nz = normalDepth[rgba + 2];
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            float scale = length > 1e-6f ? 1 / length : 0;
+            normals[pixel * 3] = nx * scale;
+            normals[pixel * 3 + 1] = ny * scale;
+            normals[pixel * 3 + 2] = nz * scale;
+
+            depths[pixel] = normalDepth[rgba + 3];
+
+            float left = normalDepth[(row * width + Math.max(x - 1, 0)) * 4 + 3];
+            float right = normalDepth[(row * width + Math.min(x + 1, width - 1)) * 4 + 3];
+            float below = normalDepth[(Math.max(row - 1, 0) * width + x) * 4 + 3];
+            float above = normalDepth[(Math.min(row + 1, height - 1) * width + x) * 4 + 3];
+            depthGradients[pixel] = Math.max(Math.abs(right - left), Math.abs(above - below)) / 2;
+        }
+    }
+
+    /**
+     * A 3x3 Gaussian from the raw variance estimate in varianceTemp, which is far too noisy to use per pixel, into
+     * variance. Pixels with too few samples use the variance of their 5x5 neighbourhood's brightness instead, divided by
+     * their sample count. Only neighbours at a similar depth are included either way.
+     */
+    private void blurVarianceRow(int row) {
+        for (int x = 0; x < width; x++) {
+            int pixel = row * width + x;
+            boolean temporal = sampleCounts[pixel] >= MIN_TEMPORAL_SAMPLES;
+            int radius = temporal ? 1 : 2;
+            float depth = depths[pixel];
+            float tolerance = SIGMA_DEPTH * (depthGradients[pixel] * radius * 2 + 1e-3f * depth);
+
+            float sum = 0;
+            float sumSquares = 0;
+            float weights = 0;
+
+            for (int dy = -radius; dy <= radius; dy++) {
+                int y = row + dy;
+                if (y < 0 || y >= height) {
+                    continue;
+                }
+
+                for (int dx = -radius; dx <= radius; dx++) {
+                    int qx = x + dx;
+                    if (qx < 0 || qx >= width) {
+                        continue;
+                    }
+
+                    int q = y * width + qx;
+                    if (Math.abs(depths[q] - depth) > tolerance) {
+                        continue;
+                    }
+
+                    if (temporal) {
+                        float weight = (dx == 0 ? 0.5f : 0.25f) * (dy == 0 ? 0.5f : 0.25f);
+                        sum += varianceTemp[q] * weight;
+                        weights += weight;
+                    } else {
+                        sum += luminances[q];
+                        sumSquares += luminances[q] * luminances[q];
+                        weights++;
+                    }
+                }
+            }
+
+            if (temporal) {
+                variance[pixel] = sum / weights;
+            } else {
+                float mean = sum / weights;
+                variance[pixel] = Math.max(0, sumSquares / weights - mean * mean) / sampleCounts[pixel];
+            }
+        }
+    }
+
+    /**
+     * One à-trous iteration from illumination and variance into illuminationTemp and varianceTemp.
+     */
+    private void filterRow(int row, int step) {
+        for (int x = 0; x < width; x++) {
+            int p = row * width + x;
+
+            float lp = luminance(illumination[p * 3], illumination[p * 3 + 1], illumination[p * 3 + 2]);
+            float npx = normals[p * 3];
+            float npy = normals[p * 3 + 1];
+            float npz = normals[p * 3 + 2];
+            boolean hasNormal = npx != 0 || npy != 0 || npz != 0;
+            float zp = depths[p];
+            float luminanceScale = SIGMA_LUMINANCE * (float) Math.sqrt(Math.max(variance[p], 0)) + 1e-6f;
+            float depthScale = SIGMA_DEPTH * depthGradients[p] * step + 1e-3f * zp + 1e-6f;
+
+            float sumR = 0;
+            float sumG = 0;
+            float sumB = 0;
+            float sumWeights = 0;
+            float sumVariance = 0;
+
+            for (int ky = 0; ky < 5; ky++) {
+                int qy = row + (ky - 2) * step;
+                if (qy < 0 || qy >= height) {
+                    continue;
+                }
+
+                for (int kx = 0; kx < 5; kx++) {
+                    int qx = x + (kx - 2) * step;
+                    if (qx < 0 || qx >= width) {
+                        continue;
+                    }
+
+                    int q = qy * width + qx;
+                    float weight = KERNEL[kx] * KERNEL[ky];
+
+                    if (q != p) {
+                        float nqx = normals[q * 3];
+                        float nqy = normals[q * 3 + 1];
+                        float nqz = normals[q * 3 + 2];
+                        boolean qHasNormal = nqx != 0 || nqy != 0 || nqz != 0;
+
+                        float normalWeight;
+                        if (hasNormal != qHasNormal) {
+                            // surface next to background
+                            continue;
+                        } else if (hasNormal) {
+                            normalWeight = power(Math.max(0, npx * nqx + npy * nqy + npz * nqz));
+                        } else {
+                            normalWeight = 1;
+                        }
+
+                        float lq = luminance(illumination[q * 3], illumination[q * 3 + 1], illumination[q * 3 + 2]);
+                        int distance = Math.max(Math.abs(kx - 2), Math.abs(ky - 2));
+                        float exponent = Math.abs(lp - lq) / luminanceScale
+                                + Math.abs(zp - depths[q]) / (depthScale * distance);
+
+                        weight *= normalWeight * (float) Math.exp(-exponent);
+                    }
+
+                    sumR += illumination[q * 3] * weight;
+                    sumG += illumination[q * 3 + 1] * weight;
+                    sumB += illumination[q * 3 + 2] * weight;
+                    sumWeights += weight;
+                    sumVariance += variance[q] * weight * weight;
+                }
+            }
+
+            // the center tap always has a positive weight
+            illuminationTemp[p * 3] = sumR / sumWeights;
+            illuminationTemp[p * 3 + 1] = sumG / sumWeights;
+            illuminationTemp[p * 3 + 2] = sumB / sumWeights;
+            varianceTemp[p] = sumVariance / (sumWeights * sumWeights);
+        }
+    }
+
+    private void remodulateRow(int row, float[] albedo, float[] dest) {
+        for (int x = 0; x < width; x++) {
+            int pixel = row * width + x;
+            int rgba = pixel * 4;
+
+            dest[rgba] = illumination[pixel * 3] * Math.max(albedo[rgba], ALBEDO_EPSILON);
+            dest[rgba + 1] = illumination[pixel * 3 + 1] * Math.max(albedo[rgba + 1], ALBEDO_EPSILON);
+            dest[rgba + 2] = illumination[pixel * 3 + 2] * Math.max(albedo[rgba + 2], ALBEDO_EPSILON);
+            dest[rgba + 3] = 1;
+        }
+    }
+
+    /**
+     * @return value to the power of NORMAL_POWER, by repeated squaring
+     */
+    private static float power(float value) {
+        for (int i = 1; i < NORMAL_POWER; i *= 2) {
+            value *= value;
+        }
+
+        return value;
+    }
+
+    private static float luminance(float r, float g, float b) {
+        return 0.2126f * r + 0.7152f * g + 0.0722f * b;
+    }
+}
@@ -0,0 +1,50 @@
+package raytracer.distributed;
+
+/**
+ * Merges the sample ranges sent back by workers. Each range is the average of its samples, so it is weighted by its
+ * sample count, and sums are kept in double precision so the image doesn't drift over many thousands of samples.
+ */
+final class Accumulation {
+    private final int width;
+    private final int height;
+    private final double[] sums;
+    private long samples = 0;
+
+    Accumulation(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.sums = new double[width * height * 3];
+    }
+
+    /**
+     * @param average the average of count samples, RGB, bottom row first
+     */
+    void add(float[] average, int count) {
+        if (average.length != sums.length) {
+            throw new IllegalArgumentException("Expected " + sums.length + " floats, got " + average.length);
+        }
+
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += (double) average[i] * count;
+        }
+        samples += count;
+    }
+
+    long samples() {
+        return samples;
+    }
+
+    /**
+     * Writes the average of every sample so far into an RGBA image, bottom row first, as SavepointWriter expects.
+     */
+    void average(float[] image) {
+        double scale = samples == 0 ? 0 : 1.0 / samples;
+
+        for (int pixel = 0; pixel < width * height; pixel++) {
+            image[pixel * 4] = (float) (sums[pixel * 3] * scale);
+            image[pixel * 4 + 1] = (float) (sums[pixel * 3 + 1] * scale);
+            image[pixel * 4 + 2] = (float) (sums[pixel * 3 + 2] * scale);
+            image[pixel * 4 + 3] = 1;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package raytracer.distributed;
+
+import raytracer.Main;
+import raytracer.Scene;
+import raytracer.config.DistributedConfig;
+import raytracer.config.RenderConfig;
+import raytracer.config.Savepoint;
+import raytracer.cpu.PacketKernel;
+import raytracer.output.SavepointWriter;
+import raytracer.util.Clock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a render between worker processes. Listens for workers, sends each the config and scene, then keeps every
+ * worker busy with ranges of sample indices and merges the averages they send back, weighted by sample count, until
+ * every savepoint has been written. "frames" savepoints count merged samples.
+ * <p>
+ * A worker that disconnects or stops answering is dropped and its range is given to the next worker that asks, so the
+ * render carries on with whoever is left. Workers can join at any time.
+ */
+public class Coordinator {
+    private final RenderConfig config;
+    private final DistributedConfig distributed;
+    private final byte[] job;
+    private final int width;
+    private final int height;
+    private final SampleRanges ranges;
+    private final Accumulation accumulation;
+    private final SavepointWriter savepointWriter;
+    private final BlockingQueue<Protocol.Result> results = new LinkedBlockingQueue<>();
+    private final List<Socket> workers = new CopyOnWriteArrayList<>();
+    private final List<Process> localWorkers = new ArrayList<>();
+    private volatile boolean finished = false;
+
+    public Coordinator(RenderConfig config, Scene scene) {
+        if (config.savepoints().length == 0) {
+            throw new IllegalArgumentException("The distributed backend has no window, so it needs at least one savepoint");
+        }
+
+        for (Savepoint savepoint : config.savepoints()) {
+            if (savepoint.denoise()) {
+                throw new IllegalArgumentException("Workers don't send back the auxiliary images the denoiser needs, so savepoints can't be denoised: " + savepoint.path());
+            }
+        }
+
+        this.config = config;
+        this.distributed = config.distributed();
+        this.width = config.quality().width();
+        this.height = config.quality().height();
+        this.ranges = new SampleRanges(distributed.samplesPerRange());
+        this.accumulation = new Accumulation(width, height);
+        this.savepointWriter = new SavepointWriter(width, height);
+
+        try {
+            job = Protocol.encodeJob(config, scene);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize the scene", e);
+        }
+    }
+
+    public void run() throws IOException {
+        try (ServerSocket server = new ServerSocket(distributed.port(), 50, InetAddress.getByName(distributed.host()))) {
+            Thread acceptor = new Thread(() -> accept(server), "coordinator-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            startLocalWorkers(server.getLocalPort());
+
+            Clock clock = new Clock();
+            while (!allSaved()) {
+                Protocol.Result result;
+                try {
+                    result = results.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (result != null) {
+                    accumulation.add(result.average(), result.range().count());
+                }
+
+                for (Savepoint savepoint : config.savepoints()) {
+                    if (savepoint.readyToSave(clock.getTimef(), (int) Math.min(Integer.MAX_VALUE, accumulation.samples()))) {
+                        float[] snapshot = savepointWriter.acquire();
+                        accumulation.average(snapshot);
+                        savepointWriter.write(snapshot, savepoint.path());
+                        savepoint.markSaved();
+                    }
+                }
+            }
+        } finally {
+            finished = true;
+            stopWorkers();
+            savepointWriter.close();
+        }
+    }
+
+    private void accept(ServerSocket server) {
+        while (!finished) {
+            try {
+                Socket socket = server.accept();
+                workers.add(socket);
+
+                Thread handler = new Thread(() -> serve(socket), "coordinator-worker-" + socket.getRemoteSocketAddress());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!finished) {
+                    System.err.println("Failed to accept worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds one worker ranges until the render is finished or the worker is lost.
+     */
+    private void serve(Socket socket) {
+        SampleRange inFlight = null;
+
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) TimeUnit.SECONDS.toMillis(distributed.timeoutSeconds()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.write(job);
+            out.flush();
+
+            while (!finished) {
+                inFlight = ranges.take();
+                Protocol.writeRange(out, inFlight);
+
+                Protocol.Result result = Protocol.readResult(in);
+                if (!result.range().equals(inFlight) || result.average().length != width * height * 3) {
+                    throw new IOException("Worker sent back " + result.range() + " instead of " + inFlight);
+                }
+
+                inFlight = null;
+                results.add(result);
+            }
+
+            Protocol.writeShutdown(out);
+        } catch (IOException e) {
+            if (!finished) {
+                System.err.println("Lost worker " + socket.getRemoteSocketAddress() + ": " + e.getMessage()
+                        + (inFlight == null ? "" : ", re-issuing samples " + inFlight));
+            }
+        } finally {
+            if (inFlight != null && !finished) {
+                ranges.reissue(inFlight);
+            }
+
+            workers.remove(socket);
+        }
+    }
+
+    private void startLocalWorkers(int port) throws IOException {
+        if (distributed.localWorkers() <= 0) {
+            return;
+        }
+
+        String java = ProcessHandle.current().info().command().orElse("java");
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / distributed.localWorkers());
+
+        List<String> command = new ArrayList<>(List.of(java));
+        // workers use the same packet kernel as this JVM would
+        if (PacketKernel.vectorApiAvailable()) {
+            command.addAll(List.of("--add-modules", "jdk.incubator.vector"));
+        }
+        String packetWidth = System.getProperty(PacketKernel.WIDTH_PROPERTY);
+        if (packetWidth != null) {
+            command.add("-D" + PacketKernel.WIDTH_PROPERTY + "=" + packetWidth);
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                "--worker", "127.0.0.1:" + port, "--threads", String.valueOf(threads)));
+
+        for (int i = 0; i < distributed.localWorkers(); i++) {
+            localWorkers.add(new ProcessBuilder(command).inheritIO().start());
+        }
+    }
+
+    private void stopWorkers() {
+        for (Socket socket : workers) {
+            try {
+                // Workers treat the connection closing as the end of the render
+                socket.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+
+        for (Process process : localWorkers) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean allSaved() {
+        for (Savepoint savepoint : config.savepoints()) {
+            if (!savepoint.isSaved()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+package raytracer.distributed;
+
+import com.google.gson.Gson;
+import raytracer.Scene;
+import raytracer.config.RenderConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages between the coordinator and its workers. Every message starts with an int type; big endian throughout.
+ * <pre>
+ * coordinator to worker, once:  int magic 'RDST', int version, config json, scene (see SceneCodec)
+ * coordinator to worker:        RANGE, int first sample, int sample count
+ *                               SHUTDOWN
+ * worker to coordinator:        RESULT, int first sample, int sample count, float average[width * height * 3]
+ * </pre>
+ * The worker answers every RANGE with exactly one RESULT, averaged over the whole range and laid out bottom row first.
+ */
+final class Protocol {
+    static final int MAGIC = 0x52445354;  // "RDST"
+    static final int VERSION = 1;
+
+    static final int RANGE = 1;
+    static final int SHUTDOWN = 2;
+    static final int RESULT = 3;
+
+    private static final Gson GSON = new Gson();
+
+    record Job(RenderConfig config, Scene scene) {}
+
+    record Result(SampleRange range, float[] average) {}
+
+    private Protocol() {}
+
+    /**
+     * @return the job message, serialized once so it can be sent to every worker as is
+     */
+    static byte[] encodeJob(RenderConfig config, Scene scene) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        byte[] json = GSON.toJson(config).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(json.length);
+        out.write(json);
+
+        SceneCodec.write(out, scene);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    static Job readJob(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a ray tracer coordinator");
+        }
+
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Coordinator speaks protocol version " + version + ", this worker speaks " + VERSION);
+        }
+
+        byte[] json = new byte[in.readInt()];
+        in.readFully(json);
+        RenderConfig config = GSON.fromJson(new String(json, StandardCharsets.UTF_8), RenderConfig.class);
+
+        return new Job(config, SceneCodec.read(in));
+    }
+
+    static void writeRange(DataOutputStream out, SampleRange range) throws IOException {
+        out.writeInt(RANGE);
+        out.writeInt(range.first());
+        out.writeInt(range.count());
+        out.flush();
+    }
+
+    static SampleRange readRange(DataInputStream in) throws IOException {
+        return new SampleRange(in.readInt(), in.readInt());
+    }
+
+    static void writeShutdown(DataOutputStream out) throws IOException {
+        out.writeInt(SHUTDOWN);
+        out.flush();
+    }
+
+    static void writeResult(DataOutputStream out, SampleRange range, float[] average) throws IOException {
+        out.writeInt(RESULT);
+        out.writeInt(range.first());
+        out.writeInt(range.count());
+        SceneCodec.writeFloats(out, average);
+        out.flush();
+    }
+
+    static Result readResult(DataInputStream in) throws IOException {
+        int type = in.readInt();
+        if (type != RESULT) {
+            throw new IOException("Expected a result, got message type " + type);
+        }
+
+        SampleRange range = new SampleRange(in.readInt(), in.readInt());
+        return new Result(range, SceneCodec.readFloats(in));
+    }
+}
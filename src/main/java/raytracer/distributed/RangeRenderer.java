@@ -0,0 +1,86 @@
+package raytracer.distributed;
+
+import org.joml.Vector3f;
+import raytracer.Scene;
+import raytracer.config.RenderConfig;
+import raytracer.cpu.CpuCamera;
+import raytracer.cpu.CpuScene;
+import raytracer.cpu.PathTracer;
+import raytracer.cpu.ShaderRandom;
+import raytracer.scheduler.Tile;
+import raytracer.scheduler.TileOrder;
+import raytracer.scheduler.TileScheduler;
+
+import java.util.Arrays;
+
+/**
+ * Renders ranges of samples on a worker, tracing every pixel once per sample the way CpuRayTracer traces a frame.
+ * Adaptive sampling is not used, so every pixel of a range has the same sample count and the coordinator can weight
+ * whole ranges.
+ */
+final class RangeRenderer implements AutoCloseable {
+    private static final int TILE_SIZE = 32;
+
+    private final int width;
+    private final int height;
+    private final int bounces;
+    private final CpuCamera camera;
+    private final PathTracer pathTracer;
+    private final TileScheduler scheduler;
+    private final float[] sums;
+
+    RangeRenderer(RenderConfig config, Scene scene, int threads) {
+        this.width = config.quality().width();
+        this.height = config.quality().height();
+        this.bounces = config.quality().bounces();
+
+        camera = new CpuCamera(config.camera(), width, height);
+        pathTracer = new PathTracer(new CpuScene(scene));
+        scheduler = new TileScheduler(width, height, TILE_SIZE, TileOrder.ROW_MAJOR, threads);
+        sums = new float[width * height * 3];
+    }
+
+    /**
+     * @return the average of the samples in the range, RGB, bottom row first
+     */
+    float[] render(SampleRange range) {
+        Arrays.fill(sums, 0);
+
+        for (int sample = range.first(); sample < range.end(); sample++) {
+            int frameCounter = sample;
+            scheduler.render((tile, owner) -> renderTile(tile, frameCounter));
+        }
+
+        float[] average = new float[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            average[i] = sums[i] / range.count();
+        }
+
+        return average;
+    }
+
+    private void renderTile(Tile tile, int frameCounter) {
+        int endX = tile.x() + tile.width();
+        int endY = tile.y() + tile.height();
+
+        for (int y = tile.y(); y < endY; y++) {
+            // the camera's y axis points down, the images' point up
+            int row = height - 1 - y;
+
+            for (int x = tile.x(); x < endX; x++) {
+                ShaderRandom random = new ShaderRandom(x, y, width, height, frameCounter);
+                Vector3f color = pathTracer.rayColor(camera.getRay(x, y, random), bounces, random);
+
+                int index = (row * width + x) * 3;
+                sums[index] += color.x;
+                sums[index + 1] += color.y;
+                sums[index + 2] += color.z;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+}
@@ -0,0 +1,16 @@
+package raytracer.distributed;
+
+/**
+ * The samples with frame counters in [first, first + count). Each sample index seeds the same random numbers as the
+ * frame of the same number in the other backends, so disjoint ranges are independent samples.
+ */
+record SampleRange(int first, int count) {
+    int end() {
+        return first + count;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + first + ", " + end() + ")";
+    }
+}
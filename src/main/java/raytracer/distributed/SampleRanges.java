@@ -0,0 +1,40 @@
+package raytracer.distributed;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Hands out consecutive sample ranges, giving ranges lost with a worker to the next worker that asks before any new
+ * ones so no sample index is rendered twice or skipped.
+ */
+final class SampleRanges {
+    private final int samplesPerRange;
+    private final Deque<SampleRange> reissued = new ArrayDeque<>();
+    private int next = 0;
+
+    SampleRanges(int samplesPerRange) {
+        if (samplesPerRange <= 0) {
+            throw new IllegalArgumentException("Samples per range must be positive, got " + samplesPerRange);
+        }
+
+        this.samplesPerRange = samplesPerRange;
+    }
+
+    synchronized SampleRange take() {
+        SampleRange range = reissued.pollFirst();
+        if (range != null) {
+            return range;
+        }
+
+        range = new SampleRange(next, samplesPerRange);
+        next += samplesPerRange;
+        return range;
+    }
+
+    /**
+     * Puts back a range whose worker was lost before it sent the range back.
+     */
+    synchronized void reissue(SampleRange range) {
+        reissued.addLast(range);
+    }
+}
@@ -0,0 +1,143 @@
+package raytracer.distributed;
+
+import org.joml.Vector3f;
+import org.lwjgl.BufferUtils;
+import raytracer.Material;
+import raytracer.Mesh;
+import raytracer.Scene;
+import raytracer.Sphere;
+import raytracer.texture.Texture;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a whole scene, including textures, to a stream so workers render exactly the geometry the coordinator loaded
+ * without needing its files. Also what checkpoints hash to tell whether they were rendered from the same scene.
+ */
+public final class SceneCodec {
+    private SceneCodec() {}
+
+    public static void write(DataOutputStream out, Scene scene) throws IOException {
+        out.writeInt(scene.meshes().length);
+        for (Mesh mesh : scene.meshes()) {
+            writeFloats(out, mesh.vertices());
+            writeInts(out, mesh.indices());
+            writeFloats(out, mesh.texCoords());
+            writeInts(out, mesh.texIndices());
+            out.writeInt(mesh.materialIndex());
+        }
+
+        out.writeInt(scene.spheres().length);
+        for (Sphere sphere : scene.spheres()) {
+            writeVector(out, sphere.center());
+            out.writeFloat(sphere.radius());
+            out.writeInt(sphere.materialId());
+        }
+
+        out.writeInt(scene.materials().length);
+        for (Material material : scene.materials()) {
+            writeVector(out, material.albedo());
+            writeVector(out, material.emissionColor());
+            out.writeFloat(material.emissionStrength());
+            out.writeInt(material.type());
+            out.writeFloat(material.fuzzOrRefIdx());
+            out.writeFloat(material.specularProb());
+            out.writeInt(material.textureId());
+        }
+
+        writeTextures(out, scene.diffuseTextures());
+        writeTextures(out, scene.normalTextures());
+        writeTextures(out, scene.parallaxTextures());
+    }
+
+    public static Scene read(DataInputStream in) throws IOException {
+        Mesh[] meshes = new Mesh[in.readInt()];
+        for (int i = 0; i < meshes.length; i++) {
+            meshes[i] = new Mesh(readFloats(in), readInts(in), readFloats(in), readInts(in), in.readInt());
+        }
+
+        Sphere[] spheres = new Sphere[in.readInt()];
+        for (int i = 0; i < spheres.length; i++) {
+            spheres[i] = new Sphere(readVector(in), in.readFloat(), in.readInt());
+        }
+
+        Material[] materials = new Material[in.readInt()];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = new Material(readVector(in), readVector(in), in.readFloat(), in.readInt(), in.readFloat(), in.readFloat(), in.readInt());
+        }
+
+        return new Scene(meshes, spheres, materials, readTextures(in), readTextures(in), readTextures(in));
+    }
+
+    private static void writeTextures(DataOutputStream out, Texture[] textures) throws IOException {
+        out.writeInt(textures.length);
+        for (Texture texture : textures) {
+            out.writeInt(texture.width());
+            out.writeInt(texture.height());
+
+            ByteBuffer bytes = texture.bytes().duplicate();
+            byte[] array = new byte[bytes.remaining()];
+            bytes.get(array);
+            out.write(array);
+        }
+    }
+
+    private static Texture[] readTextures(DataInputStream in) throws IOException {
+        Texture[] textures = new Texture[in.readInt()];
+        for (int i = 0; i < textures.length; i++) {
+            int width = in.readInt();
+            int height = in.readInt();
+
+            byte[] array = new byte[width * height * 4];
+            in.readFully(array);
+            textures[i] = new Texture(width, height, BufferUtils.createByteBuffer(array.length).put(array).flip());
+        }
+
+        return textures;
+    }
+
+    private static void writeVector(DataOutputStream out, Vector3f vector) throws IOException {
+        out.writeFloat(vector.x);
+        out.writeFloat(vector.y);
+        out.writeFloat(vector.z);
+    }
+
+    private static Vector3f readVector(DataInputStream in) throws IOException {
+        return new Vector3f(in.readFloat(), in.readFloat(), in.readFloat());
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * Float.BYTES);
+        bytes.asFloatBuffer().put(values);
+        out.write(bytes.array());
+    }
+
+    static float[] readFloats(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[Math.multiplyExact(in.readInt(), Float.BYTES)];
+        in.readFully(bytes);
+
+        float[] values = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * Integer.BYTES);
+        bytes.asIntBuffer().put(values);
+        out.write(bytes.array());
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[Math.multiplyExact(in.readInt(), Integer.BYTES)];
+        in.readFully(bytes);
+
+        int[] values = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+        return values;
+    }
+}
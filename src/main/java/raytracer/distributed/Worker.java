@@ -0,0 +1,83 @@
+package raytracer.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Connects to a coordinator, receives the config and scene, then renders the sample ranges it is given until told to
+ * shut down. Started with {@code --worker host:port}, either by hand on another machine or by the coordinator itself.
+ */
+public class Worker {
+    /**
+     * How long to keep retrying while the coordinator isn't listening yet.
+     */
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final int threads;
+
+    /**
+     * @param threads how many cores to render on
+     */
+    public Worker(String host, int port, int threads) {
+        this.host = host;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public void run() throws IOException {
+        try (Socket socket = connect()) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            Protocol.Job job = Protocol.readJob(in);
+
+            try (RangeRenderer renderer = new RangeRenderer(job.config(), job.scene(), threads)) {
+                while (true) {
+                    int type = in.readInt();
+
+                    if (type == Protocol.SHUTDOWN) {
+                        return;
+                    } else if (type != Protocol.RANGE) {
+                        throw new IOException("Unexpected message type " + type);
+                    }
+
+                    SampleRange range = Protocol.readRange(in);
+                    Protocol.writeResult(out, range, renderer.render(range));
+                }
+            } catch (EOFException | SocketException e) {
+                // The coordinator closes the connection once every savepoint is written
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(250);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
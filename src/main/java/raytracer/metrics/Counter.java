@@ -0,0 +1,40 @@
+package raytracer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total. Adding is uncontended across threads, so tile workers can add to it directly.
+ */
+public final class Counter {
+    private final String name;
+    private final String help;
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * @param name lowercase with underscores, like Prometheus metric names, without the _total suffix
+     */
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String help() {
+        return help;
+    }
+
+    public void add(long amount) {
+        total.add(amount);
+    }
+
+    public void increment() {
+        total.increment();
+    }
+
+    public long get() {
+        return total.sum();
+    }
+}
@@ -0,0 +1,148 @@
+package raytracer.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in log-linear buckets. Everything up to 1 µs shares the first bucket; each power of two nanoseconds
+ * above that, up to about 69 s, is split into {@value #SUB_BUCKETS} equal buckets, so reporting a duration as its
+ * bucket's upper bound overstates it by less than 25%. Anything longer lands in an overflow bucket.
+ * <p>
+ * Recording is a few atomic adds with no allocation or locking, so it is cheap enough for every frame and safe from
+ * any thread.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKETS = 4;
+    private static final int SUB_BITS = 2;
+    private static final int MIN_EXPONENT = 10;
+    private static final int MAX_EXPONENT = 36;
+    /**
+     * The first bucket, one per sub-bucket of each power of two, then overflow.
+     */
+    static final int BUCKETS = 1 + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 1;
+
+    private final String name;
+    private final String help;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param name lowercase with underscores, like Prometheus metric names, without a unit
+     * @param help what is being timed
+     */
+    LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String help() {
+        return help;
+    }
+
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(nanos));
+        sumNanos.add(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Records the time since startNanos, a value from {@link System#nanoTime}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= 1L << MIN_EXPONENT) {
+            return 0;
+        }
+
+        // nanos is in (2^exponent, 2^(exponent + 1)]
+        long value = nanos - 1;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the longest duration in the bucket in nanoseconds, or {@link Long#MAX_VALUE} for the overflow bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket == 0) {
+            return 1L << MIN_EXPONENT;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+        int sub = (bucket - 1) % SUB_BUCKETS;
+        return (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BITS));
+    }
+
+    /**
+     * @return whether the bucket ends on a power of two, which the Prometheus export keeps to stay short
+     */
+    static boolean endsOctave(int bucket) {
+        return bucket == 0 || bucket == BUCKETS - 1 || (bucket - 1) % SUB_BUCKETS == SUB_BUCKETS - 1;
+    }
+
+    /**
+     * Copies the counts. Recording can carry on meanwhile, so the count and sum may be a record or two apart.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+
+        return new Snapshot(copy, count, sumNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * @param counts the number of durations in each bucket
+     */
+    public record Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the upper bound of the bucket the quantile falls in, capped at the longest duration recorded
+         */
+        public long quantileNanos(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxNanos);
+                }
+            }
+
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package raytracer.metrics;
+
+import java.util.List;
+
+/**
+ * Every histogram and counter the renderer records, for {@link MetricsExporter} to write out. They are always recorded;
+ * the config only decides whether they are exported.
+ * <p>
+ * The GPU backend times the CPU side of binding, dispatching and presenting, and the dispatch itself with a timer query.
+ * The CPU backend's dispatch is the whole frame of tiles. Samples and rays are counted by both: the shader adds up what
+ * each workgroup traced and {@link raytracer.rendering.FrameStatsReadback} reads the totals back a few frames later.
+ */
+public final class Metrics {
+    public static final LatencyHistogram FRAME = new LatencyHistogram("frame",
+            "Wall time of a whole frame, from the start of one to the start of the next");
+    public static final LatencyHistogram BUFFER_BIND = new LatencyHistogram("buffer_bind",
+            "Flushing edited buffers and binding every buffer and texture before the dispatch");
+    public static final LatencyHistogram COMPUTE_DISPATCH = new LatencyHistogram("compute_dispatch",
+            "Issuing the ray tracing dispatch on the GPU backend, or tracing every tile on the CPU backend");
+    public static final LatencyHistogram COMPUTE_GPU = new LatencyHistogram("compute_gpu",
+            "GPU time of the ray tracing dispatch, from a timer query");
+    public static final LatencyHistogram PRESENT = new LatencyHistogram("present",
+            "Drawing the image to the window and swapping buffers");
+    public static final LatencyHistogram SAVEPOINT_READBACK = new LatencyHistogram("savepoint_readback",
+            "Copying a finished savepoint image out of the GPU or the accumulator");
+    public static final LatencyHistogram SAVEPOINT_DENOISE = new LatencyHistogram("savepoint_denoise",
+            "Denoising a savepoint, on the writer thread");
+    public static final LatencyHistogram SAVEPOINT_ENCODE = new LatencyHistogram("savepoint_encode",
+            "Encoding a savepoint and writing it to disk, on the writer thread");
+    public static final LatencyHistogram SCENE_LOAD = new LatencyHistogram("scene_load",
+            "Loading every file the scene refers to and building the scene");
+
+    public static final Counter FRAMES = new Counter("frames", "Frames rendered");
+    public static final Counter SAMPLES = new Counter("samples", "Pixel samples traced");
+    public static final Counter RAYS = new Counter("rays", "Rays traced, counting every bounce");
+    public static final Counter UPLOADED_BYTES = new Counter("uploaded_bytes",
+            "Bytes uploaded to GPU buffers and textures");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = List.of(FRAME, BUFFER_BIND, COMPUTE_DISPATCH, COMPUTE_GPU,
+            PRESENT, SAVEPOINT_READBACK, SAVEPOINT_DENOISE, SAVEPOINT_ENCODE, SCENE_LOAD);
+    private static final List<Counter> COUNTERS = List.of(FRAMES, SAMPLES, RAYS, UPLOADED_BYTES);
+
+    private Metrics() {}
+
+    public static List<LatencyHistogram> histograms() {
+        return HISTOGRAMS;
+    }
+
+    public static List<Counter> counters() {
+        return COUNTERS;
+    }
+}
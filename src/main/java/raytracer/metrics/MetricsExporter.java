@@ -0,0 +1,188 @@
+package raytracer.metrics;
+
+import com.google.gson.GsonBuilder;
+import raytracer.config.MetricsConfig;
+import raytracer.config.MetricsFormat;
+import raytracer.util.CacheDirectory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link Metrics} to a file every {@link MetricsConfig#intervalSeconds()} on a background thread, and once more
+ * on close. Does nothing if metrics are disabled.
+ */
+public class MetricsExporter implements AutoCloseable {
+    private static final String PREFIX = "reina_";
+
+    private final MetricsConfig config;
+    private final Path path;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService executor;
+
+    public MetricsExporter(MetricsConfig config) {
+        this.config = config;
+        this.path = Path.of(config.path());
+
+        if (!config.enabled()) {
+            executor = null;
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long intervalMillis = Math.max(1, (long) (config.intervalSeconds() * 1000));
+        executor.scheduleWithFixedDelay(this::export, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void export() {
+        try {
+            write(path, format(config.format(), (System.nanoTime() - startNanos) / 1e9));
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes next to the path and moves the file into place, so whatever scrapes it never reads half a file.
+     */
+    private static void write(Path path, String text) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            CacheDirectory.moveIntoPlace(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param uptimeSeconds how long the renderer has been running
+     */
+    public static String format(MetricsFormat format, double uptimeSeconds) {
+        return switch (format) {
+            case JSON -> json(uptimeSeconds);
+            case PROMETHEUS -> prometheus(uptimeSeconds);
+        };
+    }
+
+    private static String json(double uptimeSeconds) {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        for (Counter counter : Metrics.counters()) {
+            counters.put(counter.name(), counter.get());
+        }
+
+        Map<String, Object> histograms = new LinkedHashMap<>();
+        for (LatencyHistogram histogram : Metrics.histograms()) {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            List<Map<String, Object>> buckets = new ArrayList<>();
+            for (int i = 0; i < snapshot.counts().length; i++) {
+                if (snapshot.counts()[i] > 0) {
+                    long bound = LatencyHistogram.upperBound(i);
+                    Map<String, Object> bucket = new LinkedHashMap<>();
+                    bucket.put("leMs", bound == Long.MAX_VALUE ? "+Inf" : millis(bound));
+                    bucket.put("count", snapshot.counts()[i]);
+                    buckets.add(bucket);
+                }
+            }
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", snapshot.count());
+            summary.put("totalMs", millis(snapshot.sumNanos()));
+            summary.put("meanMs", millis(snapshot.meanNanos()));
+            summary.put("p50Ms", millis(snapshot.quantileNanos(0.5)));
+            summary.put("p90Ms", millis(snapshot.quantileNanos(0.9)));
+            summary.put("p99Ms", millis(snapshot.quantileNanos(0.99)));
+            summary.put("maxMs", millis(snapshot.maxNanos()));
+            summary.put("buckets", buckets);
+            histograms.put(histogram.name(), summary);
+        }
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("uptimeSeconds", uptimeSeconds);
+        root.put("counters", counters);
+        root.put("histograms", histograms);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root) + "\n";
+    }
+
+    private static double millis(double nanos) {
+        // a microsecond is finer than anything the buckets resolve
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    private static String prometheus(double uptimeSeconds) {
+        StringBuilder text = new StringBuilder();
+
+        text.append("# HELP ").append(PREFIX).append("uptime_seconds Seconds since the renderer started\n");
+        text.append("# TYPE ").append(PREFIX).append("uptime_seconds gauge\n");
+        text.append(PREFIX).append("uptime_seconds ").append(uptimeSeconds).append('\n');
+
+        for (Counter counter : Metrics.counters()) {
+            String name = PREFIX + counter.name() + "_total";
+            text.append("# HELP ").append(name).append(' ').append(counter.help()).append('\n');
+            text.append("# TYPE ").append(name).append(" counter\n");
+            text.append(name).append(' ').append(counter.get()).append('\n');
+        }
+
+        for (LatencyHistogram histogram : Metrics.histograms()) {
+            String name = PREFIX + histogram.name() + "_seconds";
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            text.append("# HELP ").append(name).append(' ').append(histogram.help()).append('\n');
+            text.append("# TYPE ").append(name).append(" histogram\n");
+
+            // Prometheus buckets are cumulative, so keeping only the powers of two loses resolution but no counts
+            long cumulative = 0;
+            for (int i = 0; i < snapshot.counts().length; i++) {
+                cumulative += snapshot.counts()[i];
+                if (LatencyHistogram.endsOctave(i)) {
+                    long bound = LatencyHistogram.upperBound(i);
+                    String le = bound == Long.MAX_VALUE ? "+Inf" : Double.toString(bound / 1e9);
+                    text.append(name).append("_bucket{le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+                }
+            }
+
+            text.append(name).append("_sum ").append(snapshot.sumNanos() / 1e9).append('\n');
+            text.append(name).append("_count ").append(snapshot.count()).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Stops the periodic writes and writes the final values.
+     */
+    @Override
+    public void close() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        export();
+    }
+}
@@ -0,0 +1,35 @@
+package raytracer.obj;
+
+import java.util.List;
+
+/**
+ * Levels of detail of one mesh, from full detail to coarsest.
+ * @param levels each level's geometry, with its own compacted vertices
+ * @param errors the farthest any full detail vertex is from each level's surface, in the mesh's own units. 0 for the
+ *               first.
+ */
+public record LodChain(List<ObjData> levels, float[] errors) {
+    /**
+     * @return a chain with only the given geometry
+     */
+    public static LodChain of(ObjData data) {
+        return new LodChain(List.of(data), new float[]{0});
+    }
+
+    public ObjData full() {
+        return levels.get(0);
+    }
+
+    /**
+     * @return the coarsest level whose error is at most maxError, which is the full detail one if none are
+     */
+    public int coarsest(float maxError) {
+        for (int level = levels.size() - 1; level > 0; level--) {
+            if (errors[level] <= maxError) {
+                return level;
+            }
+        }
+
+        return 0;
+    }
+}
@@ -0,0 +1,151 @@
+package raytracer.obj;
+
+import raytracer.config.MeshCacheConfig;
+import raytracer.util.CacheDirectory;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Caches parsed OBJ files on disk in a flat binary format so later runs can map them straight into memory instead of
+ * parsing text.
+ * <p>
+ * Entries are named after the SHA-256 of the OBJ's bytes and {@link #LOADER_VERSION}, so editing an OBJ or changing
+ * how OBJs are loaded never hits a stale entry. Entries written by other loader versions are deleted when the cache is
+ * opened, and the least recently used entries are evicted whenever the cache grows past its size limit.
+ * <p>
+ * File layout, little endian:
+ * <pre>
+ * int   magic            'RMSH'
+ * int   loader version
+ * int   vertex count
+ * int   texture coordinate count
+ * int   triangle count
+ * float vertices[3 * vertex count]
+ * float texCoords[2 * texture coordinate count]
+ * int   indices[3 * triangle count]
+ * int   texIndices[3 * triangle count]
+ * </pre>
+ */
+public class MeshCache {
+    /**
+     * Bump whenever {@link ObjParser}'s output or the file layout changes.
+     */
+    public static final int LOADER_VERSION = 2;
+
+    private static final int MAGIC = 0x48534D52;  // "RMSH" read as a little endian int
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final CacheDirectory directory;
+
+    public MeshCache(MeshCacheConfig config) {
+        this.directory = config.enabled()
+                ? new CacheDirectory(Path.of(config.directory()), ".mesh", LOADER_VERSION, (long) config.maxSizeMb() << 20)
+                : null;
+    }
+
+    /**
+     * Loads an OBJ file, from the cache if it has been loaded before.
+     * @param path the path to the obj file
+     * @return the geometry of the obj file
+     */
+    public ObjData load(Path path) throws IOException {
+        if (directory == null) {
+            return ObjParser.parse(path);
+        }
+
+        Path entry = directory.entry(path);
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                ObjData data = read(entry);
+                directory.touch(entry);
+                return data;
+            } catch (IOException | RuntimeException e) {
+                // Truncated or otherwise unreadable; fall through and rewrite it
+                Files.deleteIfExists(entry);
+            }
+        }
+
+        ObjData data = ObjParser.parse(path);
+        write(entry, data);
+        directory.evict();
+
+        return data;
+    }
+
+    static ObjData read(Path entry) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != LOADER_VERSION) {
+            throw new IOException("Not a mesh cache entry for loader version " + LOADER_VERSION + ": " + entry);
+        }
+
+        int vertexCount = buffer.getInt();
+        int texCoordCount = buffer.getInt();
+        int triangleCount = buffer.getInt();
+
+        long expectedBytes = HEADER_BYTES + 4L * (3L * vertexCount + 2L * texCoordCount + 6L * triangleCount);
+        if (vertexCount < 0 || texCoordCount < 0 || triangleCount < 0 || buffer.capacity() != expectedBytes) {
+            throw new IOException("Corrupt mesh cache entry: " + entry);
+        }
+
+        float[] vertices = new float[3 * vertexCount];
+        float[] texCoords = new float[2 * texCoordCount];
+        int[] indices = new int[3 * triangleCount];
+        int[] texIndices = new int[3 * triangleCount];
+
+        buffer.asFloatBuffer().get(vertices);
+        buffer.position(buffer.position() + vertices.length * Float.BYTES);
+        buffer.asFloatBuffer().get(texCoords);
+        buffer.position(buffer.position() + texCoords.length * Float.BYTES);
+        buffer.asIntBuffer().get(indices);
+        buffer.position(buffer.position() + indices.length * Integer.BYTES);
+        buffer.asIntBuffer().get(texIndices);
+
+        return new ObjData(vertices, texCoords, indices, texIndices);
+    }
+
+    private void write(Path entry, ObjData data) throws IOException {
+        long size = HEADER_BYTES + 4L * (data.vertices().length + data.texCoords().length
+                + data.indices().length + data.texIndices().length);
+
+        // Write next to the entry and move it into place so a crash or a concurrent run never sees half a file
+        Path temp = directory.createTemp(entry);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(LOADER_VERSION);
+                buffer.putInt(data.vertices().length / 3);
+                buffer.putInt(data.texCoords().length / 2);
+                buffer.putInt(data.triangleCount());
+
+                buffer.asFloatBuffer().put(data.vertices());
+                buffer.position(buffer.position() + data.vertices().length * Float.BYTES);
+                buffer.asFloatBuffer().put(data.texCoords());
+                buffer.position(buffer.position() + data.texCoords().length * Float.BYTES);
+                buffer.asIntBuffer().put(data.indices());
+                buffer.position(buffer.position() + data.indices().length * Integer.BYTES);
+                buffer.asIntBuffer().put(data.texIndices());
+
+                buffer.force();
+            }
+
+            CacheDirectory.moveIntoPlace(temp, entry);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package raytracer.obj;
+
+/**
+ * The geometry of an OBJ file, triangulated and flattened into primitive arrays.
+ * @param vertices packed xyz positions
+ * @param texCoords packed uv coordinates
+ * @param indices 3 vertex indices per triangle, 0-based
+ * @param texIndices 3 texture coordinate indices per triangle, 0-based
+ */
+public record ObjData(float[] vertices, float[] texCoords, int[] indices, int[] texIndices) {
+    public int triangleCount() {
+        return indices.length / 3;
+    }
+}
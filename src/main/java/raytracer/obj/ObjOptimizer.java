@@ -0,0 +1,172 @@
+package raytracer.obj;
+
+import org.lwjgl.BufferUtils;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+import raytracer.config.MeshOptimizationConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.*;
+
+/**
+ * Runs OBJ geometry through meshoptimizer after it is parsed.
+ * <p>
+ * OBJs index positions and texture coordinates separately, and parsers often write out the same corner more than once.
+ * Welding turns every distinct pair of position and texture coordinate into one vertex, so both index arrays become
+ * the same array. Triangles are then reordered so consecutive ones share vertices, and vertices so they are stored in
+ * the order triangles first use them, which keeps the vertices a BVH leaf reads close together in memory.
+ * <p>
+ * Simplified levels collapse edges of the full detail mesh, never of the previous level, so errors don't compound.
+ * Vertices on texture coordinate seams and open borders only ever collapse along them, so seams stay where they are
+ * and no holes open up. meshoptimizer's own error is an estimate that undershoots on coarse levels, so each level's
+ * error is measured instead, as the farthest any full detail vertex is from the level's surface.
+ */
+public final class ObjOptimizer {
+    // xyz followed by uv
+    private static final int VERTEX_FLOATS = 5;
+    private static final int VERTEX_BYTES = VERTEX_FLOATS * Float.BYTES;
+    /**
+     * A level has to drop at least this fraction of the previous level's triangles, or simplifying stops there.
+     */
+    private static final float MIN_REDUCTION = 0.05f;
+
+    private ObjOptimizer() {}
+
+    /**
+     * @return the levels of detail config asks for, or only the unchanged data if optimization is disabled
+     */
+    public static LodChain optimize(ObjData data, MeshOptimizationConfig config) {
+        if (!config.enabled()) {
+            return LodChain.of(data);
+        }
+
+        return lods(weld(data), config.lods(), config.lodRatio());
+    }
+
+    /**
+     * Merges identical corners into one vertex each and reorders the result for locality. Every triangle keeps its exact
+     * positions and texture coordinates.
+     */
+    public static ObjData weld(ObjData data) {
+        int cornerCount = data.indices().length;
+        ByteBuffer corners = BufferUtils.createByteBuffer(cornerCount * VERTEX_BYTES);
+        FloatBuffer cornerFloats = corners.asFloatBuffer();
+        for (int i = 0; i < cornerCount; i++) {
+            int vertex = data.indices()[i] * 3;
+            int texCoord = data.texIndices()[i] * 2;
+            cornerFloats.put(data.vertices(), vertex, 3).put(data.texCoords(), texCoord, 2);
+        }
+
+        // Without an index buffer every corner is its own vertex, so the remap is the welded index buffer
+        IntBuffer remap = BufferUtils.createIntBuffer(cornerCount);
+        int vertexCount = (int) meshopt_generateVertexRemap(remap, null, cornerCount, corners, cornerCount, VERTEX_BYTES);
+        ByteBuffer vertices = BufferUtils.createByteBuffer(vertexCount * VERTEX_BYTES);
+        meshopt_remapVertexBuffer(vertices, corners, cornerCount, VERTEX_BYTES, remap);
+
+        return reorder(remap, vertices, vertexCount);
+    }
+
+    /**
+     * @param welded geometry from {@link #weld}, whose index arrays are the same array
+     * @param levels how many levels to build at most, counting welded itself
+     * @param ratio the fraction of the previous level's triangles each level aims for
+     */
+    public static LodChain lods(ObjData welded, int levels, float ratio) {
+        List<ObjData> chain = new ArrayList<>(List.of(welded));
+        List<Float> errors = new ArrayList<>(List.of(0f));
+
+        int indexCount = welded.indices().length;
+        int vertexCount = welded.vertices().length / 3;
+        ByteBuffer vertices = interleave(welded);
+        FloatBuffer positions = vertices.asFloatBuffer();
+        IntBuffer indices = BufferUtils.createIntBuffer(indexCount).put(welded.indices()).flip();
+        IntBuffer simplified = BufferUtils.createIntBuffer(indexCount);
+
+        int previousTriangles = indexCount / 3;
+        for (int level = 1; level < levels; level++) {
+            long targetTriangles = Math.round(indexCount / 3 * Math.pow(ratio, level));
+            if (targetTriangles < 1) {
+                break;
+            }
+
+            simplified.clear();
+            // an error limit of 1, the mesh's whole extent, so only the triangle count stops the simplifier
+            int count = (int) meshopt_simplify(simplified, indices, positions, vertexCount, VERTEX_BYTES,
+                    targetTriangles * 3, 1, 0, null);
+            int triangles = count / 3;
+            if (triangles == 0 || triangles > previousTriangles * (1 - MIN_REDUCTION)) {
+                break;
+            }
+
+            simplified.limit(count);
+            ObjData lod = reorder(simplified, vertices, vertexCount);
+            chain.add(lod);
+            errors.add(deviation(welded.vertices(), lod));
+            previousTriangles = triangles;
+        }
+
+        float[] errorArray = new float[errors.size()];
+        for (int i = 0; i < errorArray.length; i++) {
+            errorArray[i] = errors.get(i);
+        }
+
+        return new LodChain(List.copyOf(chain), errorArray);
+    }
+
+    /**
+     * Optimizes the triangle order for vertex reuse, then stores only the vertices the triangles use, in the order they
+     * are first used.
+     * @param indices left unchanged
+     * @param vertices interleaved, VERTEX_BYTES each. Left unchanged.
+     */
+    private static ObjData reorder(IntBuffer indices, ByteBuffer vertices, int vertexCount) {
+        int indexCount = indices.remaining();
+        IntBuffer ordered = BufferUtils.createIntBuffer(indexCount);
+        meshopt_optimizeVertexCache(ordered, indices, vertexCount);
+
+        ByteBuffer fetched = BufferUtils.createByteBuffer(vertexCount * VERTEX_BYTES);
+        int usedCount = (int) meshopt_optimizeVertexFetch(fetched, ordered, vertices, vertexCount, VERTEX_BYTES);
+
+        float[] positions = new float[usedCount * 3];
+        float[] texCoords = new float[usedCount * 2];
+        FloatBuffer floats = fetched.asFloatBuffer();
+        for (int i = 0; i < usedCount; i++) {
+            floats.get(i * VERTEX_FLOATS, positions, i * 3, 3);
+            floats.get(i * VERTEX_FLOATS + 3, texCoords, i * 2, 2);
+        }
+
+        int[] indexArray = new int[indexCount];
+        ordered.get(0, indexArray);
+
+        return new ObjData(positions, texCoords, indexArray, indexArray);
+    }
+
+    /**
+     * @return the farthest any of the points is from the surface of data
+     */
+    public static float deviation(float[] points, ObjData data) {
+        Bvh bvh = BvhBuilder.build(data.vertices(), data.indices());
+        float farthest = 0;
+        for (int i = 0; i < points.length; i += 3) {
+            farthest = Math.max(farthest, bvh.distanceSquared(points[i], points[i + 1], points[i + 2], data.vertices(), data.indices()));
+        }
+
+        return (float) Math.sqrt(farthest);
+    }
+
+    private static ByteBuffer interleave(ObjData welded) {
+        int vertexCount = welded.vertices().length / 3;
+        ByteBuffer vertices = BufferUtils.createByteBuffer(vertexCount * VERTEX_BYTES);
+        FloatBuffer floats = vertices.asFloatBuffer();
+        for (int i = 0; i < vertexCount; i++) {
+            floats.put(welded.vertices(), i * 3, 3).put(welded.texCoords(), i * 2, 2);
+        }
+
+        return vertices;
+    }
+}
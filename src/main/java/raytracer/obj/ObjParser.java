@@ -0,0 +1,355 @@
+package raytracer.obj;
+
+import raytracer.util.FloatArrayList;
+import raytracer.util.IntArrayList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Reads OBJ files in a single pass, parsing numbers straight out of the raw bytes into primitive arrays. Supports v,
+ * vt and f lines with v, v/vt, v//vn and v/vt/vn corners, negative (relative) indices, and polygons, which are fan
+ * triangulated. Normals and everything else are skipped.
+ * <p>
+ * Large files are split at line boundaries into chunks that are parsed in parallel and then concatenated.
+ */
+public class ObjParser {
+    private static final int PARALLEL_THRESHOLD = 8 << 20;
+    private static final int MIN_CHUNK_SIZE = 2 << 20;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private ObjParser() {}
+
+    public static ObjData parse(Path path) throws IOException {
+        return parse(Files.readAllBytes(path));
+    }
+
+    public static ObjData parse(byte[] bytes) {
+        int chunkCount = 1;
+        if (bytes.length >= PARALLEL_THRESHOLD) {
+            chunkCount = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), bytes.length / MIN_CHUNK_SIZE));
+        }
+
+        int[] boundaries = splitAtLines(bytes, chunkCount);
+
+        Chunk[] chunks = IntStream.range(0, chunkCount)
+                .parallel()
+                .mapToObj(i -> new Chunk(bytes, boundaries[i], boundaries[i + 1]).parse())
+                .toArray(Chunk[]::new);
+
+        return merge(chunks);
+    }
+
+    /**
+     * @return chunkCount + 1 offsets, each chunk starting at the beginning of a line
+     */
+    private static int[] splitAtLines(byte[] bytes, int chunkCount) {
+        int[] boundaries = new int[chunkCount + 1];
+        boundaries[chunkCount] = bytes.length;
+
+        for (int i = 1; i < chunkCount; i++) {
+            int boundary = Math.max(boundaries[i - 1], (int) ((long) bytes.length * i / chunkCount));
+            while (boundary < bytes.length && bytes[boundary - 1] != '\n') {
+                boundary++;
+            }
+
+            boundaries[i] = boundary;
+        }
+
+        return boundaries;
+    }
+
+    private static ObjData merge(Chunk[] chunks) {
+        int vertexFloats = 0, texCoordFloats = 0, indexCount = 0;
+        for (Chunk chunk : chunks) {
+            vertexFloats += chunk.vertices.size();
+            texCoordFloats += chunk.texCoords.size();
+            indexCount += chunk.indices.size();
+        }
+
+        // faces without texture coordinates all refer to texture coordinate 0, so make sure it exists
+        boolean addDefaultTexCoord = texCoordFloats == 0 && indexCount > 0;
+
+        float[] vertices = new float[vertexFloats];
+        float[] texCoords = new float[addDefaultTexCoord ? 2 : texCoordFloats];
+        int[] indices = new int[indexCount];
+        int[] texIndices = new int[indexCount];
+
+        int vertexOffset = 0, texCoordOffset = 0, indexOffset = 0;
+        for (Chunk chunk : chunks) {
+            chunk.vertices.copyTo(vertices, vertexOffset * 3);
+            chunk.texCoords.copyTo(texCoords, texCoordOffset * 2);
+            chunk.indices.copyTo(indices, indexOffset);
+            chunk.texIndices.copyTo(texIndices, indexOffset);
+
+            // negative indices were resolved against the chunk, so they still need the vertices of earlier chunks
+            for (int i = 0; i < chunk.relativeIndices.size(); i++) {
+                indices[indexOffset + chunk.relativeIndices.get(i)] += vertexOffset;
+            }
+
+            for (int i = 0; i < chunk.relativeTexIndices.size(); i++) {
+                texIndices[indexOffset + chunk.relativeTexIndices.get(i)] += texCoordOffset;
+            }
+
+            vertexOffset += chunk.vertices.size() / 3;
+            texCoordOffset += chunk.texCoords.size() / 2;
+            indexOffset += chunk.indices.size();
+        }
+
+        int vertexCount = vertices.length / 3;
+        int texCoordCount = texCoords.length / 2;
+        for (int i = 0; i < indexCount; i++) {
+            if (indices[i] < 0 || indices[i] >= vertexCount) {
+                throw new IllegalArgumentException("Face refers to vertex " + (indices[i] + 1) + ", but there are only " + vertexCount);
+            } else if (texIndices[i] < 0 || texIndices[i] >= texCoordCount) {
+                throw new IllegalArgumentException("Face refers to texture coordinate " + (texIndices[i] + 1) + ", but there are only " + texCoordCount);
+            }
+        }
+
+        return new ObjData(vertices, texCoords, indices, texIndices);
+    }
+
+    /**
+     * Parses the lines in [start, end). Indices are stored 0-based. Negative indices are resolved against the
+     * vertices of this chunk only, and their positions are recorded so merge() can offset them.
+     */
+    private static class Chunk {
+        private final byte[] bytes;
+        private final int end;
+        private int pos;
+
+        final FloatArrayList vertices;
+        final FloatArrayList texCoords;
+        final IntArrayList indices;
+        final IntArrayList texIndices;
+        final IntArrayList relativeIndices = new IntArrayList();
+        final IntArrayList relativeTexIndices = new IntArrayList();
+
+        // the corners of the face being parsed, before triangulation
+        private final IntArrayList faceIndices = new IntArrayList();
+        private final IntArrayList faceTexIndices = new IntArrayList();
+        private final IntArrayList faceRelative = new IntArrayList();
+
+        Chunk(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.pos = start;
+            this.end = end;
+
+            // rough guesses from typical OBJ line lengths, to avoid most of the regrowing
+            int estimatedLines = Math.max(16, (end - start) / 32);
+            vertices = new FloatArrayList(estimatedLines);
+            texCoords = new FloatArrayList(estimatedLines / 2);
+            indices = new IntArrayList(estimatedLines * 3);
+            texIndices = new IntArrayList(estimatedLines * 3);
+        }
+
+        Chunk parse() {
+            while (pos < end) {
+                skipSpaces();
+
+                if (pos + 1 < end && bytes[pos] == 'v' && isSpace(bytes[pos + 1])) {
+                    pos++;
+                    vertices.add(parseFloat());
+                    vertices.add(parseFloat());
+                    vertices.add(parseFloat());
+                } else if (pos + 2 < end && bytes[pos] == 'v' && bytes[pos + 1] == 't' && isSpace(bytes[pos + 2])) {
+                    pos += 2;
+                    texCoords.add(parseFloat());
+                    texCoords.add(parseFloat());
+                } else if (pos + 1 < end && bytes[pos] == 'f' && isSpace(bytes[pos + 1])) {
+                    pos++;
+                    parseFace();
+                }
+
+                skipLine();
+            }
+
+            return this;
+        }
+
+        private void parseFace() {
+            faceIndices.clear();
+            faceTexIndices.clear();
+            faceRelative.clear();
+
+            while (true) {
+                skipSpaces();
+                if (pos >= end || bytes[pos] == '\n' || bytes[pos] == '\r' || bytes[pos] == '#') {
+                    break;
+                }
+
+                int relative = 0;
+                int index = parseInt();
+                if (index < 0) {
+                    index += vertices.size() / 3;
+                    relative |= 1;
+                } else {
+                    index -= 1;
+                }
+
+                int texIndex = 0;
+                if (pos < end && bytes[pos] == '/') {
+                    pos++;
+
+                    if (pos < end && bytes[pos] != '/' && !isSpace(bytes[pos])) {
+                        texIndex = parseInt();
+                        if (texIndex < 0) {
+                            texIndex += texCoords.size() / 2;
+                            relative |= 2;
+                        } else {
+                            texIndex -= 1;
+                        }
+                    }
+
+                    if (pos < end && bytes[pos] == '/') {
+                        pos++;
+                        // normals aren't used, the renderer computes face normals
+                        parseInt();
+                    }
+                }
+
+                faceIndices.add(index);
+                faceTexIndices.add(texIndex);
+                faceRelative.add(relative);
+            }
+
+            // fan triangulation, which is exact for the convex polygons OBJ exporters write
+            for (int i = 1; i + 1 < faceIndices.size(); i++) {
+                addCorner(0);
+                addCorner(i);
+                addCorner(i + 1);
+            }
+        }
+
+        private void addCorner(int corner) {
+            int relative = faceRelative.get(corner);
+            if ((relative & 1) != 0) {
+                relativeIndices.add(indices.size());
+            }
+
+            if ((relative & 2) != 0) {
+                relativeTexIndices.add(texIndices.size());
+            }
+
+            indices.add(faceIndices.get(corner));
+            texIndices.add(faceTexIndices.get(corner));
+        }
+
+        private int parseInt() {
+            boolean negative = false;
+            if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+                negative = bytes[pos] == '-';
+                pos++;
+            }
+
+            int start = pos;
+            int value = 0;
+            while (pos < end && isDigit(bytes[pos])) {
+                value = value * 10 + (bytes[pos] - '0');
+                pos++;
+            }
+
+            if (pos == start) {
+                throw new IllegalArgumentException("Expected an index at byte " + pos);
+            }
+
+            return negative ? -value : value;
+        }
+
+        private float parseFloat() {
+            skipSpaces();
+            int tokenStart = pos;
+
+            boolean negative = false;
+            if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+                negative = bytes[pos] == '-';
+                pos++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean anyDigits = false;
+
+            while (pos < end && isDigit(bytes[pos])) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (bytes[pos] - '0');
+                    digits++;
+                } else {
+                    exponent++;
+                }
+
+                anyDigits = true;
+                pos++;
+            }
+
+            if (pos < end && bytes[pos] == '.') {
+                pos++;
+                while (pos < end && isDigit(bytes[pos])) {
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (bytes[pos] - '0');
+                        digits++;
+                        exponent--;
+                    }
+
+                    anyDigits = true;
+                    pos++;
+                }
+            }
+
+            if (anyDigits && pos < end && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+                pos++;
+                exponent += parseInt();
+            }
+
+            if (!anyDigits) {
+                // things like nan and inf are rare enough to leave to the JDK
+                pos = tokenStart;
+                while (pos < end && !isSpace(bytes[pos]) && bytes[pos] != '\n' && bytes[pos] != '\r') {
+                    pos++;
+                }
+
+                return Float.parseFloat(new String(bytes, tokenStart, pos - tokenStart));
+            }
+
+            double value;
+            if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                value = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                value = mantissa * Math.pow(10, exponent);
+            }
+
+            return (float) (negative ? -value : value);
+        }
+
+        private void skipSpaces() {
+            while (pos < end && isSpace(bytes[pos])) {
+                pos++;
+            }
+        }
+
+        private void skipLine() {
+            while (pos < end && bytes[pos] != '\n') {
+                pos++;
+            }
+
+            pos++;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package raytracer.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the unclamped image as a little endian RGB PFM, one row at a time. PFM stores the bottom row first, like the
+ * screen texture, so rows are copied across in order.
+ */
+final class PfmEncoder {
+    private PfmEncoder() {}
+
+    /**
+     * @param data the RGBA float image, bottom row first
+     */
+    static void write(OutputStream out, float[] data, int width, int height) throws IOException {
+        // a negative scale marks the data as little endian
+        out.write(("PF\n" + width + " " + height + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer row = ByteBuffer.allocate(width * 3 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < height; y++) {
+            row.clear();
+            for (int x = 0; x < width; x++) {
+                int index = (y * width + x) * 4;
+                row.putFloat(data[index]).putFloat(data[index + 1]).putFloat(data[index + 2]);
+            }
+
+            out.write(row.array());
+        }
+
+        out.flush();
+    }
+}
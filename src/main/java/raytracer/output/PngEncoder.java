@@ -0,0 +1,127 @@
+package raytracer.output;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8 bit RGB PNG one row at a time, so only a band of the image is ever held as bytes. Rows are deflated
+ * straight into IDAT chunks with no filtering, which compresses a little worse than ImageIO but never needs the
+ * whole image in memory.
+ */
+final class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_BYTES = 1 << 16;
+    private static final int BAND_ROWS = 64;
+
+    private PngEncoder() {}
+
+    /**
+     * @param data the RGBA float image, bottom row first
+     */
+    static void write(OutputStream stream, float[] data, int width, int height) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;  // bit depth
+        header[9] = 2;  // truecolor
+        writeChunk(out, "IHDR", header, header.length);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try (DeflaterOutputStream idat = new DeflaterOutputStream(new IdatStream(out), deflater, CHUNK_BYTES)) {
+            byte[] band = new byte[BAND_ROWS * width * 3];
+
+            for (int firstRow = 0; firstRow < height; firstRow += BAND_ROWS) {
+                int rows = Math.min(BAND_ROWS, height - firstRow);
+                ToneMapper.toRgb8(data, width, height, firstRow, rows, band);
+
+                for (int row = 0; row < rows; row++) {
+                    idat.write(0);  // filter type: none
+                    idat.write(band, row * width * 3, width * 3);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(out, "IEND", new byte[0], 0);
+        out.flush();
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Cuts the compressed stream into IDAT chunks of at most CHUNK_BYTES. Closing it writes the last chunk but leaves
+     * the underlying stream open for IEND.
+     */
+    private static final class IdatStream extends FilterOutputStream {
+        private final byte[] chunk = new byte[CHUNK_BYTES];
+        private int length = 0;
+
+        IdatStream(DataOutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            chunk[length++] = (byte) b;
+            if (length == chunk.length) {
+                flushChunk();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int count) throws IOException {
+            while (count > 0) {
+                int copied = Math.min(count, chunk.length - length);
+                System.arraycopy(bytes, offset, chunk, length, copied);
+                length += copied;
+                offset += copied;
+                count -= copied;
+
+                if (length == chunk.length) {
+                    flushChunk();
+                }
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (length > 0) {
+                writeChunk((DataOutputStream) out, "IDAT", chunk, length);
+                length = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package raytracer.output;
+
+import raytracer.denoise.AuxiliaryImages;
+import raytracer.denoise.Denoiser;
+import raytracer.metrics.Metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes savepoints on a background thread so rendering carries on while they're written. Renderers copy the image
+ * into a buffer from {@link #acquire}, and the auxiliary images of denoised savepoints into buffers from
+ * {@link #acquireAuxiliary}, and hand them to {@link #write}, which gives the buffers back once the file is on disk.
+ * Savepoints are written in the order they were submitted.
+ * <p>
+ * The format follows the extension: .pfm writes the unclamped floats, anything else an 8 bit PNG. Savepoints given
+ * auxiliary images are denoised first, on the writer thread.
+ */
+public class SavepointWriter implements AutoCloseable {
+    /**
+     * One buffer being written and one being filled.
+     */
+    private static final int BUFFERS = 2;
+
+    private final int width;
+    private final int height;
+    private final SnapshotPool pool;
+    /**
+     * The half, albedo and normal/depth buffers of denoised savepoints. Created by the first one, like the denoiser.
+     */
+    private SnapshotPool auxiliaryPool;
+    /**
+     * Created by the first denoised savepoint, since most renders never need one.
+     */
+    private Denoiser denoiser;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "savepoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SavepointWriter(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pool = new SnapshotPool(width, height, BUFFERS);
+    }
+
+    /**
+     * @return an RGBA float buffer the size of the image to copy a snapshot into. Blocks while every buffer is still
+     * being written.
+     */
+    public float[] acquire() {
+        return pool.acquire();
+    }
+
+    /**
+     * @return RGBA float buffers the size of the image to copy a denoised snapshot's auxiliary images into. Blocks
+     * while every set is still being written.
+     */
+    public AuxiliaryImages acquireAuxiliary() {
+        if (auxiliaryPool == null) {
+            auxiliaryPool = new SnapshotPool(width, height, BUFFERS * 3);
+        }
+
+        return new AuxiliaryImages(auxiliaryPool.acquire(), auxiliaryPool.acquire(), auxiliaryPool.acquire());
+    }
+
+    /**
+     * Writes a snapshot in the background, then releases its buffer.
+     * @param snapshot a buffer from {@link #acquire}, bottom row first
+     */
+    public void write(float[] snapshot, String path) {
+        executor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                save(snapshot, width, height, path);
+                Metrics.SAVEPOINT_ENCODE.recordSince(start);
+            } catch (UncheckedIOException e) {
+                System.err.println("Failed to write savepoint " + path + ": " + e.getCause().getMessage());
+            } finally {
+                pool.release(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Denoises a snapshot in the background, then writes it and releases its buffers.
+     * @param snapshot a buffer from {@link #acquire}, bottom row first
+     * @param aux buffers from {@link #acquireAuxiliary} holding the auxiliary images for the same frame
+     */
+    public void write(float[] snapshot, AuxiliaryImages aux, String path) {
+        SnapshotPool auxiliaryPool = this.auxiliaryPool;
+        executor.execute(() -> {
+            try {
+                if (denoiser == null) {
+                    denoiser = new Denoiser(width, height);
+                }
+
+                long start = System.nanoTime();
+                denoiser.denoise(snapshot, aux, snapshot);
+                Metrics.SAVEPOINT_DENOISE.recordSince(start);
+
+                start = System.nanoTime();
+                save(snapshot, width, height, path);
+                Metrics.SAVEPOINT_ENCODE.recordSince(start);
+            } catch (UncheckedIOException e) {
+                System.err.println("Failed to write savepoint " + path + ": " + e.getCause().getMessage());
+            } finally {
+                pool.release(snapshot);
+                auxiliaryPool.release(aux.half());
+                auxiliaryPool.release(aux.albedo());
+                auxiliaryPool.release(aux.normalDepth());
+            }
+        });
+    }
+
+    /**
+     * Writes an image on the calling thread.
+     * @param data the RGBA float image, bottom row first
+     */
+    public static void save(float[] data, int width, int height, String path) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Path.of(path)), 1 << 16)) {
+            if (path.toLowerCase().endsWith(".pfm")) {
+                PfmEncoder.write(out, data, width, height);
+            } else {
+                PngEncoder.write(out, data, width, height);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save image " + path, e);
+        }
+    }
+
+    /**
+     * Waits for every submitted savepoint to be written.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
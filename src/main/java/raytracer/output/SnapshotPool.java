@@ -0,0 +1,33 @@
+package raytracer.output;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of RGBA float buffers the size of the image, reused for every savepoint so saving doesn't allocate a
+ * whole image each time. {@link #acquire} blocks while every buffer is waiting to be written, which throttles the
+ * renderer instead of letting a backlog of snapshots grow.
+ */
+public final class SnapshotPool {
+    private final BlockingQueue<float[]> free;
+
+    public SnapshotPool(int width, int height, int buffers) {
+        free = new ArrayBlockingQueue<>(buffers);
+        for (int i = 0; i < buffers; i++) {
+            free.add(new float[width * height * 4]);
+        }
+    }
+
+    public float[] acquire() {
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a snapshot buffer", e);
+        }
+    }
+
+    public void release(float[] buffer) {
+        free.add(buffer);
+    }
+}
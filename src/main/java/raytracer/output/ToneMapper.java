@@ -0,0 +1,29 @@
+package raytracer.output;
+
+import java.util.stream.IntStream;
+
+/**
+ * Converts bands of an RGBA float image to 8 bit RGB, each row on its own core.
+ */
+final class ToneMapper {
+    private ToneMapper() {}
+
+    /**
+     * @param data the image, bottom row first
+     * @param firstRow the first row to convert, counting from the top
+     * @param dest receives rows × width × 3 bytes, top row first
+     */
+    static void toRgb8(float[] data, int width, int height, int firstRow, int rows, byte[] dest) {
+        IntStream.range(0, rows).parallel().forEach(band -> {
+            int source = (height - 1 - (firstRow + band)) * width * 4;
+            int target = band * width * 3;
+
+            for (int x = 0; x < width; x++) {
+                // clamp from HDR to LDR
+                dest[target + x * 3] = (byte) (int) (Math.min(1, Math.max(0, data[source + x * 4])) * 255);
+                dest[target + x * 3 + 1] = (byte) (int) (Math.min(1, Math.max(0, data[source + x * 4 + 1])) * 255);
+                dest[target + x * 3 + 2] = (byte) (int) (Math.min(1, Math.max(0, data[source + x * 4 + 2])) * 255);
+            }
+        });
+    }
+}
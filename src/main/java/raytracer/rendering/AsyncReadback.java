@@ -0,0 +1,152 @@
+package raytracer.rendering;
+
+import raytracer.denoise.AuxiliaryImages;
+import raytracer.metrics.Metrics;
+import raytracer.output.SavepointWriter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Reads the screen texture back for savepoints without stalling the render loop. Each request copies the texture into
+ * one of two sets of pixel pack buffers on the GPU and fences it; {@link #poll} hands finished copies to the savepoint
+ * writer a frame or more later, once the fence has signalled.
+ * <p>
+ * Denoised savepoints also copy the half screen and the auxiliary textures. Their buffers are only created by the first
+ * denoised savepoint.
+ */
+public class AsyncReadback {
+    private static final int BUFFERS = 2;
+
+    private record Pending(int set, long fence, String path, boolean denoise) {}
+
+    private final SavepointWriter writer;
+    /**
+     * The screen, then the half screen, albedo and normal/depth textures the denoiser needs.
+     */
+    private final ScreenTexture[] textures;
+    /**
+     * Per set, a buffer per texture. Only the screen's exist until something is denoised.
+     */
+    private final int[][] buffers = new int[BUFFERS][];
+    private final int bytes;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private int nextSet = 0;
+
+    public AsyncReadback(SavepointWriter writer, ScreenTexture screen, ScreenTexture half, ScreenTexture albedo, ScreenTexture normalDepth) {
+        this.writer = writer;
+        this.textures = new ScreenTexture[]{screen, half, albedo, normalDepth};
+        this.bytes = screen.width() * screen.height() * 4 * Float.BYTES;
+
+        for (int set = 0; set < BUFFERS; set++) {
+            buffers[set] = new int[textures.length];
+            buffers[set][0] = createBuffer();
+        }
+    }
+
+    private int createBuffer() {
+        int buffer = glCreateBuffers();
+        glNamedBufferStorage(buffer, bytes, GL_MAP_READ_BIT);
+        return buffer;
+    }
+
+    /**
+     * Starts copying the texture as it is after the commands issued so far, to be written to the given path.
+     * @param denoise whether to copy the auxiliary textures too and denoise the image before writing it
+     */
+    public void request(String path, boolean denoise) {
+        if (pending.size() == BUFFERS) {
+            // Both sets are still in flight; finish the oldest to free one
+            complete(pending.removeFirst(), true);
+        }
+
+        int set = nextSet;
+        nextSet = (nextSet + 1) % BUFFERS;
+
+        int copies = denoise ? textures.length : 1;
+        for (int i = 0; i < copies; i++) {
+            if (buffers[set][i] == 0) {
+                buffers[set][i] = createBuffer();
+            }
+
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, buffers[set][i]);
+            glGetTextureImage(textures[i].id(), 0, GL_RGBA, GL_FLOAT, bytes, 0L);
+        }
+        glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+
+        pending.addLast(new Pending(set, glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0), path, denoise));
+    }
+
+    /**
+     * Hands every copy the GPU has finished to the writer. Call once a frame.
+     */
+    public void poll() {
+        while (!pending.isEmpty() && complete(pending.peekFirst(), false)) {
+            pending.removeFirst();
+        }
+    }
+
+    /**
+     * Waits for every requested copy and hands it to the writer.
+     */
+    public void finish() {
+        while (!pending.isEmpty()) {
+            complete(pending.removeFirst(), true);
+        }
+    }
+
+    /**
+     * @return whether the copy was finished and handed to the writer
+     */
+    private boolean complete(Pending copy, boolean wait) {
+        int status = glClientWaitSync(copy.fence(), GL_SYNC_FLUSH_COMMANDS_BIT, wait ? Long.MAX_VALUE : 0);
+        if (status == GL_TIMEOUT_EXPIRED || status == GL_WAIT_FAILED) {
+            return false;
+        }
+
+        glDeleteSync(copy.fence());
+
+        float[] snapshot = writer.acquire();
+        long start = System.nanoTime();
+        read(buffers[copy.set()][0], snapshot);
+
+        if (copy.denoise()) {
+            AuxiliaryImages aux = writer.acquireAuxiliary();
+            read(buffers[copy.set()][1], aux.half());
+            read(buffers[copy.set()][2], aux.albedo());
+            read(buffers[copy.set()][3], aux.normalDepth());
+            Metrics.SAVEPOINT_READBACK.recordSince(start);
+            writer.write(snapshot, aux, copy.path());
+        } else {
+            Metrics.SAVEPOINT_READBACK.recordSince(start);
+            writer.write(snapshot, copy.path());
+        }
+
+        return true;
+    }
+
+    private float[] read(int buffer, float[] dest) {
+        ByteBuffer mapped = glMapNamedBufferRange(buffer, 0, bytes, GL_MAP_READ_BIT);
+        mapped.asFloatBuffer().get(dest);
+        glUnmapNamedBuffer(buffer);
+        return dest;
+    }
+
+    public void cleanup() {
+        for (Pending copy : pending) {
+            glDeleteSync(copy.fence());
+        }
+        pending.clear();
+
+        for (int[] set : buffers) {
+            for (int buffer : set) {
+                if (buffer != 0) {
+                    glDeleteBuffers(buffer);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package raytracer.rendering;
+
+import org.lwjgl.system.MemoryStack;
+import raytracer.metrics.Metrics;
+
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Gets the samples and rays each dispatch traced, and how long it took on the GPU, into {@link Metrics} without
+ * stalling the render loop. Each dispatch writes to its own small counter buffer and timer query, which {@link #poll}
+ * reads once the dispatch's fence has signalled, a frame or more later.
+ */
+public class FrameStatsReadback {
+    private static final int SETS = 3;
+    private static final int BINDING = 9;
+    /**
+     * The samples then the rays, as uints.
+     */
+    private static final int BYTES = 2 * Integer.BYTES;
+
+    private record Pending(int set, long fence) {}
+
+    private final int[] buffers = new int[SETS];
+    private final int[] queries = new int[SETS];
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private int nextSet = 0;
+    private int activeSet = -1;
+
+    public FrameStatsReadback() {
+        for (int set = 0; set < SETS; set++) {
+            buffers[set] = glCreateBuffers();
+            glNamedBufferStorage(buffers[set], BYTES, GL_DYNAMIC_STORAGE_BIT);
+            queries[set] = glCreateQueries(GL_TIME_ELAPSED);
+        }
+    }
+
+    /**
+     * Zeroes a counter buffer, binds it for the shader and starts timing. Call right before the dispatch.
+     */
+    public void begin() {
+        if (pending.size() == SETS) {
+            // Every set is still in flight; finish the oldest to free one
+            complete(pending.removeFirst(), true);
+        }
+
+        activeSet = nextSet;
+        nextSet = (nextSet + 1) % SETS;
+
+        glClearNamedBufferData(buffers[activeSet], GL_R32UI, GL_RED_INTEGER, GL_UNSIGNED_INT, (IntBuffer) null);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, BINDING, buffers[activeSet]);
+        glBeginQuery(GL_TIME_ELAPSED, queries[activeSet]);
+    }
+
+    /**
+     * Stops timing and fences the dispatch. Call right after it.
+     */
+    public void end() {
+        glEndQuery(GL_TIME_ELAPSED);
+        glBindBufferBase(GL_SHADER_STORAGE_BUFFER, BINDING, 0);
+
+        pending.addLast(new Pending(activeSet, glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0)));
+        activeSet = -1;
+    }
+
+    /**
+     * Records every dispatch the GPU has finished. Call once a frame.
+     */
+    public void poll() {
+        while (!pending.isEmpty() && complete(pending.peekFirst(), false)) {
+            pending.removeFirst();
+        }
+    }
+
+    /**
+     * @return whether the dispatch was finished and recorded
+     */
+    private boolean complete(Pending dispatch, boolean wait) {
+        int status = glClientWaitSync(dispatch.fence(), GL_SYNC_FLUSH_COMMANDS_BIT, wait ? Long.MAX_VALUE : 0);
+        if (status == GL_TIMEOUT_EXPIRED || status == GL_WAIT_FAILED) {
+            return false;
+        }
+
+        glDeleteSync(dispatch.fence());
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer counts = stack.mallocInt(2);
+            glGetNamedBufferSubData(buffers[dispatch.set()], 0, counts);
+            Metrics.SAMPLES.add(Integer.toUnsignedLong(counts.get(0)));
+            Metrics.RAYS.add(Integer.toUnsignedLong(counts.get(1)));
+        }
+
+        // the fence signalled after the query ended, so its result is ready
+        Metrics.COMPUTE_GPU.record(glGetQueryObjectui64(queries[dispatch.set()], GL_QUERY_RESULT));
+        return true;
+    }
+
+    public void cleanup() {
+        for (Pending dispatch : pending) {
+            glDeleteSync(dispatch.fence());
+        }
+        pending.clear();
+
+        glDeleteBuffers(buffers);
+        glDeleteQueries(queries);
+    }
+}
@@ -1,19 +1,25 @@
 package raytracer.rendering;
 
-import static org.lwjgl.opengl.GL45.*;
-
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
+import raytracer.metrics.Metrics;
 
+import static org.lwjgl.opengl.GL45.*;
 
 public class ScreenTexture {
     private int texture;
     private final int width, height;
+    private final int imageUnit;
 
     public ScreenTexture(int screenWidth, int screenHeight) {
+        this(screenWidth, screenHeight, 0);
+    }
+
+    /**
+     * @param imageUnit the image unit the compute shader accesses the texture through
+     */
+    public ScreenTexture(int screenWidth, int screenHeight, int imageUnit) {
         width = screenWidth;
         height = screenHeight;
+        this.imageUnit = imageUnit;
 
         texture = glCreateTextures(GL_TEXTURE_2D);
         glTextureParameteri(texture, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
@@ -24,11 +30,12 @@ public class ScreenTexture {
     }
 
     public void bindWrite() {
-        glBindImageTexture(0, texture, 0, false, 0, GL_WRITE_ONLY, GL_RGBA32F);
+        // the compute shader reads the previous frame's accumulation before writing the new one
+        glBindImageTexture(imageUnit, texture, 0, false, 0, GL_READ_WRITE, GL_RGBA32F);
     }
 
     public void unbindWrite() {
-        glBindImageTexture(0, 0, 0, false, 0, GL_WRITE_ONLY, GL_RGBA32F);
+        glBindImageTexture(imageUnit, 0, 0, false, 0, GL_READ_WRITE, GL_RGBA32F);
     }
 
     public void bindRead() {
@@ -46,28 +53,24 @@ public class ScreenTexture {
         return data;
     }
 
-    public void saveToFile(String filename) throws RuntimeException {
-        float[] data = readData();
-
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        for (int i = 0; i < data.length; i += 4) {
-            // clamp from HDR to LDR
-            data[i] = Math.min(1, Math.max(0, data[i]));
-            data[i + 1] = Math.min(1, Math.max(0, data[i + 1]));
-            data[i + 2] = Math.min(1, Math.max(0, data[i + 2]));
-
-            int r = (int) (data[i] * 255);
-            int g = (int) (data[i + 1] * 255);
-            int b = (int) (data[i + 2] * 255);
-            int rgb = (r << 16) | (g << 8) | b;
-            image.setRGB(i / 4 % width, height - i / 4 / width - 1, rgb);
-        }
-
-        try {
-            ImageIO.write(image, "png", new java.io.File(filename));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save image", e);
-        }
+    /**
+     * @param data RGBA, bottom row first, as returned by readData
+     */
+    public void writeData(float[] data) {
+        glTextureSubImage2D(texture, 0, 0, 0, width, height, GL_RGBA, GL_FLOAT, data);
+        Metrics.UPLOADED_BYTES.add((long) data.length * Float.BYTES);
+    }
+
+    int id() {
+        return texture;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
     }
 
     public void cleanup() {
@@ -0,0 +1,63 @@
+package raytracer.sampling;
+
+/**
+ * Averages the first-hit albedo, shading normal and depth of every sample the way raytracer.comp averages them into
+ * aux_albedo and aux_normal_depth, for the denoiser. Pixels are laid out like the screen texture, bottom row first.
+ */
+public final class FeatureAccumulator {
+    private final int width;
+    private final float[] albedo;
+    private final float[] normalDepth;
+
+    public FeatureAccumulator(int width, int height) {
+        this.width = width;
+        this.albedo = new float[width * height * 4];
+        this.normalDepth = new float[width * height * 4];
+    }
+
+    /**
+     * @param samples how many samples the pixel had before this one
+     */
+    public void add(int x, int row, int samples, float albedoR, float albedoG, float albedoB,
+                    float normalX, float normalY, float normalZ, float depth) {
+        int index = (row * width + x) * 4;
+        float keep = (float) samples / (samples + 1);
+        float weight = 1f / (samples + 1);
+
+        albedo[index] = albedo[index] * keep + albedoR * weight;
+        albedo[index + 1] = albedo[index + 1] * keep + albedoG * weight;
+        albedo[index + 2] = albedo[index + 2] * keep + albedoB * weight;
+        albedo[index + 3] = 1;
+
+        normalDepth[index] = normalDepth[index] * keep + normalX * weight;
+        normalDepth[index + 1] = normalDepth[index + 1] * keep + normalY * weight;
+        normalDepth[index + 2] = normalDepth[index + 2] * keep + normalZ * weight;
+        normalDepth[index + 3] = normalDepth[index + 3] * keep + depth * weight;
+    }
+
+    /**
+     * Replaces the features, for example with ones restored from a checkpoint.
+     */
+    public void restore(float[] albedo, float[] normalDepth) {
+        if (albedo.length != this.albedo.length || normalDepth.length != this.normalDepth.length) {
+            throw new IllegalArgumentException("Expected " + this.albedo.length + " floats per image, got " + albedo.length + " and " + normalDepth.length);
+        }
+
+        System.arraycopy(albedo, 0, this.albedo, 0, albedo.length);
+        System.arraycopy(normalDepth, 0, this.normalDepth, 0, normalDepth.length);
+    }
+
+    /**
+     * @return the average first-hit albedo, RGBA
+     */
+    public float[] albedo() {
+        return albedo;
+    }
+
+    /**
+     * @return the average first-hit shading normal in xyz and distance in w
+     */
+    public float[] normalDepth() {
+        return normalDepth;
+    }
+}
@@ -0,0 +1,80 @@
+package raytracer.sampling;
+
+/**
+ * Accumulates samples into a full and a half RGBA image the way raytracer.comp does, so the estimate behind
+ * SampleMask can be produced and tested on the CPU. Pixels are laid out like the screen texture, bottom row first.
+ */
+public final class SampleAccumulator {
+    private final int width;
+    private final int height;
+    private final float[] full;
+    private final float[] half;
+
+    public SampleAccumulator(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.full = new float[width * height * 4];
+        this.half = new float[width * height * 4];
+    }
+
+    /**
+     * Replaces the accumulation, for example with one restored from a checkpoint.
+     */
+    public void restore(float[] full, float[] half) {
+        if (full.length != this.full.length || half.length != this.half.length) {
+            throw new IllegalArgumentException("Expected " + this.full.length + " floats per image, got " + full.length + " and " + half.length);
+        }
+
+        System.arraycopy(full, 0, this.full, 0, full.length);
+        System.arraycopy(half, 0, this.half, 0, half.length);
+    }
+
+    /**
+     * Adds a sample to the pixel at the given row of the image, counting from the bottom.
+     */
+    public void add(int x, int row, float r, float g, float b) {
+        int index = (row * width + x) * 4;
+        int samples = (int) half[index + 3];
+
+        full[index] = (full[index] * samples + r) / (samples + 1);
+        full[index + 1] = (full[index + 1] * samples + g) / (samples + 1);
+        full[index + 2] = (full[index + 2] * samples + b) / (samples + 1);
+        full[index + 3] = 1;
+
+        // the half image averages samples 0, 2, 4, ..., an independent estimate from half as many samples
+        if (samples % 2 == 0) {
+            int halfSamples = samples / 2;
+            half[index] = (half[index] * halfSamples + r) / (halfSamples + 1);
+            half[index + 1] = (half[index + 1] * halfSamples + g) / (halfSamples + 1);
+            half[index + 2] = (half[index + 2] * halfSamples + b) / (halfSamples + 1);
+        }
+
+        half[index + 3] = samples + 1;
+    }
+
+    public int samples(int x, int row) {
+        return (int) half[(row * width + x) * 4 + 3];
+    }
+
+    /**
+     * @return the average of every sample, RGBA
+     */
+    public float[] full() {
+        return full;
+    }
+
+    /**
+     * @return the average of every other sample, RGB, with the total number of samples in alpha
+     */
+    public float[] half() {
+        return half;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+}
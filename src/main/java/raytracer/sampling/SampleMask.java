@@ -0,0 +1,126 @@
+package raytracer.sampling;
+
+import raytracer.config.AdaptiveSampling;
+import raytracer.util.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Which blocks of pixels still need samples, decided the same way raytracer.comp decides it per workgroup.
+ * <p>
+ * Noise is estimated from two accumulations of the same pixel: the full one, and a half one that only averages every
+ * other sample. Both converge to the same value, so how far apart they are estimates how far the full one still is from
+ * it. A block stops being sampled once every pixel in it has had the minimum number of samples and has an error below
+ * the threshold.
+ */
+public final class SampleMask {
+    // the workgroup size of raytracer.comp, which is the granularity the GPU can skip work at
+    public static final int BLOCK_WIDTH = 8;
+    public static final int BLOCK_HEIGHT = 4;
+
+    private final int blocksX;
+    private final int blocksY;
+    private final boolean[] active;
+    private final int activeCount;
+
+    private SampleMask(int blocksX, int blocksY, boolean[] active) {
+        this.blocksX = blocksX;
+        this.blocksY = blocksY;
+        this.active = active;
+
+        int count = 0;
+        for (boolean blockActive : active) {
+            if (blockActive) {
+                count++;
+            }
+        }
+        this.activeCount = count;
+    }
+
+    /**
+     * @param full the accumulated RGBA image, as read back from the screen texture
+     * @param half the RGBA accumulation of every other sample, with each pixel's total sample count in alpha
+     */
+    public static SampleMask build(float[] full, float[] half, int width, int height, AdaptiveSampling settings) {
+        int blocksX = (width + BLOCK_WIDTH - 1) / BLOCK_WIDTH;
+        int blocksY = (height + BLOCK_HEIGHT - 1) / BLOCK_HEIGHT;
+        boolean[] active = new boolean[blocksX * blocksY];
+
+        if (!settings.enabled()) {
+            Arrays.fill(active, true);
+            return new SampleMask(blocksX, blocksY, active);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int rowOfBlocks = y / BLOCK_HEIGHT * blocksX;
+
+            for (int x = 0; x < width; x++) {
+                int block = rowOfBlocks + x / BLOCK_WIDTH;
+                if (active[block]) {
+                    continue;
+                }
+
+                int index = (y * width + x) * 4;
+                if (half[index + 3] < settings.minSamples() || pixelError(full, half, index) >= settings.threshold()) {
+                    active[block] = true;
+                }
+            }
+        }
+
+        return new SampleMask(blocksX, blocksY, active);
+    }
+
+    /**
+     * The L1 distance between the full and half estimates, relative to the square root of the pixel's brightness. The
+     * square root keeps dark pixels, where the eye is more sensitive to noise, from converging too early.
+     * @param index the index of the pixel's red component
+     */
+    public static float pixelError(float[] full, float[] half, int index) {
+        float difference = Math.abs(full[index] - half[index])
+                + Math.abs(full[index + 1] - half[index + 1])
+                + Math.abs(full[index + 2] - half[index + 2]);
+
+        return difference / (float) Math.sqrt(Math.max(full[index] + full[index + 1] + full[index + 2], 1e-4f));
+    }
+
+    public int blocksX() {
+        return blocksX;
+    }
+
+    public int blocksY() {
+        return blocksY;
+    }
+
+    public boolean isActive(int blockX, int blockY) {
+        return active[blockY * blocksX + blockX];
+    }
+
+    /**
+     * @return true if the block containing the pixel still needs samples
+     */
+    public boolean isPixelActive(int x, int y) {
+        return isActive(x / BLOCK_WIDTH, y / BLOCK_HEIGHT);
+    }
+
+    public int activeBlocks() {
+        return activeCount;
+    }
+
+    public float activeFraction() {
+        return active.length == 0 ? 0 : (float) activeCount / active.length;
+    }
+
+    /**
+     * @return the indices (blockY * blocksX + blockX) of the blocks that still need samples, in ascending order
+     */
+    public int[] workList() {
+        IntArrayList list = new IntArrayList();
+        for (int i = 0; i < active.length; i++) {
+            if (active[i]) {
+                list.add(i);
+            }
+        }
+
+        return list.toArray();
+    }
+}
@@ -0,0 +1,11 @@
+package raytracer.scheduler;
+
+import java.util.List;
+
+/**
+ * @param timings every tile that finished, in the order they finished
+ * @param cancelled whether the frame was cancelled before every tile finished
+ * @param nanos how long the whole frame took
+ */
+public record FrameResult(List<TileTiming> timings, boolean cancelled, long nanos) {
+}
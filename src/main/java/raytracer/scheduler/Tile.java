@@ -0,0 +1,49 @@
+package raytracer.scheduler;
+
+import java.util.List;
+
+/**
+ * A rectangle of pixels, in the camera's pixel coordinates (y pointing down).
+ */
+public record Tile(int x, int y, int width, int height) {
+    public int area() {
+        return width * height;
+    }
+
+    public float centerX() {
+        return x + width / 2f;
+    }
+
+    public float centerY() {
+        return y + height / 2f;
+    }
+
+    public boolean canSplit(int minSize) {
+        return width >= 2 * minSize || height >= 2 * minSize;
+    }
+
+    /**
+     * @return the quadrants of the tile, or its halves if it is only big enough to split one way
+     */
+    public List<Tile> split(int minSize) {
+        boolean splitX = width >= 2 * minSize;
+        boolean splitY = height >= 2 * minSize;
+        int leftWidth = width / 2;
+        int topHeight = height / 2;
+
+        if (splitX && splitY) {
+            return List.of(
+                    new Tile(x, y, leftWidth, topHeight),
+                    new Tile(x + leftWidth, y, width - leftWidth, topHeight),
+                    new Tile(x, y + topHeight, leftWidth, height - topHeight),
+                    new Tile(x + leftWidth, y + topHeight, width - leftWidth, height - topHeight)
+            );
+        } else if (splitX) {
+            return List.of(new Tile(x, y, leftWidth, height), new Tile(x + leftWidth, y, width - leftWidth, height));
+        } else if (splitY) {
+            return List.of(new Tile(x, y, width, topHeight), new Tile(x, y + topHeight, width, height - topHeight));
+        }
+
+        return List.of(this);
+    }
+}
@@ -0,0 +1,58 @@
+package raytracer.scheduler;
+
+import java.util.Comparator;
+
+/**
+ * The order tiles are handed out in within a frame, relative to a focus point that is usually the center of the image.
+ */
+public enum TileOrder {
+    /**
+     * Top to bottom, left to right, ignoring the focus.
+     */
+    ROW_MAJOR {
+        @Override
+        public Comparator<Tile> comparator(float focusX, float focusY, int ringSize) {
+            return Comparator.comparingInt(Tile::y).thenComparingInt(Tile::x);
+        }
+    },
+    /**
+     * Nearest to the focus first.
+     */
+    CENTER_OUT {
+        @Override
+        public Comparator<Tile> comparator(float focusX, float focusY, int ringSize) {
+            return Comparator.comparingDouble(tile -> distanceSquared(tile, focusX, focusY));
+        }
+    },
+    /**
+     * Square rings around the focus, each ring walked clockwise, so the rendered area grows like a spiral.
+     */
+    SPIRAL {
+        @Override
+        public Comparator<Tile> comparator(float focusX, float focusY, int ringSize) {
+            Comparator<Tile> byRing = Comparator.comparingInt(tile -> {
+                float dx = Math.abs(tile.centerX() - focusX);
+                float dy = Math.abs(tile.centerY() - focusY);
+                return (int) ((Math.max(dx, dy) + ringSize / 2f) / ringSize);
+            });
+
+            return byRing.thenComparingDouble(tile -> {
+                // starting from straight up, clockwise, since y points down
+                double angle = Math.atan2(tile.centerX() - focusX, focusY - tile.centerY());
+                return angle < 0 ? angle + 2 * Math.PI : angle;
+            });
+        }
+    };
+
+    /**
+     * @param ringSize the width of a ring for SPIRAL, normally the tile size
+     * @return a comparator that sorts the tiles that should be rendered first to the front
+     */
+    public abstract Comparator<Tile> comparator(float focusX, float focusY, int ringSize);
+
+    private static double distanceSquared(Tile tile, float x, float y) {
+        double dx = tile.centerX() - x;
+        double dy = tile.centerY() - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,13 @@
+package raytracer.scheduler;
+
+/**
+ * Renders one tile of a frame. Called concurrently from the scheduler's worker threads.
+ */
+@FunctionalInterface
+public interface TileRenderer {
+    /**
+     * @param scheduler the scheduler running the frame. Long renders should check {@link TileScheduler#isCancelled()}
+     *                  and return early once it is set.
+     */
+    void render(Tile tile, TileScheduler scheduler);
+}
@@ -0,0 +1,302 @@
+package raytracer.scheduler;
+
+import raytracer.config.RenderQuality;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Splits the image into tiles and renders them on every core, one frame at a time.
+ * <p>
+ * Each frame the tiles are sorted by {@link TileOrder} and dealt round-robin onto one deque per worker, so every deque
+ * is in priority order too. Workers take from the front of their own deque and, once it is empty, steal from the back
+ * of another, where the least important tiles are. {@link #focus} re-sorts the tiles that haven't been started yet, and
+ * {@link #cancel} stops workers from starting new tiles.
+ * <p>
+ * Every tile is timed. After a frame that ran to completion, tiles that took more than {@link #SPLIT_FACTOR} times the
+ * average are split into quadrants for the following frames, so one expensive tile (glass, dense geometry) doesn't
+ * leave every other core waiting at the end of the frame.
+ */
+public class TileScheduler implements AutoCloseable {
+    /**
+     * How many times slower than the average tile a tile has to be to get split.
+     */
+    public static final float SPLIT_FACTOR = 2;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int minTileSize;
+    private final int threads;
+    private final ExecutorService workers;
+    private final List<ConcurrentLinkedDeque<Tile>> deques = new ArrayList<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    private List<Tile> tiles;
+    private List<TileTiming> lastTimings = List.of();
+    private TileOrder order;
+    private float focusX;
+    private float focusY;
+    private volatile boolean cancelled = false;
+
+    public TileScheduler(RenderQuality quality, int tileSize, TileOrder order) {
+        this(quality.width(), quality.height(), tileSize, order, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param tileSize the width and height of the tiles the image starts out split into
+     * @param threads how many tiles to render at once
+     */
+    public TileScheduler(int width, int height, int tileSize, TileOrder order, int threads) {
+        if (tileSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Tile size and thread count must be positive, got " + tileSize + " and " + threads);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.minTileSize = Math.max(1, tileSize / 4);
+        this.threads = threads;
+        this.order = order;
+        this.focusX = width / 2f;
+        this.focusY = height / 2f;
+
+        for (int i = 0; i < threads; i++) {
+            deques.add(new ConcurrentLinkedDeque<>());
+        }
+
+        AtomicInteger workerIndex = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tile-worker-" + workerIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                tiles.add(new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+            }
+        }
+        tiles.sort(comparator());
+    }
+
+    /**
+     * Renders every tile once, blocking until they're all done or the frame is cancelled.
+     */
+    public FrameResult render(TileRenderer renderer) {
+        long start = System.nanoTime();
+        cancelled = false;
+        ConcurrentLinkedQueue<TileTiming> timings = new ConcurrentLinkedQueue<>();
+
+        synchronized (this) {
+            remaining.set(tiles.size());
+            deal(tiles);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            futures.add(workers.submit(() -> work(worker, renderer, timings)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            cancel();
+            throw new IllegalStateException("Failed to render tile", e.getCause());
+        } finally {
+            deques.forEach(ConcurrentLinkedDeque::clear);
+        }
+
+        FrameResult result = new FrameResult(List.copyOf(timings), cancelled, System.nanoTime() - start);
+
+        synchronized (this) {
+            lastTimings = result.timings();
+            if (!result.cancelled()) {
+                splitHotTiles(result.timings());
+            }
+        }
+
+        return result;
+    }
+
+    private void work(int worker, TileRenderer renderer, ConcurrentLinkedQueue<TileTiming> timings) {
+        ConcurrentLinkedDeque<Tile> own = deques.get(worker);
+
+        while (!cancelled && remaining.get() > 0) {
+            Tile tile = own.pollFirst();
+            if (tile == null) {
+                tile = steal(worker);
+            }
+
+            if (tile == null) {
+                // Every tile left is either being rendered or being re-sorted by focus()
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                renderer.render(tile, this);
+            } catch (RuntimeException | Error e) {
+                // stops the other workers, which would otherwise wait for this tile forever
+                cancel();
+                throw e;
+            } finally {
+                remaining.decrementAndGet();
+            }
+
+            if (!cancelled) {
+                timings.add(new TileTiming(tile, System.nanoTime() - start));
+            }
+        }
+    }
+
+    private Tile steal(int thief) {
+        for (int i = 1; i < threads; i++) {
+            Tile tile = deques.get((thief + i) % threads).pollLast();
+            if (tile != null) {
+                return tile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Deals the tiles, already in priority order, round-robin onto the worker deques.
+     */
+    private void deal(List<Tile> sorted) {
+        for (int i = 0; i < sorted.size(); i++) {
+            deques.get(i % threads).addLast(sorted.get(i));
+        }
+    }
+
+    /**
+     * Splits the tiles that took much longer than average, keeping the layout sorted.
+     */
+    private void splitHotTiles(List<TileTiming> timings) {
+        if (timings.isEmpty()) {
+            return;
+        }
+
+        long total = 0;
+        for (TileTiming timing : timings) {
+            total += timing.nanos();
+        }
+        double threshold = SPLIT_FACTOR * total / timings.size();
+
+        List<Tile> next = new ArrayList<>(tiles.size());
+        boolean changed = false;
+        for (TileTiming timing : timings) {
+            if (timing.nanos() > threshold && timing.tile().canSplit(minTileSize)) {
+                next.addAll(timing.tile().split(minTileSize));
+                changed = true;
+            } else {
+                next.add(timing.tile());
+            }
+        }
+
+        if (changed) {
+            next.sort(comparator());
+            tiles = next;
+        }
+    }
+
+    /**
+     * Moves the focus of CENTER_OUT and SPIRAL orderings, for example to the cursor. Applies to the tiles of the
+     * current frame that haven't been started yet, and to every later frame.
+     * @param x the focus, in pixels from the left
+     * @param y the focus, in pixels from the top
+     */
+    public synchronized void focus(float x, float y) {
+        focusX = x;
+        focusY = y;
+        reprioritize();
+    }
+
+    /**
+     * Changes the order tiles are rendered in. Like {@link #focus}, takes effect mid-frame.
+     */
+    public synchronized void setOrder(TileOrder order) {
+        this.order = order;
+        reprioritize();
+    }
+
+    private void reprioritize() {
+        tiles.sort(comparator());
+
+        // Workers keep taking tiles while the deques are drained; the ones they get are simply not re-dealt
+        List<Tile> pending = new ArrayList<>();
+        for (ConcurrentLinkedDeque<Tile> deque : deques) {
+            for (Tile tile = deque.pollFirst(); tile != null; tile = deque.pollFirst()) {
+                pending.add(tile);
+            }
+        }
+
+        pending.sort(comparator());
+        deal(pending);
+    }
+
+    private Comparator<Tile> comparator() {
+        return order.comparator(focusX, focusY, tileSize);
+    }
+
+    /**
+     * Stops the current frame: no new tiles are started, and {@link #render} returns once the tiles in progress return.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return whether the current frame has been cancelled. Tile renderers should poll this and stop early.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the tiles the next frame will be split into, in the order they will be started
+     */
+    public synchronized List<Tile> tiles() {
+        return Collections.unmodifiableList(new ArrayList<>(tiles));
+    }
+
+    /**
+     * @return the timing of every tile that finished last frame
+     */
+    public synchronized List<TileTiming> lastTimings() {
+        return lastTimings;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        workers.shutdownNow();
+    }
+}
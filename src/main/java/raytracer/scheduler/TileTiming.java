@@ -0,0 +1,10 @@
+package raytracer.scheduler;
+
+/**
+ * How long a tile took to render.
+ */
+public record TileTiming(Tile tile, long nanos) {
+    public double nanosPerPixel() {
+        return (double) nanos / tile.area();
+    }
+}
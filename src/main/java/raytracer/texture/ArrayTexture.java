@@ -1,5 +1,7 @@
 package raytracer.texture;
 
+import raytracer.metrics.Metrics;
+
 import static org.lwjgl.opengl.GL45C.*;
 
 public class ArrayTexture {
@@ -15,21 +17,70 @@ public class ArrayTexture {
             }
         }
 
+        // Textures sent by a distributed coordinator only have level 0
+        int levels = Integer.MAX_VALUE;
+        for (Texture texture : textures) {
+            levels = Math.min(levels, texture.levelCount());
+        }
+
+        id = glGenTextures();
+
+        bind();
+        glTexStorage3D(GL_TEXTURE_2D_ARRAY, levels, GL_RGBA8, textures[0].width(), textures[0].height(), textures.length);
+
+        for (int i = 0; i < textures.length; i++) {
+            for (int level = 0; level < levels; level++) {
+                glTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, i, textures[i].levelWidth(level), textures[i].levelHeight(level), 1, GL_RGBA, GL_UNSIGNED_BYTE, textures[i].level(level));
+                Metrics.UPLOADED_BYTES.add(textures[i].level(level).remaining());
+            }
+        }
+
+        setParameters(levels);
+        unbind();
+    }
+
+    /**
+     * Uploads block compressed textures, which take a quarter to an eighth of the memory and bandwidth of RGBA8.
+     */
+    public ArrayTexture(CompressedTexture[] textures, int unit) {
+        this.unit = unit;
+
+        for (CompressedTexture texture : textures) {
+            if (texture.width() != textures[0].width() || texture.height() != textures[0].height()
+                    || texture.format() != textures[0].format()) {
+                throw new IllegalArgumentException("All textures must have the same dimensions and format");
+            }
+        }
+
+        int levels = Integer.MAX_VALUE;
+        for (CompressedTexture texture : textures) {
+            levels = Math.min(levels, texture.levels().length);
+        }
+
         id = glGenTextures();
 
         bind();
-        glTexStorage3D(GL_TEXTURE_2D_ARRAY, 1, GL_RGBA8, textures[0].width(), textures[0].height(), textures.length);
+        BlockFormat format = textures[0].format();
+        glTexStorage3D(GL_TEXTURE_2D_ARRAY, levels, format.glInternalFormat(), textures[0].width(), textures[0].height(), textures.length);
 
         for (int i = 0; i < textures.length; i++) {
-            glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, 0, 0, i, textures[i].width(), textures[i].height(), 1, GL_RGBA, GL_UNSIGNED_BYTE, textures[i].bytes());
+            for (int level = 0; level < levels; level++) {
+                glCompressedTexSubImage3D(GL_TEXTURE_2D_ARRAY, level, 0, 0, i, textures[i].levelWidth(level), textures[i].levelHeight(level), 1, format.glInternalFormat(), textures[i].levels()[level]);
+                Metrics.UPLOADED_BYTES.add(textures[i].levels()[level].remaining());
+            }
         }
 
-        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        setParameters(levels);
+        unbind();
+    }
+
+    private static void setParameters(int levels) {
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAX_LEVEL, levels - 1);
+        // texture() in a compute shader has no derivatives and samples level 0; the rest are there for textureLod()
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, levels > 1 ? GL_LINEAR_MIPMAP_LINEAR : GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
         glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
-
-        unbind();
     }
 
     public void bind() {
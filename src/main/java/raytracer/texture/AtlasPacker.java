@@ -0,0 +1,228 @@
+package raytracer.texture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Packs rectangles onto as few equally sized pages as possible with the skyline bottom-left heuristic. Each page keeps
+ * the outline of the rectangles placed on it so far as a list of horizontal segments, and each rectangle goes where it
+ * comes to rest nearest the top of the page, then leftmost. Rectangles are placed tallest first, on the first page with
+ * room.
+ * <p>
+ * Every rectangle is surrounded by a gutter on each side and placed at a multiple of the gutter size, so mip levels
+ * down to the one where the gutter shrinks to a single texel never blend neighbouring rectangles. The result depends
+ * only on the sizes, gutter and page limit, never on hash order or timing.
+ */
+public final class AtlasPacker {
+    /**
+     * Page widths tried, as multiples of the side of a square with the same area as every rectangle together.
+     */
+    private static final double[] WIDTH_FACTORS = {1, 1.25, 1.5, 2};
+
+    /**
+     * @param x the left edge of the rectangle itself, not its gutter
+     * @param y the top edge of the rectangle itself, not its gutter
+     */
+    public record Placement(int page, int x, int y) {}
+
+    /**
+     * @param pageWidth the width of every page
+     * @param pageHeight the height of every page, just tall enough for the fullest one
+     * @param placements where each rectangle went, in the order they were given
+     */
+    public record Layout(int pageWidth, int pageHeight, int pageCount, Placement[] placements) {}
+
+    private AtlasPacker() {}
+
+    /**
+     * Packs with a few page widths, from the widest rectangle up to maxPageSize, and keeps the layout that needs the
+     * least page area, preferring narrower pages on ties. Pages are trimmed to the height of their contents.
+     * @param gutter the padding around each rectangle, and the alignment of its position. Must be positive.
+     * @throws IllegalArgumentException if a rectangle and its gutter don't fit on a maxPageSize page
+     */
+    public static Layout pack(int[] widths, int[] heights, int gutter, int maxPageSize) {
+        if (widths.length != heights.length) {
+            throw new IllegalArgumentException("Got " + widths.length + " widths but " + heights.length + " heights");
+        }
+        if (gutter <= 0) {
+            throw new IllegalArgumentException("Gutter must be positive, got " + gutter);
+        }
+
+        int widest = gutter;
+        int tallest = gutter;
+        long totalArea = 0;
+        for (int i = 0; i < widths.length; i++) {
+            int width = paddedSize(widths[i], gutter);
+            int height = paddedSize(heights[i], gutter);
+            widest = Math.max(widest, width);
+            tallest = Math.max(tallest, height);
+            totalArea += (long) width * height;
+        }
+        if (widest > maxPageSize || tallest > maxPageSize) {
+            throw new IllegalArgumentException("A " + Math.max(widest, tallest) + " texel rectangle with its gutter "
+                    + "doesn't fit on a " + maxPageSize + " texel page");
+        }
+
+        Layout best = null;
+        for (double factor : WIDTH_FACTORS) {
+            int pageWidth = (int) Math.ceil(Math.sqrt(totalArea) * factor / gutter) * gutter;
+            pageWidth = Math.min(maxPageSize, Math.max(widest, pageWidth));
+
+            Layout layout = packOnPages(widths, heights, gutter, pageWidth, maxPageSize);
+            if (best == null || area(layout) < area(best)) {
+                best = layout;
+            }
+        }
+
+        return best;
+    }
+
+    private static long area(Layout layout) {
+        return (long) layout.pageCount() * layout.pageWidth() * layout.pageHeight();
+    }
+
+    /**
+     * @return the size of a side with gutters on both ends, rounded up to a multiple of the gutter
+     */
+    private static int paddedSize(int size, int gutter) {
+        return (size + 2 * gutter + gutter - 1) / gutter * gutter;
+    }
+
+    private static Layout packOnPages(int[] widths, int[] heights, int gutter, int pageWidth, int maxPageHeight) {
+        Integer[] order = IntStream.range(0, widths.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> -heights[i])
+                .thenComparingInt(i -> -widths[i])
+                .thenComparingInt(i -> i));
+
+        List<Skyline> pages = new ArrayList<>();
+        Placement[] placements = new Placement[widths.length];
+
+        for (int i : order) {
+            int width = paddedSize(widths[i], gutter);
+            int height = paddedSize(heights[i], gutter);
+
+            for (int page = 0; placements[i] == null; page++) {
+                if (page == pages.size()) {
+                    pages.add(new Skyline(pageWidth, maxPageHeight));
+                }
+
+                int[] corner = pages.get(page).place(width, height);
+                if (corner != null) {
+                    placements[i] = new Placement(page, corner[0] + gutter, corner[1] + gutter);
+                }
+            }
+        }
+
+        int pageHeight = gutter;
+        for (Skyline page : pages) {
+            pageHeight = Math.max(pageHeight, page.usedHeight());
+        }
+
+        return new Layout(pageWidth, pageHeight, Math.max(pages.size(), 1), placements);
+    }
+
+    /**
+     * The outline of one page: segments covering its whole width, each with the height everything below it reaches.
+     */
+    private static final class Skyline {
+        private record Segment(int x, int y, int width) {}
+
+        private final int width;
+        private final int maxHeight;
+        private final List<Segment> segments = new ArrayList<>();
+
+        Skyline(int width, int maxHeight) {
+            this.width = width;
+            this.maxHeight = maxHeight;
+            segments.add(new Segment(0, 0, width));
+        }
+
+        int usedHeight() {
+            int height = 0;
+            for (Segment segment : segments) {
+                height = Math.max(height, segment.y());
+            }
+
+            return height;
+        }
+
+        /**
+         * @return the top left corner the rectangle was placed at, or null if it doesn't fit
+         */
+        int[] place(int rectangleWidth, int rectangleHeight) {
+            int bestSegment = -1;
+            int bestX = 0;
+            int bestY = Integer.MAX_VALUE;
+
+            for (int i = 0; i < segments.size(); i++) {
+                int x = segments.get(i).x();
+                if (x + rectangleWidth > width) {
+                    break;
+                }
+
+                int y = restingHeight(i, rectangleWidth);
+                if (y + rectangleHeight <= maxHeight && y < bestY) {
+                    bestSegment = i;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+
+            if (bestSegment == -1) {
+                return null;
+            }
+
+            raise(bestSegment, bestX, bestY + rectangleHeight, rectangleWidth);
+            return new int[]{bestX, bestY};
+        }
+
+        /**
+         * @return the height a rectangle starting at the segment rests at, on the highest segment under it
+         */
+        private int restingHeight(int first, int width) {
+            int end = segments.get(first).x() + width;
+            int y = 0;
+
+            for (int i = first; i < segments.size() && segments.get(i).x() < end; i++) {
+                y = Math.max(y, segments.get(i).y());
+            }
+
+            return y;
+        }
+
+        /**
+         * Replaces the outline under [x, x + width) with one segment at the given height.
+         */
+        private void raise(int first, int x, int y, int width) {
+            int end = x + width;
+            List<Segment> next = new ArrayList<>(segments.size() + 2);
+            next.addAll(segments.subList(0, first));
+            next.add(new Segment(x, y, width));
+
+            for (int i = first; i < segments.size(); i++) {
+                Segment segment = segments.get(i);
+                int segmentEnd = segment.x() + segment.width();
+
+                if (segmentEnd > end) {
+                    // the part sticking out past the new segment survives
+                    int start = Math.max(segment.x(), end);
+                    next.add(new Segment(start, segment.y(), segmentEnd - start));
+                }
+            }
+
+            // merge neighbours at the same height so the segment list stays short
+            segments.clear();
+            for (Segment segment : next) {
+                Segment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (last != null && last.y() == segment.y()) {
+                    segments.set(segments.size() - 1, new Segment(last.x(), last.y(), last.width() + segment.width()));
+                } else {
+                    segments.add(segment);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package raytracer.texture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes BC1, BC4 and BC5 blocks back to RGBA8 the way the GPU does, to measure what {@link BlockEncoder} loses.
+ * Channels a format doesn't store decode as 0, and alpha as 255.
+ */
+public final class BlockDecoder {
+    private BlockDecoder() {}
+
+    /**
+     * @param blocks blocks as {@link BlockEncoder#encode} writes them. Its position is ignored.
+     * @return RGBA8 texels, top row first
+     */
+    public static byte[] decode(BlockFormat format, ByteBuffer blocks, int width, int height) {
+        ByteBuffer source = blocks.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int blocksWide = BlockFormat.blocks(width);
+        byte[] rgba = new byte[width * height * 4];
+        int[] texels = new int[16 * 4];
+
+        for (int blockY = 0; blockY < BlockFormat.blocks(height); blockY++) {
+            for (int blockX = 0; blockX < blocksWide; blockX++) {
+                int offset = (blockY * blocksWide + blockX) * format.blockBytes();
+
+                switch (format) {
+                    case BC1 -> decodeBc1(source.getLong(offset), texels);
+                    case BC4 -> decodeBc4(source.getLong(offset), texels, 0);
+                    case BC5 -> {
+                        decodeBc4(source.getLong(offset), texels, 0);
+                        decodeBc4(source.getLong(offset + 8), texels, 1);
+                    }
+                }
+
+                scatter(texels, format, rgba, width, height, blockX * 4, blockY * 4);
+            }
+        }
+
+        return rgba;
+    }
+
+    private static void scatter(int[] texels, BlockFormat format, byte[] rgba, int width, int height, int x0, int y0) {
+        for (int i = 0; i < 16; i++) {
+            int x = x0 + (i & 3);
+            int y = y0 + (i >> 2);
+            if (x >= width || y >= height) {
+                continue;
+            }
+
+            int offset = (y * width + x) * 4;
+            for (int channel = 0; channel < 3; channel++) {
+                rgba[offset + channel] = (byte) (channel < format.channels() ? texels[i * 4 + channel] : 0);
+            }
+            rgba[offset + 3] = (byte) 255;
+        }
+    }
+
+    private static void decodeBc1(long block, int[] texels) {
+        int color0 = (int) (block & 0xFFFF);
+        int color1 = (int) (block >>> 16 & 0xFFFF);
+        int[] palette = bc1Palette(color0, color1, color0 > color1);
+
+        for (int i = 0; i < 16; i++) {
+            int index = (int) (block >>> (32 + 2 * i) & 3);
+            System.arraycopy(palette, index * 3, texels, i * 4, 3);
+        }
+    }
+
+    private static void decodeBc4(long block, int[] texels, int channel) {
+        int[] palette = bc4Palette((int) (block & 0xFF), (int) (block >>> 8 & 0xFF));
+
+        for (int i = 0; i < 16; i++) {
+            texels[i * 4 + channel] = palette[(int) (block >>> (16 + 3 * i) & 7)];
+        }
+    }
+
+    /**
+     * @param fourColor whether the block is in 4 color mode, which the decoder picks when color0 > color1. In 3 color
+     *                  mode index 2 is halfway between the endpoints and index 3 is black.
+     * @return the RGB8 colors of indices 0 to 3, one after the other
+     */
+    static int[] bc1Palette(int color0, int color1, boolean fourColor) {
+        int[] palette = new int[12];
+        expand565(color0, palette, 0);
+        expand565(color1, palette, 3);
+
+        for (int channel = 0; channel < 3; channel++) {
+            int value0 = palette[channel];
+            int value1 = palette[3 + channel];
+
+            if (fourColor) {
+                palette[6 + channel] = (2 * value0 + value1) / 3;
+                palette[9 + channel] = (value0 + 2 * value1) / 3;
+            } else {
+                palette[6 + channel] = (value0 + value1) / 2;
+                palette[9 + channel] = 0;
+            }
+        }
+
+        return palette;
+    }
+
+    /**
+     * Widens 5 and 6 bit channels to 8 bits by repeating their top bits in the bottom ones, so 0 and the maximum map to
+     * 0 and 255.
+     */
+    private static void expand565(int color, int[] dest, int offset) {
+        int r = color >> 11 & 31;
+        int g = color >> 5 & 63;
+        int b = color & 31;
+        dest[offset] = r << 3 | r >> 2;
+        dest[offset + 1] = g << 2 | g >> 4;
+        dest[offset + 2] = b << 3 | b >> 2;
+    }
+
+    /**
+     * @return the 8 values of indices 0 to 7. With value0 > value1, 6 values are spread between the endpoints;
+     *         otherwise 4 are, and indices 6 and 7 are 0 and 255.
+     */
+    static int[] bc4Palette(int value0, int value1) {
+        int[] palette = new int[8];
+        palette[0] = value0;
+        palette[1] = value1;
+
+        if (value0 > value1) {
+            for (int i = 2; i < 8; i++) {
+                palette[i] = ((8 - i) * value0 + (i - 1) * value1 + 3) / 7;
+            }
+        } else {
+            for (int i = 2; i < 6; i++) {
+                palette[i] = ((6 - i) * value0 + (i - 1) * value1 + 2) / 5;
+            }
+            palette[6] = 0;
+            palette[7] = 255;
+        }
+
+        return palette;
+    }
+
+    /**
+     * @return the peak signal to noise ratio in dB over the channels the format stores, or infinity if the images match
+     */
+    public static double psnr(BlockFormat format, ByteBuffer original, byte[] decoded) {
+        long squaredError = 0;
+        int texels = decoded.length / 4;
+
+        for (int i = 0; i < texels; i++) {
+            for (int channel = 0; channel < format.channels(); channel++) {
+                int difference = (original.get(i * 4 + channel) & 0xFF) - (decoded[i * 4 + channel] & 0xFF);
+                squaredError += difference * difference;
+            }
+        }
+
+        if (squaredError == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double meanSquaredError = (double) squaredError / ((long) texels * format.channels());
+        return 10 * Math.log10(255.0 * 255.0 / meanSquaredError);
+    }
+}
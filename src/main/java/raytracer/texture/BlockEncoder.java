@@ -0,0 +1,323 @@
+package raytracer.texture;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Encodes RGBA8 images to BC1, BC4 and BC5 on the CPU, one row of blocks per task.
+ * <p>
+ * BC1 endpoints start at the extremes of the block along its principal axis, found by power iteration on the colors'
+ * covariance, and are then refined by least squares against the indices they produce. BC4 tries both of its modes: 8
+ * values spread between the block's minimum and maximum, or 6 values between the minimum and maximum of the texels
+ * other than 0 and 255, which it can store exactly. BC5 is BC4 for red then green.
+ * <p>
+ * Texels outside the image in partial blocks repeat the last row or column.
+ */
+public final class BlockEncoder {
+    private static final int POWER_ITERATIONS = 8;
+    private static final int REFINEMENTS = 2;
+
+    private BlockEncoder() {}
+
+    /**
+     * @param rgba RGBA8 texels, top row first. Its position is ignored.
+     * @return the blocks, top row of blocks first, in a direct buffer ready to upload
+     */
+    public static ByteBuffer encode(BlockFormat format, ByteBuffer rgba, int width, int height) {
+        int blocksWide = BlockFormat.blocks(width);
+        int blocksHigh = BlockFormat.blocks(height);
+        ByteBuffer dest = BufferUtils.createByteBuffer(format.encodedSize(width, height)).order(ByteOrder.LITTLE_ENDIAN);
+
+        IntStream.range(0, blocksHigh).parallel().forEach(blockY -> {
+            int[] texels = new int[16 * 4];
+
+            for (int blockX = 0; blockX < blocksWide; blockX++) {
+                gather(rgba, width, height, blockX * 4, blockY * 4, texels);
+                int offset = (blockY * blocksWide + blockX) * format.blockBytes();
+
+                switch (format) {
+                    case BC1 -> dest.putLong(offset, encodeBc1(texels));
+                    case BC4 -> dest.putLong(offset, encodeBc4(texels, 0));
+                    case BC5 -> {
+                        dest.putLong(offset, encodeBc4(texels, 0));
+                        dest.putLong(offset + 8, encodeBc4(texels, 1));
+                    }
+                }
+            }
+        });
+
+        return dest;
+    }
+
+    private static void gather(ByteBuffer rgba, int width, int height, int x0, int y0, int[] texels) {
+        for (int i = 0; i < 16; i++) {
+            int x = Math.min(x0 + (i & 3), width - 1);
+            int y = Math.min(y0 + (i >> 2), height - 1);
+            int offset = (y * width + x) * 4;
+
+            for (int channel = 0; channel < 4; channel++) {
+                texels[i * 4 + channel] = rgba.get(offset + channel) & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * @return the block as a little endian long: endpoint 0, endpoint 1, then 2 bit indices, texel 0 lowest
+     */
+    static long encodeBc1(int[] texels) {
+        float[] axis = principalAxis(texels);
+
+        // Start with the texels furthest apart along the axis
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        int minTexel = 0;
+        int maxTexel = 0;
+        for (int i = 0; i < 16; i++) {
+            float projection = texels[i * 4] * axis[0] + texels[i * 4 + 1] * axis[1] + texels[i * 4 + 2] * axis[2];
+            if (projection < min) {
+                min = projection;
+                minTexel = i;
+            }
+            if (projection > max) {
+                max = projection;
+                maxTexel = i;
+            }
+        }
+
+        int color0 = to565(texels[maxTexel * 4], texels[maxTexel * 4 + 1], texels[maxTexel * 4 + 2]);
+        int color1 = to565(texels[minTexel * 4], texels[minTexel * 4 + 1], texels[minTexel * 4 + 2]);
+        int[] indices = new int[16];
+        long bestError = bc1Indices(texels, color0, color1, indices);
+        int bestColor0 = color0;
+        int bestColor1 = color1;
+        int[] bestIndices = indices.clone();
+
+        for (int refinement = 0; refinement < REFINEMENTS && bestError > 0; refinement++) {
+            int[] refined = refineBc1(texels, bestIndices);
+            if (refined == null) {
+                break;
+            }
+
+            long error = bc1Indices(texels, refined[0], refined[1], indices);
+            if (error >= bestError) {
+                break;
+            }
+
+            bestError = error;
+            bestColor0 = refined[0];
+            bestColor1 = refined[1];
+            System.arraycopy(indices, 0, bestIndices, 0, 16);
+        }
+
+        return packBc1(bestColor0, bestColor1, bestIndices);
+    }
+
+    /**
+     * @return the direction the colors vary most along, or the grey axis for a flat block
+     */
+    private static float[] principalAxis(int[] texels) {
+        float[] mean = new float[3];
+        for (int i = 0; i < 16; i++) {
+            for (int channel = 0; channel < 3; channel++) {
+                mean[channel] += texels[i * 4 + channel] / 16f;
+            }
+        }
+
+        // upper triangle of the covariance: rr, rg, rb, gg, gb, bb
+        float[] covariance = new float[6];
+        for (int i = 0; i < 16; i++) {
+            float r = texels[i * 4] - mean[0];
+            float g = texels[i * 4 + 1] - mean[1];
+            float b = texels[i * 4 + 2] - mean[2];
+            covariance[0] += r * r;
+            covariance[1] += r * g;
+            covariance[2] += r * b;
+            covariance[3] += g * g;
+            covariance[4] += g * b;
+            covariance[5] += b * b;
+        }
+
+        float[] axis = {1, 1, 1};
+        for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+            float x = covariance[0] * axis[0] + covariance[1] * axis[1] + covariance[2] * axis[2];
+            float y = covariance[1] * axis[0] + covariance[3] * axis[1] + covariance[4] * axis[2];
+            float z = covariance[2] * axis[0] + covariance[4] * axis[1] + covariance[5] * axis[2];
+            float length = Math.max(Math.abs(x), Math.max(Math.abs(y), Math.abs(z)));
+            if (length < 1e-6f) {
+                return new float[]{1, 1, 1};
+            }
+
+            axis[0] = x / length;
+            axis[1] = y / length;
+            axis[2] = z / length;
+        }
+
+        return axis;
+    }
+
+    /**
+     * Solves for the endpoints that best fit the texels with the indices they have now.
+     * @return the endpoints as 565, or null if the indices don't constrain both
+     */
+    private static int[] refineBc1(int[] texels, int[] indices) {
+        float alpha2 = 0, beta2 = 0, alphaBeta = 0;
+        float[] alphaX = new float[3];
+        float[] betaX = new float[3];
+
+        for (int i = 0; i < 16; i++) {
+            // the weight of endpoint 0 for index 0, 1, 2 and 3 in 4 color mode
+            float alpha = switch (indices[i]) {
+                case 0 -> 1;
+                case 1 -> 0;
+                case 2 -> 2 / 3f;
+                default -> 1 / 3f;
+            };
+            float beta = 1 - alpha;
+
+            alpha2 += alpha * alpha;
+            beta2 += beta * beta;
+            alphaBeta += alpha * beta;
+            for (int channel = 0; channel < 3; channel++) {
+                alphaX[channel] += alpha * texels[i * 4 + channel];
+                betaX[channel] += beta * texels[i * 4 + channel];
+            }
+        }
+
+        float determinant = alpha2 * beta2 - alphaBeta * alphaBeta;
+        if (Math.abs(determinant) < 1e-6f) {
+            return null;
+        }
+
+        int[] endpoint0 = new int[3];
+        int[] endpoint1 = new int[3];
+        for (int channel = 0; channel < 3; channel++) {
+            endpoint0[channel] = clampByte((alphaX[channel] * beta2 - betaX[channel] * alphaBeta) / determinant);
+            endpoint1[channel] = clampByte((betaX[channel] * alpha2 - alphaX[channel] * alphaBeta) / determinant);
+        }
+
+        return new int[]{to565(endpoint0[0], endpoint0[1], endpoint0[2]), to565(endpoint1[0], endpoint1[1], endpoint1[2])};
+    }
+
+    /**
+     * Picks the nearest of the 4 colors for every texel, as if color0 > color1.
+     * @return the total squared error
+     */
+    private static long bc1Indices(int[] texels, int color0, int color1, int[] indices) {
+        int[] palette = BlockDecoder.bc1Palette(color0, color1, true);
+        long total = 0;
+
+        for (int i = 0; i < 16; i++) {
+            int best = 0;
+            int bestError = Integer.MAX_VALUE;
+            for (int index = 0; index < 4; index++) {
+                int dr = texels[i * 4] - palette[index * 3];
+                int dg = texels[i * 4 + 1] - palette[index * 3 + 1];
+                int db = texels[i * 4 + 2] - palette[index * 3 + 2];
+                int error = dr * dr + dg * dg + db * db;
+                if (error < bestError) {
+                    bestError = error;
+                    best = index;
+                }
+            }
+
+            indices[i] = best;
+            total += bestError;
+        }
+
+        return total;
+    }
+
+    private static long packBc1(int color0, int color1, int[] indices) {
+        if (color0 == color1) {
+            // The decoder would be in 3 color mode, where index 3 is black; index 0 is the only color anyway
+            return color0 | (long) color1 << 16;
+        }
+
+        boolean swap = color0 < color1;
+        long bits = 0;
+        for (int i = 0; i < 16; i++) {
+            // Swapping the endpoints swaps indices 0 and 1, and 2 and 3
+            long index = swap ? indices[i] ^ 1 : indices[i];
+            bits |= index << (2 * i);
+        }
+
+        return (swap ? color1 : color0) | (long) (swap ? color0 : color1) << 16 | bits << 32;
+    }
+
+    /**
+     * @return the block as a little endian long: endpoint 0, endpoint 1, then 3 bit indices, texel 0 lowest
+     */
+    static long encodeBc4(int[] texels, int channel) {
+        int min = 255, max = 0;
+        int innerMin = 255, innerMax = 0;
+        for (int i = 0; i < 16; i++) {
+            int value = texels[i * 4 + channel];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (value != 0 && value != 255) {
+                innerMin = Math.min(innerMin, value);
+                innerMax = Math.max(innerMax, value);
+            }
+        }
+
+        if (min == max) {
+            return min | (long) max << 8;
+        }
+
+        long[] error = new long[2];
+        long eightValueBlock = bc4Block(texels, channel, max, min, error, 0);
+
+        if (innerMin > innerMax) {
+            // every texel is 0 or 255
+            innerMin = 0;
+            innerMax = 255;
+        }
+        if (innerMin == innerMax) {
+            innerMax = Math.min(255, innerMin + 1);
+            innerMin = innerMax - 1;
+        }
+
+        long sixValueBlock = bc4Block(texels, channel, innerMin, innerMax, error, 1);
+        return error[1] < error[0] ? sixValueBlock : eightValueBlock;
+    }
+
+    /**
+     * Picks the nearest of the palette the endpoints give for every texel.
+     * @param error receives the total squared error at errorIndex
+     */
+    private static long bc4Block(int[] texels, int channel, int value0, int value1, long[] error, int errorIndex) {
+        int[] palette = BlockDecoder.bc4Palette(value0, value1);
+        long total = 0;
+        long bits = 0;
+
+        for (int i = 0; i < 16; i++) {
+            int value = texels[i * 4 + channel];
+            int best = 0;
+            int bestError = Integer.MAX_VALUE;
+            for (int index = 0; index < 8; index++) {
+                int difference = value - palette[index];
+                if (difference * difference < bestError) {
+                    bestError = difference * difference;
+                    best = index;
+                }
+            }
+
+            total += bestError;
+            bits |= (long) best << (3 * i);
+        }
+
+        error[errorIndex] = total;
+        return value0 | (long) value1 << 8 | bits << 16;
+    }
+
+    private static int to565(int r, int g, int b) {
+        return (r * 31 + 127) / 255 << 11 | (g * 63 + 127) / 255 << 5 | (b * 31 + 127) / 255;
+    }
+
+    private static int clampByte(float value) {
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
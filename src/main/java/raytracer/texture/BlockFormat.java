@@ -0,0 +1,61 @@
+package raytracer.texture;
+
+import static org.lwjgl.opengl.EXTTextureCompressionS3TC.GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+import static org.lwjgl.opengl.GL30C.GL_COMPRESSED_RED_RGTC1;
+import static org.lwjgl.opengl.GL30C.GL_COMPRESSED_RG_RGTC2;
+
+/**
+ * The block compressed formats textures can be stored in on the GPU. Each stores a 4x4 block of texels in a fixed
+ * number of bytes, against 64 bytes uncompressed.
+ */
+public enum BlockFormat {
+    /**
+     * RGB, 8 bytes a block. For diffuse maps.
+     */
+    BC1(8, 3, GL_COMPRESSED_RGB_S3TC_DXT1_EXT),
+    /**
+     * One channel, 8 bytes a block. For height maps.
+     */
+    BC4(8, 1, GL_COMPRESSED_RED_RGTC1),
+    /**
+     * Two channels, each stored like BC4, 16 bytes a block. For normal maps, whose third component the shader
+     * reconstructs.
+     */
+    BC5(16, 2, GL_COMPRESSED_RG_RGTC2);
+
+    private final int blockBytes;
+    private final int channels;
+    private final int glInternalFormat;
+
+    BlockFormat(int blockBytes, int channels, int glInternalFormat) {
+        this.blockBytes = blockBytes;
+        this.channels = channels;
+        this.glInternalFormat = glInternalFormat;
+    }
+
+    public int blockBytes() {
+        return blockBytes;
+    }
+
+    /**
+     * @return how many of the RGBA channels are stored, starting from red
+     */
+    public int channels() {
+        return channels;
+    }
+
+    public int glInternalFormat() {
+        return glInternalFormat;
+    }
+
+    /**
+     * @return the size of an image, in bytes. Partial blocks at the right and bottom edges take a whole block.
+     */
+    public int encodedSize(int width, int height) {
+        return blocks(width) * blocks(height) * blockBytes;
+    }
+
+    static int blocks(int size) {
+        return (size + 3) / 4;
+    }
+}
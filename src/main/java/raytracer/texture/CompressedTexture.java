@@ -0,0 +1,18 @@
+package raytracer.texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A texture and its mip chain in a block compressed format, ready to upload.
+ * @param levels the blocks of level 0 and each level after it, each {@link BlockFormat#encodedSize} bytes for the
+ *               level's size
+ */
+public record CompressedTexture(BlockFormat format, int width, int height, ByteBuffer[] levels) {
+    public int levelWidth(int level) {
+        return MipChain.levelSize(width, level);
+    }
+
+    public int levelHeight(int level) {
+        return MipChain.levelSize(height, level);
+    }
+}
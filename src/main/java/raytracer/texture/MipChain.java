@@ -0,0 +1,84 @@
+package raytracer.texture;
+
+import java.util.stream.IntStream;
+
+/**
+ * Builds mip chains on the CPU with a 2x2 box filter, down to 1x1. Odd sizes round down, like GL, and the last row or
+ * column of an odd sized level is dropped.
+ */
+public final class MipChain {
+    /**
+     * Levels with fewer rows than this are filtered on one thread.
+     */
+    private static final int PARALLEL_ROWS = 64;
+
+    private MipChain() {}
+
+    /**
+     * @return how many levels a full chain for the size has, including level 0
+     */
+    public static int levelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * @param size the width or height of level 0
+     * @return the width or height of the level
+     */
+    public static int levelSize(int size, int level) {
+        return Math.max(1, size >> level);
+    }
+
+    /**
+     * @param base RGBA8 pixels of level 0
+     * @return every level, starting with base itself
+     */
+    public static byte[][] build(byte[] base, int width, int height) {
+        byte[][] levels = new byte[levelCount(width, height)][];
+        levels[0] = base;
+
+        for (int level = 1; level < levels.length; level++) {
+            int sourceWidth = levelSize(width, level - 1);
+            int sourceHeight = levelSize(height, level - 1);
+            levels[level] = downsample(levels[level - 1], sourceWidth, sourceHeight);
+        }
+
+        return levels;
+    }
+
+    private static byte[] downsample(byte[] source, int sourceWidth, int sourceHeight) {
+        int width = Math.max(1, sourceWidth / 2);
+        int height = Math.max(1, sourceHeight / 2);
+        byte[] dest = new byte[width * height * 4];
+
+        IntStream rows = IntStream.range(0, height);
+        if (height >= PARALLEL_ROWS) {
+            rows = rows.parallel();
+        }
+
+        rows.forEach(y -> {
+            // A 1 pixel wide or tall source only has one pixel to average across that axis
+            int y0 = Math.min(2 * y, sourceHeight - 1);
+            int y1 = Math.min(2 * y + 1, sourceHeight - 1);
+
+            for (int x = 0; x < width; x++) {
+                int x0 = Math.min(2 * x, sourceWidth - 1);
+                int x1 = Math.min(2 * x + 1, sourceWidth - 1);
+
+                int a = (y0 * sourceWidth + x0) * 4;
+                int b = (y0 * sourceWidth + x1) * 4;
+                int c = (y1 * sourceWidth + x0) * 4;
+                int d = (y1 * sourceWidth + x1) * 4;
+                int out = (y * width + x) * 4;
+
+                for (int channel = 0; channel < 4; channel++) {
+                    int sum = (source[a + channel] & 0xFF) + (source[b + channel] & 0xFF)
+                            + (source[c + channel] & 0xFF) + (source[d + channel] & 0xFF);
+                    dest[out + channel] = (byte) ((sum + 2) >> 2);
+                }
+            }
+        });
+
+        return dest;
+    }
+}
@@ -1,60 +1,53 @@
 package raytracer.texture;
 
-import org.lwjgl.BufferUtils;
-
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 
+/**
+ * RGBA8 pixels, top row first, with an optional chain of mip levels each half the size of the one before.
+ */
 public class Texture {
-    private final ByteBuffer bytes;
+    private final ByteBuffer[] levels;
     private final int width;
     private final int height;
 
+    /**
+     * @param bytes RGBA8 pixels, top row first
+     */
+    public Texture(int width, int height, ByteBuffer bytes) {
+        this(width, height, new ByteBuffer[]{bytes});
+    }
 
-    public Texture(String path) {
-        if (!path.endsWith(".png")) {
-            throw new IllegalArgumentException("Only PNG images are supported");
-        }
-
-        BufferedImage img;
-        try {
-            img = ImageIO.read(new File(path));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        width = img.getWidth();
-        height = img.getHeight();
-
-        // Check if the image has an alpha channel
-        boolean hasAlpha = img.getColorModel().hasAlpha();
+    /**
+     * @param levels RGBA8 pixels, top row first, for level 0 and each level after it. Level i is
+     *               {@link #levelWidth(int)} by {@link #levelHeight(int)}.
+     */
+    public Texture(int width, int height, ByteBuffer[] levels) {
+        this.width = width;
+        this.height = height;
+        this.levels = levels;
+    }
 
-        // Extract raw pixel data
-        int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+    /**
+     * @return the full size pixels
+     */
+    public ByteBuffer bytes() {
+        return levels[0];
+    }
 
-        // Allocate a ByteBuffer based on whether alpha is present
-        ByteBuffer byteBuffer = BufferUtils.createByteBuffer(width * height * 4);
+    public ByteBuffer level(int level) {
+        return levels[level];
+    }
 
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                int pixel = pixels[i * width + j];
-                byteBuffer.put((byte) ((pixel >> 16) & 0xFF)); // Red
-                byteBuffer.put((byte) ((pixel >> 8) & 0xFF));  // Green
-                byteBuffer.put((byte) (pixel & 0xFF));         // Blue
-                byteBuffer.put(hasAlpha ? (byte) ((pixel >> 24) & 0xFF) : (byte) 0xFF); // Alpha
-            }
-        }
+    public int levelCount() {
+        return levels.length;
+    }
 
-        // Copy ByteBuffer content to a byte array
-        byteBuffer.flip();
-        bytes = byteBuffer;
+    public int levelWidth(int level) {
+        return MipChain.levelSize(width, level);
     }
 
-    public ByteBuffer bytes() {
-        return bytes;
+    public int levelHeight(int level) {
+        return MipChain.levelSize(height, level);
     }
 
     public int width() {
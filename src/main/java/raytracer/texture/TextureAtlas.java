@@ -0,0 +1,120 @@
+package raytracer.texture;
+
+import org.joml.Vector2f;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Textures of any size packed onto equally sized pages by {@link AtlasPacker}, so they can share one array texture
+ * without being scaled to the size of the largest. Each texture's gutter repeats its edge texels, so bilinear filtering
+ * at the edge of a region gives the same result as GL_CLAMP_TO_EDGE on the texture by itself.
+ * <p>
+ * Only level 0 of each texture is packed; the pages get their own mip chains.
+ */
+public final class TextureAtlas {
+    /**
+     * Wide enough that the first two mip levels of the pages never blend neighbouring textures.
+     */
+    public static final int GUTTER = 4;
+    public static final int MAX_PAGE_SIZE = 8192;
+
+    private final Texture[] pages;
+    private final TextureRegion[] regions;
+
+    private TextureAtlas(Texture[] pages, TextureRegion[] regions) {
+        this.pages = pages;
+        this.regions = regions;
+    }
+
+    /**
+     * @return an atlas with a region per texture, in the same order. With no textures, a single 1x1 white page.
+     */
+    public static TextureAtlas build(Texture[] textures) {
+        int[] widths = new int[textures.length];
+        int[] heights = new int[textures.length];
+        for (int i = 0; i < textures.length; i++) {
+            widths[i] = textures[i].width();
+            heights[i] = textures[i].height();
+        }
+
+        AtlasPacker.Layout layout = AtlasPacker.pack(widths, heights, GUTTER, MAX_PAGE_SIZE);
+        int pageWidth = textures.length == 0 ? 1 : layout.pageWidth();
+        int pageHeight = textures.length == 0 ? 1 : layout.pageHeight();
+
+        byte[][] pixels = new byte[layout.pageCount()][pageWidth * pageHeight * 4];
+        if (textures.length == 0) {
+            pixels[0] = new byte[]{-1, -1, -1, -1};
+        }
+
+        // Regions and their gutters never overlap, so every texture can be copied at once
+        IntStream.range(0, textures.length).parallel().forEach(i -> {
+            AtlasPacker.Placement placement = layout.placements()[i];
+            copy(textures[i], pixels[placement.page()], pageWidth, placement.x(), placement.y());
+        });
+
+        Texture[] pages = new Texture[pixels.length];
+        for (int page = 0; page < pages.length; page++) {
+            byte[][] levels = MipChain.build(pixels[page], pageWidth, pageHeight);
+            ByteBuffer[] buffers = new ByteBuffer[levels.length];
+            for (int level = 0; level < levels.length; level++) {
+                buffers[level] = BufferUtils.createByteBuffer(levels[level].length).put(levels[level]).flip();
+            }
+
+            pages[page] = new Texture(pageWidth, pageHeight, buffers);
+        }
+
+        TextureRegion[] regions = new TextureRegion[textures.length];
+        for (int i = 0; i < textures.length; i++) {
+            AtlasPacker.Placement placement = layout.placements()[i];
+            regions[i] = new TextureRegion(
+                    new Vector2f(textures[i].width(), textures[i].height()).div(pageWidth, pageHeight),
+                    new Vector2f(placement.x(), placement.y()).div(pageWidth, pageHeight),
+                    placement.page()
+            );
+        }
+
+        return new TextureAtlas(pages, regions);
+    }
+
+    /**
+     * Copies level 0 of the texture to the page with its top left texel at (x, y), and repeats its edges into the
+     * gutter around it.
+     */
+    private static void copy(Texture texture, byte[] page, int pageWidth, int x, int y) {
+        ByteBuffer source = texture.bytes();
+        int width = texture.width();
+        int height = texture.height();
+        int rowBytes = width * 4;
+
+        for (int row = -GUTTER; row < height + GUTTER; row++) {
+            int sourceRow = Math.max(0, Math.min(height - 1, row));
+            int dest = ((y + row) * pageWidth + x) * 4;
+            source.get(sourceRow * rowBytes, page, dest, rowBytes);
+
+            for (int texel = 1; texel <= GUTTER; texel++) {
+                System.arraycopy(page, dest, page, dest - texel * 4, 4);
+                System.arraycopy(page, dest + rowBytes - 4, page, dest + rowBytes + (texel - 1) * 4, 4);
+            }
+        }
+    }
+
+    /**
+     * @return the pages, all the same size
+     */
+    public Texture[] pages() {
+        return pages;
+    }
+
+    public TextureRegion[] regions() {
+        return regions;
+    }
+
+    /**
+     * @return how many texels the pages hold in total, not counting their mip levels
+     */
+    public long texelCount() {
+        return (long) pages.length * pages[0].width() * pages[0].height();
+    }
+}
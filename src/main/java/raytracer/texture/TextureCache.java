@@ -0,0 +1,205 @@
+package raytracer.texture;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.system.MemoryStack;
+import raytracer.config.TextureCacheConfig;
+import raytracer.util.CacheDirectory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.lwjgl.stb.STBImage.*;
+
+/**
+ * Loads PNG and JPG textures, decoding them with stb_image straight to RGBA8 and building their mip chain, and caches
+ * the result on disk so later runs can map the pixels into memory instead of decoding them. Mapped pixels are direct
+ * buffers, so they are uploaded to the GPU and sampled by the CPU backend without being copied.
+ * <p>
+ * Entries are named like {@link raytracer.obj.MeshCache}'s, after the SHA-256 of the image file and
+ * {@link #LOADER_VERSION}.
+ * <p>
+ * File layout, little endian:
+ * <pre>
+ * int  magic          'RTEX'
+ * int  loader version
+ * int  width
+ * int  height
+ * int  level count
+ * byte pixels[]       RGBA8, top row first, level 0 then each smaller level
+ * </pre>
+ */
+public class TextureCache {
+    /**
+     * Bump whenever the decoded pixels, the mip filter or the file layout change.
+     */
+    public static final int LOADER_VERSION = 1;
+
+    private static final int MAGIC = 0x58455452;  // "RTEX" read as a little endian int
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+
+    private final CacheDirectory directory;
+
+    public TextureCache(TextureCacheConfig config) {
+        this.directory = config.enabled()
+                ? new CacheDirectory(Path.of(config.directory()), ".texture", LOADER_VERSION, (long) config.maxSizeMb() << 20)
+                : null;
+    }
+
+    /**
+     * Loads every texture at once, each on its own core.
+     * @return the textures in the same order as the paths
+     */
+    public Texture[] loadAll(String... paths) {
+        return Arrays.stream(paths).parallel().map(path -> {
+            try {
+                return load(Path.of(path));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load texture " + path, e);
+            }
+        }).toArray(Texture[]::new);
+    }
+
+    /**
+     * Loads an image file, from the cache if it has been loaded before.
+     */
+    public Texture load(Path path) throws IOException {
+        if (directory == null) {
+            return toTexture(decode(path));
+        }
+
+        Path entry = directory.entry(path);
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                Texture texture = read(entry);
+                directory.touch(entry);
+                return texture;
+            } catch (IOException | RuntimeException e) {
+                // Truncated or otherwise unreadable; fall through and rewrite it
+                Files.deleteIfExists(entry);
+            }
+        }
+
+        // Returned from memory rather than mapped back, since another thread's eviction may delete the entry first,
+        // and evicting right after writing always deletes an entry bigger than the whole cache
+        Decoded decoded = decode(path);
+        write(entry, decoded);
+        directory.evict();
+
+        return toTexture(decoded);
+    }
+
+    private record Decoded(int width, int height, byte[][] levels) {}
+
+    private static Texture toTexture(Decoded decoded) {
+        ByteBuffer[] levels = new ByteBuffer[decoded.levels().length];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = BufferUtils.createByteBuffer(decoded.levels()[i].length).put(decoded.levels()[i]).flip();
+        }
+
+        return new Texture(decoded.width(), decoded.height(), levels);
+    }
+
+    private static Decoded decode(Path path) throws IOException {
+        byte[] base;
+        int width;
+        int height;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ); MemoryStack stack = MemoryStack.stackPush()) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer widthBuffer = stack.mallocInt(1);
+            IntBuffer heightBuffer = stack.mallocInt(1);
+            IntBuffer channels = stack.mallocInt(1);
+
+            // Asking for 4 channels expands grey and RGB images and narrows 16 bit ones to RGBA8
+            ByteBuffer pixels = stbi_load_from_memory(file, widthBuffer, heightBuffer, channels, 4);
+            if (pixels == null) {
+                throw new IOException("Failed to decode " + path + ": " + stbi_failure_reason());
+            }
+
+            width = widthBuffer.get(0);
+            height = heightBuffer.get(0);
+            base = new byte[width * height * 4];
+            pixels.get(0, base);
+            stbi_image_free(pixels);
+        }
+
+        return new Decoded(width, height, MipChain.build(base, width, height));
+    }
+
+    private static Texture read(Path entry) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != LOADER_VERSION) {
+            throw new IOException("Not a texture cache entry for loader version " + LOADER_VERSION + ": " + entry);
+        }
+
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int levelCount = buffer.getInt();
+        if (width <= 0 || height <= 0 || levelCount != MipChain.levelCount(width, height)) {
+            throw new IOException("Corrupt texture cache entry: " + entry);
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        long position = HEADER_BYTES;
+        for (int level = 0; level < levelCount; level++) {
+            long bytes = 4L * MipChain.levelSize(width, level) * MipChain.levelSize(height, level);
+            if (position + bytes > buffer.capacity()) {
+                throw new IOException("Corrupt texture cache entry: " + entry);
+            }
+
+            levels[level] = buffer.slice((int) position, (int) bytes);
+            position += bytes;
+        }
+
+        if (position != buffer.capacity()) {
+            throw new IOException("Corrupt texture cache entry: " + entry);
+        }
+
+        return new Texture(width, height, levels);
+    }
+
+    private void write(Path entry, Decoded decoded) throws IOException {
+        long size = HEADER_BYTES;
+        for (byte[] level : decoded.levels()) {
+            size += level.length;
+        }
+
+        Path temp = directory.createTemp(entry);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(LOADER_VERSION);
+                buffer.putInt(decoded.width());
+                buffer.putInt(decoded.height());
+                buffer.putInt(decoded.levels().length);
+                for (byte[] level : decoded.levels()) {
+                    buffer.put(level);
+                }
+
+                buffer.force();
+            }
+
+            CacheDirectory.moveIntoPlace(temp, entry);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package raytracer.texture;
+
+import raytracer.config.TextureCacheConfig;
+import raytracer.util.CacheDirectory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Block compresses textures with {@link BlockEncoder} and caches the blocks next to {@link TextureCache}'s entries, so
+ * only the first run with a given atlas page pays for encoding it. Entries are named after the SHA-256 of the format,
+ * the size and the level 0 texels, since atlas pages have no file of their own.
+ * <p>
+ * File layout, little endian:
+ * <pre>
+ * int  magic          'RTBC'
+ * int  encoder version
+ * int  format         {@link BlockFormat} ordinal
+ * int  width
+ * int  height
+ * int  level count
+ * byte blocks[]       level 0 then each smaller level
+ * </pre>
+ */
+public class TextureCompressor {
+    /**
+     * Bump whenever the encoder's output or the file layout change.
+     */
+    public static final int ENCODER_VERSION = 1;
+
+    private static final int MAGIC = 0x43425452;  // "RTBC" read as a little endian int
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private final CacheDirectory directory;
+
+    public TextureCompressor(TextureCacheConfig config) {
+        this.directory = config.enabled()
+                ? new CacheDirectory(Path.of(config.directory()), ".bc", ENCODER_VERSION, (long) config.maxSizeMb() << 20)
+                : null;
+    }
+
+    /**
+     * Compresses each texture, one after the other; each one's blocks are encoded in parallel.
+     */
+    public CompressedTexture[] compressAll(Texture[] textures, BlockFormat format) {
+        CompressedTexture[] compressed = new CompressedTexture[textures.length];
+        for (int i = 0; i < textures.length; i++) {
+            try {
+                compressed[i] = compress(textures[i], format);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compress texture to " + format, e);
+            }
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Compresses the texture and every mip level it has, from the cache if it has been compressed before.
+     */
+    public CompressedTexture compress(Texture texture, BlockFormat format) throws IOException {
+        if (directory == null) {
+            return encode(texture, format);
+        }
+
+        Path entry = directory.entry(format + " " + texture.width() + "x" + texture.height(), texture.bytes());
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                CompressedTexture compressed = read(entry, format);
+                directory.touch(entry);
+                return compressed;
+            } catch (IOException | RuntimeException e) {
+                // Truncated or otherwise unreadable; fall through and rewrite it
+                Files.deleteIfExists(entry);
+            }
+        }
+
+        // Returned from memory rather than mapped back, for the same reasons as in TextureCache.load
+        CompressedTexture compressed = encode(texture, format);
+        write(entry, compressed);
+        directory.evict();
+
+        return compressed;
+    }
+
+    private static CompressedTexture encode(Texture texture, BlockFormat format) {
+        ByteBuffer[] levels = new ByteBuffer[texture.levelCount()];
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = BlockEncoder.encode(format, texture.level(level), texture.levelWidth(level), texture.levelHeight(level));
+        }
+
+        return new CompressedTexture(format, texture.width(), texture.height(), levels);
+    }
+
+    private static CompressedTexture read(Path entry, BlockFormat format) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != ENCODER_VERSION
+                || buffer.getInt() != format.ordinal()) {
+            throw new IOException("Not a " + format + " cache entry for encoder version " + ENCODER_VERSION + ": " + entry);
+        }
+
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int levelCount = buffer.getInt();
+        if (width <= 0 || height <= 0 || levelCount <= 0 || levelCount > MipChain.levelCount(width, height)) {
+            throw new IOException("Corrupt block compressed cache entry: " + entry);
+        }
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        long position = HEADER_BYTES;
+        for (int level = 0; level < levelCount; level++) {
+            long bytes = format.encodedSize(MipChain.levelSize(width, level), MipChain.levelSize(height, level));
+            if (position + bytes > buffer.capacity()) {
+                throw new IOException("Corrupt block compressed cache entry: " + entry);
+            }
+
+            levels[level] = buffer.slice((int) position, (int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+            position += bytes;
+        }
+
+        if (position != buffer.capacity()) {
+            throw new IOException("Corrupt block compressed cache entry: " + entry);
+        }
+
+        return new CompressedTexture(format, width, height, levels);
+    }
+
+    private void write(Path entry, CompressedTexture compressed) throws IOException {
+        long size = HEADER_BYTES;
+        for (ByteBuffer level : compressed.levels()) {
+            size += level.capacity();
+        }
+
+        Path temp = directory.createTemp(entry);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(ENCODER_VERSION);
+                buffer.putInt(compressed.format().ordinal());
+                buffer.putInt(compressed.width());
+                buffer.putInt(compressed.height());
+                buffer.putInt(compressed.levels().length);
+                for (ByteBuffer level : compressed.levels()) {
+                    buffer.put(level.duplicate().clear());
+                }
+
+                buffer.force();
+            }
+
+            CacheDirectory.moveIntoPlace(temp, entry);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package raytracer.texture;
+
+import org.joml.Vector2f;
+
+/**
+ * Where a texture is in its atlas: a texture coordinate uv in [0, 1] maps to offset + uv * scale on the given page.
+ * Mirrors the TextureRegion struct in the compute shader.
+ */
+public record TextureRegion(Vector2f scale, Vector2f offset, int page) {}
@@ -0,0 +1,201 @@
+package raytracer.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A directory of cache entries named after the SHA-256 of the file or data they were derived from and the version of
+ * the loader that derived them, like {@code <hash>-v3.mesh}. Entries written by other loader versions are deleted when the
+ * directory is opened, and the least recently used entries are evicted whenever it grows past its size limit.
+ * <p>
+ * Entries are written to temporary files first. Temporary files a crashed run left behind are deleted when the directory
+ * is opened, once they are old enough that no other run can still be writing them.
+ */
+public class CacheDirectory {
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * How long a temporary file goes unmodified before it counts as abandoned.
+     */
+    private static final long ABANDONED_TEMP_MILLIS = 60 * 60 * 1000;
+
+    private final Path directory;
+    private final String extension;
+    private final String versionSuffix;
+    private final long maxBytes;
+
+    /**
+     * @param extension the extension of every entry, including the dot
+     * @param loaderVersion entries with any other version are deleted
+     */
+    public CacheDirectory(Path directory, String extension, int loaderVersion, long maxBytes) {
+        this.directory = directory;
+        this.extension = extension;
+        this.versionSuffix = "-v" + loaderVersion + extension;
+        this.maxBytes = maxBytes;
+
+        deleteOtherVersions();
+        deleteAbandonedTemps();
+    }
+
+    /**
+     * @return where the entry for the source file is or would be
+     */
+    public Path entry(Path source) throws IOException {
+        return directory.resolve(hash(source) + versionSuffix);
+    }
+
+    /**
+     * @param key anything besides the contents the entry depends on, like the format it is stored in
+     * @return where the entry for the data is or would be
+     */
+    public Path entry(String key, ByteBuffer contents) {
+        MessageDigest digest = sha256();
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        digest.update(contents.duplicate().clear());
+
+        return directory.resolve(HexFormat.of().formatHex(digest.digest()) + versionSuffix);
+    }
+
+    /**
+     * Marks the entry as used just now, so it is evicted last.
+     */
+    public void touch(Path entry) throws IOException {
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    /**
+     * @return a new temporary file next to the entry, to be filled and passed to {@link #moveIntoPlace}
+     */
+    public Path createTemp(Path entry) throws IOException {
+        Files.createDirectories(entry.getParent());
+        return Files.createTempFile(entry.getParent(), entry.getFileName().toString(), TEMP_SUFFIX);
+    }
+
+    /**
+     * Replaces the entry with the temporary file in one step, so a crash or a concurrent run never sees half a file.
+     */
+    public static void moveIntoPlace(Path temp, Path entry) throws IOException {
+        try {
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hash(Path path) throws IOException {
+        MessageDigest digest = sha256();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+
+            // Map in windows so files past 2 GiB can be hashed too
+            while (position < size) {
+                long length = Math.min(Integer.MAX_VALUE, size - position);
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                position += length;
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private List<Path> entries() {
+        return list(extension);
+    }
+
+    /**
+     * @return the files of this cache whose names end with suffix
+     */
+    private List<Path> list(String suffix) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(file -> {
+                String name = file.getFileName().toString();
+                // temporary files are named after their entry, so other caches sharing the directory are left alone
+                return name.endsWith(suffix) && name.contains(extension);
+            }).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list cache " + directory, e);
+        }
+    }
+
+    private void deleteAbandonedTemps() {
+        long cutoff = System.currentTimeMillis() - ABANDONED_TEMP_MILLIS;
+
+        for (Path temp : list(TEMP_SUFFIX)) {
+            try {
+                if (Files.getLastModifiedTime(temp).toMillis() < cutoff) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                // Moved into place or deleted by another run since it was listed
+            }
+        }
+    }
+
+    private void deleteOtherVersions() {
+        for (Path entry : entries()) {
+            if (!entry.getFileName().toString().endsWith(versionSuffix)) {
+                try {
+                    Files.deleteIfExists(entry);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete stale cache entry " + entry + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits within its size limit.
+     */
+    public synchronized void evict() throws IOException {
+        record Entry(Path path, long size, long lastUsed) {}
+
+        List<Entry> entries = new ArrayList<>();
+        long totalBytes = 0;
+        for (Path path : entries()) {
+            try {
+                Entry entry = new Entry(path, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+                entries.add(entry);
+                totalBytes += entry.size();
+            } catch (IOException e) {
+                // Deleted by another run since it was listed
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::lastUsed));
+
+        for (int i = 0; i < entries.size() && totalBytes > maxBytes; i++) {
+            Files.deleteIfExists(entries.get(i).path());
+            totalBytes -= entries.get(i).size();
+        }
+    }
+}
@@ -1,62 +1,53 @@
 package raytracer.util;
 
-import java.util.Arrays;
-
-import static org.lwjgl.glfw.GLFW.glfwGetTime;
-
 /**
  * A utility class to handle different time-related tasks.
  */
 public class Clock {
+    /**
+     * The System.nanoTime() value when the clock was created. Used instead of glfwGetTime() so the clock also works
+     * headlessly.
+     */
+    private long startNanos;
     /**
      * Second to last tick is used for getTimeDelta()
      */
     private double secondToLastTick;
     private double lastTick;
-    private double[] fpsSamples;
-    /**
-     * The next index to modify in fpsSamples.
-     */
-    private int fpsSampleIndex;
     private int frameCounter;
 
     public Clock() {
+        startNanos = System.nanoTime();
         secondToLastTick = 0;
         lastTick = 0;
-        fpsSamples = new double[100];
-        fpsSampleIndex = 0;
         frameCounter = 0;
     }
 
     /**
-     * Sets deltaTime to the correct value
+     * Continues from a previous run, as if the clock had been running for the given time and frames.
      */
-    private void updateDeltaTime() {
-        secondToLastTick = lastTick;
+    public void resume(int frameCount, double seconds) {
+        frameCounter = frameCount;
+        startNanos = System.nanoTime() - (long) (seconds * 1e9);
         lastTick = getTime();
+        secondToLastTick = lastTick;
     }
 
     /**
-     * Add a new value to smoothedFps. Should only be called after updateDeltaTime so the information is for this frame
-     * and not the previous frame.
+     * Sets deltaTime to the correct value
      */
-    private void updateSmoothedFPS() {
-        fpsSamples[fpsSampleIndex] = 1 / getTimeDelta();
-        fpsSampleIndex++;
-
-        if (fpsSampleIndex >= fpsSamples.length) {
-            fpsSampleIndex = 0;
-        }
+    private void updateDeltaTime() {
+        secondToLastTick = lastTick;
+        lastTick = getTime();
     }
 
     /**
-     * Updates the delta time and the smoothed FPS.
+     * Counts a frame and updates the delta time. Frame timings are recorded in raytracer.metrics.Metrics.
      */
     public void update() {
         frameCounter++;
 
         updateDeltaTime();
-        updateSmoothedFPS();
     }
 
     /**
@@ -74,10 +65,10 @@ public class Clock {
     }
 
     /**
-     * @return The seconds since the window initialized
+     * @return The seconds since the clock was created
      */
     public double getTime() {
-        return glfwGetTime();
+        return (System.nanoTime() - startNanos) / 1e9;
     }
 
     /**
@@ -87,42 +78,6 @@ public class Clock {
         return (float) getTime();
     }
 
-    /**
-     * @return The number of smoothed FPS samples
-     */
-    public int getNumFpsSamples() {
-        return fpsSamples.length;
-    }
-
-    /**
-     * @param n The number of samples to set the smoothed FPS to. Must be >= 1.
-     */
-    public void setNumFpsSamples(int n) throws IllegalArgumentException {
-        if (n <= 0) {
-            throw new IllegalArgumentException("Smoothed FPS sample size must be 1 or greater, not " + n + ".");
-        }
-
-        fpsSamples = new double[n];
-    }
-
-    /**
-     * @return The smoothed fps over the last n samples
-     */
-    public double getSmoothedFps() {
-        double sum = 0;
-        int validSamples = 0;
-
-        for (double sample : fpsSamples) {
-            if (sample > 0) {  // Ignore invalid samples (including 0)
-                sum += sample;
-                validSamples++;
-            }
-        }
-
-        return validSamples > 0 ? sum / validSamples : 0;
-    }
-
-
     public double getUnsmoothedFps() {
         return 1 / getTimeDelta();
     }
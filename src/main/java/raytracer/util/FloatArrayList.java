@@ -0,0 +1,50 @@
+package raytracer.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable float array, so large amounts of data can be collected without boxing.
+ */
+public class FloatArrayList {
+    private float[] data;
+    private int size;
+
+    public FloatArrayList() {
+        this(16);
+    }
+
+    public FloatArrayList(int initialCapacity) {
+        data = new float[Math.max(1, initialCapacity)];
+    }
+
+    public void add(float value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+
+        data[size++] = value;
+    }
+
+    public float get(int index) {
+        return data[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the contents into dest, starting at offset.
+     */
+    public void copyTo(float[] dest, int offset) {
+        System.arraycopy(data, 0, dest, offset, size);
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,54 @@
+package raytracer.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable int array, so large amounts of data can be collected without boxing.
+ */
+public class IntArrayList {
+    private int[] data;
+    private int size;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        data = new int[Math.max(1, initialCapacity)];
+    }
+
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+
+        data[size++] = value;
+    }
+
+    public int get(int index) {
+        return data[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies the contents into dest, starting at offset.
+     */
+    public void copyTo(int[] dest, int offset) {
+        System.arraycopy(data, 0, dest, offset, size);
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,61 @@
+package raytracer;
+
+import org.joml.Vector3f;
+import raytracer.cpu.Ray;
+
+import java.util.Random;
+
+/**
+ * The rays the intersection tests trace at the bundled meshes.
+ */
+public final class TestRays {
+    private TestRays() {}
+
+    /**
+     * Rays from all around the mesh, each aimed at a point near a random triangle so that about half of them hit it.
+     * One in ten is axis aligned instead, so its inverse direction has infinite components.
+     */
+    public static Ray[] around(Mesh mesh, Random random, int count) {
+        float[] vertices = mesh.vertices();
+        int[] indices = mesh.indices();
+        float[] bounds = mesh.bounds();
+        Vector3f center = new Vector3f(bounds[0] + bounds[3], bounds[1] + bounds[4], bounds[2] + bounds[5]).mul(0.5f);
+        float extent = Math.max(bounds[3] - bounds[0], Math.max(bounds[4] - bounds[1], bounds[5] - bounds[2]));
+
+        Ray[] rays = new Ray[count];
+        for (int i = 0; i < count; i++) {
+            int triangle = random.nextInt(indices.length / 3) * 3;
+            Vector3f target = new Vector3f();
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices[triangle + corner] * 3;
+                target.add(vertices[vertex], vertices[vertex + 1], vertices[vertex + 2]);
+            }
+            target.div(3).add(randomUnitVector(random).mul(0.02f * extent));
+
+            Vector3f origin;
+            Vector3f direction;
+            if (i % 10 == 0) {
+                direction = new Vector3f();
+                direction.setComponent(random.nextInt(3), random.nextBoolean() ? 1 : -1);
+                origin = target.sub(direction.mul(2 * extent, new Vector3f()), new Vector3f());
+            } else {
+                origin = randomUnitVector(random).mul(2 * extent).add(center);
+                direction = target.sub(origin, new Vector3f()).normalize();
+            }
+
+            rays[i] = new Ray(origin, direction);
+        }
+
+        return rays;
+    }
+
+    private static Vector3f randomUnitVector(Random random) {
+        while (true) {
+            Vector3f v = new Vector3f(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+            float lengthSquared = v.lengthSquared();
+            if (lengthSquared > 1e-6f && lengthSquared <= 1) {
+                return v.normalize();
+            }
+        }
+    }
+}
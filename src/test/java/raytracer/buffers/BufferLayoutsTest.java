@@ -0,0 +1,55 @@
+package raytracer.buffers;
+
+import org.junit.jupiter.api.Test;
+import raytracer.buffers.layout.GlslType;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.StructLayout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferLayoutsTest {
+    private static final Path SHADER = Path.of("src/main/resources/raytracer.comp");
+
+    @Test
+    void everyBufferMatchesTheShader() throws IOException {
+        assertDoesNotThrow(() -> BufferLayouts.verify(Files.readString(SHADER)));
+    }
+
+    @Test
+    void aStructChangedOnOneSideFails() throws IOException {
+        String source = Files.readString(SHADER);
+        String swapped = source.replace("    float emissionStrength;\n    int type;", "    int type;\n    float emissionStrength;");
+        assertNotEquals(source, swapped);
+
+        assertThrows(IllegalStateException.class, () -> BufferLayouts.verify(swapped));
+    }
+
+    @Test
+    void onlyStd140PadsStructsToAVec4() {
+        StructLayout std140 = StructLayout.builder("Scalar", LayoutRules.STD140).member("value", GlslType.FLOAT).build();
+        StructLayout std430 = StructLayout.builder("Scalar", LayoutRules.STD430).member("value", GlslType.FLOAT).build();
+
+        assertEquals(16, std140.stride());
+        assertEquals(4, std430.stride());
+        assertFalse(std140.matches(std430));
+    }
+
+    @Test
+    void aScalarAfterAVec3FillsItsPadding() {
+        for (LayoutRules rules : LayoutRules.values()) {
+            StructLayout layout = StructLayout.builder("Packed", rules)
+                    .member("position", GlslType.VEC3)
+                    .member("radius", GlslType.FLOAT)
+                    .member("uv", GlslType.VEC2)
+                    .build();
+
+            assertEquals(12, layout.offset("radius"));
+            assertEquals(16, layout.offset("uv"));
+            assertEquals(32, layout.stride());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package raytracer.buffers;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import raytracer.Mesh;
+import raytracer.buffers.GeometryPacker.PackedGeometry;
+import raytracer.buffers.layout.StructLayout;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+import raytracer.bvh.WideBvh;
+import raytracer.bvh.WideBvhBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads back what GeometryPacker writes for a few meshes sharing the pools, one of them without texture coordinates.
+ */
+class GeometryPackerTest {
+    private static final StructLayout OBJECT = GeometryPacker.OBJECT.layout();
+
+    private static Mesh[] meshes;
+    private static WideBvh[] wideBvhs;
+    private static PackedGeometry packed;
+
+    @BeforeAll
+    static void pack() throws IOException {
+        Mesh untextured = new Mesh(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 1, 0}, new int[]{0, 1, 2, 1, 3, 2},
+                new float[0], new int[0], 2);
+        meshes = new Mesh[]{
+                Mesh.load("src/main/resources/suzanne.obj", 0),
+                Mesh.load("src/main/resources/cube.obj", 1),
+                untextured,
+                Mesh.load("src/main/resources/tree_top.obj", 3)
+        };
+
+        Bvh[] bvhs = new Bvh[meshes.length];
+        wideBvhs = new WideBvh[meshes.length];
+        for (int i = 0; i < meshes.length; i++) {
+            bvhs[i] = BvhBuilder.build(meshes[i]);
+            wideBvhs[i] = WideBvhBuilder.build(bvhs[i]);
+        }
+
+        packed = GeometryPacker.pack(meshes, bvhs);
+    }
+
+    @Test
+    void headersHoldRunningOffsetsBoundsAndMaterials() {
+        assertEquals(meshes.length, packed.objectCount());
+
+        int vertices = 0;
+        int texCoords = 0;
+        int triangles = 0;
+        int nodes = 0;
+        for (int i = 0; i < meshes.length; i++) {
+            float[] bounds = meshes[i].bounds();
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals(bounds[axis], packed.objects().getFloat(field(i, "minBounds") + axis * Float.BYTES));
+                assertEquals(bounds[3 + axis], packed.objects().getFloat(field(i, "maxBounds") + axis * Float.BYTES));
+            }
+
+            assertEquals(vertices, packed.objects().getInt(field(i, "vertexOffset")), "vertex offset of object " + i);
+            assertEquals(texCoords, packed.objects().getInt(field(i, "texCoordOffset")), "tex coord offset of object " + i);
+            assertEquals(triangles, packed.objects().getInt(field(i, "triangleOffset")), "triangle offset of object " + i);
+            assertEquals(meshes[i].triangleCount(), packed.objects().getInt(field(i, "triangleCount")));
+            assertEquals(nodes, packed.objects().getInt(field(i, "nodeOffset")), "node offset of object " + i);
+            assertEquals(meshes[i].materialIndex(), packed.objects().getInt(field(i, "materialId")));
+
+            vertices += meshes[i].vertexCount();
+            texCoords += meshes[i].texCoords().length > 0 ? meshes[i].texCoords().length / 2 : 1;
+            triangles += meshes[i].triangleCount();
+            nodes += wideBvhs[i].nodeCount();
+        }
+
+        // every pool is sized exactly to the scene
+        assertEquals(vertices * GeometryPacker.VERTEX_BYTES, packed.vertices().remaining());
+        assertEquals(texCoords * GeometryPacker.TEX_COORD_BYTES, packed.texCoords().remaining());
+        assertEquals(triangles * GeometryPacker.TRIANGLE_BYTES, packed.triangles().remaining());
+        assertEquals(nodes * WideBvhNodes.NODE_BYTES, packed.nodes().remaining());
+    }
+
+    @Test
+    void verticesAndTexCoordsAreCopiedAtTheirOffsets() {
+        for (int i = 0; i < meshes.length; i++) {
+            int vertexOffset = packed.objects().getInt(field(i, "vertexOffset"));
+            float[] vertices = meshes[i].vertices();
+            for (int v = 0; v < vertices.length / 3; v++) {
+                int base = (vertexOffset + v) * GeometryPacker.VERTEX_BYTES;
+                assertEquals(vertices[v * 3], packed.vertices().getFloat(base));
+                assertEquals(vertices[v * 3 + 1], packed.vertices().getFloat(base + 4));
+                assertEquals(vertices[v * 3 + 2], packed.vertices().getFloat(base + 8));
+            }
+
+            int texCoordOffset = packed.objects().getInt(field(i, "texCoordOffset"));
+            float[] texCoords = meshes[i].texCoords();
+            for (int t = 0; t < texCoords.length; t++) {
+                assertEquals(texCoords[t], packed.texCoords().getFloat(texCoordOffset * GeometryPacker.TEX_COORD_BYTES + t * Float.BYTES));
+            }
+        }
+    }
+
+    @Test
+    void meshesWithoutTexCoordsShareASingleOrigin() {
+        int texCoordOffset = packed.objects().getInt(field(2, "texCoordOffset"));
+        assertEquals(texCoordOffset + 1, packed.objects().getInt(field(3, "texCoordOffset")));
+        assertEquals(0f, packed.texCoords().getFloat(texCoordOffset * GeometryPacker.TEX_COORD_BYTES));
+        assertEquals(0f, packed.texCoords().getFloat(texCoordOffset * GeometryPacker.TEX_COORD_BYTES + Float.BYTES));
+
+        int triangleOffset = packed.objects().getInt(field(2, "triangleOffset"));
+        for (int position = 0; position < meshes[2].triangleCount(); position++) {
+            for (int corner = 0; corner < 3; corner++) {
+                assertEquals(texCoordOffset, triangleIndex(triangleOffset + position, "tex_coords", corner));
+            }
+        }
+    }
+
+    @Test
+    void trianglesFollowTheWideBvhOrder() {
+        for (int i = 0; i < meshes.length; i++) {
+            int vertexOffset = packed.objects().getInt(field(i, "vertexOffset"));
+            int texCoordOffset = packed.objects().getInt(field(i, "texCoordOffset"));
+            int triangleOffset = packed.objects().getInt(field(i, "triangleOffset"));
+            boolean textured = meshes[i].texCoords().length > 0;
+
+            for (int position = 0; position < meshes[i].triangleCount(); position++) {
+                int triangle = wideBvhs[i].primitiveOrder()[position];
+                for (int corner = 0; corner < 3; corner++) {
+                    assertEquals(vertexOffset + meshes[i].indices()[triangle * 3 + corner],
+                            triangleIndex(triangleOffset + position, "vertices", corner));
+                    if (textured) {
+                        assertEquals(texCoordOffset + meshes[i].texIndices()[triangle * 3 + corner],
+                                triangleIndex(triangleOffset + position, "tex_coords", corner));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void nodesReferToTheWholePools() {
+        int childBase = WideBvhNodes.LAYOUT.offset("child_base") / Integer.BYTES;
+        int triangleBase = WideBvhNodes.LAYOUT.offset("triangle_base") / Integer.BYTES;
+
+        for (int i = 0; i < meshes.length; i++) {
+            int nodeOffset = packed.objects().getInt(field(i, "nodeOffset"));
+            int triangleOffset = packed.objects().getInt(field(i, "triangleOffset"));
+            int[] nodes = wideBvhs[i].nodes();
+
+            for (int n = 0; n < wideBvhs[i].nodeCount() * WideBvh.NODE_INTS; n++) {
+                int shift = n % WideBvh.NODE_INTS == childBase ? nodeOffset : n % WideBvh.NODE_INTS == triangleBase ? triangleOffset : 0;
+                assertEquals(nodes[n] + shift, packed.nodes().getInt((nodeOffset * WideBvh.NODE_INTS + n) * Integer.BYTES),
+                        "int " + n + " of object " + i + "'s nodes");
+            }
+        }
+    }
+
+    private static int field(int object, String name) {
+        return object * GeometryPacker.OBJECT_BYTES + OBJECT.offset(name);
+    }
+
+    private static int triangleIndex(int triangle, String member, int corner) {
+        return packed.triangles().getInt(triangle * GeometryPacker.TRIANGLE_BYTES + GeometryPacker.TRIANGLE.offset(member) + corner * Integer.BYTES);
+    }
+}
@@ -0,0 +1,91 @@
+package raytracer.buffers.staging;
+
+import org.junit.jupiter.api.Test;
+import raytracer.buffers.staging.DirtyRanges.Range;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirtyRangesTest {
+    @Test
+    void separateMarksStaySeparate() {
+        DirtyRanges dirty = new DirtyRanges(0);
+        dirty.mark(10);
+        dirty.mark(2, 3);
+        dirty.mark(20, 5);
+
+        assertEquals(List.of(new Range(2, 5), new Range(10, 11), new Range(20, 25)), dirty.ranges());
+    }
+
+    @Test
+    void adjacentMarksAreCoalesced() {
+        DirtyRanges dirty = new DirtyRanges(0);
+        dirty.mark(4, 2);
+        dirty.mark(6, 2);
+        dirty.mark(2, 2);
+
+        assertEquals(List.of(new Range(2, 8)), dirty.ranges());
+    }
+
+    @Test
+    void overlappingMarksAreCoalesced() {
+        DirtyRanges dirty = new DirtyRanges(0);
+        dirty.mark(0, 5);
+        dirty.mark(3, 4);
+        dirty.mark(1, 2);
+
+        assertEquals(List.of(new Range(0, 7)), dirty.ranges());
+    }
+
+    @Test
+    void aMarkSpanningSeveralRangesSwallowsThem() {
+        DirtyRanges dirty = new DirtyRanges(0);
+        dirty.mark(2);
+        dirty.mark(5);
+        dirty.mark(8);
+        dirty.mark(12);
+
+        dirty.mark(1, 9);
+
+        assertEquals(List.of(new Range(1, 10), new Range(12, 13)), dirty.ranges());
+    }
+
+    @Test
+    void rangesWithinTheMergeGapAreCoalesced() {
+        DirtyRanges dirty = new DirtyRanges(3);
+        dirty.mark(0, 2);
+        // 3 clean elements between
+        dirty.mark(5, 1);
+        // 4 clean elements between
+        dirty.mark(10, 1);
+        // merged with the range after it, from below
+        dirty.mark(7, 1);
+
+        assertEquals(List.of(new Range(0, 11)), dirty.ranges());
+
+        DirtyRanges apart = new DirtyRanges(3);
+        apart.mark(0, 2);
+        apart.mark(6, 1);
+        assertEquals(List.of(new Range(0, 2), new Range(6, 7)), apart.ranges());
+    }
+
+    @Test
+    void emptyMarksAndClearLeaveNothingDirty() {
+        DirtyRanges dirty = new DirtyRanges(0);
+        dirty.mark(5, 0);
+        dirty.mark(5, -1);
+        assertTrue(dirty.isEmpty());
+
+        dirty.mark(5);
+        assertFalse(dirty.isEmpty());
+        dirty.clear();
+        assertTrue(dirty.isEmpty());
+        assertEquals(List.of(), dirty.ranges());
+    }
+
+    @Test
+    void negativeMergeGapsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DirtyRanges(-1));
+    }
+}
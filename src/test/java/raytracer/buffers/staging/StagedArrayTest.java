@@ -0,0 +1,93 @@
+package raytracer.buffers.staging;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import raytracer.buffers.layout.LayoutRules;
+import raytracer.buffers.layout.RecordPacker;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagedArrayTest {
+    /**
+     * 16 bytes under std430: the float packs into the vec3's padding.
+     */
+    record Element(Vector3f position, float radius) {}
+
+    private static final RecordPacker<Element> PACKER = new RecordPacker<>(Element.class, LayoutRules.STD430);
+    private static final int STRIDE = 16;
+
+    private record Upload(long offset, byte[] bytes) {}
+
+    @Test
+    void flushUploadsOnlyTheDirtyRanges() {
+        StagedArray<Element> array = new StagedArray<>(PACKER, elements(10), 1);
+        assertEquals(STRIDE, PACKER.layout().stride());
+        assertFalse(array.isDirty());
+
+        array.set(1, new Element(new Vector3f(-1, -2, -3), -4));
+        array.set(2, new Element(new Vector3f(-5, -6, -7), -8));
+        // one clean element from the last, so merged with it
+        array.set(4, new Element(new Vector3f(-9, -10, -11), -12));
+        array.set(8, new Element(new Vector3f(-13, -14, -15), -16));
+        assertTrue(array.isDirty());
+
+        List<Upload> uploads = new ArrayList<>();
+        long bytes = array.flush((offset, data) -> {
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            uploads.add(new Upload(offset, copy));
+        });
+
+        assertEquals(2, uploads.size());
+        assertEquals(STRIDE, uploads.get(0).offset());
+        assertEquals(4 * STRIDE, uploads.get(0).bytes().length);
+        assertEquals(8 * STRIDE, uploads.get(1).offset());
+        assertEquals(STRIDE, uploads.get(1).bytes().length);
+        assertEquals(5 * STRIDE, bytes);
+
+        ByteBuffer first = ByteBuffer.wrap(uploads.get(0).bytes()).order(array.staging().order());
+        assertElement(first, 0, -1, -2, -3, -4);
+        assertElement(first, 1, -5, -6, -7, -8);
+        // the clean element in the gap is uploaded unchanged
+        assertElement(first, 2, 3, 3, 3, 3);
+        assertElement(first, 3, -9, -10, -11, -12);
+        assertElement(ByteBuffer.wrap(uploads.get(1).bytes()).order(array.staging().order()), 0, -13, -14, -15, -16);
+
+        assertFalse(array.isDirty());
+        assertEquals(0, array.flush((offset, data) -> fail("uploaded a clean array")));
+    }
+
+    @Test
+    void stagingMatchesAFreshPack() {
+        Element[] elements = elements(6);
+        StagedArray<Element> array = new StagedArray<>(PACKER, elements.clone(), 0);
+
+        elements[3] = new Element(new Vector3f(7, 8, 9), 10);
+        array.set(3, elements[3]);
+
+        assertEquals(PACKER.pack(elements), array.staging());
+        assertEquals(elements[3], array.get(3));
+        assertEquals(6, array.size());
+    }
+
+    private static Element[] elements(int count) {
+        Element[] elements = new Element[count];
+        for (int i = 0; i < count; i++) {
+            elements[i] = new Element(new Vector3f(i), i);
+        }
+
+        return elements;
+    }
+
+    private static void assertElement(ByteBuffer buffer, int index, float x, float y, float z, float radius) {
+        int offset = index * STRIDE;
+        assertEquals(x, buffer.getFloat(offset));
+        assertEquals(y, buffer.getFloat(offset + 4));
+        assertEquals(z, buffer.getFloat(offset + 8));
+        assertEquals(radius, buffer.getFloat(offset + 12));
+    }
+}
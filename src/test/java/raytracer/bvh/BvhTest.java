@@ -0,0 +1,75 @@
+package raytracer.bvh;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import raytracer.Mesh;
+import raytracer.TestRays;
+import raytracer.cpu.FirstHit;
+import raytracer.cpu.Intersections;
+import raytracer.cpu.Ray;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that Bvh.intersect finds the same closest hit as testing every triangle of the mesh, on rays from all around
+ * each bundled OBJ.
+ */
+class BvhTest {
+    private static final int RAYS = 20_000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "tree_bottom.obj", "cube.obj", "quad.obj", "triangle.obj"})
+    void closestHitsMatchBruteForce(String file) throws IOException {
+        Mesh mesh = Mesh.load("src/main/resources/" + file, 0);
+        Bvh bvh = BvhBuilder.build(mesh);
+        int[] reordered = bvh.reorder(mesh.indices());
+        float[] hit = new float[3];
+
+        int hits = 0;
+        for (Ray ray : TestRays.around(mesh, new Random(file.hashCode()), RAYS)) {
+            float expected = bruteForce(mesh.vertices(), mesh.indices(), ray);
+            int triangle = bvh.intersect(mesh.vertices(), reordered, ray, new Vector3f(1).div(ray.direction), 0.001f,
+                    FirstHit.FAR_PLANE, hit);
+
+            if (expected == Intersections.MISS) {
+                assertEquals(-1, triangle, "the BVH hit something brute force missed");
+                continue;
+            }
+
+            hits++;
+            assertNotEquals(-1, triangle, "the BVH missed a triangle brute force hit at " + expected);
+            assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(hit[0]),
+                    "the BVH hit at " + hit[0] + " instead of " + expected);
+
+            int original = bvh.primitiveOrder()[triangle];
+            assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(Intersections.hitTriangle(mesh.vertices(),
+                    mesh.indices()[original * 3], mesh.indices()[original * 3 + 1], mesh.indices()[original * 3 + 2],
+                    ray, 0.001f, FirstHit.FAR_PLANE, new float[2])), "the BVH returned a triangle it didn't hit");
+        }
+
+        assertTrue(hits > 0, "no ray hit " + file);
+    }
+
+    /**
+     * @return the distance to the closest triangle, testing every one in turn
+     */
+    private static float bruteForce(float[] vertices, int[] indices, Ray ray) {
+        float[] barycentric = new float[2];
+        float closest = FirstHit.FAR_PLANE;
+        boolean hitAnything = false;
+
+        for (int i = 0; i < indices.length; i += 3) {
+            float t = Intersections.hitTriangle(vertices, indices[i], indices[i + 1], indices[i + 2], ray, 0.001f, closest, barycentric);
+            if (t != Intersections.MISS) {
+                closest = t;
+                hitAnything = true;
+            }
+        }
+
+        return hitAnything ? closest : Intersections.MISS;
+    }
+}
@@ -0,0 +1,132 @@
+package raytracer.bvh;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import raytracer.Mesh;
+import raytracer.TestRays;
+import raytracer.cpu.FirstHit;
+import raytracer.cpu.PacketKernel;
+import raytracer.cpu.Ray;
+import raytracer.cpu.TriangleSoA;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a WideBvh against the full precision Bvh it was collapsed from. Every triangle has to lie inside the decoded
+ * bounds of every child on its way down from the root, and every ray has to hit at exactly the same distance through
+ * both trees.
+ */
+class WideBvhTest {
+    private static final int RAYS = 50_000;
+    // the size of the BvhNode struct in raytracer.comp
+    private static final int BVH_NODE_BYTES = 32;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "cube.obj"})
+    void everyTriangleIsInsideTheBoundsAboveIt(String file) throws IOException {
+        Mesh mesh = Mesh.load("src/main/resources/" + file, 0);
+        WideBvh wide = WideBvhBuilder.build(BvhBuilder.build(mesh));
+
+        assertTrue(isPermutation(wide.primitiveOrder()), "the wide BVH doesn't refer to every triangle exactly once");
+        assertEquals(0, checkBounds(wide, mesh.vertices(), mesh.indices()), "vertices outside their decoded bounds");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "cube.obj"})
+    void hitsAreTheSameThroughBothTrees(String file) throws IOException {
+        Mesh mesh = Mesh.load("src/main/resources/" + file, 0);
+        Bvh bvh = BvhBuilder.build(mesh);
+        WideBvh wide = WideBvhBuilder.build(bvh);
+        PacketKernel kernel = PacketKernel.preferred();
+
+        TriangleSoA bvhTriangles = new TriangleSoA(mesh.vertices(), bvh.reorder(mesh.indices()));
+        TriangleSoA wideTriangles = new TriangleSoA(mesh.vertices(), wide.reorder(mesh.indices()));
+        float[] bvhHit = new float[3];
+        float[] wideHit = new float[3];
+
+        int differ = 0;
+        for (Ray ray : TestRays.around(mesh, new Random(file.hashCode()), RAYS)) {
+            Vector3f inverseDirection = new Vector3f(1).div(ray.direction);
+            int bvhTriangle = bvh.intersect(bvhTriangles, kernel, ray, inverseDirection, 0.001f, FirstHit.FAR_PLANE, bvhHit);
+            int wideTriangle = wide.intersect(wideTriangles, kernel, ray, inverseDirection, 0.001f, FirstHit.FAR_PLANE, wideHit);
+
+            float bvhT = bvhTriangle == -1 ? -1 : bvhHit[0];
+            float wideT = wideTriangle == -1 ? -1 : wideHit[0];
+            if (Float.floatToRawIntBits(bvhT) != Float.floatToRawIntBits(wideT)) {
+                differ++;
+            }
+        }
+
+        assertEquals(0, differ, "rays hit at a different distance through the wide BVH");
+        assertTrue((long) wide.nodeCount() * WideBvh.NODE_INTS * Integer.BYTES < (long) bvh.nodeCount() * BVH_NODE_BYTES,
+                "the wide BVH is no smaller than the binary one");
+    }
+
+    /**
+     * @return how many triangle vertices lie outside the decoded bounds of a child they are under
+     */
+    private static int checkBounds(WideBvh wide, float[] vertices, int[] indices) {
+        return wide.nodeCount() == 0 ? 0 : checkBounds(wide, 0, new float[0], vertices, indices);
+    }
+
+    /**
+     * @param ancestors the decoded bounds of every child on the way down to node, 6 floats each
+     */
+    private static int checkBounds(WideBvh wide, int node, float[] ancestors, float[] vertices, int[] indices) {
+        int outside = 0;
+
+        for (int slot = 0; slot < WideBvh.WIDTH; slot++) {
+            if ((wide.childMask(node) & 1 << slot) == 0) {
+                continue;
+            }
+
+            float[] boxes = Arrays.copyOf(ancestors, ancestors.length + 6);
+            wide.childBounds(node, slot, boxes, ancestors.length);
+
+            if (wide.isInternal(node, slot)) {
+                outside += checkBounds(wide, wide.child(node, slot), boxes, vertices, indices);
+                continue;
+            }
+
+            int first = wide.first(node, slot);
+            for (int i = first; i < first + wide.count(node, slot); i++) {
+                int triangle = wide.primitiveOrder()[i];
+                for (int corner = 0; corner < 3; corner++) {
+                    int vertex = indices[triangle * 3 + corner] * 3;
+                    if (!inside(boxes, vertices[vertex], vertices[vertex + 1], vertices[vertex + 2])) {
+                        outside++;
+                    }
+                }
+            }
+        }
+
+        return outside;
+    }
+
+    private static boolean inside(float[] boxes, float x, float y, float z) {
+        for (int b = 0; b < boxes.length; b += 6) {
+            if (x < boxes[b] || y < boxes[b + 1] || z < boxes[b + 2] || x > boxes[b + 3] || y > boxes[b + 4] || z > boxes[b + 5]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isPermutation(int[] order) {
+        boolean[] seen = new boolean[order.length];
+        for (int primitive : order) {
+            if (primitive < 0 || primitive >= order.length || seen[primitive]) {
+                return false;
+            }
+            seen[primitive] = true;
+        }
+
+        return true;
+    }
+}
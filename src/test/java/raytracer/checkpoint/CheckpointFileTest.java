@@ -0,0 +1,97 @@
+package raytracer.checkpoint;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import raytracer.config.CheckpointConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointFileTest {
+    // more than one chunk per image
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final long HASH = 0x1234_5678_9ABC_DEF0L;
+
+    @Test
+    void roundTripsEveryField(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("render.checkpoint");
+        Checkpoint checkpoint = checkpoint(new Random(3));
+
+        CheckpointFile.write(path, checkpoint);
+        Checkpoint read = CheckpointFile.read(path);
+
+        assertEquals(checkpoint.configHash(), read.configHash());
+        assertEquals(checkpoint.frameCount(), read.frameCount());
+        assertEquals(checkpoint.elapsedSeconds(), read.elapsedSeconds());
+        assertEquals(checkpoint.width(), read.width());
+        assertEquals(checkpoint.height(), read.height());
+        assertArrayEquals(checkpoint.full(), read.full());
+        assertArrayEquals(checkpoint.half(), read.half());
+        assertArrayEquals(checkpoint.albedo(), read.albedo());
+        assertArrayEquals(checkpoint.normalDepth(), read.normalDepth());
+    }
+
+    @Test
+    void truncatedFilesAreRejected(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("render.checkpoint");
+        CheckpointFile.write(path, checkpoint(new Random(3)));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(IOException.class, () -> CheckpointFile.read(path));
+    }
+
+    @Test
+    void loadRejectsADifferentConfig(@TempDir Path directory) {
+        CheckpointConfig config = new CheckpointConfig(true, directory.resolve("render.checkpoint").toString(), 600);
+        Checkpoint checkpoint = checkpoint(new Random(3));
+
+        try (Checkpointer checkpointer = new Checkpointer(config, HASH)) {
+            assertNull(checkpointer.load(WIDTH, HEIGHT));
+            checkpointer.saveNow(() -> checkpoint);
+            assertArrayEquals(checkpoint.full(), checkpointer.load(WIDTH, HEIGHT).full());
+            assertThrows(IllegalStateException.class, () -> checkpointer.load(WIDTH / 2, HEIGHT));
+        }
+
+        try (Checkpointer checkpointer = new Checkpointer(config, HASH + 1)) {
+            assertThrows(IllegalStateException.class, () -> checkpointer.load(WIDTH, HEIGHT));
+        }
+    }
+
+    @Test
+    void disabledCheckpointsAreNeverTaken(@TempDir Path directory) {
+        CheckpointConfig config = new CheckpointConfig(false, directory.resolve("render.checkpoint").toString(), 600);
+
+        try (Checkpointer checkpointer = new Checkpointer(config, HASH)) {
+            checkpointer.saveNow(() -> fail("took a checkpoint with checkpoints disabled"));
+        }
+
+        assertFalse(Files.exists(directory.resolve("render.checkpoint")));
+    }
+
+    /**
+     * A checkpoint with smooth images plus a little noise, like a render's, and a few special values.
+     */
+    private static Checkpoint checkpoint(Random random) {
+        float[][] images = new float[4][WIDTH * HEIGHT * 4];
+        for (float[] image : images) {
+            for (int i = 0; i < image.length; i++) {
+                int pixel = i / 4;
+                image[i] = (float) (0.5 + 0.4 * Math.sin(pixel % WIDTH * 0.01 + i % 4) * Math.cos(pixel / WIDTH * 0.02))
+                        + random.nextFloat() * 0.001f;
+            }
+        }
+        images[0][0] = Float.NaN;
+        images[0][1] = Float.POSITIVE_INFINITY;
+        images[0][2] = -0f;
+        images[1][3] = 1024;
+
+        return new Checkpoint(HASH, 1024, 123.5, WIDTH, HEIGHT, images[0], images[1], images[2], images[3]);
+    }
+}
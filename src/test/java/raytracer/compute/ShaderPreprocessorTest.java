@@ -0,0 +1,64 @@
+package raytracer.compute;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShaderPreprocessorTest {
+    private static final String SOURCE = "#version 450\n// line 2\nvoid main() {}\n";
+
+    @Test
+    void definesFollowTheVersionLineInOrder() {
+        ShaderFeatures features = new ShaderFeatures(3, 2, true, false, true, true, false);
+        String result = ShaderPreprocessor.preprocess(SOURCE, features.defines());
+
+        List<String> lines = result.lines().toList();
+        assertEquals("#version 450", lines.get(0));
+
+        int line = 1;
+        for (Map.Entry<String, String> define : features.defines().entrySet()) {
+            assertEquals("#define " + define.getKey() + " " + define.getValue(), lines.get(line++));
+        }
+        assertEquals("#line 2", lines.get(line++));
+        assertEquals(List.of("// line 2", "void main() {}"), lines.subList(line, lines.size()));
+    }
+
+    @Test
+    void featuresDefineEveryMacroTheShaderReads() {
+        Map<String, String> defines = new ShaderFeatures(3, 2, true, false, true, true, false).defines();
+
+        assertEquals(List.of("NUM_OBJECTS", "NUM_SPHERES", "MATERIAL_DIFFUSE", "MATERIAL_METAL", "MATERIAL_DIELECTRIC",
+                "MATERIAL_TYPE_COUNT", "TEXTURES", "NORMALS_TWO_CHANNEL"), List.copyOf(defines.keySet()));
+        assertEquals(List.of("3", "2", "1", "0", "1", "2", "1", "0"), List.copyOf(defines.values()));
+    }
+
+    @Test
+    void noDefinesStillResetsTheLineNumber() {
+        assertEquals("#version 450\n#line 2\n// line 2\nvoid main() {}\n", ShaderPreprocessor.preprocess(SOURCE, Map.of()));
+    }
+
+    @Test
+    void invalidMacroNamesAreRejected() {
+        for (String name : new String[]{"", "1ABC", "NUM OBJECTS", "NUM-OBJECTS", "A\nB"}) {
+            assertThrows(IllegalArgumentException.class, () -> ShaderPreprocessor.preprocess(SOURCE, Map.of(name, "1")), name);
+        }
+    }
+
+    @Test
+    void multiLineValuesAreRejected() {
+        Map<String, String> defines = new LinkedHashMap<>();
+        defines.put("NUM_OBJECTS", "1\n#define NUM_SPHERES 2");
+
+        assertThrows(IllegalArgumentException.class, () -> ShaderPreprocessor.preprocess(SOURCE, defines));
+    }
+
+    @Test
+    void sourceWithoutAVersionLineIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> ShaderPreprocessor.preprocess("void main() {}\n", Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> ShaderPreprocessor.preprocess("#version 450", Map.of()));
+    }
+}
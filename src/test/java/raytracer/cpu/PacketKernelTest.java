@@ -0,0 +1,147 @@
+package raytracer.cpu;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import raytracer.Mesh;
+import raytracer.TestRays;
+import raytracer.bvh.Bvh;
+import raytracer.bvh.BvhBuilder;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the packet kernels against {@link Intersections}. Each kernel has to return exactly the same hits as testing
+ * the primitives one at a time: the same triangle, and the same distance and barycentric coordinates to the bit, on
+ * random runs of a mesh's triangles and of its BVH's node boxes, including axis aligned rays whose inverse directions
+ * are infinite.
+ * <p>
+ * The vector kernel's width is fixed per JVM, so surefire runs this class once more for each of
+ * -Dreina.packetWidth=4, 8 and 16, with jdk.incubator.vector added to every fork.
+ */
+class PacketKernelTest {
+    private static final int RAYS = 20_000;
+    private static final int MAX_RUN = 40;
+
+    @Test
+    void usesTheConfiguredKernel() {
+        assertTrue(PacketKernel.vectorApiAvailable(), "the tests run without jdk.incubator.vector");
+        assertTrue(PacketKernel.preferred().width() <= TriangleSoA.PADDING, "packets are wider than the arrays' padding");
+
+        int width = Integer.getInteger(PacketKernel.WIDTH_PROPERTY, 0);
+        if (width != 0) {
+            assertEquals(width, PacketKernel.preferred().width());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "cube.obj"})
+    void scalarKernelMatchesIntersections(String file) throws IOException {
+        check(PacketKernel.scalar(), file);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "cube.obj"})
+    void preferredKernelMatchesIntersections(String file) throws IOException {
+        check(PacketKernel.preferred(), file);
+    }
+
+    private static void check(PacketKernel kernel, String file) throws IOException {
+        Mesh mesh = Mesh.load("src/main/resources/" + file, 0);
+        Bvh bvh = BvhBuilder.build(mesh);
+        int[] indices = bvh.reorder(mesh.indices());
+        TriangleSoA triangles = new TriangleSoA(mesh.vertices(), indices);
+        BoxSoA boxes = new BoxSoA(bvh.bounds().clone());
+        Ray[] rays = TestRays.around(mesh, new Random(file.hashCode()), RAYS);
+
+        assertEquals(0, checkTriangles(kernel, mesh.vertices(), indices, triangles, rays, new Random(1)),
+                "triangle runs that differ with a kernel " + kernel.width() + " wide");
+        assertEquals(0, checkBoxes(kernel, bvh, boxes, rays, new Random(2)),
+                "box runs that differ with a kernel " + kernel.width() + " wide");
+    }
+
+    /**
+     * @return how many runs gave a different hit than testing the triangles in order with Intersections.hitTriangle
+     */
+    private static int checkTriangles(PacketKernel kernel, float[] vertices, int[] indices, TriangleSoA triangles, Ray[] rays, Random random) {
+        float[] expected = new float[3];
+        float[] actual = new float[3];
+        float[] barycentric = new float[2];
+        int errors = 0;
+
+        for (Ray ray : rays) {
+            int count = 1 + random.nextInt(Math.min(MAX_RUN, triangles.count()));
+            int first = random.nextInt(triangles.count() - count + 1);
+            // sometimes clip the ray, so tMin and tMax reject hits too
+            float tMin = random.nextInt(4) == 0 ? random.nextFloat() : 0.001f;
+            float tMax = random.nextInt(4) == 0 ? random.nextFloat() * 10 : FirstHit.FAR_PLANE;
+
+            int expectedTriangle = -1;
+            float closestSoFar = tMax;
+            for (int i = first; i < first + count; i++) {
+                float t = Intersections.hitTriangle(vertices, indices[i * 3], indices[i * 3 + 1], indices[i * 3 + 2], ray, tMin, closestSoFar, barycentric);
+                if (t != Intersections.MISS) {
+                    expectedTriangle = i;
+                    closestSoFar = t;
+                    expected[0] = t;
+                    expected[1] = barycentric[0];
+                    expected[2] = barycentric[1];
+                }
+            }
+
+            int actualTriangle = kernel.hitTriangles(triangles, first, count, ray, tMin, tMax, actual);
+            if (actualTriangle != expectedTriangle || (expectedTriangle != -1 && !sameBits(expected, actual, 3))) {
+                errors++;
+            }
+        }
+
+        return errors;
+    }
+
+    /**
+     * @return how many runs gave a different entry distance than Intersections.hitBoundingBox for any box
+     */
+    private static int checkBoxes(PacketKernel kernel, Bvh bvh, BoxSoA boxes, Ray[] rays, Random random) {
+        float[] bounds = bvh.bounds();
+        float[] expected = new float[MAX_RUN];
+        float[] actual = new float[MAX_RUN];
+        int errors = 0;
+
+        for (Ray ray : rays) {
+            Vector3f invDir = new Vector3f(1).div(ray.direction);
+            int count = 1 + random.nextInt(Math.min(MAX_RUN, boxes.count()));
+            int first = random.nextInt(boxes.count() - count + 1);
+            float tMax = random.nextInt(4) == 0 ? random.nextFloat() * 10 : FirstHit.FAR_PLANE;
+
+            int expectedHits = 0;
+            for (int i = 0; i < count; i++) {
+                int b = (first + i) * 6;
+                expected[i] = Intersections.hitBoundingBox(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3], bounds[b + 4], bounds[b + 5], ray.origin, invDir, 0.001f, tMax);
+                if (expected[i] != Intersections.MISS) {
+                    expectedHits++;
+                }
+            }
+
+            int actualHits = kernel.hitBoxes(boxes, first, count, ray.origin, invDir, 0.001f, tMax, actual);
+            if (actualHits != expectedHits || !sameBits(expected, actual, count)) {
+                errors++;
+            }
+        }
+
+        return errors;
+    }
+
+    private static boolean sameBits(float[] a, float[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (Float.floatToRawIntBits(a[i]) != Float.floatToRawIntBits(b[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
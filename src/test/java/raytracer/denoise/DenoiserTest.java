@@ -0,0 +1,107 @@
+package raytracer.denoise;
+
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import raytracer.Scene;
+import raytracer.SceneLoader;
+import raytracer.config.MeshCacheConfig;
+import raytracer.config.RenderConfig;
+import raytracer.config.TextureCacheConfig;
+import raytracer.cpu.CpuCamera;
+import raytracer.cpu.CpuScene;
+import raytracer.cpu.FirstHit;
+import raytracer.cpu.PathTracer;
+import raytracer.cpu.ShaderRandom;
+import raytracer.obj.MeshCache;
+import raytracer.sampling.FeatureAccumulator;
+import raytracer.sampling.SampleAccumulator;
+import raytracer.texture.TextureCache;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Renders the default scene on the CPU backend and checks that denoising brings it closer to a high sample count
+ * reference. The reference uses different sample indices, so its noise is independent of the renders being measured.
+ */
+class DenoiserTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 64;
+    private static final int BOUNCES = 8;
+    private static final int REFERENCE_SAMPLES = 256;
+    private static final int REFERENCE_FIRST_SAMPLE = 1 << 20;
+
+    private static PathTracer pathTracer;
+    private static CpuCamera camera;
+    private static SampleAccumulator reference;
+
+    @BeforeAll
+    static void renderReference() {
+        RenderConfig config = RenderConfig.fromFile("src/main/resources/config.json");
+        Scene scene = SceneLoader.load(config, new MeshCache(new MeshCacheConfig(false, null, 0)),
+                new TextureCache(new TextureCacheConfig(false, null, 0, false)));
+        pathTracer = new PathTracer(new CpuScene(scene));
+        camera = new CpuCamera(config.camera(), WIDTH, HEIGHT);
+
+        reference = new SampleAccumulator(WIDTH, HEIGHT);
+        render(reference, new FeatureAccumulator(WIDTH, HEIGHT), REFERENCE_FIRST_SAMPLE, REFERENCE_SAMPLES);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4, 16})
+    void denoisedRendersAreCloserToTheReference(int samples) {
+        SampleAccumulator accumulator = new SampleAccumulator(WIDTH, HEIGHT);
+        FeatureAccumulator features = new FeatureAccumulator(WIDTH, HEIGHT);
+        render(accumulator, features, 0, samples);
+
+        float[] denoised = new float[WIDTH * HEIGHT * 4];
+        new Denoiser(WIDTH, HEIGHT).denoise(accumulator.full(),
+                new AuxiliaryImages(accumulator.half(), features.albedo(), features.normalDepth()), denoised);
+
+        double raw = rmse(accumulator.full(), reference.full());
+        double filtered = rmse(denoised, reference.full());
+        assertTrue(filtered < raw, "denoising " + samples + " samples raised the error from " + raw + " to " + filtered);
+    }
+
+    private static void render(SampleAccumulator accumulator, FeatureAccumulator features, int firstSample, int samples) {
+        for (int sample = firstSample; sample < firstSample + samples; sample++) {
+            int frameCounter = sample;
+
+            IntStream.range(0, HEIGHT).parallel().forEach(y -> {
+                FirstHit firstHit = new FirstHit();
+                int row = HEIGHT - 1 - y;
+
+                for (int x = 0; x < WIDTH; x++) {
+                    ShaderRandom random = new ShaderRandom(x, y, WIDTH, HEIGHT, frameCounter);
+                    Vector3f color = pathTracer.rayColor(camera.getRay(x, y, random), BOUNCES, random, firstHit);
+
+                    features.add(x, row, accumulator.samples(x, row), firstHit.albedo.x, firstHit.albedo.y, firstHit.albedo.z,
+                            firstHit.normal.x, firstHit.normal.y, firstHit.normal.z, firstHit.depth);
+                    accumulator.add(x, row, color.x, color.y, color.z);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the root mean square error of the RGB channels once clamped to [0, 1], as they are saved
+     */
+    private static double rmse(float[] image, float[] reference) {
+        double sum = 0;
+        for (int i = 0; i < image.length; i += 4) {
+            for (int channel = 0; channel < 3; channel++) {
+                double difference = clamp(image[i + channel]) - clamp(reference[i + channel]);
+                sum += difference * difference;
+            }
+        }
+
+        return Math.sqrt(sum / (image.length / 4 * 3));
+    }
+
+    private static double clamp(float value) {
+        return Math.min(1, Math.max(0, value));
+    }
+}
@@ -0,0 +1,51 @@
+package raytracer.obj;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import raytracer.config.MeshCacheConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshCacheTest {
+    private static final Path OBJ = Path.of("src/main/resources/suzanne.obj");
+
+    @Test
+    void readsBackWhatItWrote(@TempDir Path directory) throws IOException {
+        MeshCache cache = new MeshCache(new MeshCacheConfig(true, directory.toString(), 16));
+
+        ObjData parsed = cache.load(OBJ);
+        Path entry = onlyEntry(directory);
+        ObjData cached = MeshCache.read(entry);
+
+        assertArrayEquals(parsed.vertices(), cached.vertices());
+        assertArrayEquals(parsed.texCoords(), cached.texCoords());
+        assertArrayEquals(parsed.indices(), cached.indices());
+        assertArrayEquals(parsed.texIndices(), cached.texIndices());
+        // the header is the five ints of the documented layout, with nothing between it and the vertices
+        assertEquals(5L * Integer.BYTES + 4L * (parsed.vertices().length + parsed.texCoords().length
+                + parsed.indices().length + parsed.texIndices().length), Files.size(entry));
+    }
+
+    @Test
+    void deletesEntriesOfOtherLoaderVersionsWhenOpened(@TempDir Path directory) throws IOException {
+        Path stale = Files.createFile(directory.resolve("0123-v" + (MeshCache.LOADER_VERSION - 1) + ".mesh"));
+
+        new MeshCache(new MeshCacheConfig(true, directory.toString(), 16));
+
+        assertFalse(Files.exists(stale));
+    }
+
+    private static Path onlyEntry(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.toList();
+            assertEquals(1, entries.size());
+            return entries.get(0);
+        }
+    }
+}
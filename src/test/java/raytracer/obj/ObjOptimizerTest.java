@@ -0,0 +1,205 @@
+package raytracer.obj;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import raytracer.Scene;
+import raytracer.SceneLoader;
+import raytracer.config.MaterialConfig;
+import raytracer.config.MeshCacheConfig;
+import raytracer.config.MeshConfig;
+import raytracer.config.MeshOptimizationConfig;
+import raytracer.config.RenderConfig;
+import raytracer.config.SceneConfig;
+import raytracer.config.TextureCacheConfig;
+import raytracer.texture.TextureCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks ObjOptimizer on the bundled OBJs. Welding has to keep every triangle exactly as it was while leaving no two
+ * vertices the same, every level of detail has to have fewer triangles than the one before it, and every level's
+ * reported error has to cover the farthest a full detail vertex is from the level's surface, measured against every
+ * triangle.
+ */
+class ObjOptimizerTest {
+    private static final MeshOptimizationConfig CONFIG = new MeshOptimizationConfig(true, 6, 0.5f, 0.5f);
+    private static final int BUNNIES = 12;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "tree_bottom.obj", "cube.obj", "quad.obj", "triangle.obj"})
+    void weldingKeepsEveryTriangle(String file) throws IOException {
+        ObjData data = ObjParser.parse(Path.of("src/main/resources/" + file));
+        ObjData welded = ObjOptimizer.optimize(data, CONFIG).full();
+
+        assertEquals(triangles(data), triangles(welded), "welding changed the triangles");
+        assertTrue(distinct(welded), "welding left duplicate vertices");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "tree_bottom.obj", "cube.obj", "quad.obj", "triangle.obj"})
+    void everyLevelHasFewerTriangles(String file) throws IOException {
+        LodChain lods = ObjOptimizer.optimize(ObjParser.parse(Path.of("src/main/resources/" + file)), CONFIG);
+
+        for (int level = 1; level < lods.levels().size(); level++) {
+            assertTrue(lods.levels().get(level).triangleCount() < lods.levels().get(level - 1).triangleCount(),
+                    "level " + level + " has no fewer triangles than the level before it");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"stanford_bunny.obj", "suzanne.obj", "tree_top.obj", "tree_bottom.obj", "cube.obj", "quad.obj", "triangle.obj"})
+    void errorsCoverTheMeasuredDeviation(String file) throws IOException {
+        LodChain lods = ObjOptimizer.optimize(ObjParser.parse(Path.of("src/main/resources/" + file)), CONFIG);
+        float[] points = lods.full().vertices();
+
+        assertEquals(lods.levels().size(), lods.errors().length);
+        for (int level = 0; level < lods.levels().size(); level++) {
+            float measured = bruteForceDeviation(points, lods.levels().get(level));
+            float error = lods.errors()[level];
+            assertTrue(measured <= error + 1e-5f * Math.max(1, measured),
+                    "level " + level + " reports an error of " + error + " but is " + measured + " away");
+        }
+    }
+
+    /**
+     * Loads a row of bunnies going straight away from the default camera through SceneLoader. Farther ones never get
+     * more triangles.
+     */
+    @Test
+    void fartherPlacementsNeverGetMoreTriangles() {
+        RenderConfig defaults = RenderConfig.fromFile("src/main/resources/config.json");
+        float[] origin = defaults.camera().origin();
+
+        MeshConfig[] bunnies = new MeshConfig[BUNNIES];
+        for (int i = 0; i < BUNNIES; i++) {
+            float distance = (float) Math.pow(2, i - 1);
+            bunnies[i] = new MeshConfig("src/main/resources/stanford_bunny.obj", "white",
+                    new float[]{origin[0], origin[1], origin[2] - distance}, null, null);
+        }
+
+        MaterialConfig white = new MaterialConfig("white", "diffuse", new float[]{1, 1, 1}, null, 0, 0, 0, 0, null);
+        SceneConfig sceneConfig = new SceneConfig(null, new MaterialConfig[]{white}, bunnies, null);
+        RenderConfig config = new RenderConfig(null, defaults.quality(), defaults.camera(), null, null, null, null, null,
+                null, sceneConfig, null, CONFIG);
+        Scene scene = SceneLoader.load(config, new MeshCache(new MeshCacheConfig(false, null, 0)),
+                new TextureCache(new TextureCacheConfig(false, null, 0, false)));
+
+        for (int i = 1; i < BUNNIES; i++) {
+            assertTrue(scene.meshes()[i].triangleCount() <= scene.meshes()[i - 1].triangleCount(),
+                    "bunny " + i + " has more triangles than the one in front of it");
+        }
+        assertTrue(scene.meshes()[BUNNIES - 1].triangleCount() < scene.meshes()[0].triangleCount(),
+                "the farthest bunny is at full detail");
+    }
+
+    /**
+     * @return how many times each triangle's positions and texture coordinates appear, which only stays the same if
+     * no triangle changed
+     */
+    private static Map<List<Float>, Integer> triangles(ObjData data) {
+        Map<List<Float>, Integer> triangles = new HashMap<>();
+        for (int i = 0; i < data.indices().length; i += 3) {
+            List<Float> corners = new ArrayList<>();
+            for (int corner = i; corner < i + 3; corner++) {
+                int vertex = data.indices()[corner] * 3;
+                int texCoord = data.texIndices()[corner] * 2;
+                corners.addAll(List.of(data.vertices()[vertex], data.vertices()[vertex + 1], data.vertices()[vertex + 2],
+                        data.texCoords()[texCoord], data.texCoords()[texCoord + 1]));
+            }
+            triangles.merge(corners, 1, Integer::sum);
+        }
+
+        return triangles;
+    }
+
+    private static boolean distinct(ObjData data) {
+        Set<List<Float>> vertices = new HashSet<>();
+        for (int i = 0; i < data.vertices().length / 3; i++) {
+            if (!vertices.add(List.of(data.vertices()[i * 3], data.vertices()[i * 3 + 1], data.vertices()[i * 3 + 2],
+                    data.texCoords()[i * 2], data.texCoords()[i * 2 + 1]))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * ObjOptimizer.deviation without the BVH, as the reference for it.
+     */
+    private static float bruteForceDeviation(float[] points, ObjData data) {
+        float farthest = 0;
+        for (int i = 0; i < points.length; i += 3) {
+            float nearest = Float.POSITIVE_INFINITY;
+            for (int t = 0; t < data.indices().length; t += 3) {
+                nearest = Math.min(nearest, pointTriangleDistance(points, i, data.vertices(),
+                        data.indices()[t] * 3, data.indices()[t + 1] * 3, data.indices()[t + 2] * 3));
+            }
+            farthest = Math.max(farthest, nearest);
+        }
+
+        return farthest;
+    }
+
+    /**
+     * The distance to the nearest point of the triangle, the smallest of the distance to its plane for points that
+     * project inside it and the distances to its three edges.
+     */
+    private static float pointTriangleDistance(float[] points, int p, float[] vertices, int a, int b, int c) {
+        double px = points[p], py = points[p + 1], pz = points[p + 2];
+        double[] v0 = {vertices[a], vertices[a + 1], vertices[a + 2]};
+        double[] v1 = {vertices[b], vertices[b + 1], vertices[b + 2]};
+        double[] v2 = {vertices[c], vertices[c + 1], vertices[c + 2]};
+
+        double distance = Math.min(segmentDistance(px, py, pz, v0, v1),
+                Math.min(segmentDistance(px, py, pz, v1, v2), segmentDistance(px, py, pz, v2, v0)));
+
+        double[] e1 = {v1[0] - v0[0], v1[1] - v0[1], v1[2] - v0[2]};
+        double[] e2 = {v2[0] - v0[0], v2[1] - v0[1], v2[2] - v0[2]};
+        double nx = e1[1] * e2[2] - e1[2] * e2[1];
+        double ny = e1[2] * e2[0] - e1[0] * e2[2];
+        double nz = e1[0] * e2[1] - e1[1] * e2[0];
+        double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (length == 0) {
+            return (float) distance;
+        }
+
+        // inside if the point is on the inner side of all three edges
+        boolean inside = true;
+        double[][] corners = {v0, v1, v2};
+        for (int edge = 0; edge < 3; edge++) {
+            double[] from = corners[edge];
+            double[] to = corners[(edge + 1) % 3];
+            double ex = to[0] - from[0], ey = to[1] - from[1], ez = to[2] - from[2];
+            double qx = px - from[0], qy = py - from[1], qz = pz - from[2];
+            double side = (ey * qz - ez * qy) * nx + (ez * qx - ex * qz) * ny + (ex * qy - ey * qx) * nz;
+            inside &= side >= 0;
+        }
+
+        if (inside) {
+            double plane = Math.abs((px - v0[0]) * nx + (py - v0[1]) * ny + (pz - v0[2]) * nz) / length;
+            distance = Math.min(distance, plane);
+        }
+
+        return (float) distance;
+    }
+
+    private static double segmentDistance(double px, double py, double pz, double[] from, double[] to) {
+        double dx = to[0] - from[0], dy = to[1] - from[1], dz = to[2] - from[2];
+        double lengthSquared = dx * dx + dy * dy + dz * dz;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((px - from[0]) * dx + (py - from[1]) * dy + (pz - from[2]) * dz) / lengthSquared));
+        double x = from[0] + t * dx - px, y = from[1] + t * dy - py, z = from[2] + t * dz - pz;
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,87 @@
+package raytracer.output;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PngEncoderTest {
+    // more than one band of rows, and random enough to need several IDAT chunks
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 150;
+
+    @Test
+    void imageIoReadsBackTheSamePixels() throws IOException {
+        float[] data = randomImage(new Random(9));
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encode(data)));
+
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // the data is bottom row first, the PNG top row first
+                int source = ((HEIGHT - 1 - y) * WIDTH + x) * 4;
+                int expected = to8Bit(data[source]) << 16 | to8Bit(data[source + 1]) << 8 | to8Bit(data[source + 2]);
+                assertEquals(expected, image.getRGB(x, y) & 0xFFFFFF, "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void chunksHaveValidCrcsAndFitTheirSize() throws IOException {
+        ByteBuffer png = ByteBuffer.wrap(encode(randomImage(new Random(9))));
+        png.position(8);
+
+        int idatChunks = 0;
+        String type = "";
+        while (png.hasRemaining()) {
+            int length = png.getInt();
+            byte[] typeAndData = new byte[4 + length];
+            png.get(typeAndData);
+            type = new String(typeAndData, 0, 4, StandardCharsets.US_ASCII);
+
+            CRC32 crc = new CRC32();
+            crc.update(typeAndData);
+            assertEquals((int) crc.getValue(), png.getInt(), type + " has the wrong CRC");
+
+            if (type.equals("IDAT")) {
+                assertTrue(length <= 1 << 16);
+                idatChunks++;
+            }
+        }
+
+        assertEquals("IEND", type);
+        assertTrue(idatChunks > 1, "the image fit in one IDAT chunk");
+    }
+
+    private static byte[] encode(float[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngEncoder.write(out, data, WIDTH, HEIGHT);
+        return out.toByteArray();
+    }
+
+    /**
+     * Random colors, some of them outside [0, 1] to be clamped.
+     */
+    private static float[] randomImage(Random random) {
+        float[] data = new float[WIDTH * HEIGHT * 4];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextFloat() * 1.2f - 0.1f;
+        }
+
+        return data;
+    }
+
+    private static int to8Bit(float value) {
+        return (int) (Math.min(1, Math.max(0, value)) * 255);
+    }
+}
@@ -0,0 +1,42 @@
+package raytracer.output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import raytracer.denoise.AuxiliaryImages;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SavepointWriterTest {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+    private static final int SAVEPOINTS = 6;
+
+    @Test
+    void denoisedSavepointsReuseTheirBuffers(@TempDir Path directory) {
+        Set<float[]> auxiliaryBuffers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        try (SavepointWriter writer = new SavepointWriter(WIDTH, HEIGHT)) {
+            for (int i = 0; i < SAVEPOINTS; i++) {
+                float[] snapshot = writer.acquire();
+                AuxiliaryImages aux = writer.acquireAuxiliary();
+                auxiliaryBuffers.add(aux.half());
+                auxiliaryBuffers.add(aux.albedo());
+                auxiliaryBuffers.add(aux.normalDepth());
+
+                writer.write(snapshot, aux, directory.resolve(i + ".png").toString());
+            }
+        }
+
+        // two savepoints in flight, three auxiliary images each
+        assertEquals(6, auxiliaryBuffers.size());
+        for (int i = 0; i < SAVEPOINTS; i++) {
+            assertTrue(Files.isRegularFile(directory.resolve(i + ".png")));
+        }
+    }
+}
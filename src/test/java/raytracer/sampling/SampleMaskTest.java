@@ -0,0 +1,86 @@
+package raytracer.sampling;
+
+import org.junit.jupiter.api.Test;
+import raytracer.config.AdaptiveSampling;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleMaskTest {
+    // two by two blocks, the right column and top row of them only partly covered
+    private static final int WIDTH = SampleMask.BLOCK_WIDTH + 3;
+    private static final int HEIGHT = SampleMask.BLOCK_HEIGHT + 1;
+    private static final AdaptiveSampling SETTINGS = new AdaptiveSampling(true, 0.01f, 16);
+
+    @Test
+    void convergedBlocksGoInactive() {
+        SampleAccumulator accumulator = new SampleAccumulator(WIDTH, HEIGHT);
+        // every sample of the bottom left block is the same, every other pixel gets noise
+        accumulate(accumulator, 64, (x, row) -> x < SampleMask.BLOCK_WIDTH && row < SampleMask.BLOCK_HEIGHT);
+
+        SampleMask mask = SampleMask.build(accumulator.full(), accumulator.half(), WIDTH, HEIGHT, SETTINGS);
+
+        assertEquals(2, mask.blocksX());
+        assertEquals(2, mask.blocksY());
+        assertFalse(mask.isActive(0, 0));
+        assertTrue(mask.isActive(1, 0));
+        assertTrue(mask.isActive(0, 1));
+        assertTrue(mask.isActive(1, 1));
+        assertEquals(3, mask.activeBlocks());
+        assertArrayEquals(new int[]{1, 2, 3}, mask.workList());
+    }
+
+    @Test
+    void blocksUnderTheMinimumSamplesStayActive() {
+        SampleAccumulator accumulator = new SampleAccumulator(WIDTH, HEIGHT);
+        accumulate(accumulator, SETTINGS.minSamples() - 1, (x, row) -> true);
+
+        SampleMask mask = SampleMask.build(accumulator.full(), accumulator.half(), WIDTH, HEIGHT, SETTINGS);
+        assertEquals(4, mask.activeBlocks());
+
+        accumulate(accumulator, 1, (x, row) -> true);
+        mask = SampleMask.build(accumulator.full(), accumulator.half(), WIDTH, HEIGHT, SETTINGS);
+        assertEquals(0, mask.activeBlocks());
+    }
+
+    @Test
+    void disabledSettingsKeepEveryBlockActive() {
+        SampleAccumulator accumulator = new SampleAccumulator(WIDTH, HEIGHT);
+        accumulate(accumulator, 64, (x, row) -> true);
+
+        SampleMask mask = SampleMask.build(accumulator.full(), accumulator.half(), WIDTH, HEIGHT, AdaptiveSampling.disabled());
+
+        assertEquals(4, mask.activeBlocks());
+        assertEquals(1, mask.activeFraction());
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertTrue(mask.isPixelActive(x, row));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PixelPredicate {
+        boolean test(int x, int row);
+    }
+
+    /**
+     * Adds samples to every pixel: the same grey to pixels where constant is true, and random colors to the rest.
+     */
+    private static void accumulate(SampleAccumulator accumulator, int samples, PixelPredicate constant) {
+        Random random = new Random(5);
+
+        for (int sample = 0; sample < samples; sample++) {
+            for (int row = 0; row < accumulator.height(); row++) {
+                for (int x = 0; x < accumulator.width(); x++) {
+                    if (constant.test(x, row)) {
+                        accumulator.add(x, row, 0.5f, 0.5f, 0.5f);
+                    } else {
+                        accumulator.add(x, row, random.nextFloat(), random.nextFloat(), random.nextFloat());
+                    }
+                }
+            }
+        }
+    }
+}
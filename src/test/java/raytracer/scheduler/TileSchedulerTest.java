@@ -0,0 +1,147 @@
+package raytracer.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileSchedulerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void everyTileIsRenderedOnce() {
+        try (TileScheduler scheduler = new TileScheduler(100, 60, 16, TileOrder.ROW_MAJOR, 4)) {
+            // tiles that were slow to render may be split after the frame
+            List<Tile> tiles = scheduler.tiles();
+            Map<Tile, Integer> rendered = new ConcurrentHashMap<>();
+
+            FrameResult result = scheduler.render((tile, s) -> rendered.merge(tile, 1, Integer::sum));
+
+            assertFalse(result.cancelled());
+            assertEquals(new HashSet<>(tiles), rendered.keySet());
+            assertTrue(rendered.values().stream().allMatch(count -> count == 1));
+
+            int area = 0;
+            for (TileTiming timing : result.timings()) {
+                area += timing.tile().area();
+            }
+            assertEquals(100 * 60, area);
+        }
+    }
+
+    @Test
+    void idleWorkersStealFromBusyOnes() {
+        try (TileScheduler scheduler = new TileScheduler(64, 64, 8, TileOrder.ROW_MAJOR, 2)) {
+            Map<String, AtomicInteger> perThread = new ConcurrentHashMap<>();
+
+            scheduler.render((tile, s) -> {
+                String thread = Thread.currentThread().getName();
+                perThread.computeIfAbsent(thread, name -> new AtomicInteger()).incrementAndGet();
+                if (thread.equals("tile-worker-0")) {
+                    sleep(5);
+                }
+            });
+
+            // each worker was dealt half of the 64 tiles, and the fast one took most of the slow one's
+            assertTrue(perThread.get("tile-worker-1").get() > 32, perThread.toString());
+        }
+    }
+
+    @Test
+    void aThrowingTileFailsTheFrameInsteadOfHanging() {
+        try (TileScheduler scheduler = new TileScheduler(64, 64, 8, TileOrder.ROW_MAJOR, 4)) {
+            Tile failing = scheduler.tiles().get(5);
+
+            IllegalStateException e = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(IllegalStateException.class,
+                    () -> scheduler.render((tile, s) -> {
+                        if (tile.equals(failing)) {
+                            throw new ArithmeticException("tile failed");
+                        }
+                    })));
+
+            assertInstanceOf(ArithmeticException.class, e.getCause());
+            assertTrue(scheduler.isCancelled());
+
+            // the scheduler is still usable for the next frame
+            int tileCount = scheduler.tiles().size();
+            FrameResult next = assertTimeoutPreemptively(TIMEOUT, () -> scheduler.render((tile, s) -> {}));
+            assertFalse(next.cancelled());
+            assertEquals(tileCount, next.timings().size());
+        }
+    }
+
+    @Test
+    void cancelStopsStartingTiles() {
+        try (TileScheduler scheduler = new TileScheduler(64, 64, 8, TileOrder.ROW_MAJOR, 2)) {
+            AtomicInteger started = new AtomicInteger();
+
+            FrameResult result = assertTimeoutPreemptively(TIMEOUT, () -> scheduler.render((tile, s) -> {
+                if (started.incrementAndGet() == 4) {
+                    s.cancel();
+                }
+            }));
+
+            assertTrue(result.cancelled());
+            // one more tile per worker may have been taken before it saw the flag
+            assertTrue(started.get() <= 4 + 2, started.get() + " tiles started");
+            assertTrue(result.timings().size() < scheduler.tiles().size());
+        }
+    }
+
+    @Test
+    void focusReordersTheTilesNotYetStarted() throws InterruptedException {
+        try (TileScheduler scheduler = new TileScheduler(128, 128, 16, TileOrder.CENTER_OUT, 1)) {
+            scheduler.focus(0, 0);
+            assertEquals(new Tile(0, 0, 16, 16), scheduler.tiles().get(0));
+
+            CountDownLatch firstStarted = new CountDownLatch(1);
+            CountDownLatch focused = new CountDownLatch(1);
+            List<Tile> order = new CopyOnWriteArrayList<>();
+
+            Thread frame = new Thread(() -> scheduler.render((tile, s) -> {
+                order.add(tile);
+                if (order.size() == 1) {
+                    firstStarted.countDown();
+                    await(focused);
+                }
+            }));
+            frame.start();
+
+            assertTrue(firstStarted.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+            scheduler.focus(128, 128);
+            focused.countDown();
+            frame.join(TIMEOUT.toMillis());
+
+            assertEquals(new Tile(0, 0, 16, 16), order.get(0));
+            assertEquals(new Tile(112, 112, 16, 16), order.get(1));
+            assertEquals(64, Set.copyOf(order).size());
+            assertEquals(new Tile(112, 112, 16, 16), scheduler.tiles().get(0));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
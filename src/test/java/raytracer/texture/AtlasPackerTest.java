@@ -0,0 +1,109 @@
+package raytracer.texture;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtlasPackerTest {
+    private static final int[] GUTTERS = {1, 4, 8};
+    private static final int MAX_PAGE_SIZE = 1024;
+
+    @Test
+    void rectanglesAndGuttersNeverOverlap() {
+        forEachLayout((widths, heights, gutter, layout) -> {
+            for (int a = 0; a < widths.length; a++) {
+                for (int b = a + 1; b < widths.length; b++) {
+                    if (layout.placements()[a].page() != layout.placements()[b].page()) {
+                        continue;
+                    }
+
+                    int[] first = padded(layout.placements()[a], widths[a], heights[a], gutter);
+                    int[] second = padded(layout.placements()[b], widths[b], heights[b], gutter);
+                    boolean overlaps = first[0] < second[2] && second[0] < first[2] && first[1] < second[3] && second[1] < first[3];
+                    assertFalse(overlaps, "rectangles " + a + " and " + b + " overlap with a gutter of " + gutter);
+                }
+            }
+        });
+    }
+
+    @Test
+    void rectanglesAndGuttersStayOnTheirPage() {
+        forEachLayout((widths, heights, gutter, layout) -> {
+            assertTrue(layout.pageWidth() <= MAX_PAGE_SIZE && layout.pageHeight() <= MAX_PAGE_SIZE);
+
+            for (int i = 0; i < widths.length; i++) {
+                AtlasPacker.Placement placement = layout.placements()[i];
+                int[] bounds = padded(placement, widths[i], heights[i], gutter);
+                assertTrue(placement.page() >= 0 && placement.page() < layout.pageCount());
+                assertTrue(bounds[0] >= 0 && bounds[1] >= 0, "rectangle " + i + " starts off the page");
+                assertTrue(bounds[2] <= layout.pageWidth() && bounds[3] <= layout.pageHeight(), "rectangle " + i + " ends off the page");
+            }
+        });
+    }
+
+    @Test
+    void rectanglesSitOnGutterMultiples() {
+        forEachLayout((widths, heights, gutter, layout) -> {
+            for (AtlasPacker.Placement placement : layout.placements()) {
+                assertEquals(0, placement.x() % gutter);
+                assertEquals(0, placement.y() % gutter);
+            }
+        });
+    }
+
+    @Test
+    void repeatedRunsGiveIdenticalLayouts() {
+        forEachLayout((widths, heights, gutter, layout) -> {
+            AtlasPacker.Layout again = AtlasPacker.pack(widths.clone(), heights.clone(), gutter, MAX_PAGE_SIZE);
+            assertEquals(layout.pageWidth(), again.pageWidth());
+            assertEquals(layout.pageHeight(), again.pageHeight());
+            assertEquals(layout.pageCount(), again.pageCount());
+            assertArrayEquals(layout.placements(), again.placements());
+        });
+    }
+
+    @Test
+    void oversizeRectanglesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> AtlasPacker.pack(new int[]{MAX_PAGE_SIZE + 1}, new int[]{16}, 1, MAX_PAGE_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> AtlasPacker.pack(new int[]{16}, new int[]{MAX_PAGE_SIZE + 1}, 1, MAX_PAGE_SIZE));
+        // fits by itself, but not with its gutter
+        assertThrows(IllegalArgumentException.class, () -> AtlasPacker.pack(new int[]{MAX_PAGE_SIZE}, new int[]{16}, 4, MAX_PAGE_SIZE));
+    }
+
+    @FunctionalInterface
+    private interface LayoutCheck {
+        void check(int[] widths, int[] heights, int gutter, AtlasPacker.Layout layout);
+    }
+
+    /**
+     * Runs a check on layouts of a few sets of random rectangles, some of which need more than one page.
+     */
+    private static void forEachLayout(LayoutCheck check) {
+        Random random = new Random(17);
+
+        for (int gutter : GUTTERS) {
+            for (int count : new int[]{1, 7, 40, 200}) {
+                int[] widths = new int[count];
+                int[] heights = new int[count];
+                for (int i = 0; i < count; i++) {
+                    widths[i] = 1 + random.nextInt(count > 40 ? 300 : 64);
+                    heights[i] = 1 + random.nextInt(count > 40 ? 300 : 64);
+                }
+
+                AtlasPacker.Layout layout = AtlasPacker.pack(widths, heights, gutter, MAX_PAGE_SIZE);
+                assertEquals(count, layout.placements().length, Arrays.toString(widths));
+                check.check(widths, heights, gutter, layout);
+            }
+        }
+    }
+
+    /**
+     * @return the left, top, right and bottom edges of a rectangle with its gutter on every side
+     */
+    private static int[] padded(AtlasPacker.Placement placement, int width, int height, int gutter) {
+        return new int[]{placement.x() - gutter, placement.y() - gutter, placement.x() + width + gutter, placement.y() + height + gutter};
+    }
+}
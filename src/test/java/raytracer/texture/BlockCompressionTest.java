@@ -0,0 +1,77 @@
+package raytracer.texture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import raytracer.config.TextureCacheConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips every bundled texture through the format the GPU backend stores it in and checks the peak signal to noise
+ * ratio of the decoded texels against a floor for each format.
+ */
+class BlockCompressionTest {
+    private static final Path TEXTURES = Path.of("src/main/resources/textures");
+    private static final double MIN_PSNR_BC1 = 30;
+    private static final double MIN_PSNR_BC4 = 36;
+    private static final double MIN_PSNR_BC5 = 34;
+
+    private static final TextureCache TEXTURE_LOADER = new TextureCache(new TextureCacheConfig(false, null, 0, false));
+
+    static Stream<Path> textures() throws IOException {
+        // collected up front so the directory stream is closed
+        try (Stream<Path> files = Files.walk(TEXTURES)) {
+            return files.filter(Files::isRegularFile).sorted().toList().stream();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("textures")
+    void roundTripStaysAboveTheFormatsMinimumPsnr(Path path) throws IOException {
+        Texture texture = TEXTURE_LOADER.load(path);
+        BlockFormat format = formatFor(path);
+
+        ByteBuffer blocks = BlockEncoder.encode(format, texture.bytes(), texture.width(), texture.height());
+        byte[] decoded = BlockDecoder.decode(format, blocks, texture.width(), texture.height());
+        double psnr = BlockDecoder.psnr(format, texture.bytes(), decoded);
+
+        double minPsnr = switch (format) {
+            case BC1 -> MIN_PSNR_BC1;
+            case BC4 -> MIN_PSNR_BC4;
+            case BC5 -> MIN_PSNR_BC5;
+        };
+        assertTrue(psnr >= minPsnr, path + " is " + psnr + " dB as " + format + ", below " + minPsnr);
+    }
+
+    @Test
+    void compressesThroughACacheSmallerThanTheEntry(@TempDir Path directory) throws IOException {
+        Texture texture = TEXTURE_LOADER.load(TEXTURES.resolve("bricks2/diffuse.png"));
+        TextureCompressor cached = new TextureCompressor(new TextureCacheConfig(true, directory.toString(), 0, true));
+        TextureCompressor uncached = new TextureCompressor(new TextureCacheConfig(false, null, 0, true));
+
+        CompressedTexture expected = uncached.compress(texture, BlockFormat.BC1);
+        CompressedTexture actual = cached.compress(texture, BlockFormat.BC1);
+
+        assertEquals(expected.levels().length, actual.levels().length);
+        for (int level = 0; level < expected.levels().length; level++) {
+            assertEquals(expected.levels()[level], actual.levels()[level], "level " + level);
+        }
+    }
+
+    private static BlockFormat formatFor(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith("diffuse")) {
+            return BlockFormat.BC1;
+        }
+
+        return name.startsWith("normal") ? BlockFormat.BC5 : BlockFormat.BC4;
+    }
+}
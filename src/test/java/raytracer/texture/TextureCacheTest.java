@@ -0,0 +1,43 @@
+package raytracer.texture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import raytracer.config.TextureCacheConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureCacheTest {
+    private static final Path TEXTURE = Path.of("src/main/resources/textures/bricks2/diffuse.png");
+
+    @Test
+    void loadsATextureBiggerThanTheWholeCache(@TempDir Path directory) throws IOException {
+        TextureCache cache = new TextureCache(new TextureCacheConfig(true, directory.toString(), 0, false));
+
+        Texture texture = cache.load(TEXTURE);
+        Texture uncached = new TextureCache(new TextureCacheConfig(false, null, 0, false)).load(TEXTURE);
+
+        assertEquals(uncached.width(), texture.width());
+        assertEquals(uncached.height(), texture.height());
+        assertEquals(uncached.levelCount(), texture.levelCount());
+        assertEquals(uncached.bytes(), texture.bytes());
+    }
+
+    @Test
+    void deletesAbandonedTemporaryFilesWhenOpened(@TempDir Path directory) throws IOException {
+        Path abandoned = Files.createFile(directory.resolve("0123-v" + TextureCache.LOADER_VERSION + ".texture42.tmp"));
+        Files.setLastModifiedTime(abandoned, FileTime.from(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS));
+        // may belong to a run that is still writing it
+        Path recent = Files.createFile(directory.resolve("4567-v" + TextureCache.LOADER_VERSION + ".texture43.tmp"));
+
+        new TextureCache(new TextureCacheConfig(true, directory.toString(), 16, false));
+
+        assertFalse(Files.exists(abandoned));
+        assertTrue(Files.exists(recent));
+    }
+}